@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido.connector;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2TenantCache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Node local cache of the {@link FIDOAuthenticatorConfigImpl} connector properties of the tenants.
+ *
+ * The properties of a tenant are resolved from the identity governance service once and kept until they are
+ * invalidated by an update of the governance configurations, or until they expire. The properties are kept in a
+ * {@link FIDO2TenantCache}, hence properties resolved concurrently with a configuration update are not kept.
+ */
+public class FIDOAuthenticatorConfigCache {
+
+    private static final Log log = LogFactory.getLog(FIDOAuthenticatorConfigCache.class);
+    private static final FIDOAuthenticatorConfigCache instance = new FIDOAuthenticatorConfigCache();
+
+    private final FIDO2TenantCache<Map<String, String>> properties = new FIDO2TenantCache<>();
+
+    FIDOAuthenticatorConfigCache() {
+
+    }
+
+    public static FIDOAuthenticatorConfigCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the connector properties of a tenant.
+     *
+     * @param tenantDomain Tenant domain.
+     * @return Unmodifiable map of the property values by name, or null if there is none or it has expired.
+     */
+    public Map<String, String> get(String tenantDomain) {
+
+        return properties.get(tenantDomain);
+    }
+
+    /**
+     * Get the current version of the cache, to be taken before the properties of a tenant are resolved.
+     *
+     * @return Current version.
+     */
+    public long getVersion() {
+
+        return properties.getVersion();
+    }
+
+    /**
+     * Add the connector properties of a tenant, unless the cache has been invalidated since they were resolved.
+     *
+     * @param tenantDomain     Tenant domain.
+     * @param tenantProperties Property values by name.
+     * @param version          Version of the cache the properties were resolved at.
+     * @param timeout          Time in milliseconds after which the properties expire.
+     * @return True if the properties were added.
+     */
+    public boolean put(String tenantDomain, Map<String, String> tenantProperties, long version, long timeout) {
+
+        if (!properties.put(tenantDomain, Collections.unmodifiableMap(new HashMap<>(tenantProperties)), version,
+                timeout)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Discarded the stale FIDO connector properties of tenant: " + tenantDomain);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remove the connector properties of a tenant, such that they are resolved again on the next use.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public void invalidate(String tenantDomain) {
+
+        properties.invalidate(tenantDomain);
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidated the FIDO connector properties of tenant: " + tenantDomain);
+        }
+    }
+
+    public void clear() {
+
+        properties.clear();
+    }
+
+    /**
+     * Get the number of times the connector properties of a tenant were resolved and added.
+     *
+     * @return Number of properties loaded.
+     */
+    public long getLoadCount() {
+
+        return properties.getLoadCount();
+    }
+}
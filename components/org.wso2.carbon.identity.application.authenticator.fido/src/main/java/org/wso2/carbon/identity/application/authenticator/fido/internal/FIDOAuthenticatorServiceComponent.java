@@ -32,12 +32,14 @@ import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.base.ServerConfiguration;
 import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
 import org.wso2.carbon.identity.application.authenticator.fido.FIDOAuthenticator;
+import org.wso2.carbon.identity.application.authenticator.fido.connector.FIDOAuthenticatorConfigCache;
 import org.wso2.carbon.identity.application.authenticator.fido.connector.FIDOAuthenticatorConfigImpl;
 import org.wso2.carbon.identity.application.authenticator.fido.u2f.U2FService;
 import org.wso2.carbon.identity.governance.IdentityGovernanceService;
 import org.wso2.carbon.identity.governance.common.IdentityConnectorConfig;
 import org.wso2.carbon.identity.user.store.configuration.listener.UserStoreConfigListener;
 import org.wso2.carbon.idp.mgt.IdpManager;
+import org.wso2.carbon.idp.mgt.listener.IdentityProviderMgtListener;
 import org.wso2.carbon.user.core.service.RealmService;
 import org.wso2.carbon.utils.ServerConstants;
 import org.wso2.carbon.identity.handler.event.account.lock.service.AccountLockService;
@@ -92,6 +94,13 @@ public class FIDOAuthenticatorServiceComponent {
             log.error("Error registering UserStoreConfigListener.", e);
         }
 
+        try {
+            bundleContext.registerService(
+                    IdentityProviderMgtListener.class.getName(), new FIDOConnectorConfigListener(), null);
+        } catch (Exception e) {
+            log.error("Error registering FIDOConnectorConfigListener.", e);
+        }
+
         dataHolder.setBundleContext(bundleContext);
     }
 
@@ -142,11 +151,14 @@ public class FIDOAuthenticatorServiceComponent {
     protected void setIdentityGovernanceService(IdentityGovernanceService idpManager) {
 
         FIDOAuthenticatorServiceDataHolder.setIdentityGovernanceService(idpManager);
+        // Properties resolved from the previous governance service are not kept.
+        FIDOAuthenticatorConfigCache.getInstance().clear();
     }
 
     protected void unsetIdentityGovernanceService(IdentityGovernanceService idpManager) {
 
         FIDOAuthenticatorServiceDataHolder.setIdentityGovernanceService(null);
+        FIDOAuthenticatorConfigCache.getInstance().clear();
     }
 
     @Reference(
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido.u2f;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataStore;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2SessionDataClaimer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Store of the U2F challenges issued by the {@link U2FService}, keyed by request ID.
+ *
+ * Challenges are kept in a concurrent map, each with its own expiry time, and a challenge is removed when it is read,
+ * hence it can be answered only once. Expired challenges are rejected when they are read, and are swept from the
+ * store on a put at most once per quarter of the timeout, so storing and reading a challenge does not take a lock.
+ * The number of challenges is bounded separately: a put finding the store full sweeps the expired challenges and, if
+ * the store is still full, evicts the challenges closest to their expiry until a tenth of the capacity is free, so
+ * that the cost of the sweep is amortized over the following puts. Puts racing with a sweep may exceed the capacity
+ * by the number of concurrent callers until the next sweep.
+ *
+ * When session persistence is enabled, challenges are also written to the session data store, so that a challenge
+ * issued by one node of a cluster can be answered on another. A challenge is then accepted only once it is claimed
+ * from the session data store by {@link FIDO2SessionDataClaimer}, such that it is answered on a single node. This
+ * requires the session data to be persisted synchronously, which is the default of the session data store.
+ */
+public class U2FChallengeStore {
+
+    private static final Log log = LogFactory.getLog(U2FChallengeStore.class);
+    private static final String U2F_CHALLENGE_SESSION_TYPE = "U2FChallenge";
+    private static final int SWEEPS_PER_TIMEOUT = 4;
+    private static final int EVICTION_RATIO = 10;
+
+    private final Map<String, Challenge> challenges = new ConcurrentHashMap<>();
+    private final AtomicInteger challengeCount = new AtomicInteger();
+    // Only sweeps are serialized.
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private final AtomicLong nextSweepTime = new AtomicLong();
+    private final long challengeTimeout;
+    private final long sweepInterval;
+    private final int maxSize;
+    private final boolean sessionPersistenceEnabled;
+    private final FIDO2SessionDataClaimer sessionDataClaimer;
+
+    private final AtomicLong evictedChallengeCount = new AtomicLong();
+    private final AtomicLong expiredChallengeCount = new AtomicLong();
+
+    /**
+     * @param challengeTimeout          Time in milliseconds after which a challenge expires.
+     * @param maxSize                   Maximum number of challenges kept in memory.
+     * @param sessionPersistenceEnabled Whether challenges are written through to the session data store.
+     */
+    public U2FChallengeStore(long challengeTimeout, int maxSize, boolean sessionPersistenceEnabled) {
+
+        this(challengeTimeout, maxSize, sessionPersistenceEnabled, FIDO2SessionDataClaimer.getInstance());
+    }
+
+    U2FChallengeStore(long challengeTimeout, int maxSize, boolean sessionPersistenceEnabled,
+                      FIDO2SessionDataClaimer sessionDataClaimer) {
+
+        this.challengeTimeout = challengeTimeout;
+        this.sweepInterval = Math.max(1, challengeTimeout / SWEEPS_PER_TIMEOUT);
+        this.maxSize = Math.max(1, maxSize);
+        this.sessionPersistenceEnabled = sessionPersistenceEnabled;
+        this.sessionDataClaimer = sessionDataClaimer;
+    }
+
+    /**
+     * Store a challenge.
+     *
+     * @param requestId Request ID of the challenge.
+     * @param data      Serialized request data of the challenge.
+     */
+    public void put(String requestId, String data) {
+
+        long now = System.currentTimeMillis();
+        Challenge challenge = new Challenge(data, now + challengeTimeout);
+        long sweepTime = nextSweepTime.get();
+        if (now >= sweepTime && nextSweepTime.compareAndSet(sweepTime, now + sweepInterval) &&
+                sweepLock.tryLock()) {
+            try {
+                purgeExpired(now);
+            } finally {
+                sweepLock.unlock();
+            }
+        }
+        if (challengeCount.get() >= maxSize && !challenges.containsKey(requestId)) {
+            sweepLock.lock();
+            try {
+                if (challengeCount.get() >= maxSize) {
+                    purgeExpired(now);
+                    evictClosestToExpiry();
+                }
+            } finally {
+                sweepLock.unlock();
+            }
+        }
+        if (challenges.put(requestId, challenge) == null) {
+            challengeCount.incrementAndGet();
+        }
+        if (sessionPersistenceEnabled) {
+            SessionDataStore.getInstance().storeSessionData(requestId, U2F_CHALLENGE_SESSION_TYPE, challenge);
+        }
+    }
+
+    /**
+     * Remove a challenge and return its data.
+     *
+     * @param requestId Request ID of the challenge.
+     * @return Serialized request data of the challenge, or null if there is no such challenge, it has expired or it
+     * has been answered on another node.
+     */
+    public String remove(String requestId) {
+
+        Challenge challenge = challenges.remove(requestId);
+        if (challenge != null) {
+            challengeCount.decrementAndGet();
+        }
+        if (sessionPersistenceEnabled) {
+            if (challenge == null) {
+                // The challenge may have been issued by another node.
+                challenge = (Challenge) SessionDataStore.getInstance().getSessionData(requestId,
+                        U2F_CHALLENGE_SESSION_TYPE);
+            }
+            if (challenge == null || !sessionDataClaimer.claim(requestId, U2F_CHALLENGE_SESSION_TYPE)) {
+                return null;
+            }
+        }
+        if (challenge == null) {
+            return null;
+        }
+        if (challenge.isExpired(System.currentTimeMillis())) {
+            expiredChallengeCount.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("U2F challenge of request ID: " + requestId + " has expired.");
+            }
+            return null;
+        }
+        return challenge.data;
+    }
+
+    public int size() {
+
+        return challengeCount.get();
+    }
+
+    public long getEvictedChallengeCount() {
+
+        return evictedChallengeCount.get();
+    }
+
+    public long getExpiredChallengeCount() {
+
+        return expiredChallengeCount.get();
+    }
+
+    private void purgeExpired(long now) {
+
+        for (Map.Entry<String, Challenge> entry : challenges.entrySet()) {
+            if (entry.getValue().isExpired(now) && challenges.remove(entry.getKey(), entry.getValue())) {
+                challengeCount.decrementAndGet();
+                expiredChallengeCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void evictClosestToExpiry() {
+
+        int evictionCount = challengeCount.get() - (maxSize - Math.max(1, maxSize / EVICTION_RATIO));
+        if (evictionCount <= 0) {
+            return;
+        }
+        List<Map.Entry<String, Challenge>> entries = new ArrayList<>(challenges.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().expiryTime));
+        for (Map.Entry<String, Challenge> entry : entries) {
+            if (evictionCount <= 0) {
+                break;
+            }
+            if (challenges.remove(entry.getKey(), entry.getValue())) {
+                challengeCount.decrementAndGet();
+                evictedChallengeCount.incrementAndGet();
+                evictionCount--;
+            }
+        }
+    }
+
+    private static final class Challenge implements Serializable {
+
+        private static final long serialVersionUID = -1895204218930264361L;
+
+        private final String data;
+        private final long expiryTime;
+
+        private Challenge(String data, long expiryTime) {
+
+            this.data = data;
+            this.expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(long now) {
+
+            return now > expiryTime;
+        }
+    }
+}
@@ -29,15 +29,15 @@ import org.wso2.carbon.identity.application.authentication.framework.exception.A
 import org.wso2.carbon.identity.application.authenticator.fido.dao.DeviceStoreDAO;
 import org.wso2.carbon.identity.application.authenticator.fido.dto.FIDOUser;
 import org.wso2.carbon.identity.application.authenticator.fido.exception.FIDOAuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido.util.FIDOUtil;
 import org.wso2.carbon.identity.base.IdentityException;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class U2FService {
 
@@ -45,7 +45,7 @@ public class U2FService {
 
     private static volatile U2FService u2FService;
     private final U2F u2f = new U2F();
-    private static Map<String, String> requestStorage = new HashMap<String, String>();
+    private final U2FChallengeStore requestStorage;
 
     /**
      * Gets a U2FService instance.
@@ -69,6 +69,8 @@ public class U2FService {
 
     private U2FService() {
 
+        requestStorage = new U2FChallengeStore(TimeUnit.SECONDS.toMillis(FIDOUtil.getU2FChallengeTimeout()),
+                FIDOUtil.getU2FChallengeStoreMaxSize(), FIDOUtil.isU2FChallengeSessionPersistenceEnabled());
     }
 
     private Iterable<DeviceRegistration> getRegistrations(final FIDOUser user)
@@ -44,6 +44,15 @@ public class FIDOAuthenticatorConstants {
     public static final String U2F_KEY_HANDLE = "KEY_HANDLE";
     public static final String U2F_DEVICE_DATA = "DEVICE_DATA";
     public static final String U2F_DEVICE_METADATA = "TIME_REGISTERED";
+    public static final String U2F_CHALLENGE_TIMEOUT = "FIDO.U2F.ChallengeTimeout";
+    public static final int U2F_CHALLENGE_TIMEOUT_DEFAULT_VALUE = 300;
+    public static final String U2F_CHALLENGE_STORE_MAX_SIZE = "FIDO.U2F.ChallengeStore.MaxSize";
+    public static final int U2F_CHALLENGE_STORE_MAX_SIZE_DEFAULT_VALUE = 10000;
+    public static final String U2F_CHALLENGE_STORE_SESSION_PERSISTENCE_ENABLED =
+            "FIDO.U2F.ChallengeStore.SessionPersistence.Enable";
+    public static final String CONNECTOR_CONFIG_CACHE_ENABLED = "FIDO.ConnectorConfig.Cache.Enable";
+    public static final String CONNECTOR_CONFIG_CACHE_TIMEOUT = "FIDO.ConnectorConfig.Cache.Timeout";
+    public static final int CONNECTOR_CONFIG_CACHE_TIMEOUT_DEFAULT_VALUE = 300;
 
     public static final String FIDO_AUTH = "FidoAuth";
     public static final String FIDO2_AUTH = "Fido2Auth";
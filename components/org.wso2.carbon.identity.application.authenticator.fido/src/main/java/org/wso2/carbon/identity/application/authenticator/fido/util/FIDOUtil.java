@@ -17,6 +17,7 @@
  */
 package org.wso2.carbon.identity.application.authenticator.fido.util;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.CarbonConstants;
@@ -24,6 +25,8 @@ import org.wso2.carbon.identity.application.authentication.framework.context.Aut
 import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkUtils;
+import org.wso2.carbon.identity.application.authenticator.fido.connector.FIDOAuthenticatorConfigCache;
+import org.wso2.carbon.identity.application.authenticator.fido.connector.FIDOAuthenticatorConfigImpl;
 import org.wso2.carbon.identity.application.authenticator.fido.exception.FIDOAuthenticatorServerException;
 import org.wso2.carbon.identity.application.authenticator.fido.internal.FIDOAuthenticatorServiceDataHolder;
 import org.wso2.carbon.identity.application.common.model.Property;
@@ -37,6 +40,9 @@ import org.wso2.carbon.identity.handler.event.account.lock.exception.AccountLock
 import org.wso2.carbon.user.core.UserCoreConstants;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -47,6 +53,7 @@ import javax.servlet.http.HttpServletResponse;
 public class FIDOUtil {
 
     private static final Log log = LogFactory.getLog(FIDOUtil.class);
+    private static final String[] CONNECTOR_PROPERTY_NAMES = new FIDOAuthenticatorConfigImpl().getPropertyNames();
 
     private FIDOUtil() {
     }
@@ -88,6 +95,12 @@ public class FIDOUtil {
     public static String getFIDOAuthenticatorConfig(String key, String tenantDomain)
             throws FIDOAuthenticatorServerException {
 
+        if (isConnectorConfigCacheEnabled()) {
+            Map<String, String> connectorConfigs = getCachedFIDOAuthenticatorConfigs(tenantDomain);
+            if (connectorConfigs.containsKey(key)) {
+                return connectorConfigs.get(key);
+            }
+        }
         try {
             Property[] connectorConfigs;
             IdentityGovernanceService governanceService =
@@ -100,6 +113,40 @@ public class FIDOUtil {
         }
     }
 
+    /**
+     * Get the connector properties of a tenant from the cache, resolving all of them with a single call to the
+     * identity governance service if the tenant has no cached properties.
+     *
+     * @param tenantDomain Tenant domain.
+     * @return Property values by name.
+     * @throws FIDOAuthenticatorServerException If an error occurred while getting the config values.
+     */
+    private static Map<String, String> getCachedFIDOAuthenticatorConfigs(String tenantDomain)
+            throws FIDOAuthenticatorServerException {
+
+        FIDOAuthenticatorConfigCache configCache = FIDOAuthenticatorConfigCache.getInstance();
+        Map<String, String> connectorConfigs = configCache.get(tenantDomain);
+        if (connectorConfigs != null) {
+            return connectorConfigs;
+        }
+        // Take the version before resolving, such that an update made while resolving discards the properties.
+        long version = configCache.getVersion();
+        connectorConfigs = new HashMap<>();
+        try {
+            Property[] properties = FIDOAuthenticatorServiceDataHolder.getIdentityGovernanceService()
+                    .getConfiguration(CONNECTOR_PROPERTY_NAMES, tenantDomain);
+            for (Property property : properties) {
+                connectorConfigs.put(property.getName(), property.getValue());
+            }
+        } catch (IdentityGovernanceException e) {
+            throw new FIDOAuthenticatorServerException(
+                    "Error occurred while getting the authenticator configuration", e);
+        }
+        configCache.put(tenantDomain, connectorConfigs, version,
+                TimeUnit.SECONDS.toMillis(getConnectorConfigCacheTimeout()));
+        return connectorConfigs;
+    }
+
     /**
      * Check whether the account is locked.
      *
@@ -168,4 +215,74 @@ public class FIDOUtil {
             throw new AuthenticationFailedException("Error while building FIDO error page URL", e);
         }
     }
+
+    /**
+     * Get the time after which an unanswered U2F challenge expires.
+     *
+     * @return U2F challenge timeout in seconds.
+     */
+    public static int getU2FChallengeTimeout() {
+
+        return getIntProperty(FIDOAuthenticatorConstants.U2F_CHALLENGE_TIMEOUT,
+                FIDOAuthenticatorConstants.U2F_CHALLENGE_TIMEOUT_DEFAULT_VALUE);
+    }
+
+    /**
+     * Get the maximum number of U2F challenges kept in memory.
+     *
+     * @return Maximum size of the U2F challenge store.
+     */
+    public static int getU2FChallengeStoreMaxSize() {
+
+        return getIntProperty(FIDOAuthenticatorConstants.U2F_CHALLENGE_STORE_MAX_SIZE,
+                FIDOAuthenticatorConstants.U2F_CHALLENGE_STORE_MAX_SIZE_DEFAULT_VALUE);
+    }
+
+    /**
+     * Check whether the U2F challenges are written through to the session data store.
+     *
+     * @return boolean indicating server U2F challenge persistence preference.
+     */
+    public static boolean isU2FChallengeSessionPersistenceEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(
+                FIDOAuthenticatorConstants.U2F_CHALLENGE_STORE_SESSION_PERSISTENCE_ENABLED));
+    }
+
+    /**
+     * Check whether the connector properties of the tenants are cached instead of being resolved from the identity
+     * governance service per authentication step.
+     *
+     * @return boolean indicating server connector config cache preference.
+     */
+    public static boolean isConnectorConfigCacheEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(
+                FIDOAuthenticatorConstants.CONNECTOR_CONFIG_CACHE_ENABLED));
+    }
+
+    /**
+     * Get the time after which the cached connector properties of a tenant expire.
+     *
+     * @return Connector config cache timeout in seconds.
+     */
+    public static int getConnectorConfigCacheTimeout() {
+
+        return getIntProperty(FIDOAuthenticatorConstants.CONNECTOR_CONFIG_CACHE_TIMEOUT,
+                FIDOAuthenticatorConstants.CONNECTOR_CONFIG_CACHE_TIMEOUT_DEFAULT_VALUE);
+    }
+
+    private static int getIntProperty(String propertyName, int defaultValue) {
+
+        String value = IdentityUtil.getProperty(propertyName);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + value + " configured for: " + propertyName + ". Using the default " +
+                        "value: " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
 }
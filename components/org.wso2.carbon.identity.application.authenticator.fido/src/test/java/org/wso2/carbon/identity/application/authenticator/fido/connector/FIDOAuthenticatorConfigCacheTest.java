@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido.connector;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authenticator.fido.util.FIDOAuthenticatorConstants.ConnectorConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class FIDOAuthenticatorConfigCacheTest {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final long TIMEOUT = 60000;
+
+    @Test(description = "Test case for cached connector properties being served until the tenant is invalidated")
+    public void testPropertiesAreServedUntilInvalidated() {
+
+        FIDOAuthenticatorConfigCache configCache = new FIDOAuthenticatorConfigCache();
+        Map<String, String> properties = getProperties();
+        Assert.assertTrue(configCache.put(TENANT_DOMAIN, properties, configCache.getVersion(), TIMEOUT));
+        // Later changes to the resolved map are not reflected in the cache.
+        properties.put(ConnectorConfig.ENABLE_USERNAMELESS_AUTHENTICATION, "false");
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(configCache.get(TENANT_DOMAIN).get(
+                    ConnectorConfig.ENABLE_USERNAMELESS_AUTHENTICATION), "true");
+        }
+        Assert.assertNull(configCache.get("wso2.com"));
+        Assert.assertEquals(configCache.getLoadCount(), 1);
+
+        configCache.invalidate(TENANT_DOMAIN);
+        Assert.assertNull(configCache.get(TENANT_DOMAIN));
+    }
+
+    @Test(description = "Test case for properties resolved during an invalidation being discarded")
+    public void testStalePropertiesAreDiscarded() {
+
+        FIDOAuthenticatorConfigCache configCache = new FIDOAuthenticatorConfigCache();
+        long version = configCache.getVersion();
+        // The governance configurations are updated while the properties are being resolved.
+        configCache.invalidate(TENANT_DOMAIN);
+
+        Assert.assertFalse(configCache.put(TENANT_DOMAIN, getProperties(), version, TIMEOUT));
+        Assert.assertNull(configCache.get(TENANT_DOMAIN));
+        Assert.assertEquals(configCache.getLoadCount(), 0);
+    }
+
+    @Test(description = "Test case for expired connector properties not being served")
+    public void testExpiredPropertiesAreNotServed() {
+
+        FIDOAuthenticatorConfigCache configCache = new FIDOAuthenticatorConfigCache();
+        configCache.put(TENANT_DOMAIN, getProperties(), configCache.getVersion(), 0);
+
+        Assert.assertNull(configCache.get(TENANT_DOMAIN));
+    }
+
+    private static Map<String, String> getProperties() {
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(ConnectorConfig.ENABLE_USERNAMELESS_AUTHENTICATION, "true");
+        properties.put(ConnectorConfig.ENABLE_PASSKEY_PROGRESSIVE_ENROLLMENT, "false");
+        return properties;
+    }
+}
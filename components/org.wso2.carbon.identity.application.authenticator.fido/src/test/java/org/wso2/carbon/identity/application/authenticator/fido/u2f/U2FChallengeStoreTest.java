@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido.u2f;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataStore;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2SessionDataClaimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class U2FChallengeStoreTest {
+
+    private static final long CHALLENGE_TIMEOUT = 60000;
+    private static final int THREAD_COUNT = 16;
+    private static final int CHALLENGE_COUNT = 5000;
+    private static final String U2F_CHALLENGE_SESSION_TYPE = "U2FChallenge";
+
+    @Test(description = "Test case for concurrently answered challenges being removed exactly once")
+    public void testConcurrentChallengesAreRemovedOnce() throws Exception {
+
+        U2FChallengeStore challengeStore = new U2FChallengeStore(CHALLENGE_TIMEOUT, CHALLENGE_COUNT, false);
+        for (int i = 0; i < CHALLENGE_COUNT; i++) {
+            challengeStore.put(String.valueOf(i), "challenge" + i);
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                results.add(executorService.submit(() -> {
+                    startSignal.await();
+                    int removedCount = 0;
+                    // Every thread races for every challenge.
+                    for (int j = 0; j < CHALLENGE_COUNT; j++) {
+                        if (challengeStore.remove(String.valueOf(j)) != null) {
+                            removedCount++;
+                        }
+                    }
+                    return removedCount;
+                }));
+            }
+            startSignal.countDown();
+            int removedCount = 0;
+            for (Future<Integer> result : results) {
+                removedCount += result.get(30, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(removedCount, CHALLENGE_COUNT);
+            Assert.assertEquals(challengeStore.size(), 0);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test(description = "Test case for expired challenges being rejected")
+    public void testExpiredChallengeIsRejected() throws InterruptedException {
+
+        U2FChallengeStore challengeStore = new U2FChallengeStore(1, 10, false);
+        challengeStore.put("1234", "challenge");
+        Thread.sleep(10);
+
+        Assert.assertNull(challengeStore.remove("1234"));
+        Assert.assertEquals(challengeStore.getExpiredChallengeCount(), 1);
+    }
+
+    @Test(description = "Test case for the challenge store being bounded")
+    public void testChallengeStoreIsBounded() {
+
+        U2FChallengeStore challengeStore = new U2FChallengeStore(CHALLENGE_TIMEOUT, 2, false);
+        challengeStore.put("1", "challenge1");
+        challengeStore.put("2", "challenge2");
+        challengeStore.put("3", "challenge3");
+
+        Assert.assertEquals(challengeStore.size(), 2);
+        Assert.assertEquals(challengeStore.getEvictedChallengeCount(), 1);
+        Assert.assertEquals(challengeStore.remove("3"), "challenge3");
+    }
+
+    @Test(description = "Test case for the challenge store being bounded under concurrent puts")
+    public void testConcurrentPutsAreBounded() throws Exception {
+
+        int maxSize = CHALLENGE_COUNT / 10;
+        U2FChallengeStore challengeStore = new U2FChallengeStore(CHALLENGE_TIMEOUT, maxSize, false);
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                int thread = i;
+                results.add(executorService.submit(() -> {
+                    startSignal.await();
+                    for (int j = 0; j < CHALLENGE_COUNT / THREAD_COUNT; j++) {
+                        challengeStore.put(thread + "-" + j, "challenge");
+                    }
+                    return null;
+                }));
+            }
+            startSignal.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // Puts racing with a sweep may exceed the capacity by the number of concurrent callers only.
+        Assert.assertTrue(challengeStore.size() <= maxSize + THREAD_COUNT);
+        Assert.assertEquals(challengeStore.size() + challengeStore.getEvictedChallengeCount(),
+                CHALLENGE_COUNT / THREAD_COUNT * THREAD_COUNT);
+    }
+
+    @Test(description = "Test case for expired challenges being purged before the store is full")
+    public void testExpiredChallengesArePurgedOnPut() throws InterruptedException {
+
+        U2FChallengeStore challengeStore = new U2FChallengeStore(1, 10, false);
+        challengeStore.put("1", "challenge1");
+        challengeStore.put("2", "challenge2");
+        Thread.sleep(10);
+        challengeStore.put("3", "challenge3");
+
+        Assert.assertEquals(challengeStore.size(), 1);
+        Assert.assertEquals(challengeStore.getExpiredChallengeCount(), 2);
+        Assert.assertEquals(challengeStore.getEvictedChallengeCount(), 0);
+    }
+
+    @Test(description = "Test case for a challenge issued by another node being answered once")
+    public void testPersistedChallengeIsClaimed() {
+
+        SessionDataStore sessionDataStore = mock(SessionDataStore.class);
+        FIDO2SessionDataClaimer sessionDataClaimer = mock(FIDO2SessionDataClaimer.class);
+        try (MockedStatic<SessionDataStore> sessionDataStoreStatic = Mockito.mockStatic(SessionDataStore.class)) {
+            sessionDataStoreStatic.when(SessionDataStore::getInstance).thenReturn(sessionDataStore);
+            new U2FChallengeStore(CHALLENGE_TIMEOUT, 10, true, sessionDataClaimer).put("1234", "challenge");
+            ArgumentCaptor<Object> challenge = ArgumentCaptor.forClass(Object.class);
+            verify(sessionDataStore).storeSessionData(eq("1234"), eq(U2F_CHALLENGE_SESSION_TYPE), challenge.capture());
+            when(sessionDataStore.getSessionData("1234", U2F_CHALLENGE_SESSION_TYPE))
+                    .thenReturn(challenge.getValue());
+            when(sessionDataClaimer.claim("1234", U2F_CHALLENGE_SESSION_TYPE)).thenReturn(true, false);
+
+            // Challenge answered on two other nodes, where only the first claim succeeds.
+            Assert.assertEquals(new U2FChallengeStore(CHALLENGE_TIMEOUT, 10, true, sessionDataClaimer)
+                    .remove("1234"), "challenge");
+            Assert.assertNull(new U2FChallengeStore(CHALLENGE_TIMEOUT, 10, true, sessionDataClaimer)
+                    .remove("1234"));
+        }
+    }
+
+    @Test(description = "Test case for a local challenge claimed by another node being rejected")
+    public void testLocalChallengeClaimedByAnotherNodeIsRejected() {
+
+        SessionDataStore sessionDataStore = mock(SessionDataStore.class);
+        FIDO2SessionDataClaimer sessionDataClaimer = mock(FIDO2SessionDataClaimer.class);
+        when(sessionDataClaimer.claim(anyString(), anyString())).thenReturn(false);
+        try (MockedStatic<SessionDataStore> sessionDataStoreStatic = Mockito.mockStatic(SessionDataStore.class)) {
+            sessionDataStoreStatic.when(SessionDataStore::getInstance).thenReturn(sessionDataStore);
+            U2FChallengeStore challengeStore = new U2FChallengeStore(CHALLENGE_TIMEOUT, 10, true,
+                    sessionDataClaimer);
+            challengeStore.put("1234", "challenge");
+
+            Assert.assertNull(challengeStore.remove("1234"));
+            Assert.assertEquals(challengeStore.size(), 0);
+            verify(sessionDataStore).storeSessionData(eq("1234"), eq(U2F_CHALLENGE_SESSION_TYPE), any());
+        }
+    }
+}
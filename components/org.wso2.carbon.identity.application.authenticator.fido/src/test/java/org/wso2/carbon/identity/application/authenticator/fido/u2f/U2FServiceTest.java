@@ -41,13 +41,12 @@ import org.wso2.carbon.identity.application.authentication.framework.exception.A
 import org.wso2.carbon.identity.application.authenticator.fido.dao.DeviceStoreDAO;
 import org.wso2.carbon.identity.application.authenticator.fido.dto.FIDOUser;
 import org.wso2.carbon.identity.application.authenticator.fido.exception.FIDOAuthenticatorServerException;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
 
 import java.lang.reflect.Field;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
 
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
@@ -83,7 +82,8 @@ public class U2FServiceTest {
         MockitoAnnotations.openMocks(this);
 
         // Intercept U2F constructor and inject our mock into the singleton
-        try (MockedConstruction<U2F> ignored = Mockito.mockConstruction(U2F.class)) {
+        try (MockedConstruction<U2F> ignored = Mockito.mockConstruction(U2F.class);
+             MockedStatic<IdentityUtil> identityUtil = Mockito.mockStatic(IdentityUtil.class)) {
             u2FService = U2FService.getInstance();
         }
         Field u2FField = U2FService.class.getDeclaredField("u2f");
@@ -206,11 +206,9 @@ public class U2FServiceTest {
         registerRequestDataMock.when(() -> RegisterRequestData.fromJson(anyString()))
                 .thenReturn(registerRequestData);
 
-        Map<String, String> requestStorageMap = new HashMap<String, String>();
-        requestStorageMap.put("1234", "JSONString");
         Field requestStorage = U2FService.class.getDeclaredField("requestStorage");
         requestStorage.setAccessible(true);
-        requestStorage.set(requestStorage, requestStorageMap);
+        ((U2FChallengeStore) requestStorage.get(u2FService)).put("1234", "JSONString");
 
         DeviceRegistration deviceRegistration = mock(DeviceRegistration.class);
         when(u2F.finishRegistration(any(), any())).thenReturn(deviceRegistration);
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialRequestOptions;
+
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Pre-serialized request options of a usernameless authentication ceremony.
+ *
+ * The request options of usernameless ceremonies started for the same origin differ only by their challenge. The
+ * options are therefore serialized once with a placeholder challenge, and each ceremony splices its own challenge
+ * into the serialized options. The template remembers the trusted origins of the relying party it was built for, so
+ * that it can be rebuilt once the trusted origins change.
+ */
+public class FIDO2AssertionTemplate {
+
+    private static final int PLACEHOLDER_LENGTH = 32;
+    private static final SecureRandom random = new SecureRandom();
+
+    private final PublicKeyCredentialRequestOptions options;
+    private final String optionsJsonPrefix;
+    private final String optionsJsonSuffix;
+    private final Set<String> trustedOrigins;
+
+    private FIDO2AssertionTemplate(PublicKeyCredentialRequestOptions options, String optionsJsonPrefix,
+                                   String optionsJsonSuffix, Set<String> trustedOrigins) {
+
+        this.options = options;
+        this.optionsJsonPrefix = optionsJsonPrefix;
+        this.optionsJsonSuffix = optionsJsonSuffix;
+        this.trustedOrigins = trustedOrigins;
+    }
+
+    /**
+     * Create a template from the request options of a usernameless ceremony.
+     *
+     * @param options        Request options returned by the relying party.
+     * @param jsonMapper     JSON mapper of the Yubico library.
+     * @param trustedOrigins Trusted origins of the relying party.
+     * @return Assertion template.
+     * @throws JsonProcessingException If the request options cannot be serialized.
+     */
+    public static FIDO2AssertionTemplate create(PublicKeyCredentialRequestOptions options, ObjectMapper jsonMapper,
+                                                Collection<String> trustedOrigins) throws JsonProcessingException {
+
+        // A random placeholder cannot appear anywhere else in the serialized options.
+        byte[] placeholderBytes = new byte[PLACEHOLDER_LENGTH];
+        random.nextBytes(placeholderBytes);
+        ByteArray placeholder = new ByteArray(placeholderBytes);
+        PublicKeyCredentialRequestOptions templateOptions = options.toBuilder().challenge(placeholder).build();
+        String optionsJson = jsonMapper.writeValueAsString(templateOptions);
+        int placeholderIndex = optionsJson.indexOf(placeholder.getBase64Url());
+        if (placeholderIndex < 0) {
+            throw new IllegalStateException("Challenge not found in the serialized request options.");
+        }
+        return new FIDO2AssertionTemplate(templateOptions, optionsJson.substring(0, placeholderIndex),
+                optionsJson.substring(placeholderIndex + placeholder.getBase64Url().length()),
+                new HashSet<>(trustedOrigins));
+    }
+
+    /**
+     * Get the request options of a ceremony.
+     *
+     * @param challenge Challenge of the ceremony.
+     * @return Request options.
+     */
+    public PublicKeyCredentialRequestOptions getOptions(ByteArray challenge) {
+
+        return options.toBuilder().challenge(challenge).build();
+    }
+
+    /**
+     * Get the serialized request options of a ceremony.
+     *
+     * @param challenge Challenge of the ceremony.
+     * @return Request options serialized as done by the JSON mapper of the Yubico library.
+     */
+    public String getOptionsJson(ByteArray challenge) {
+
+        return optionsJsonPrefix + challenge.getBase64Url() + optionsJsonSuffix;
+    }
+
+    /**
+     * Check whether the template was built for the given trusted origins.
+     *
+     * @param trustedOrigins Current trusted origins of the relying party.
+     * @return True if the trusted origins have not changed since the template was built.
+     */
+    public boolean isBuiltFor(Collection<String> trustedOrigins) {
+
+        return this.trustedOrigins.size() == trustedOrigins.size() && this.trustedOrigins.containsAll(trustedOrigins);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node local cache of the {@link FIDO2AssertionTemplate}s of usernameless authentication ceremonies, kept per tenant
+ * and origin. The relying party ID is derived from the origin, hence it is not part of the key. Only trusted origins
+ * are expected to be cached, which bounds the number of templates.
+ */
+public class FIDO2AssertionTemplateCache {
+
+    private static final Log log = LogFactory.getLog(FIDO2AssertionTemplateCache.class);
+    private static final String KEY_SEPARATOR = "|";
+    private static final FIDO2AssertionTemplateCache instance = new FIDO2AssertionTemplateCache();
+
+    private final Map<String, FIDO2AssertionTemplate> templates = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong buildCount = new AtomicLong();
+
+    FIDO2AssertionTemplateCache() {
+
+    }
+
+    public static FIDO2AssertionTemplateCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the template of an origin.
+     *
+     * @param tenantDomain   Tenant domain.
+     * @param origin         Origin of the ceremony.
+     * @param trustedOrigins Current trusted origins of the tenant.
+     * @return Template, or null if there is no template or the trusted origins have changed since it was built.
+     */
+    public FIDO2AssertionTemplate get(String tenantDomain, String origin, Collection<String> trustedOrigins) {
+
+        FIDO2AssertionTemplate template = templates.get(buildKey(tenantDomain, origin));
+        if (template == null || !template.isBuiltFor(trustedOrigins)) {
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return template;
+    }
+
+    /**
+     * Add the template built for an origin, replacing any previous template.
+     *
+     * @param tenantDomain Tenant domain.
+     * @param origin       Origin of the ceremony.
+     * @param template     Template.
+     */
+    public void put(String tenantDomain, String origin, FIDO2AssertionTemplate template) {
+
+        templates.put(buildKey(tenantDomain, origin), template);
+        buildCount.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("Built the usernameless assertion template of origin: " + origin + " of tenant: " +
+                    tenantDomain);
+        }
+    }
+
+    /**
+     * Remove the templates of a tenant, such that they are rebuilt with the current configuration of the tenant.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public void invalidate(String tenantDomain) {
+
+        String keyPrefix = tenantDomain + KEY_SEPARATOR;
+        templates.keySet().removeIf(key -> key.startsWith(keyPrefix));
+    }
+
+    public void clear() {
+
+        templates.clear();
+    }
+
+    /**
+     * Get the number of ceremonies started from a cached template.
+     *
+     * @return Number of template hits.
+     */
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of templates built, including the ones rebuilt after a configuration change.
+     *
+     * @return Number of templates built.
+     */
+    public long getBuildCount() {
+
+        return buildCount.get();
+    }
+
+    private static String buildKey(String tenantDomain, String origin) {
+
+        return tenantDomain + KEY_SEPARATOR + origin;
+    }
+}
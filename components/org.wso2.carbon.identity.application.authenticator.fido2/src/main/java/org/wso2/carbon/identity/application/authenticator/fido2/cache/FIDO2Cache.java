@@ -18,22 +18,66 @@
 
 package org.wso2.carbon.identity.application.authenticator.fido2.cache;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataStore;
 import org.wso2.carbon.identity.application.authentication.framework.cache.AuthenticationBaseCache;
+import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceDataHolder;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDOUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.utils.CarbonUtils;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * FIDO2 cache to store interim data.
+ *
+ * Entries expire once the user response timeout of the ceremony, extended by a grace period, has passed. Expired
+ * entries are rejected and removed when they are read; entries which are never read are removed from the session
+ * data store by the {@link FIDO2CachePurger}.
+ *
+ * When the {@link FIDO2CacheAsyncWriter} is active, writes to the session data store are queued, and an entry
+ * consumed before its write is flushed is never persisted.
+ *
+ * When a memory budget is configured, the local cache is also bounded by the approximate weight of its entries. The
+ * least recently used entries are evicted from the local cache once the budget is exceeded, and are read from the
+ * session data store thereafter.
  */
 public class FIDO2Cache extends AuthenticationBaseCache<FIDO2CacheKey, FIDO2CacheEntry> {
 
+    private static final Log log = LogFactory.getLog(FIDO2Cache.class);
     private static final String FIDO2_CACHE_NAME = "FIDO2Cache";
+    // Request IDs being consumed on this node.
+    private static final Map<String, Boolean> consumingRequestIds = new ConcurrentHashMap<>();
+    private static final AtomicLong expiredOnReadCount = new AtomicLong();
+    private static final AtomicLong localHitCount = new AtomicLong();
+    private static final AtomicLong localMissCount = new AtomicLong();
 
     private static volatile FIDO2Cache instance;
 
+    private final long entryTimeout;
+    private final FIDO2CacheMemoryBudget memoryBudget;
+    private final boolean sessionDataPersistEnabled;
+    private final boolean sessionDataPersistPooled;
+
     private FIDO2Cache() {
 
         super(FIDO2_CACHE_NAME, true);
+        entryTimeout = FIDOUtil.getCacheEntryTimeout();
+        long maxWeight = FIDOUtil.getCacheMaxWeight();
+        memoryBudget = maxWeight > 0 ? new FIDO2CacheMemoryBudget(maxWeight) : null;
+        sessionDataPersistEnabled = readSessionDataPersistEnabled();
+        sessionDataPersistPooled = readSessionDataPersistPooled();
+        if (sessionDataPersistEnabled && sessionDataPersistPooled) {
+            log.warn("Session data is persisted asynchronously. FIDO2 cache entries consumed before SessionDataStore " +
+                    "writes them cannot be claimed from the session data store, and are rejected. Disable the " +
+                    "pooled persistence of session data to avoid failed FIDO2 ceremonies.");
+        }
     }
 
     public static FIDO2Cache getInstance() {
@@ -51,43 +95,318 @@ public class FIDO2Cache extends AuthenticationBaseCache<FIDO2CacheKey, FIDO2Cach
 
     public void addToCacheByRequestId(FIDO2CacheKey key, FIDO2CacheEntry entry) {
 
+        setExpiryTime(entry);
         super.addToCache(key, entry);
-        storeToSessionStore(key.getRequestId(), entry);
+        persist(key.getRequestId(), entry);
+        addWeight(key, entry);
     }
 
     public void addToCacheByRequestWrapperId(FIDO2CacheKey key, FIDO2CacheEntry entry) {
 
+        setExpiryTime(entry);
         super.addToCache(key, entry);
-        storeToSessionStore(key.getRequestId(), entry);
+        persist(key.getRequestId(), entry);
+        addWeight(key, entry);
     }
 
     public FIDO2CacheEntry getValueFromCacheByRequestId(FIDO2CacheKey key) {
 
-        FIDO2CacheEntry fido2CacheEntry = super.getValueFromCache(key);
-        if (fido2CacheEntry != null) {
-            return fido2CacheEntry;
-        } else {
-            return getFromSessionStore(key.getRequestId());
+        FIDO2CacheEntry fido2CacheEntry = getFromLocalCache(key);
+        if (fido2CacheEntry == null) {
+            awaitPendingWrite(key.getRequestId());
+            fido2CacheEntry = getFromSessionStore(key.getRequestId());
+        } else if (memoryBudget != null) {
+            memoryBudget.touch(key);
         }
+        if (fido2CacheEntry != null && isExpired(key, fido2CacheEntry)) {
+            clearCacheEntryByRequestId(key);
+            return null;
+        }
+        return fido2CacheEntry;
     }
 
     public void clearCacheEntryByRequestId(FIDO2CacheKey key) {
 
+        clearFromLocalCache(key);
+        clearPersistedEntry(key.getRequestId());
+    }
+
+    /**
+     * Retrieve an entry and remove it from both the local cache and the session data store, such that the entry is
+     * returned to a single caller only. Concurrent calls on the same node are serialized per request ID. An entry is
+     * claimed from the session data store with a single conditional delete, whether it is read from the local cache
+     * or from the session data store, hence only one node can consume it. An entry which is not held by the local
+     * cache is read within the transaction of its claim. An entry whose queued write is cancelled before it is flushed
+     * has never been visible to other nodes, hence it needs no claim. An entry which cannot be claimed is rejected,
+     * including an entry whose write is still queued by the asynchronous persistence of SessionDataStore.
+     *
+     * @param key Cache key.
+     * @return Cache entry, or null if there is no such entry or it has already been consumed.
+     */
+    public FIDO2CacheEntry consume(FIDO2CacheKey key) {
+
+        String requestId = key.getRequestId();
+        if (consumingRequestIds.putIfAbsent(requestId, Boolean.TRUE) != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("FIDO2 cache entry of request ID: " + requestId + " is already being consumed.");
+            }
+            return null;
+        }
+        try {
+            FIDO2CacheEntry fido2CacheEntry = getFromLocalCache(key);
+            if (fido2CacheEntry != null) {
+                localHitCount.incrementAndGet();
+                clearFromLocalCache(key);
+                if (!claimPersistedEntry(requestId)) {
+                    return null;
+                }
+            } else {
+                localMissCount.incrementAndGet();
+                FIDO2CacheAsyncWriter asyncWriter = getAsyncWriter();
+                // The entry may have been evicted from the local cache before its write was flushed.
+                fido2CacheEntry = asyncWriter != null ? asyncWriter.cancel(requestId) : null;
+                if (fido2CacheEntry == null) {
+                    if (!isSessionDataPersistEnabled()) {
+                        return null;
+                    }
+                    awaitPendingWrite(requestId);
+                    fido2CacheEntry = claimEntryFromSessionStore(requestId);
+                    if (fido2CacheEntry == null) {
+                        return null;
+                    }
+                }
+            }
+            return isExpired(key, fido2CacheEntry) ? null : fido2CacheEntry;
+        } finally {
+            consumingRequestIds.remove(requestId);
+        }
+    }
+
+    /**
+     * Get the number of expired entries which were rejected when they were read on this node.
+     *
+     * @return Number of expired entries read.
+     */
+    public long getExpiredOnReadCount() {
+
+        return expiredOnReadCount.get();
+    }
+
+    /**
+     * Get the ratio of consumed entries which were served by the local cache of this node.
+     *
+     * @return Local cache hit rate, or 0 if no entry has been consumed.
+     */
+    public double getLocalHitRate() {
+
+        long hitCount = localHitCount.get();
+        long requestCount = hitCount + localMissCount.get();
+        return requestCount > 0 ? (double) hitCount / requestCount : 0;
+    }
+
+    /**
+     * Get the approximate memory held by the entries of the local cache of this node.
+     *
+     * @return Resident weight in bytes, or 0 if no memory budget is configured.
+     */
+    public long getResidentBytes() {
+
+        return memoryBudget != null ? memoryBudget.getResidentWeight() : 0;
+    }
+
+    /**
+     * Get the number of entries held in the local cache of this node.
+     *
+     * @return Number of resident entries, or 0 if no memory budget is configured.
+     */
+    public long getResidentEntryCount() {
+
+        return memoryBudget != null ? memoryBudget.getResidentCount() : 0;
+    }
+
+    /**
+     * Get the number of entries evicted from the local cache of this node to keep it within the memory budget.
+     *
+     * @return Number of evicted entries.
+     */
+    public long getWeightEvictionCount() {
+
+        return memoryBudget != null ? memoryBudget.getEvictionCount() : 0;
+    }
+
+    private void addWeight(FIDO2CacheKey key, FIDO2CacheEntry entry) {
+
+        if (memoryBudget == null) {
+            return;
+        }
+        List<FIDO2CacheKey> evictedKeys = memoryBudget.add(key, entry.getWeight());
+        for (FIDO2CacheKey evictedKey : evictedKeys) {
+            // The evicted entries remain in the session data store.
+            super.clearCacheEntry(evictedKey);
+        }
+        if (!evictedKeys.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Evicted " + evictedKeys.size() + " FIDO2 cache entries from the local cache to keep it " +
+                    "within the memory budget.");
+        }
+    }
+
+    private void persist(String id, FIDO2CacheEntry entry) {
+
+        FIDO2CacheAsyncWriter asyncWriter = getAsyncWriter();
+        if (asyncWriter == null || !asyncWriter.enqueue(id, entry)) {
+            storeToSessionStore(id, entry);
+        }
+    }
+
+    private void clearPersistedEntry(String id) {
+
+        FIDO2CacheAsyncWriter asyncWriter = getAsyncWriter();
+        if (asyncWriter != null && asyncWriter.cancel(id) != null) {
+            // The entry has not reached the session data store.
+            return;
+        }
+        // Clear the entry only after a write being flushed completes, so that the write does not restore it.
+        awaitPendingWrite(id);
+        clearFromSessionStore(id);
+    }
+
+    private boolean claimPersistedEntry(String id) {
+
+        FIDO2CacheAsyncWriter asyncWriter = getAsyncWriter();
+        if (asyncWriter != null && asyncWriter.cancel(id) != null) {
+            // The entry has not reached the session data store.
+            return true;
+        }
+        if (!isSessionDataPersistEnabled()) {
+            // The entry is held by the local cache only.
+            return true;
+        }
+        awaitPendingWrite(id);
+        if (claimFromSessionStore(id)) {
+            return true;
+        }
+        if (isSessionDataPersistPooled()) {
+            // The write queued by SessionDataStore may not have been flushed yet. The clear is queued after the write,
+            // and removes the entry once it is flushed, so that it cannot be consumed on another node.
+            if (log.isDebugEnabled()) {
+                log.debug("FIDO2 cache entry of request ID: " + id + " could not be claimed from the session data " +
+                        "store. Rejecting the entry as session data is persisted asynchronously.");
+            }
+            clearFromSessionStore(id);
+        }
+        return false;
+    }
+
+    private void awaitPendingWrite(String id) {
+
+        FIDO2CacheAsyncWriter asyncWriter = getAsyncWriter();
+        if (asyncWriter != null) {
+            asyncWriter.awaitWrite(id);
+        }
+    }
+
+    boolean isSessionDataPersistEnabled() {
+
+        return sessionDataPersistEnabled;
+    }
+
+    boolean isSessionDataPersistPooled() {
+
+        return sessionDataPersistPooled;
+    }
+
+    private static boolean readSessionDataPersistEnabled() {
+
+        String sessionDataPersistEnabled = IdentityUtil.getProperty(FIDO2AuthenticatorConstants
+                .SESSION_DATA_PERSIST_ENABLED);
+        // Session data is persisted unless it is explicitly disabled, as in SessionDataStore.
+        return sessionDataPersistEnabled == null || Boolean.parseBoolean(sessionDataPersistEnabled);
+    }
+
+    private static boolean readSessionDataPersistPooled() {
+
+        String poolSize = IdentityUtil.getProperty(FIDO2AuthenticatorConstants.SESSION_DATA_PERSIST_POOL_SIZE);
+        if (StringUtils.isBlank(poolSize)) {
+            return false;
+        }
+        try {
+            // SessionDataStore queues the writes to a pool of persistence tasks when the pool size is positive.
+            return Integer.parseInt(poolSize.trim()) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    FIDO2CacheAsyncWriter getAsyncWriter() {
+
+        return FIDO2AuthenticatorServiceDataHolder.getInstance().getCacheAsyncWriter();
+    }
+
+    private void setExpiryTime(FIDO2CacheEntry entry) {
+
+        if (entry.getExpiryTime() == 0) {
+            entry.setExpiryTime(System.currentTimeMillis() + entryTimeout);
+        }
+    }
+
+    private static boolean isExpired(FIDO2CacheKey key, FIDO2CacheEntry entry) {
+
+        if (!entry.isExpired(System.currentTimeMillis())) {
+            return false;
+        }
+        expiredOnReadCount.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("Rejected the expired FIDO2 cache entry of request ID: " + key.getRequestId());
+        }
+        return true;
+    }
+
+    FIDO2CacheEntry getFromLocalCache(FIDO2CacheKey key) {
+
+        return super.getValueFromCache(key);
+    }
+
+    void clearFromLocalCache(FIDO2CacheKey key) {
+
         super.clearCacheEntry(key);
-        clearFromSessionStore(key.getRequestId());
+        if (memoryBudget != null) {
+            memoryBudget.remove(key);
+        }
     }
 
-    private void clearFromSessionStore(String id) {
+    void clearFromSessionStore(String id) {
 
         SessionDataStore.getInstance().clearSessionData(id, FIDO2_CACHE_NAME);
     }
 
-    private FIDO2CacheEntry getFromSessionStore(String id) {
+    FIDO2CacheEntry getFromSessionStore(String id) {
 
         return (FIDO2CacheEntry) SessionDataStore.getInstance().getSessionData(id, FIDO2_CACHE_NAME);
     }
 
-    private void storeToSessionStore(String id, FIDO2CacheEntry entry) {
+    /**
+     * Read and delete a stored entry from the session data store with {@link FIDO2SessionDataClaimer}.
+     *
+     * @param id Request ID.
+     * @return Entry deleted by this call, or null if there is no such entry or it was already deleted.
+     */
+    FIDO2CacheEntry claimEntryFromSessionStore(String id) {
+
+        return (FIDO2CacheEntry) FIDO2SessionDataClaimer.getInstance().claimData(id, FIDO2_CACHE_NAME);
+    }
+
+    /**
+     * Delete a stored entry from the session data store with {@link FIDO2SessionDataClaimer}.
+     *
+     * @param id Request ID.
+     * @return True if the entry was deleted by this call, false if it was already deleted or cannot be deleted.
+     */
+    boolean claimFromSessionStore(String id) {
+
+        return FIDO2SessionDataClaimer.getInstance().claim(id, FIDO2_CACHE_NAME);
+    }
+
+    void storeToSessionStore(String id, FIDO2CacheEntry entry) {
 
         SessionDataStore.getInstance().storeSessionData(id, FIDO2_CACHE_NAME, entry);
     }
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Asynchronous persistence tier of the {@link FIDO2Cache}.
+ *
+ * Entries added to the cache are served from the local cache, while their writes to the session data store are
+ * queued and flushed in batches by a background task. A ceremony finished on the node which started it cancels the
+ * queued write, hence the entry never reaches the session data store. The number of queued writes is bounded; once
+ * the bound is reached {@link #enqueue(String, FIDO2CacheEntry)} rejects new writes so that the caller writes the
+ * entry synchronously.
+ *
+ * Until a queued write is flushed, the entry cannot be read by the other nodes of a cluster. Clustered deployments
+ * should therefore route the finish request of a ceremony to the node which started it.
+ */
+public class FIDO2CacheAsyncWriter {
+
+    private static final Log log = LogFactory.getLog(FIDO2CacheAsyncWriter.class);
+    private static final int NO_OF_THREADS = 1;
+    private static final long SHUTDOWN_TIMEOUT_IN_SECONDS = 10;
+
+    private static final int PENDING = 0;
+    private static final int FLUSHING = 1;
+    private static final int COMPLETED = 2;
+
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final BiConsumer<String, FIDO2CacheEntry> sessionStoreWriter;
+    private final int maxPendingWrites;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long maxWaitTime;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong flushedWriteCount = new AtomicLong();
+    private final AtomicLong cancelledWriteCount = new AtomicLong();
+    private final AtomicLong rejectedWriteCount = new AtomicLong();
+
+    /**
+     * @param maxPendingWrites Maximum number of queued writes.
+     * @param batchSize        Maximum number of writes flushed in a batch.
+     * @param flushInterval    Interval between two flushes in milliseconds.
+     * @param maxWaitTime      Maximum time in milliseconds to wait for a queued write which is being flushed.
+     */
+    public FIDO2CacheAsyncWriter(int maxPendingWrites, int batchSize, long flushInterval, long maxWaitTime) {
+
+        this((id, entry) -> FIDO2Cache.getInstance().storeToSessionStore(id, entry), maxPendingWrites, batchSize,
+                flushInterval, maxWaitTime);
+    }
+
+    FIDO2CacheAsyncWriter(BiConsumer<String, FIDO2CacheEntry> sessionStoreWriter, int maxPendingWrites,
+                          int batchSize, long flushInterval, long maxWaitTime) {
+
+        this.sessionStoreWriter = sessionStoreWriter;
+        this.maxPendingWrites = maxPendingWrites;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = flushInterval;
+        this.maxWaitTime = maxWaitTime;
+        this.scheduler = Executors.newScheduledThreadPool(NO_OF_THREADS);
+    }
+
+    public void start() {
+
+        scheduler.scheduleWithFixedDelay(new FlushTask(this), flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        log.info("FIDO2 cache asynchronous persistence is activated.");
+    }
+
+    /**
+     * Stop the background task and flush the queued writes.
+     */
+    public void shutdown() {
+
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Queue the write of an entry to the session data store.
+     *
+     * @param id    Request ID.
+     * @param entry Cache entry.
+     * @return False if the write is rejected as the queue is full, in which case the caller should write the entry
+     * synchronously.
+     */
+    public boolean enqueue(String id, FIDO2CacheEntry entry) {
+
+        if (pendingWrites.size() >= maxPendingWrites) {
+            rejectedWriteCount.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("FIDO2 cache write queue is full. Rejecting the write of request ID: " + id);
+            }
+            return false;
+        }
+        PendingWrite previousWrite = pendingWrites.put(id, new PendingWrite(entry));
+        if (previousWrite != null && previousWrite.state.compareAndSet(PENDING, COMPLETED)) {
+            // The entry was replaced before it was flushed.
+            previousWrite.completed.countDown();
+        }
+        return true;
+    }
+
+    /**
+     * Cancel a queued write which has not been flushed yet.
+     *
+     * @param id Request ID.
+     * @return Entry of the cancelled write, or null if there is no queued write or it is already being flushed.
+     */
+    public FIDO2CacheEntry cancel(String id) {
+
+        PendingWrite pendingWrite = pendingWrites.get(id);
+        if (pendingWrite == null || !pendingWrite.state.compareAndSet(PENDING, COMPLETED)) {
+            return null;
+        }
+        pendingWrites.remove(id, pendingWrite);
+        pendingWrite.completed.countDown();
+        cancelledWriteCount.incrementAndGet();
+        return pendingWrite.entry;
+    }
+
+    /**
+     * Wait, for a bounded time, until the queued write of an entry is flushed.
+     *
+     * @param id Request ID.
+     */
+    public void awaitWrite(String id) {
+
+        PendingWrite pendingWrite = pendingWrites.get(id);
+        if (pendingWrite == null) {
+            return;
+        }
+        try {
+            if (!pendingWrite.completed.await(maxWaitTime, TimeUnit.MILLISECONDS) && log.isDebugEnabled()) {
+                log.debug("Timed out while waiting for the FIDO2 cache write of request ID: " + id);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write the queued entries to the session data store.
+     */
+    public synchronized void flush() {
+
+        int flushedCount;
+        do {
+            flushedCount = flushBatch();
+        } while (flushedCount == batchSize);
+    }
+
+    public int getQueueDepth() {
+
+        return pendingWrites.size();
+    }
+
+    public long getFlushedWriteCount() {
+
+        return flushedWriteCount.get();
+    }
+
+    public long getCancelledWriteCount() {
+
+        return cancelledWriteCount.get();
+    }
+
+    public long getRejectedWriteCount() {
+
+        return rejectedWriteCount.get();
+    }
+
+    private int flushBatch() {
+
+        List<Map.Entry<String, PendingWrite>> batch = new ArrayList<>(batchSize);
+        for (Map.Entry<String, PendingWrite> pendingWrite : pendingWrites.entrySet()) {
+            if (batch.size() >= batchSize) {
+                break;
+            }
+            if (pendingWrite.getValue().state.compareAndSet(PENDING, FLUSHING)) {
+                batch.add(pendingWrite);
+            }
+        }
+        for (Map.Entry<String, PendingWrite> pendingWrite : batch) {
+            try {
+                sessionStoreWriter.accept(pendingWrite.getKey(), pendingWrite.getValue().entry);
+                flushedWriteCount.incrementAndGet();
+            } catch (RuntimeException e) {
+                log.error("Error while writing the FIDO2 cache entry of request ID: " + pendingWrite.getKey() +
+                        " to the session data store.", e);
+            } finally {
+                pendingWrite.getValue().state.set(COMPLETED);
+                pendingWrites.remove(pendingWrite.getKey(), pendingWrite.getValue());
+                pendingWrite.getValue().completed.countDown();
+            }
+        }
+        return batch.size();
+    }
+
+    private static final class PendingWrite {
+
+        private final FIDO2CacheEntry entry;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private PendingWrite(FIDO2CacheEntry entry) {
+
+            this.entry = entry;
+        }
+    }
+
+    private static final class FlushTask implements Runnable {
+
+        private final FIDO2CacheAsyncWriter writer;
+
+        private FlushTask(FIDO2CacheAsyncWriter writer) {
+
+            this.writer = writer;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                writer.flush();
+            } catch (RuntimeException e) {
+                // Keep the scheduled task alive for the next flush.
+                log.error("Unexpected error while flushing FIDO2 cache writes.", e);
+            }
+        }
+    }
+}
@@ -27,9 +27,15 @@ import java.net.URL;
  */
 public class FIDO2CacheEntry extends CacheEntry {
 
+    // Approximate size of the entry object and its fixed fields.
+    private static final int BASE_WEIGHT = 64;
+
     private String publicKeyCredentialCreationOptions;
     private URL appId;
     private String assertionRequest;
+    private byte[] ceremonyState;
+    // Absolute expiry time in milliseconds. Entries created before the expiry was introduced do not expire.
+    private long expiryTime;
 
     public FIDO2CacheEntry(String publicKeyCredentialCreationOptions, String assertionRequest, URL appId) {
 
@@ -38,6 +44,19 @@ public class FIDO2CacheEntry extends CacheEntry {
         this.assertionRequest = assertionRequest;
     }
 
+    /**
+     * Create a cache entry holding the compact ceremony state in place of the JSON serialized creation options or
+     * assertion request.
+     *
+     * @param ceremonyState Encoded ceremony state.
+     * @param appId         Origin of the ceremony.
+     */
+    public FIDO2CacheEntry(byte[] ceremonyState, URL appId) {
+
+        this.ceremonyState = ceremonyState;
+        this.appId = appId;
+    }
+
     public String getAssertionRequest() {
 
         return assertionRequest;
@@ -48,8 +67,55 @@ public class FIDO2CacheEntry extends CacheEntry {
         return publicKeyCredentialCreationOptions;
     }
 
+    public byte[] getCeremonyState() {
+
+        return ceremonyState;
+    }
+
     public URL getOrigin() {
 
         return appId;
     }
+
+    public long getExpiryTime() {
+
+        return expiryTime;
+    }
+
+    public void setExpiryTime(long expiryTime) {
+
+        this.expiryTime = expiryTime;
+    }
+
+    /**
+     * Check whether the ceremony of the entry has timed out.
+     *
+     * @param now Current time in milliseconds.
+     * @return True if the entry has expired.
+     */
+    public boolean isExpired(long now) {
+
+        return expiryTime > 0 && now >= expiryTime;
+    }
+
+    /**
+     * Get the approximate memory held by the entry. The serialized options and assertion request grow with the number
+     * of credentials of the user, hence their length dominates the weight.
+     *
+     * @return Approximate weight of the entry in bytes.
+     */
+    public long getWeight() {
+
+        long weight = BASE_WEIGHT;
+        weight += getWeight(publicKeyCredentialCreationOptions);
+        weight += getWeight(assertionRequest);
+        weight += appId != null ? getWeight(appId.toString()) : 0;
+        weight += ceremonyState != null ? ceremonyState.length : 0;
+        return weight;
+    }
+
+    private static long getWeight(String value) {
+
+        return value != null ? 2L * value.length() : 0;
+    }
 }
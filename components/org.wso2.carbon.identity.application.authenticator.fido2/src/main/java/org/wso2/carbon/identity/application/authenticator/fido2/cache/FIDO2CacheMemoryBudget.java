@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory budget of the local tier of the {@link FIDO2Cache}.
+ *
+ * Tracks the approximate weight of the entries held in the local cache, in least recently used order. Once the total
+ * weight exceeds the budget, the least recently used entries are selected for eviction until the total fits the
+ * budget again. The most recently added entry is never selected, even if it alone exceeds the budget.
+ */
+class FIDO2CacheMemoryBudget {
+
+    private final long maxWeight;
+    private final Map<FIDO2CacheKey, Long> weights = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong evictionCount = new AtomicLong();
+    private long residentWeight;
+
+    /**
+     * @param maxWeight Maximum total weight of the entries in bytes.
+     */
+    FIDO2CacheMemoryBudget(long maxWeight) {
+
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Track an entry added to the local cache.
+     *
+     * @param key    Cache key.
+     * @param weight Weight of the entry in bytes.
+     * @return Keys of the entries to be evicted from the local cache.
+     */
+    synchronized List<FIDO2CacheKey> add(FIDO2CacheKey key, long weight) {
+
+        Long previousWeight = weights.put(key, weight);
+        residentWeight += weight - (previousWeight != null ? previousWeight : 0);
+        List<FIDO2CacheKey> evictedKeys = new ArrayList<>();
+        Iterator<Map.Entry<FIDO2CacheKey, Long>> iterator = weights.entrySet().iterator();
+        while (residentWeight > maxWeight && iterator.hasNext()) {
+            Map.Entry<FIDO2CacheKey, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                break;
+            }
+            iterator.remove();
+            residentWeight -= eldest.getValue();
+            evictedKeys.add(eldest.getKey());
+        }
+        evictionCount.addAndGet(evictedKeys.size());
+        return evictedKeys;
+    }
+
+    /**
+     * Mark an entry as recently used.
+     *
+     * @param key Cache key.
+     */
+    synchronized void touch(FIDO2CacheKey key) {
+
+        weights.get(key);
+    }
+
+    /**
+     * Stop tracking an entry removed from the local cache.
+     *
+     * @param key Cache key.
+     */
+    synchronized void remove(FIDO2CacheKey key) {
+
+        Long weight = weights.remove(key);
+        if (weight != null) {
+            residentWeight -= weight;
+        }
+    }
+
+    synchronized long getResidentWeight() {
+
+        return residentWeight;
+    }
+
+    synchronized int getResidentCount() {
+
+        return weights.size();
+    }
+
+    long getEvictionCount() {
+
+        return evictionCount.get();
+    }
+}
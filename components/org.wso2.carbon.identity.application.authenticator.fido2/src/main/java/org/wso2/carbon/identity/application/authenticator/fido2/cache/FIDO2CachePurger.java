@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background task purging the FIDO2 cache entries of abandoned ceremonies from the session data store.
+ *
+ * Entries created before the cache entry timeout are deleted in batches. The framework removes session data only
+ * once its own, usually much longer, cleanup timeout has passed, hence without this task the entries of ceremonies
+ * which are never finished accumulate in the session data store.
+ *
+ * The purge follows the same table routing as the {@link FIDO2SessionDataClaimer}: entries are purged from
+ * IDN_AUTH_SESSION_STORE, and also from IDN_AUTH_TEMP_SESSION_STORE when SessionDataStore keeps the data of temporary
+ * caches there. All rows of an expired entry are deleted, including the delete operation rows written by
+ * SessionDataStore#clearSessionData, and only rows created before the cut off time are deleted, hence an entry stored
+ * again under the same key is left intact.
+ */
+public class FIDO2CachePurger {
+
+    private static final Log log = LogFactory.getLog(FIDO2CachePurger.class);
+    private static final String FIDO2_CACHE_NAME = "FIDO2Cache";
+    private static final int NO_OF_THREADS = 1;
+    private static final long SHUTDOWN_TIMEOUT_IN_SECONDS = 10;
+
+    private final long entryTimeout;
+    private final long purgeInterval;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong purgedEntryCount = new AtomicLong();
+    private final AtomicLong purgeRunCount = new AtomicLong();
+    private volatile long lastPurgeDuration;
+    private volatile long lastPurgedEntryCount;
+
+    /**
+     * @param entryTimeout  Time in milliseconds after which a cache entry expires.
+     * @param purgeInterval Interval between two purges in milliseconds.
+     * @param batchSize     Maximum number of entries deleted in a JDBC batch.
+     */
+    public FIDO2CachePurger(long entryTimeout, long purgeInterval, int batchSize) {
+
+        this.entryTimeout = entryTimeout;
+        this.purgeInterval = purgeInterval;
+        this.batchSize = Math.max(1, batchSize);
+        this.scheduler = Executors.newScheduledThreadPool(NO_OF_THREADS);
+    }
+
+    public void start() {
+
+        scheduler.scheduleWithFixedDelay(new PurgeTask(this), purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+        log.info("FIDO2 cache purger is activated.");
+    }
+
+    public void shutdown() {
+
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Delete the expired FIDO2 cache entries from the session data store.
+     */
+    public synchronized void purge() {
+
+        long startTime = System.currentTimeMillis();
+        // The creation time of session data is kept in nanoseconds.
+        long cutOffTime = TimeUnit.MILLISECONDS.toNanos(startTime - entryTimeout);
+        long purgedCount = 0;
+        try {
+            purgedCount += purge(cutOffTime, FIDO2AuthenticatorConstants.SQLQueries.GET_EXPIRED_SESSION_IDS,
+                    FIDO2AuthenticatorConstants.SQLQueries.DELETE_EXPIRED_SESSION_DATA);
+            if (isTempDataCleanupEnabled()) {
+                purgedCount += purge(cutOffTime, FIDO2AuthenticatorConstants.SQLQueries.GET_EXPIRED_TEMP_SESSION_IDS,
+                        FIDO2AuthenticatorConstants.SQLQueries.DELETE_EXPIRED_TEMP_SESSION_DATA);
+            }
+        } catch (SQLException e) {
+            log.error("Error while purging the expired FIDO2 cache entries from the session data store.", e);
+        }
+
+        lastPurgeDuration = System.currentTimeMillis() - startTime;
+        lastPurgedEntryCount = purgedCount;
+        purgedEntryCount.addAndGet(purgedCount);
+        purgeRunCount.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("Purged " + purgedCount + " expired FIDO2 cache entries in " + lastPurgeDuration + " ms.");
+        }
+    }
+
+    public long getPurgedEntryCount() {
+
+        return purgedEntryCount.get();
+    }
+
+    public long getPurgeRunCount() {
+
+        return purgeRunCount.get();
+    }
+
+    /**
+     * Get the throughput of the last purge.
+     *
+     * @return Number of entries purged per second.
+     */
+    public double getLastPurgeThroughput() {
+
+        return lastPurgeDuration > 0 ? lastPurgedEntryCount * 1000.0 / lastPurgeDuration : lastPurgedEntryCount;
+    }
+
+    Connection getSessionDBConnection() {
+
+        return IdentityDatabaseUtil.getSessionDBConnection(true);
+    }
+
+    boolean isTempDataCleanupEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO2AuthenticatorConstants
+                .SESSION_DATA_TEMP_DATA_CLEANUP_ENABLED));
+    }
+
+    private long purge(long cutOffTime, String selectQuery, String deleteQuery) throws SQLException {
+
+        long purgedCount = 0;
+        List<String> sessionIds;
+        do {
+            sessionIds = getExpiredSessionIds(cutOffTime, selectQuery);
+            if (!sessionIds.isEmpty()) {
+                deleteSessionData(sessionIds, cutOffTime, deleteQuery);
+                purgedCount += sessionIds.size();
+            }
+        } while (sessionIds.size() == batchSize && !Thread.currentThread().isInterrupted());
+        return purgedCount;
+    }
+
+    private List<String> getExpiredSessionIds(long cutOffTime, String query) throws SQLException {
+
+        List<String> sessionIds = new ArrayList<>();
+        try (Connection connection = getSessionDBConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setMaxRows(batchSize);
+            preparedStatement.setString(1, FIDO2_CACHE_NAME);
+            preparedStatement.setLong(2, cutOffTime);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    sessionIds.add(resultSet.getString(1));
+                }
+            }
+        }
+        return sessionIds;
+    }
+
+    private void deleteSessionData(List<String> sessionIds, long cutOffTime, String query) throws SQLException {
+
+        try (Connection connection = getSessionDBConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            for (String sessionId : sessionIds) {
+                preparedStatement.setString(1, sessionId);
+                preparedStatement.setString(2, FIDO2_CACHE_NAME);
+                preparedStatement.setLong(3, cutOffTime);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    private static final class PurgeTask implements Runnable {
+
+        private final FIDO2CachePurger purger;
+
+        private PurgeTask(FIDO2CachePurger purger) {
+
+            this.purger = purger;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                purger.purge();
+            } catch (RuntimeException e) {
+                // Keep the scheduled task alive for the next purge.
+                log.error("Unexpected error while purging the expired FIDO2 cache entries.", e);
+            }
+        }
+    }
+}
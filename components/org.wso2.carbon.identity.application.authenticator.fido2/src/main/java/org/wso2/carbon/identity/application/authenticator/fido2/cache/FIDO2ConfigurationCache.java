@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2Configuration;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDOUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local cache of the FIDO2 configuration snapshots of the tenants.
+ *
+ * A snapshot holds the configurations read from the configuration management service, including the defaults applied
+ * for missing attributes and resources, hence a tenant without stored configurations is not looked up again until
+ * its snapshot expires. The snapshots are bounded by time only: no invalidation is made when the configurations are
+ * updated, hence a change of the validations or the trusted origins, including the removal of a trusted origin, takes
+ * effect on each node only once the snapshot of the tenant expires after the configured timeout. The snapshots are
+ * dropped when the configuration manager is bound or unbound.
+ */
+public class FIDO2ConfigurationCache {
+
+    private static final Log log = LogFactory.getLog(FIDO2ConfigurationCache.class);
+    private static final FIDO2ConfigurationCache instance = new FIDO2ConfigurationCache();
+
+    private final FIDO2TenantCache<FIDO2Configuration> configurations = new FIDO2TenantCache<>();
+
+    FIDO2ConfigurationCache() {
+
+    }
+
+    public static FIDO2ConfigurationCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the configuration snapshot of a tenant.
+     *
+     * @param tenantDomain Tenant domain.
+     * @return Configuration snapshot, or null if there is none or it has expired.
+     */
+    public FIDO2Configuration get(String tenantDomain) {
+
+        return configurations.get(tenantDomain);
+    }
+
+    /**
+     * Add the configuration snapshot of a tenant, to be kept until the configured timeout elapses.
+     *
+     * @param tenantDomain  Tenant domain.
+     * @param configuration Configuration snapshot.
+     */
+    public void put(String tenantDomain, FIDO2Configuration configuration) {
+
+        put(tenantDomain, configuration, TimeUnit.SECONDS.toMillis(FIDOUtil.getConfigurationCacheTimeout()));
+    }
+
+    void put(String tenantDomain, FIDO2Configuration configuration, long timeout) {
+
+        configurations.put(tenantDomain, configuration, timeout);
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded the FIDO2 configuration snapshot of tenant: " + tenantDomain);
+        }
+    }
+
+    public void clear() {
+
+        configurations.clear();
+    }
+
+    /**
+     * Get the number of configuration snapshots loaded, including the ones reloaded after an expiry.
+     *
+     * @return Number of snapshots loaded.
+     */
+    public long getLoadCount() {
+
+        return configurations.getLoadCount();
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2StoredCredential;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded in-memory read-through cache for the FIDO2 credential descriptors of users, the owners of user handles and
+ * the key material of credentials, backing
+ * {@link org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2CachingCredentialStore}.
+ *
+ * Cached credentials keep the public key and the owner of a credential only. The signature count verified on each
+ * assertion is read from the store on every use, since a node local copy would accept a replayed lower signature
+ * count of a cloned authenticator once the credential is used on another node. Entries are keyed by tenant, and a
+ * per-user index keeps the cached entries of each user so that a user can be invalidated without scanning the cache.
+ * The cache is node local; the configured timeout bounds the staleness of entries modified on other nodes of a
+ * cluster. A put finding the cache full drops the expired entries and, if the cache is still full, evicts the entries
+ * closest to their expiry until a tenth of the capacity is free, so that the cost of the scan is amortized over the
+ * following puts. Puts racing with an eviction may exceed the capacity by the number of concurrent callers.
+ */
+public class FIDO2CredentialCache {
+
+    private static final int EVICTION_RATIO = 10;
+
+    private final int capacity;
+    private final long timeoutInMillis;
+
+    private final Map<UserKey, TimedValue<Set<PublicKeyCredentialDescriptor>>> credentialDescriptors =
+            new ConcurrentHashMap<>();
+    private final Map<UserHandleKey, TimedValue<String>> owners = new ConcurrentHashMap<>();
+    private final Map<CredentialKey, TimedValue<FIDO2StoredCredential>> credentials = new ConcurrentHashMap<>();
+    // Cached entries of each user, keyed by the user with a case insensitive username.
+    private final Map<UserKey, UserIndex> userIndex = new ConcurrentHashMap<>();
+    // Only evictions are serialized.
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param capacity        Maximum number of users, user handles and credentials, each, kept in the cache.
+     * @param timeoutInMillis Time in milliseconds after which cache entries expire.
+     */
+    public FIDO2CredentialCache(int capacity, long timeoutInMillis) {
+
+        this.capacity = Math.max(1, capacity);
+        this.timeoutInMillis = timeoutInMillis;
+    }
+
+    /**
+     * Get the cached credential descriptors of a user.
+     *
+     * @param tenantId        Tenant ID of the user.
+     * @param userStoreDomain Userstore domain of the user.
+     * @param username        Username without the domain.
+     * @return Cached credential descriptors or null if the user is not cached.
+     */
+    public Set<PublicKeyCredentialDescriptor> getCredentialDescriptors(int tenantId, String userStoreDomain,
+                                                                       String username) {
+
+        Set<PublicKeyCredentialDescriptor> descriptors = get(credentialDescriptors,
+                new UserKey(tenantId, userStoreDomain, username));
+        return descriptors == null ? null : new HashSet<>(descriptors);
+    }
+
+    public void addCredentialDescriptors(int tenantId, String userStoreDomain, String username,
+                                         Set<PublicKeyCredentialDescriptor> descriptors) {
+
+        UserKey userKey = new UserKey(tenantId, userStoreDomain, username);
+        put(credentialDescriptors, userKey, userKey, Collections.unmodifiableSet(new HashSet<>(descriptors)));
+        index(userKey, userIndexEntry -> userIndexEntry.users.add(userKey));
+    }
+
+    /**
+     * Get the cached owner of a user handle within a tenant.
+     *
+     * @param tenantId   Tenant ID.
+     * @param userHandle User handle.
+     * @return Fully qualified username of the owner or null if the user handle is not cached.
+     */
+    public String getUsername(int tenantId, ByteArray userHandle) {
+
+        return get(owners, new UserHandleKey(tenantId, userHandle));
+    }
+
+    /**
+     * Cache the owner of a user handle within a tenant. The entry is invalidated along with the owner, whose tenant
+     * may differ from the tenant the entry is cached in.
+     *
+     * @param tenantId          Tenant ID the user handle is looked up in.
+     * @param userHandle        User handle.
+     * @param ownerTenantId     Tenant ID of the owner.
+     * @param userStoreDomain   Userstore domain of the owner.
+     * @param username          Username of the owner without the domain.
+     * @param qualifiedUsername Fully qualified username of the owner.
+     */
+    public void addUsername(int tenantId, ByteArray userHandle, int ownerTenantId, String userStoreDomain,
+                            String username, String qualifiedUsername) {
+
+        UserKey userKey = new UserKey(ownerTenantId, userStoreDomain, username);
+        UserHandleKey userHandleKey = new UserHandleKey(tenantId, userHandle);
+        put(owners, userHandleKey, userKey, qualifiedUsername);
+        index(userKey, userIndexEntry -> userIndexEntry.userHandles.add(userHandleKey));
+    }
+
+    /**
+     * Get the cached key material and owner of a credential within a tenant.
+     *
+     * @param tenantId     Tenant ID.
+     * @param credentialId Credential ID.
+     * @return Cached credential, whose signature count is not current, or null if the credential is not cached.
+     */
+    public FIDO2StoredCredential getCredential(int tenantId, ByteArray credentialId) {
+
+        return get(credentials, new CredentialKey(tenantId, credentialId));
+    }
+
+    public void addCredential(int tenantId, FIDO2StoredCredential storedCredential) {
+
+        UserKey userKey = new UserKey(storedCredential.getTenantId(), storedCredential.getUserStoreDomain(),
+                storedCredential.getUsername());
+        CredentialKey credentialKey = new CredentialKey(tenantId, storedCredential.getCredential().getCredentialId());
+        put(credentials, credentialKey, userKey, storedCredential);
+        index(userKey, userIndexEntry -> userIndexEntry.credentials.add(credentialKey));
+    }
+
+    /**
+     * Invalidate the cached key material of a credential within a tenant.
+     *
+     * @param tenantId     Tenant ID.
+     * @param credentialId Credential ID.
+     */
+    public void invalidateCredential(int tenantId, ByteArray credentialId) {
+
+        CredentialKey credentialKey = new CredentialKey(tenantId, credentialId);
+        TimedValue<FIDO2StoredCredential> timedValue = credentials.remove(credentialKey);
+        if (timedValue != null) {
+            unindex(timedValue.userKey, credentialKey);
+        }
+    }
+
+    /**
+     * Invalidate all cached entries of a user. The username is matched case insensitively.
+     *
+     * @param tenantId        Tenant ID of the user.
+     * @param userStoreDomain Userstore domain of the user.
+     * @param username        Username without the domain.
+     */
+    public void invalidateUser(int tenantId, String userStoreDomain, String username) {
+
+        invalidate(new UserKey(tenantId, userStoreDomain, username).toIndexKey());
+    }
+
+    /**
+     * Invalidate all cached entries of users in a userstore domain of a tenant.
+     *
+     * @param tenantId        Tenant ID.
+     * @param userStoreDomain Userstore domain.
+     */
+    public void invalidateUserStore(int tenantId, String userStoreDomain) {
+
+        for (UserKey indexKey : userIndex.keySet()) {
+            if (indexKey.matches(tenantId, userStoreDomain)) {
+                invalidate(indexKey);
+            }
+        }
+    }
+
+    public void clear() {
+
+        userIndex.clear();
+        credentialDescriptors.clear();
+        owners.clear();
+        credentials.clear();
+    }
+
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+
+        return evictionCount.get();
+    }
+
+    private void invalidate(UserKey indexKey) {
+
+        UserIndex userIndexEntry = userIndex.remove(indexKey);
+        if (userIndexEntry != null) {
+            userIndexEntry.users.forEach(credentialDescriptors::remove);
+            userIndexEntry.userHandles.forEach(owners::remove);
+            userIndexEntry.credentials.forEach(credentials::remove);
+        }
+    }
+
+    private <K, V> V get(Map<K, TimedValue<V>> cache, K key) {
+
+        TimedValue<V> timedValue = cache.get(key);
+        if (timedValue == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (timedValue.isExpired(System.currentTimeMillis())) {
+            if (cache.remove(key, timedValue)) {
+                evictionCount.incrementAndGet();
+                unindex(timedValue.userKey, key);
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return timedValue.value;
+    }
+
+    private <K, V> void put(Map<K, TimedValue<V>> cache, K key, UserKey userKey, V value) {
+
+        if (cache.size() >= capacity && !cache.containsKey(key)) {
+            evictionLock.lock();
+            try {
+                if (cache.size() >= capacity) {
+                    evict(cache, System.currentTimeMillis());
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        cache.put(key, new TimedValue<>(value, userKey, System.currentTimeMillis() + timeoutInMillis));
+    }
+
+    /*
+    Drop the expired entries and evict the entries closest to their expiry until a tenth of the capacity is free.
+    */
+    private <K, V> void evict(Map<K, TimedValue<V>> cache, long now) {
+
+        List<Map.Entry<K, TimedValue<V>>> liveEntries = new ArrayList<>(cache.size());
+        for (Map.Entry<K, TimedValue<V>> entry : cache.entrySet()) {
+            if (!entry.getValue().isExpired(now)) {
+                liveEntries.add(entry);
+            } else if (cache.remove(entry.getKey(), entry.getValue())) {
+                evictionCount.incrementAndGet();
+                unindex(entry.getValue().userKey, entry.getKey());
+            }
+        }
+        int excessCount = cache.size() - (capacity - Math.max(1, capacity / EVICTION_RATIO));
+        if (excessCount <= 0) {
+            return;
+        }
+        liveEntries.sort(Comparator.comparingLong(entry -> entry.getValue().expiryTime));
+        for (Map.Entry<K, TimedValue<V>> entry : liveEntries) {
+            if (excessCount <= 0) {
+                break;
+            }
+            if (cache.remove(entry.getKey(), entry.getValue())) {
+                evictionCount.incrementAndGet();
+                unindex(entry.getValue().userKey, entry.getKey());
+                excessCount--;
+            }
+        }
+    }
+
+    private void index(UserKey userKey, Consumer<UserIndex> indexer) {
+
+        userIndex.compute(userKey.toIndexKey(), (indexKey, userIndexEntry) -> {
+            UserIndex updatedEntry = userIndexEntry == null ? new UserIndex() : userIndexEntry;
+            indexer.accept(updatedEntry);
+            return updatedEntry;
+        });
+    }
+
+    private void unindex(UserKey userKey, Object key) {
+
+        userIndex.computeIfPresent(userKey.toIndexKey(), (indexKey, userIndexEntry) -> {
+            userIndexEntry.users.remove(key);
+            userIndexEntry.userHandles.remove(key);
+            userIndexEntry.credentials.remove(key);
+            return userIndexEntry.isEmpty() ? null : userIndexEntry;
+        });
+    }
+
+    /**
+     * Tenant qualified identifier of a user.
+     */
+    private static class UserKey {
+
+        private final int tenantId;
+        private final String userStoreDomain;
+        private final String username;
+
+        private UserKey(int tenantId, String userStoreDomain, String username) {
+
+            this.tenantId = tenantId;
+            this.userStoreDomain = StringUtils.upperCase(userStoreDomain, Locale.ENGLISH);
+            this.username = username;
+        }
+
+        /*
+        Usernames may be case insensitive depending on the userstore, hence the index groups the entries cached
+        with any case of a username so that they are invalidated together.
+        */
+        private UserKey toIndexKey() {
+
+            return new UserKey(tenantId, userStoreDomain, StringUtils.lowerCase(username, Locale.ENGLISH));
+        }
+
+        private boolean matches(int tenantId, String userStoreDomain) {
+
+            return this.tenantId == tenantId && StringUtils.equalsIgnoreCase(this.userStoreDomain, userStoreDomain);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserKey)) {
+                return false;
+            }
+            UserKey userKey = (UserKey) o;
+            return tenantId == userKey.tenantId && Objects.equals(userStoreDomain, userKey.userStoreDomain) &&
+                    Objects.equals(username, userKey.username);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(tenantId, userStoreDomain, username);
+        }
+    }
+
+    /**
+     * Tenant qualified user handle.
+     */
+    private static class UserHandleKey {
+
+        private final int tenantId;
+        private final ByteArray userHandle;
+
+        private UserHandleKey(int tenantId, ByteArray userHandle) {
+
+            this.tenantId = tenantId;
+            this.userHandle = userHandle;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserHandleKey)) {
+                return false;
+            }
+            UserHandleKey userHandleKey = (UserHandleKey) o;
+            return tenantId == userHandleKey.tenantId && userHandle.equals(userHandleKey.userHandle);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(tenantId, userHandle);
+        }
+    }
+
+    /**
+     * Tenant qualified credential ID.
+     */
+    private static class CredentialKey {
+
+        private final int tenantId;
+        private final ByteArray credentialId;
+
+        private CredentialKey(int tenantId, ByteArray credentialId) {
+
+            this.tenantId = tenantId;
+            this.credentialId = credentialId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CredentialKey)) {
+                return false;
+            }
+            CredentialKey credentialKey = (CredentialKey) o;
+            return tenantId == credentialKey.tenantId && credentialId.equals(credentialKey.credentialId);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(tenantId, credentialId);
+        }
+    }
+
+    /**
+     * Keys of the entries cached for a user.
+     */
+    private static class UserIndex {
+
+        private final Set<UserKey> users = ConcurrentHashMap.newKeySet();
+        private final Set<UserHandleKey> userHandles = ConcurrentHashMap.newKeySet();
+        private final Set<CredentialKey> credentials = ConcurrentHashMap.newKeySet();
+
+        private boolean isEmpty() {
+
+            return users.isEmpty() && userHandles.isEmpty() && credentials.isEmpty();
+        }
+    }
+
+    /**
+     * Cached value along with the user it belongs to and its expiry time.
+     *
+     * @param <V> Value type.
+     */
+    private static class TimedValue<V> {
+
+        private final V value;
+        private final UserKey userKey;
+        private final long expiryTime;
+
+        private TimedValue(V value, UserKey userKey, long expiryTime) {
+
+            this.value = value;
+            this.userKey = userKey;
+            this.expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(long now) {
+
+            return now >= expiryTime;
+        }
+    }
+}
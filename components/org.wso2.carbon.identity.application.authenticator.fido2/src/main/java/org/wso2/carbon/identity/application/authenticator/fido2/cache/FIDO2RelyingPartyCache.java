@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import com.yubico.webauthn.RelyingParty;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2OriginMatcher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node local cache of the relying parties built for each tenant and relying party ID.
+ *
+ * A relying party is kept together with the {@link FIDO2OriginMatcher} of the trusted origins it was built from. The
+ * matcher is recompiled once the fido-connector resource of the tenant or the trusted origins of identity.xml change,
+ * hence a cached relying party is returned only while the trusted origins are unchanged. The relying parties of a
+ * tenant are also invalidated whenever the configurations of the tenant are reloaded, and all relying parties are
+ * dropped when the configuration manager is bound or unbound, so that a relying party never outlives the
+ * configuration it was built with.
+ */
+public class FIDO2RelyingPartyCache {
+
+    private static final Log log = LogFactory.getLog(FIDO2RelyingPartyCache.class);
+    private static final String KEY_SEPARATOR = "|";
+    private static final FIDO2RelyingPartyCache instance = new FIDO2RelyingPartyCache();
+
+    private final Map<String, Entry> relyingParties = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong rebuildCount = new AtomicLong();
+
+    FIDO2RelyingPartyCache() {
+
+    }
+
+    public static FIDO2RelyingPartyCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the relying party of a tenant.
+     *
+     * @param tenantDomain  Tenant domain.
+     * @param rpId          Relying party ID.
+     * @param originMatcher Current origin matcher of the tenant.
+     * @return Relying party, or null if there is none or the trusted origins have changed since it was built.
+     */
+    public RelyingParty get(String tenantDomain, String rpId, FIDO2OriginMatcher originMatcher) {
+
+        Entry entry = relyingParties.get(buildKey(tenantDomain, rpId));
+        if (entry == null || entry.originMatcher != originMatcher) {
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.relyingParty;
+    }
+
+    /**
+     * Add the relying party built for a tenant, replacing any previous one.
+     *
+     * @param tenantDomain  Tenant domain.
+     * @param rpId          Relying party ID.
+     * @param originMatcher Origin matcher the relying party was built from.
+     * @param relyingParty  Relying party.
+     */
+    public void put(String tenantDomain, String rpId, FIDO2OriginMatcher originMatcher, RelyingParty relyingParty) {
+
+        relyingParties.put(buildKey(tenantDomain, rpId), new Entry(relyingParty, originMatcher));
+        rebuildCount.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("Built the relying party: " + rpId + " of tenant: " + tenantDomain);
+        }
+    }
+
+    /**
+     * Remove the relying parties of a tenant, such that they are rebuilt with the current configuration.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public void invalidate(String tenantDomain) {
+
+        String keyPrefix = tenantDomain + KEY_SEPARATOR;
+        relyingParties.keySet().removeIf(key -> key.startsWith(keyPrefix));
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidated the relying parties of tenant: " + tenantDomain);
+        }
+    }
+
+    public void clear() {
+
+        relyingParties.clear();
+    }
+
+    /**
+     * Get the number of ceremonies served by a cached relying party.
+     *
+     * @return Number of cache hits.
+     */
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of relying parties built, including the ones rebuilt after a configuration change.
+     *
+     * @return Number of relying parties built.
+     */
+    public long getRebuildCount() {
+
+        return rebuildCount.get();
+    }
+
+    private static String buildKey(String tenantDomain, String rpId) {
+
+        return tenantDomain + KEY_SEPARATOR + rpId;
+    }
+
+    private static class Entry {
+
+        private final RelyingParty relyingParty;
+        private final FIDO2OriginMatcher originMatcher;
+
+        private Entry(RelyingParty relyingParty, FIDO2OriginMatcher originMatcher) {
+
+            this.relyingParty = relyingParty;
+            this.originMatcher = originMatcher;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import com.yubico.webauthn.data.ByteArray;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDOUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stateless store for the state of FIDO2 registration and authentication ceremonies. Instead of keeping the state in
+ * the {@link FIDO2Cache}, the state is sealed with AES-GCM into an expiring token which is handed to the client as
+ * the request ID and returned with the ceremony response. Starting and finishing a ceremony therefore does not
+ * access the session data store.
+ *
+ * A token can be consumed only once. A token is opened when the ceremony response is received, and is marked as
+ * consumed only once the response has been verified, hence responses which fail the verification, such as the ones
+ * posted by unauthenticated clients, do not take up the replay cache. Consumed tokens are remembered in memory until
+ * they expire, grouped into buckets by their expiry time so that expired tokens are dropped a bucket at a time. The
+ * replay protection of this mode covers a single node only: in a cluster a token can be replayed once on each other
+ * node within its validity period, hence clustered deployments must route the finish request of a ceremony to the
+ * node which started it (sticky sessions) or use the cache backed ceremony state instead. All nodes of a cluster must
+ * share the sealing key.
+ */
+public class FIDO2SealedChallengeStore {
+
+    private static final Log log = LogFactory.getLog(FIDO2SealedChallengeStore.class);
+
+    private static final byte TOKEN_VERSION = 1;
+    private static final String CIPHER_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String KEY_ALGORITHM = "AES";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_IN_BITS = 128;
+    private static final int GENERATED_KEY_LENGTH_IN_BITS = 256;
+    private static final int REPLAY_CACHE_BUCKET_COUNT = 16;
+
+    private static volatile FIDO2SealedChallengeStore instance;
+
+    private final boolean enabled;
+    private final SecretKey key;
+    private final long validityInMillis;
+    private final int replayCacheCapacity;
+    private final long bucketWidthInMillis;
+    private final SecureRandom random = new SecureRandom();
+    // Consumed token IDs keyed by the expiry time of the tokens divided by the bucket width.
+    private final Map<Long, Set<ByteArray>> consumedTokens = new ConcurrentHashMap<>();
+    private final AtomicInteger consumedTokenCount = new AtomicInteger();
+    private final AtomicLong lastSweptBucket = new AtomicLong();
+
+    FIDO2SealedChallengeStore(boolean enabled, SecretKey key, long validityInMillis, int replayCacheCapacity) {
+
+        this.enabled = enabled;
+        this.key = key;
+        this.validityInMillis = validityInMillis;
+        this.replayCacheCapacity = replayCacheCapacity;
+        this.bucketWidthInMillis = Math.max(1, validityInMillis / REPLAY_CACHE_BUCKET_COUNT);
+    }
+
+    public static FIDO2SealedChallengeStore getInstance() {
+
+        if (instance == null) {
+            synchronized (FIDO2SealedChallengeStore.class) {
+                if (instance == null) {
+                    boolean enabled = FIDOUtil.isStatelessChallengeEnabled();
+                    instance = new FIDO2SealedChallengeStore(enabled, enabled ? resolveKey() : null,
+                            TimeUnit.SECONDS.toMillis(FIDOUtil.getStatelessChallengeValidity()),
+                            FIDOUtil.getStatelessChallengeReplayCacheCapacity());
+                    if (log.isDebugEnabled()) {
+                        log.debug("FIDO2 sealed challenge store initialized. Enabled: " + enabled);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Check whether the ceremony state is sealed into the request ID instead of being stored in the cache.
+     *
+     * @return True if the stateless challenge mode is enabled.
+     */
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Seal the ceremony state into an expiring token.
+     *
+     * @param entry Ceremony state.
+     * @return Sealed token to be used as the request ID.
+     * @throws FIDO2AuthenticatorServerException If the state cannot be sealed.
+     */
+    public ByteArray seal(FIDO2CacheEntry entry) throws FIDO2AuthenticatorServerException {
+
+        try {
+            ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+            try (DataOutputStream output = new DataOutputStream(plainText)) {
+                output.writeLong(System.currentTimeMillis() + validityInMillis);
+                writeString(output, entry.getOrigin() != null ? entry.getOrigin().toString() : null);
+                writeString(output, entry.getPublicKeyCredentialCreationOptions());
+                writeString(output, entry.getAssertionRequest());
+                writeBytes(output, entry.getCeremonyState());
+            }
+
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_IN_BITS, iv));
+            cipher.updateAAD(new byte[]{TOKEN_VERSION});
+            byte[] cipherText = cipher.doFinal(plainText.toByteArray());
+
+            byte[] token = new byte[1 + IV_LENGTH + cipherText.length];
+            token[0] = TOKEN_VERSION;
+            System.arraycopy(iv, 0, token, 1, IV_LENGTH);
+            System.arraycopy(cipherText, 0, token, 1 + IV_LENGTH, cipherText.length);
+            return new ByteArray(token);
+        } catch (GeneralSecurityException | IOException e) {
+            throw new FIDO2AuthenticatorServerException("Error while sealing the FIDO2 ceremony state.", e);
+        }
+    }
+
+    /**
+     * Open a sealed token without consuming it. The token is to be marked as consumed with
+     * {@link #markConsumed(ByteArray, FIDO2CacheEntry)} once the ceremony response has been verified.
+     *
+     * @param token Sealed token received as the request ID.
+     * @return Ceremony state, or null if the token is invalid, expired or already consumed.
+     */
+    public FIDO2CacheEntry open(ByteArray token) {
+
+        byte[] bytes = token.getBytes();
+        if (bytes.length <= 1 + IV_LENGTH || bytes[0] != TOKEN_VERSION) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected a FIDO2 request ID which is not a sealed ceremony state.");
+            }
+            return null;
+        }
+
+        long expiryTime;
+        FIDO2CacheEntry entry;
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_IN_BITS, bytes, 1, IV_LENGTH));
+            cipher.updateAAD(new byte[]{TOKEN_VERSION});
+            byte[] plainText = cipher.doFinal(bytes, 1 + IV_LENGTH, bytes.length - 1 - IV_LENGTH);
+            try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(plainText))) {
+                expiryTime = input.readLong();
+                String origin = readString(input);
+                URL originUrl = origin != null ? new URL(origin) : null;
+                String publicKeyCredentialCreationOptions = readString(input);
+                String assertionRequest = readString(input);
+                byte[] ceremonyState = readBytes(input);
+                entry = ceremonyState != null ? new FIDO2CacheEntry(ceremonyState, originUrl) :
+                        new FIDO2CacheEntry(publicKeyCredentialCreationOptions, assertionRequest, originUrl);
+            }
+        } catch (GeneralSecurityException | IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected a FIDO2 sealed ceremony state which cannot be opened.", e);
+            }
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (expiryTime <= now) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected an expired FIDO2 sealed ceremony state.");
+            }
+            return null;
+        }
+        if (isConsumed(getTokenId(bytes), expiryTime)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected a replayed FIDO2 sealed ceremony state.");
+            }
+            return null;
+        }
+        entry.setExpiryTime(expiryTime);
+        return entry;
+    }
+
+    /**
+     * Mark an opened token as consumed. Of the concurrent ceremonies finished with the same token, only one marks it.
+     *
+     * @param token Sealed token received as the request ID.
+     * @param entry Ceremony state opened from the token.
+     * @return True if the token was marked by this call, false if it has expired, has already been consumed or
+     * cannot be protected against replay.
+     */
+    public boolean markConsumed(ByteArray token, FIDO2CacheEntry entry) {
+
+        long now = System.currentTimeMillis();
+        if (entry.isExpired(now)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected a FIDO2 sealed ceremony state which expired while it was being verified.");
+            }
+            return false;
+        }
+        return addConsumedToken(getTokenId(token.getBytes()), entry.getExpiryTime(), now);
+    }
+
+    private boolean isConsumed(ByteArray tokenId, long expiryTime) {
+
+        Set<ByteArray> tokenIds = consumedTokens.get(expiryTime / bucketWidthInMillis);
+        return tokenIds != null && tokenIds.contains(tokenId);
+    }
+
+    private boolean addConsumedToken(ByteArray tokenId, long expiryTime, long now) {
+
+        long currentBucket = now / bucketWidthInMillis;
+        long lastSwept = lastSweptBucket.get();
+        if (lastSwept < currentBucket && lastSweptBucket.compareAndSet(lastSwept, currentBucket)) {
+            removeExpiredBuckets(currentBucket);
+        }
+        // Reserve a slot before adding the token so that concurrent consumes cannot exceed the capacity.
+        if (consumedTokenCount.incrementAndGet() > replayCacheCapacity) {
+            consumedTokenCount.decrementAndGet();
+            removeExpiredBuckets(currentBucket);
+            if (consumedTokenCount.incrementAndGet() > replayCacheCapacity) {
+                consumedTokenCount.decrementAndGet();
+                // Reject the token rather than accepting one which could not be protected against replay.
+                log.warn("FIDO2 sealed challenge replay cache is full. Consider increasing the capacity.");
+                return false;
+            }
+        }
+        boolean[] added = new boolean[1];
+        consumedTokens.compute(expiryTime / bucketWidthInMillis, (bucket, tokenIds) -> {
+            Set<ByteArray> bucketTokenIds = tokenIds == null ? ConcurrentHashMap.newKeySet() : tokenIds;
+            added[0] = bucketTokenIds.add(tokenId);
+            return bucketTokenIds;
+        });
+        if (!added[0]) {
+            consumedTokenCount.decrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected a replayed FIDO2 sealed ceremony state.");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static ByteArray getTokenId(byte[] token) {
+
+        // The random IV identifies the token.
+        return new ByteArray(Arrays.copyOfRange(token, 1, 1 + IV_LENGTH));
+    }
+
+    /*
+    Drop the buckets whose tokens have all expired. Expired tokens are rejected before the replay check, hence they
+    need not be remembered.
+    */
+    private void removeExpiredBuckets(long currentBucket) {
+
+        for (Long bucket : consumedTokens.keySet()) {
+            if (bucket < currentBucket) {
+                Set<ByteArray> tokenIds = consumedTokens.remove(bucket);
+                if (tokenIds != null) {
+                    consumedTokenCount.addAndGet(-tokenIds.size());
+                }
+            }
+        }
+    }
+
+    private static SecretKey resolveKey() {
+
+        String configuredKey = FIDOUtil.getStatelessChallengeKey();
+        if (StringUtils.isNotBlank(configuredKey)) {
+            byte[] keyBytes = new byte[0];
+            try {
+                keyBytes = Base64.getDecoder().decode(configuredKey.trim());
+            } catch (IllegalArgumentException e) {
+                // Handled below along with the keys of an invalid length.
+            }
+            if (keyBytes.length == 16 || keyBytes.length == 24 || keyBytes.length == 32) {
+                return new SecretKeySpec(keyBytes, KEY_ALGORITHM);
+            }
+            log.warn("The configured FIDO2 sealed challenge key is not a base64 encoded 128, 192 or 256 bit AES key. " +
+                    "A node local key will be used instead.");
+        } else {
+            log.warn("A FIDO2 sealed challenge key is not configured. A node local key will be used, hence " +
+                    "ceremonies cannot be finished on other nodes of a cluster.");
+        }
+        try {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance(KEY_ALGORITHM);
+            keyGenerator.init(GENERATED_KEY_LENGTH_IN_BITS);
+            return keyGenerator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to generate the FIDO2 sealed challenge key.", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+
+        writeBytes(output, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+
+        byte[] bytes = readBytes(input);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] value) throws IOException {
+
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        output.writeInt(value.length);
+        output.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+}
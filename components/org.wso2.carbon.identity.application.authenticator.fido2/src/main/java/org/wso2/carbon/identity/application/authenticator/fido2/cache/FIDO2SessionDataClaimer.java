@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Claims session data written by the SessionDataStore of the authentication framework, such that single use data
+ * persisted for a cluster is consumed by exactly one node.
+ *
+ * Together with the {@link FIDO2CachePurger}, this is the only access to the session data tables outside
+ * SessionDataStore. SessionDataStore offers no atomic read and remove: clearSessionData does not report whether the
+ * data was still present, hence it cannot tell which of two nodes consumed the data. The claim therefore deletes the
+ * row with a single conditional delete, and the row count of the delete decides which caller across the nodes
+ * succeeds. When the data is also read, it is read within the same transaction as the delete, and is returned only
+ * to the caller whose delete removed it. Unlike a cleanup of the tables, the delete is limited to the rows stored for
+ * the given key and type, and the rows written for other operations, including the delete operation rows of
+ * SessionDataStore#clearSessionData, are left to the purge of expired entries.
+ *
+ * The claim follows the storage layout of SessionDataStore: data is stored with the STORE operation, data which is
+ * followed by a delete operation row has been cleared, and the data of temporary caches is kept in
+ * IDN_AUTH_TEMP_SESSION_STORE when the cleanup of temporary data is enabled, hence the data is claimed from that table
+ * when it is not found in IDN_AUTH_SESSION_STORE. Data queued by the asynchronous persistence of SessionDataStore
+ * cannot be claimed until it is written.
+ */
+public class FIDO2SessionDataClaimer {
+
+    private static final Log log = LogFactory.getLog(FIDO2SessionDataClaimer.class);
+    private static final FIDO2SessionDataClaimer instance = new FIDO2SessionDataClaimer();
+    private static final String STORE_OPERATION = "STORE";
+
+    public static FIDO2SessionDataClaimer getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Delete stored session data.
+     *
+     * @param key  Session data key.
+     * @param type Session data type.
+     * @return True if the data was deleted by this call, false if it was already deleted or cannot be deleted.
+     */
+    public boolean claim(String key, String type) {
+
+        try {
+            boolean claimed = claim(key, type, FIDO2AuthenticatorConstants.SQLQueries.DELETE_STORED_SESSION_DATA) ||
+                    (isTempDataCleanupEnabled() && claim(key, type, FIDO2AuthenticatorConstants.SQLQueries
+                            .DELETE_STORED_TEMP_SESSION_DATA));
+            if (!claimed && log.isDebugEnabled()) {
+                log.debug("Session data of type: " + type + " with key: " + key + " has already been claimed.");
+            }
+            return claimed;
+        } catch (SQLException e) {
+            // Reject the data rather than risking it being consumed more than once.
+            log.error("Error while claiming the session data of type: " + type + " with key: " + key +
+                    " from the session data store.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Delete stored session data and return it.
+     *
+     * @param key  Session data key.
+     * @param type Session data type.
+     * @return Session data deleted by this call, or null if there is no such data, or it was already deleted or
+     * cannot be deleted.
+     */
+    public Object claimData(String key, String type) {
+
+        try {
+            Object data = claimData(key, type, FIDO2AuthenticatorConstants.SQLQueries.GET_LATEST_SESSION_DATA,
+                    FIDO2AuthenticatorConstants.SQLQueries.DELETE_STORED_SESSION_DATA);
+            if (data == null && isTempDataCleanupEnabled()) {
+                data = claimData(key, type, FIDO2AuthenticatorConstants.SQLQueries.GET_LATEST_TEMP_SESSION_DATA,
+                        FIDO2AuthenticatorConstants.SQLQueries.DELETE_STORED_TEMP_SESSION_DATA);
+            }
+            if (data == null && log.isDebugEnabled()) {
+                log.debug("Session data of type: " + type + " with key: " + key + " is not available to be claimed.");
+            }
+            return data;
+        } catch (SQLException | IOException | ClassNotFoundException e) {
+            // Reject the data rather than risking it being consumed more than once.
+            log.error("Error while claiming the session data of type: " + type + " with key: " + key +
+                    " from the session data store.", e);
+            return null;
+        }
+    }
+
+    private boolean claim(String key, String type, String query) throws SQLException {
+
+        try (Connection connection = getSessionDBConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, key);
+            preparedStatement.setString(2, type);
+            boolean claimed = preparedStatement.executeUpdate() > 0;
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            return claimed;
+        }
+    }
+
+    private Object claimData(String key, String type, String selectQuery, String deleteQuery)
+            throws SQLException, IOException, ClassNotFoundException {
+
+        try (Connection connection = getSessionDBConnection()) {
+            Object data = null;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery)) {
+                preparedStatement.setString(1, key);
+                preparedStatement.setString(2, type);
+                preparedStatement.setMaxRows(1);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    // Data followed by a delete operation row has been cleared by SessionDataStore.
+                    if (resultSet.next() && STORE_OPERATION.equals(resultSet.getString(1))) {
+                        data = getBlobObject(resultSet.getBinaryStream(2));
+                    }
+                }
+            }
+            boolean claimed = false;
+            if (data != null) {
+                try (PreparedStatement preparedStatement = connection.prepareStatement(deleteQuery)) {
+                    preparedStatement.setString(1, key);
+                    preparedStatement.setString(2, type);
+                    claimed = preparedStatement.executeUpdate() > 0;
+                } catch (SQLException e) {
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                    }
+                    throw e;
+                }
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            // Only the caller whose delete removed the data may use it.
+            return claimed ? data : null;
+        }
+    }
+
+    private static Object getBlobObject(InputStream inputStream) throws IOException, ClassNotFoundException {
+
+        if (inputStream == null) {
+            return null;
+        }
+        // The session object is serialized by SessionDataStore.
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(inputStream)) {
+            return objectInputStream.readObject();
+        }
+    }
+
+    Connection getSessionDBConnection() {
+
+        return IdentityDatabaseUtil.getSessionDBConnection(true);
+    }
+
+    boolean isTempDataCleanupEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO2AuthenticatorConstants
+                .SESSION_DATA_TEMP_DATA_CLEANUP_ENABLED));
+    }
+}
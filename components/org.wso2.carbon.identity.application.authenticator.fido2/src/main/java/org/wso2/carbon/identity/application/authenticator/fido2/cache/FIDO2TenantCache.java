@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node local cache of a value per tenant, such as the configurations of the tenants, each value expiring after a
+ * timeout. Values are not invalidated when the tenant is updated, hence a value may be served for up to the timeout
+ * after it has changed.
+ *
+ * @param <V> Value type.
+ */
+public class FIDO2TenantCache<V> {
+
+    private final Map<String, Entry<V>> values = new ConcurrentHashMap<>();
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * Get the value of a tenant.
+     *
+     * @param tenantDomain Tenant domain.
+     * @return Value, or null if there is none or it has expired.
+     */
+    public V get(String tenantDomain) {
+
+        Entry<V> entry = values.get(tenantDomain);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiryTime <= System.currentTimeMillis()) {
+            values.remove(tenantDomain, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Add the value of a tenant.
+     *
+     * @param tenantDomain Tenant domain.
+     * @param value        Value.
+     * @param timeout      Time in milliseconds after which the value expires.
+     */
+    public void put(String tenantDomain, V value, long timeout) {
+
+        values.put(tenantDomain, new Entry<>(value, System.currentTimeMillis() + timeout));
+        loadCount.incrementAndGet();
+    }
+
+    public void clear() {
+
+        values.clear();
+    }
+
+    /**
+     * Get the number of values added, including the ones read again after an expiry.
+     *
+     * @return Number of values loaded.
+     */
+    public long getLoadCount() {
+
+        return loadCount.get();
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long expiryTime;
+
+        private Entry(V value, long expiryTime) {
+
+            this.value = value;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -22,7 +22,9 @@ import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.net.InternetDomainName;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.webauthn4j.WebAuthnManager;
 import com.webauthn4j.converter.exception.DataConversionException;
 import com.webauthn4j.data.PublicKeyCredentialType;
@@ -77,27 +79,38 @@ import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2AssertionTemplate;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2AssertionTemplateCache;
 import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2Cache;
 import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CacheEntry;
 import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CacheKey;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2ConfigurationCache;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2RelyingPartyCache;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2SealedChallengeStore;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2CachingCredentialStore;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2CredentialStore;
 import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2DeviceStoreDAO;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.AssertionRequestWrapper;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.AssertionResponse;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.CredentialRegistration;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CeremonyState;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2Configuration;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CredentialRegistration;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2RegistrationRequest;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.RegistrationRequest;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.RegistrationResponse;
-import org.wso2.carbon.identity.application.authenticator.fido2.dto.SuccessfulAuthenticationResult;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.SuccessfulRegistrationResult;
 import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorClientException;
 import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorException;
 import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2DuplicateRegistrationException;
 import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceComponent;
 import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceDataHolder;
 import org.wso2.carbon.identity.application.authenticator.fido2.internal.MetadataService;
 import org.wso2.carbon.identity.application.authenticator.fido2.util.Either;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2OriginMatcher;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2RandomPool;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2RelyingPartyIdResolver;
 import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDOUtil;
 import org.wso2.carbon.identity.application.authenticator.fido2.util.WebAuthnAuditLogger;
 import org.wso2.carbon.identity.application.common.model.User;
@@ -115,17 +128,17 @@ import java.net.URL;
 import java.security.SecureRandom;
 import java.text.MessageFormat;
 import java.time.Clock;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.yubico.webauthn.data.UserVerificationRequirement.PREFERRED;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.APPLICATION_NAME;
@@ -139,6 +152,7 @@ import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.ClientExceptionErrorCodes.ERROR_CODE_UPDATE_REGISTRATION_INVALID_CREDENTIAL;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.DECODING_FAILED_MESSAGE;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.DISPLAY_NAME_CLAIM_URL;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO2_ASSERTION_CONTEXT;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO2_CONFIG_ATTESTATION_VALIDATION_ATTRIBUTE_NAME;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO2_CONFIG_ATTESTATION_VALIDATION_DEFAULT_VALUE;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO2_CONFIG_MDS_VALIDATION_ATTRIBUTE_NAME;
@@ -152,7 +166,6 @@ import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.INVALID_ORIGIN_MESSAGE;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.LAST_NAME_CLAIM_URL;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.TRUSTED_ORIGINS;
-import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RELYING_PARTY_USE_FULL_EFFECTIVE_DOMAIN;
 import static org.wso2.carbon.identity.configuration.mgt.core.constant.ConfigurationConstants.ErrorMessages.ERROR_CODE_ATTRIBUTE_DOES_NOT_EXISTS;
 import static org.wso2.carbon.identity.configuration.mgt.core.constant.ConfigurationConstants.ErrorMessages.ERROR_CODE_RESOURCE_DOES_NOT_EXISTS;
 
@@ -168,8 +181,9 @@ public class WebAuthnService {
     private final Clock clock = Clock.systemDefaultZone();
     private static final SecureRandom random = new SecureRandom();
     private final ObjectMapper jsonMapper = JacksonCodecs.json();
-    private static final FIDO2DeviceStoreDAO userStorage = FIDO2DeviceStoreDAO.getInstance();
-    private List<String> origins = null;
+    private FIDO2OriginMatcher originMatcher = null;
+    // Origin matchers compiled for each tenant.
+    private static final Map<String, FIDO2OriginMatcher> originMatchers = new ConcurrentHashMap<>();
     private static final String userResponseTimeout = IdentityUtil.getProperty("FIDO.UserResponseTimeout");
 
     private static volatile WebAuthnManager webAuthnManager;
@@ -182,7 +196,7 @@ public class WebAuthnService {
             throws JsonProcessingException, FIDO2AuthenticatorException {
 
         readTrustedOrigins();
-        if (!origins.contains(origin.trim())) {
+        if (!originMatcher.matches(origin)) {
             throw new FIDO2AuthenticatorException(INVALID_ORIGIN_MESSAGE);
         }
 
@@ -198,12 +212,9 @@ public class WebAuthnService {
         PublicKeyCredentialCreationOptions credentialCreationOptions = relyingParty
                 .startRegistration(buildStartRegistrationOptions(user, false));
 
-        RegistrationRequest request = new RegistrationRequest(user.toString(), generateRandom(),
+        RegistrationRequest request = new RegistrationRequest(user.toString(), storeCeremonyState(
+                buildCeremonyCacheEntry(credentialCreationOptions, null, originUrl)),
                 credentialCreationOptions);
-
-        FIDO2Cache.getInstance().addToCacheByRequestId(new FIDO2CacheKey(request.getRequestId().getBase64()),
-                new FIDO2CacheEntry(jsonMapper.writeValueAsString(request.getPublicKeyCredentialCreationOptions()),
-                        null, originUrl));
         return Either.right(request);
     }
 
@@ -232,11 +243,11 @@ public class WebAuthnService {
             IdentityUtil.threadLocalProperties.get().remove(FIDO2_USER);
         }
 
-        FIDO2RegistrationRequest request = new FIDO2RegistrationRequest(generateRandom(), credentialCreationOptions);
-
-        FIDO2Cache.getInstance().addToCacheByRequestId(new FIDO2CacheKey(request.getRequestId().getBase64()),
-                new FIDO2CacheEntry(jsonMapper.writeValueAsString(request.getPublicKeyCredentialCreationOptions()),
-                        null, originUrl));
+        // Serialize the options once for both the cache and the response.
+        String optionsJson = jsonMapper.writeValueAsString(credentialCreationOptions);
+        FIDO2RegistrationRequest request = new FIDO2RegistrationRequest(storeCeremonyState(
+                buildCeremonyCacheEntry(credentialCreationOptions, optionsJson, originUrl)),
+                credentialCreationOptions, optionsJson);
         return Either.right(request);
     }
 
@@ -277,10 +288,11 @@ public class WebAuthnService {
             IdentityUtil.threadLocalProperties.get().remove(FIDO2_USER);
         }
 
-        FIDO2RegistrationRequest request = new FIDO2RegistrationRequest(generateRandom(), credentialCreationOptions);
-        FIDO2Cache.getInstance().addToCacheByRequestId(new FIDO2CacheKey(request.getRequestId().getBase64()),
-                new FIDO2CacheEntry(jsonMapper.writeValueAsString(request.getPublicKeyCredentialCreationOptions()),
-                        null, originUrl));
+        // Serialize the options once for both the cache and the response.
+        String optionsJson = jsonMapper.writeValueAsString(credentialCreationOptions);
+        FIDO2RegistrationRequest request = new FIDO2RegistrationRequest(storeCeremonyState(
+                buildCeremonyCacheEntry(credentialCreationOptions, optionsJson, originUrl)),
+                credentialCreationOptions, optionsJson);
 
         return Either.right(request);
     }
@@ -300,24 +312,18 @@ public class WebAuthnService {
         }
 
         User user = getPrivilegedUser();
-        if (FIDO2DeviceStoreDAO.getInstance().getFIDO2RegistrationByUsernameAndCredentialId(user.toString(),
+        if (getCredentialStore().getFIDO2RegistrationByUsernameAndCredentialId(user.toString(),
                 response.getCredential().getId()).isPresent()) {
             throw new FIDO2AuthenticatorException("The username \"" + user + "\" is already registered.");
         }
 
-        String requestId = response.getRequestId().getBase64();
-        FIDO2CacheEntry cacheEntry = FIDO2Cache.getInstance().getValueFromCacheByRequestId(
-                new FIDO2CacheKey(requestId));
+        FIDO2CacheEntry cacheEntry = consumeCeremonyState(response.getRequestId());
 
         PublicKeyCredentialCreationOptions publicKeyCredentialCreationOptions = null;
         RelyingParty relyingParty = null;
         if (cacheEntry != null) {
-            publicKeyCredentialCreationOptions = jsonMapper.readValue(
-                    cacheEntry.getPublicKeyCredentialCreationOptions(),
-                    PublicKeyCredentialCreationOptions.class);
             relyingParty = buildRelyingParty(cacheEntry.getOrigin());
-            FIDO2Cache.getInstance().clearCacheEntryByRequestId(new FIDO2CacheKey(requestId));
-
+            publicKeyCredentialCreationOptions = readCreationOptions(cacheEntry, relyingParty);
         }
         if (publicKeyCredentialCreationOptions == null || relyingParty == null) {
             String message = "Registration failed! No such registration in progress";
@@ -331,6 +337,9 @@ public class WebAuthnService {
                         .request(publicKeyCredentialCreationOptions)
                         .response(response.getCredential()).build()
                 );
+                if (!markCeremonyStateConsumed(response.getRequestId(), cacheEntry)) {
+                    throw new FIDO2AuthenticatorException("Registration failed! No such registration in progress");
+                }
 
                 addRegistration(publicKeyCredentialCreationOptions, response, registration);
 
@@ -377,32 +386,21 @@ public class WebAuthnService {
         }
 
         User user = User.getUserFromUserName(username);
-        if (FIDO2DeviceStoreDAO.getInstance().getFIDO2RegistrationByUsernameAndCredentialId(user.toString(),
-                response.getCredential().getId()).isPresent()) {
-            throw new FIDO2AuthenticatorClientException("The username \"" + user + "\" is already registered.",
-                    ERROR_CODE_FINISH_REGISTRATION_USERNAME_AND_CREDENTIAL_ID_EXISTS.getErrorCode());
-        }
 
-        String requestId = response.getRequestId().getBase64();
-        FIDO2CacheEntry cacheEntry = FIDO2Cache.getInstance().getValueFromCacheByRequestId(
-                new FIDO2CacheKey(requestId));
+        FIDO2CacheEntry cacheEntry = consumeCeremonyState(response.getRequestId());
 
         PublicKeyCredentialCreationOptions publicKeyCredentialCreationOptions = null;
         RelyingParty relyingParty = null;
         if (cacheEntry != null) {
+            relyingParty = buildRelyingParty(cacheEntry.getOrigin());
             try {
-                publicKeyCredentialCreationOptions = jsonMapper.readValue(cacheEntry
-                                .getPublicKeyCredentialCreationOptions(),
-                        PublicKeyCredentialCreationOptions.class);
+                publicKeyCredentialCreationOptions = readCreationOptions(cacheEntry, relyingParty);
             } catch (JsonParseException | JsonMappingException e) {
                 throw new FIDO2AuthenticatorClientException("Finish FIDO2 device registration request is invalid.",
                         ERROR_CODE_FINISH_REGISTRATION_INVALID_REQUEST.getErrorCode(), e);
             } catch (IOException e) {
                 throw new FIDO2AuthenticatorServerException(DECODING_FAILED_MESSAGE, e);
             }
-            relyingParty = buildRelyingParty(cacheEntry.getOrigin());
-            FIDO2Cache.getInstance().clearCacheEntryByRequestId(new FIDO2CacheKey(requestId));
-
         }
         if (publicKeyCredentialCreationOptions == null || relyingParty == null) {
             String message = "Registration failed! No such registration in progress";
@@ -472,11 +470,20 @@ public class WebAuthnService {
                         .request(publicKeyCredentialCreationOptions)
                         .response(response.getCredential()).build()
                 );
+                if (!markCeremonyStateConsumed(response.getRequestId(), cacheEntry)) {
+                    throw new FIDO2AuthenticatorClientException("Registration failed! No such registration in " +
+                            "progress", ERROR_CODE_FINISH_REGISTRATION_INVALID_REQUEST.getErrorCode());
+                }
 
                 try {
                     // Store the user object in a thread local property.
                     IdentityUtil.threadLocalProperties.get().put(FIDO2_USER, user);
+                    // The credential store rejects an already registered credential, so no lookup is done upfront.
                     addFIDO2Registration(publicKeyCredentialCreationOptions, response, registration);
+                } catch (FIDO2DuplicateRegistrationException e) {
+                    throw new FIDO2AuthenticatorClientException("The username \"" + user + "\" is already " +
+                            "registered.", ERROR_CODE_FINISH_REGISTRATION_USERNAME_AND_CREDENTIAL_ID_EXISTS
+                            .getErrorCode(), e);
                 } finally {
                     IdentityUtil.threadLocalProperties.get().remove(FIDO2_USER);
                 }
@@ -518,32 +525,26 @@ public class WebAuthnService {
         }
 
         User user = User.getUserFromUserName(username);
-        if (FIDO2DeviceStoreDAO.getInstance().getFIDO2RegistrationByUsernameAndCredentialId(user.toString(),
+        if (getCredentialStore().getFIDO2RegistrationByUsernameAndCredentialId(user.toString(),
                 response.getCredential().getId()).isPresent()) {
             throw new FIDO2AuthenticatorClientException("The username \"" + user + "\" is already registered.",
                     ERROR_CODE_FINISH_REGISTRATION_USERNAME_AND_CREDENTIAL_ID_EXISTS.getErrorCode());
         }
 
-        String requestId = response.getRequestId().getBase64();
-        FIDO2CacheEntry cacheEntry = FIDO2Cache.getInstance()
-                .getValueFromCacheByRequestId(new FIDO2CacheKey(requestId));
+        FIDO2CacheEntry cacheEntry = consumeCeremonyState(response.getRequestId());
 
         PublicKeyCredentialCreationOptions publicKeyCredentialCreationOptions = null;
         RelyingParty relyingParty = null;
         if (cacheEntry != null) {
+            relyingParty = buildRelyingParty(cacheEntry.getOrigin());
             try {
-                publicKeyCredentialCreationOptions = jsonMapper.readValue(cacheEntry
-                                .getPublicKeyCredentialCreationOptions(),
-                        PublicKeyCredentialCreationOptions.class);
+                publicKeyCredentialCreationOptions = readCreationOptions(cacheEntry, relyingParty);
             } catch (JsonParseException | JsonMappingException e) {
                 throw new FIDO2AuthenticatorClientException("Finish FIDO2 device registration request is invalid.",
                         ERROR_CODE_FINISH_REGISTRATION_INVALID_REQUEST.getErrorCode(), e);
             } catch (IOException e) {
                 throw new FIDO2AuthenticatorServerException(DECODING_FAILED_MESSAGE, e);
             }
-            relyingParty = buildRelyingParty(cacheEntry.getOrigin());
-            FIDO2Cache.getInstance().clearCacheEntryByRequestId(new FIDO2CacheKey(requestId));
-
         }
         if (publicKeyCredentialCreationOptions == null || relyingParty == null) {
             String message = "Registration failed! No such registration in progress";
@@ -615,6 +616,10 @@ public class WebAuthnService {
             } catch (RegistrationFailedException e) {
                 throw new FIDO2AuthenticatorServerException("Registration failed!", e);
             }
+            if (!markCeremonyStateConsumed(response.getRequestId(), cacheEntry)) {
+                throw new FIDO2AuthenticatorClientException("Registration failed! No such registration in progress",
+                        ERROR_CODE_FINISH_REGISTRATION_INVALID_REQUEST.getErrorCode());
+            }
 
             UserIdentity userIdentity = publicKeyCredentialCreationOptions.getUser();
             RegisteredCredential credential = RegisteredCredential.builder()
@@ -656,21 +661,21 @@ public class WebAuthnService {
             user.setUserName(username);
             user.setTenantDomain(tenantDomain);
             user.setUserStoreDomain(storeDomain);
-            if (userStorage.getFIDO2RegistrationsByUser(user).isEmpty()) {
+            if (!getCredentialStore().hasFIDO2Registrations(user)) {
                 if (log.isDebugEnabled()) {
                     log.debug("No registered device found for user :" + user.toString());
                 }
                 return null;
             } else {
                 RelyingParty relyingParty = buildRelyingParty(originUrl);
-                AssertionRequestWrapper request = new AssertionRequestWrapper(
-                        generateRandom(),
-                        relyingParty.startAssertion(StartAssertionOptions.builder().username(user.toString()).build())
-                );
-                FIDO2Cache.getInstance().addToCacheByRequestWrapperId(
-                        new FIDO2CacheKey(request.getRequestId().getBase64()),
-                        new FIDO2CacheEntry(null, jsonMapper.writeValueAsString(request
-                                .getRequest()), originUrl));
+                AssertionRequest assertionRequest = relyingParty.startAssertion(StartAssertionOptions.builder()
+                        .username(user.toString()).build());
+                // Serialize the options once for both the cache and the response.
+                String optionsJson = jsonMapper.writeValueAsString(
+                        assertionRequest.getPublicKeyCredentialRequestOptions());
+                AssertionRequestWrapper request = new AssertionRequestWrapper(storeCeremonyState(
+                        buildCeremonyCacheEntry(assertionRequest, optionsJson, originUrl)),
+                        assertionRequest, optionsJson);
                 return FIDOUtil.writeJson(request);
             }
         } catch (MalformedURLException | JsonProcessingException | FIDO2AuthenticatorServerException e) {
@@ -690,14 +695,24 @@ public class WebAuthnService {
         URL originUrl;
         try {
             originUrl = new URL(appId);
-            RelyingParty relyingParty = buildRelyingParty(originUrl);
-            AssertionRequestWrapper request = new AssertionRequestWrapper(generateRandom(),
-                    relyingParty.startAssertion(StartAssertionOptions.builder().build()));
-            FIDO2Cache.getInstance().addToCacheByRequestWrapperId(
-                    new FIDO2CacheKey(request.getRequestId().getBase64()),
-                    new FIDO2CacheEntry(null, jsonMapper.writeValueAsString(request
-                            .getRequest()), originUrl)
-            );
+            AssertionRequest assertionRequest;
+            String optionsJson;
+            FIDO2AssertionTemplate template = FIDOUtil.isUsernamelessAssertionTemplateEnabled() ?
+                    getUsernamelessAssertionTemplate(originUrl) : null;
+            if (template != null) {
+                ByteArray challenge = generateRandom();
+                assertionRequest = AssertionRequest.builder()
+                        .publicKeyCredentialRequestOptions(template.getOptions(challenge))
+                        .build();
+                optionsJson = template.getOptionsJson(challenge);
+            } else {
+                RelyingParty relyingParty = buildRelyingParty(originUrl);
+                assertionRequest = relyingParty.startAssertion(StartAssertionOptions.builder().build());
+                // Serialize the options once for both the cache and the response.
+                optionsJson = jsonMapper.writeValueAsString(assertionRequest.getPublicKeyCredentialRequestOptions());
+            }
+            AssertionRequestWrapper request = new AssertionRequestWrapper(storeCeremonyState(
+                    buildCeremonyCacheEntry(assertionRequest, optionsJson, originUrl)), assertionRequest, optionsJson);
             return FIDOUtil.writeJson(request);
         } catch (MalformedURLException | JsonProcessingException | FIDO2AuthenticatorServerException e) {
             throw new AuthenticationFailedException("Usernameless authentication initialization failed for the " +
@@ -714,6 +729,7 @@ public class WebAuthnService {
         user.setUserStoreDomain(storeDomain);
 
         final AssertionResponse response;
+        FIDO2CacheEntry cacheEntry = null;
         AssertionRequest request = null;
         RelyingParty relyingParty = null;
 
@@ -728,14 +744,11 @@ public class WebAuthnService {
 
         try {
             response = jsonMapper.readValue(responseJson, AssertionResponse.class);
-            String requestId = response.getRequestId().getBase64();
-            FIDO2CacheEntry cacheEntry = FIDO2Cache.getInstance()
-                    .getValueFromCacheByRequestId(new FIDO2CacheKey(requestId));
+            cacheEntry = consumeCeremonyState(response.getRequestId());
 
             if (cacheEntry != null) {
-                request = jsonMapper.readValue(cacheEntry.getAssertionRequest(), AssertionRequest.class);
+                request = readAssertionRequest(cacheEntry);
                 relyingParty = buildRelyingParty(cacheEntry.getOrigin());
-                FIDO2Cache.getInstance().clearCacheEntryByRequestId(new FIDO2CacheKey(requestId));
             }
         } catch (IOException e) {
             throw new AuthenticationFailedException("Assertion failed! Failed to decode response object.", e);
@@ -748,25 +761,33 @@ public class WebAuthnService {
             try {
                 PublicKeyCredential<AuthenticatorAssertionResponse, ClientAssertionExtensionOutputs> credential
                         = getPublicKeyCredential(response);
-                AssertionResult result = relyingParty.finishAssertion(FinishAssertionOptions.builder()
-                        .request(request).response(credential).build());
+                AssertionResult result;
+                try {
+                    loadAssertionContext(request, response);
+                    result = relyingParty.finishAssertion(FinishAssertionOptions.builder()
+                            .request(request).response(credential).build());
+                } finally {
+                    clearAssertionContext();
+                }
 
                 if (result.isSuccess()) {
+                    if (!markCeremonyStateConsumed(response.getRequestId(), cacheEntry)) {
+                        throw new AuthenticationFailedException("Assertion failed! No such assertion in progress.");
+                    }
                     try {
-                        userStorage.updateFIDO2SignatureCount(result);
+                        getCredentialStore().updateFIDO2SignatureCount(result);
                     } catch (Exception e) {
                         log.error(MessageFormat.format("Failed to update signature count for user \"{0}\", " +
                                 "credential \"{1}\"", result.getUsername(), response
                                 .getCredential().getId()), e);
                     }
-
-                    new SuccessfulAuthenticationResult(request, response, userStorage
-                            .getFIDO2RegistrationsByUsername(result.getUsername()), null);
                 } else {
                     throw new AuthenticationFailedException("Assertion failed: Invalid assertion.");
                 }
             } catch (AssertionFailedException e) {
                 throw new AuthenticationFailedException("Assertion failed!", e);
+            } catch (AuthenticationFailedException e) {
+                throw e;
             } catch (Exception e) {
                 throw new AuthenticationFailedException("Assertion failed unexpectedly; this is likely a bug.", e);
             }
@@ -786,8 +807,7 @@ public class WebAuthnService {
         AuthenticatedUser authenticatedUser = new AuthenticatedUser();
         final AssertionResponse response = getAssertionResponse(responseJson);
         String requestId = response.getRequestId().getBase64();
-        FIDO2CacheEntry cacheEntry =
-                FIDO2Cache.getInstance().getValueFromCacheByRequestId(new FIDO2CacheKey(requestId));
+        FIDO2CacheEntry cacheEntry = consumeCeremonyState(response.getRequestId());
         if (cacheEntry == null) {
             throw new AuthenticationFailedException("Assertion failed! No cache entry can be found for request id: " +
                     requestId);
@@ -800,19 +820,19 @@ public class WebAuthnService {
             throw new AuthenticationFailedException("Server error when building relying party for request ID: ",
                     requestId, e);
         }
-        FIDO2Cache.getInstance().clearCacheEntryByRequestId(new FIDO2CacheKey(requestId));
 
         AssertionResult result = getAssertionResult(request, response, relyingParty);
         if (result.isSuccess()) {
+            if (!markCeremonyStateConsumed(response.getRequestId(), cacheEntry)) {
+                throw new AuthenticationFailedException("Assertion failed! No cache entry can be found for request " +
+                        "id: " + requestId);
+            }
             try {
                 User user = User.getUserFromUserName(result.getUsername());
                 authenticatedUser.setUserName(user.getUserName());
                 authenticatedUser.setTenantDomain(user.getTenantDomain());
                 authenticatedUser.setUserStoreDomain(user.getUserStoreDomain());
-                userStorage.updateFIDO2SignatureCount(result);
-
-                new SuccessfulAuthenticationResult(request, response,
-                        userStorage.getFIDO2RegistrationsByUser(authenticatedUser), null);
+                getCredentialStore().updateFIDO2SignatureCount(result);
             } catch (FIDO2AuthenticatorServerException e) {
                 throw new AuthenticationFailedException("Error in usernameless authentication flow.", e);
             }
@@ -827,7 +847,8 @@ public class WebAuthnService {
     /** @deprecated Please use {@link #getFIDO2DeviceMetaData(String)} instead. */
     public Collection<CredentialRegistration> getDeviceMetaData(String username) {
 
-        return userStorage.getRegistrationsByUsername(User.getUserFromUserName(username).toString());
+        return FIDO2DeviceStoreDAO.getInstance().getRegistrationsByUsername(User.getUserFromUserName(username)
+                .toString());
     }
 
     /**
@@ -840,7 +861,7 @@ public class WebAuthnService {
     public Collection<FIDO2CredentialRegistration> getFIDO2DeviceMetaData(String username) throws
             FIDO2AuthenticatorServerException {
 
-        return userStorage.getFIDO2RegistrationsByUsername(username);
+        return getCredentialStore().getFIDO2RegistrationsByUsername(username);
     }
 
     @Deprecated
@@ -860,11 +881,12 @@ public class WebAuthnService {
 
         User user = User.getUserFromUserName(CarbonContext.getThreadLocalCarbonContext().getUsername());
         user.setTenantDomain(CarbonContext.getThreadLocalCarbonContext().getTenantDomain());
-        Optional<CredentialRegistration> credReg = userStorage.getRegistrationByUsernameAndCredentialId(
-                user.toString(), identifier);
+        Optional<CredentialRegistration> credReg = FIDO2DeviceStoreDAO.getInstance()
+                .getRegistrationByUsernameAndCredentialId(user.toString(), identifier);
 
         if (credReg.isPresent()) {
-            userStorage.removeRegistrationByUsername(user.toString(), credReg.get());
+            FIDO2DeviceStoreDAO.getInstance().removeRegistrationByUsername(user.toString(), credReg.get());
+            invalidateCachedCredentials(user);
         } else {
             throw new IOException("Credential ID not registered:" + credentialId);
         }
@@ -894,11 +916,11 @@ public class WebAuthnService {
         }
 
         User user = User.getUserFromUserName(getTenantQualifiedUsername());
-        Optional<FIDO2CredentialRegistration> credReg = userStorage.getFIDO2RegistrationByUsernameAndCredentialId(user
-                .toString(), identifier);
+        Optional<FIDO2CredentialRegistration> credReg = getCredentialStore()
+                .getFIDO2RegistrationByUsernameAndCredentialId(user.toString(), identifier);
 
         if (credReg.isPresent()) {
-            userStorage.removeFIDO2RegistrationByUsername(user.toString(), credReg.get());
+            getCredentialStore().removeFIDO2RegistrationByUsername(user.toString(), credReg.get());
             AUDIT_LOGGER.printAuditLog(
                     WebAuthnAuditLogger.Operation.DEREGISTER_PASSKEY,
                     user.getUserName(),
@@ -935,11 +957,11 @@ public class WebAuthnService {
         }
 
         User user = User.getUserFromUserName(username);
-        Optional<FIDO2CredentialRegistration> credReg = userStorage.getFIDO2RegistrationByUsernameAndCredentialId(user
-                .toString(), identifier);
+        Optional<FIDO2CredentialRegistration> credReg = getCredentialStore()
+                .getFIDO2RegistrationByUsernameAndCredentialId(user.toString(), identifier);
 
         if (credReg.isPresent()) {
-            userStorage.removeFIDO2RegistrationByUsername(user.toString(), credReg.get());
+            getCredentialStore().removeFIDO2RegistrationByUsername(user.toString(), credReg.get());
             AUDIT_LOGGER.printAuditLog(
                     WebAuthnAuditLogger.Operation.DEREGISTER_PASSKEY,
                     username,
@@ -977,13 +999,13 @@ public class WebAuthnService {
 
         User user = User.getUserFromUserName(getTenantQualifiedUsername());
         Optional<FIDO2CredentialRegistration> credentialRegistration =
-                userStorage.getFIDO2RegistrationByUsernameAndCredentialId(user.toString(), identifier);
+                getCredentialStore().getFIDO2RegistrationByUsernameAndCredentialId(user.toString(), identifier);
 
         if (!credentialRegistration.isPresent()) {
             throw new FIDO2AuthenticatorClientException("Credential ID not registered: " + credentialId,
                     ERROR_CODE_UPDATE_REGISTRATION_CREDENTIAL_UNAVAILABLE.getErrorCode());
         }
-        userStorage.updateFIDO2DeviceDisplayName(user, credentialRegistration.get(), newDisplayName);
+        getCredentialStore().updateFIDO2DeviceDisplayName(user, credentialRegistration.get(), newDisplayName);
     }
 
     public void updateFIDO2DeviceDisplayName(String credentialId, String newDisplayName, String username)
@@ -1004,13 +1026,13 @@ public class WebAuthnService {
 
         User user = User.getUserFromUserName(username);
         Optional<FIDO2CredentialRegistration> credentialRegistration =
-                userStorage.getFIDO2RegistrationByUsernameAndCredentialId(user.toString(), identifier);
+                getCredentialStore().getFIDO2RegistrationByUsernameAndCredentialId(user.toString(), identifier);
 
         if (!credentialRegistration.isPresent()) {
             throw new FIDO2AuthenticatorClientException("Credential ID not registered: " + credentialId,
                     ERROR_CODE_UPDATE_REGISTRATION_CREDENTIAL_UNAVAILABLE.getErrorCode());
         }
-        userStorage.updateFIDO2DeviceDisplayName(user, credentialRegistration.get(), newDisplayName);
+        getCredentialStore().updateFIDO2DeviceDisplayName(user, credentialRegistration.get(), newDisplayName);
     }
 
     /**
@@ -1043,13 +1065,10 @@ public class WebAuthnService {
             IdentityUtil.threadLocalProperties.get().remove(FIDO2_USER);
         }
 
-        ByteArray requestId = generateRandom();
-        FIDO2RegistrationRequest request = new FIDO2RegistrationRequest(requestId, options);
-
-        FIDO2Cache.getInstance().addToCacheByRequestId(
-                new FIDO2CacheKey(requestId.getBase64()),
-                new FIDO2CacheEntry(jsonMapper.writeValueAsString(options), null, originUrl)
-        );
+        // Serialize the options once for both the cache and the response.
+        String optionsJson = jsonMapper.writeValueAsString(options);
+        FIDO2RegistrationRequest request = new FIDO2RegistrationRequest(storeCeremonyState(
+                buildCeremonyCacheEntry(options, optionsJson, originUrl)), options, optionsJson);
 
         return Either.right(request);
     }
@@ -1057,24 +1076,49 @@ public class WebAuthnService {
     private RelyingParty buildRelyingParty(URL originUrl) throws FIDO2AuthenticatorServerException {
 
         readTrustedOrigins();
-        String rpId;
-
-        try {
-            InternetDomainName internetDomainName = InternetDomainName.from(originUrl.getHost());
-            if (Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_RELYING_PARTY_USE_FULL_EFFECTIVE_DOMAIN))
-                    && (internetDomainName.isUnderPublicSuffix())) {
-                rpId = internetDomainName.toString();
-            } else {
-                rpId = internetDomainName.hasPublicSuffix() ? internetDomainName.topPrivateDomain().toString()
-                        : originUrl.getHost();
-            }
-        } catch (IllegalArgumentException e) {
-            if (log.isDebugEnabled()) {
-                log.debug("Invalid domain name: '" + originUrl.getHost()
-                        + "' received for internet domain name creation. Defaulting to origin host.");
+        String rpId = resolveRelyingPartyId(originUrl);
+        if (!FIDOUtil.isRelyingPartyCacheEnabled()) {
+            return addWildcardOrigin(createRelyingParty(rpId), originUrl);
+        }
+
+        String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        FIDO2RelyingPartyCache relyingPartyCache = FIDO2RelyingPartyCache.getInstance();
+        RelyingParty relyingParty = relyingPartyCache.get(tenantDomain, rpId, originMatcher);
+        if (relyingParty == null || relyingParty.getCredentialRepository() != getCredentialStore()) {
+            relyingParty = createRelyingParty(rpId);
+            // Relying parties are kept for trusted origins only, so that arbitrary app IDs cannot grow the cache.
+            if (originMatcher.matches(getOrigin(originUrl))) {
+                relyingPartyCache.put(tenantDomain, rpId, originMatcher, relyingParty);
             }
-            rpId = originUrl.getHost();
         }
+        return addWildcardOrigin(relyingParty, originUrl);
+    }
+
+    /**
+     * Add the origin of a ceremony to the origins of the relying party, if the origin is trusted through a wildcard
+     * trusted origin. The relying party only accepts the origins it is built with.
+     *
+     * @param relyingParty Relying party.
+     * @param originUrl    Origin of the ceremony.
+     * @return Relying party accepting the origin of the ceremony.
+     */
+    private RelyingParty addWildcardOrigin(RelyingParty relyingParty, URL originUrl) {
+
+        String origin = getOrigin(originUrl);
+        if (!originMatcher.matchesWildcardOnly(origin) || relyingParty.getOrigins().contains(origin)) {
+            return relyingParty;
+        }
+        Set<String> relyingPartyOrigins = new HashSet<>(relyingParty.getOrigins());
+        relyingPartyOrigins.add(origin);
+        return relyingParty.toBuilder().origins(relyingPartyOrigins).build();
+    }
+
+    private static String resolveRelyingPartyId(URL originUrl) {
+
+        return FIDO2RelyingPartyIdResolver.getInstance().resolve(originUrl.getHost());
+    }
+
+    private RelyingParty createRelyingParty(String rpId) {
 
         RelyingPartyIdentity rpIdentity = RelyingPartyIdentity.builder().id(rpId).name(APPLICATION_NAME).build();
 
@@ -1085,8 +1129,8 @@ public class WebAuthnService {
 
         return RelyingParty.builder()
                 .identity(rpIdentity)
-                .credentialRepository(userStorage)
-                .origins(new HashSet<String>(origins))
+                .credentialRepository(getCredentialStore())
+                .origins(new HashSet<String>(originMatcher.getRelyingPartyOrigins()))
                 .attestationConveyancePreference(AttestationConveyancePreference.DIRECT)
                 .preferredPubkeyParams(preferredPublicKeyCredentialParameters)
                 .build();
@@ -1116,7 +1160,8 @@ public class WebAuthnService {
                 .signatureCount(response.getCredential().getResponse().getParsedAuthenticatorData()
                         .getSignatureCounter())
                 .build();
-        userStorage.addRegistrationByUsername(userIdentity.getName(), reg);
+        FIDO2DeviceStoreDAO.getInstance().addRegistrationByUsername(userIdentity.getName(), reg);
+        invalidateCachedCredentials(User.getUserFromUserName(userIdentity.getName()));
     }
 
     private void addFIDO2Registration(PublicKeyCredentialCreationOptions publicKeyCredentialCreationOptions,
@@ -1149,11 +1194,188 @@ public class WebAuthnService {
                 .displayName(null)
                 .isUsernamelessSupported(requireResidentKey)
                 .build();
-        userStorage.addFIDO2RegistrationByUsername(userIdentity.getName(), reg);
+        getCredentialStore().addFIDO2RegistrationByUsername(userIdentity.getName(), reg);
+    }
+
+    /**
+     * Keep the state of a ceremony until the ceremony is finished. The state is either stored in the cache against a
+     * random request ID, or sealed into the request ID itself when the stateless challenge mode is enabled.
+     *
+     * @param cacheEntry Ceremony state.
+     * @return Request ID to be returned by the client along with the ceremony response.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    private static ByteArray storeCeremonyState(FIDO2CacheEntry cacheEntry) throws FIDO2AuthenticatorServerException {
+
+        FIDO2SealedChallengeStore sealedChallengeStore = FIDO2SealedChallengeStore.getInstance();
+        if (sealedChallengeStore.isEnabled()) {
+            return sealedChallengeStore.seal(cacheEntry);
+        }
+        ByteArray requestId = generateRandom();
+        FIDO2Cache.getInstance().addToCacheByRequestId(new FIDO2CacheKey(requestId.getBase64()), cacheEntry);
+        return requestId;
+    }
+
+    /**
+     * Retrieve the state of a ceremony and discard it, so that the ceremony cannot be finished more than once. A
+     * sealed state is only opened, and is discarded by {@link #markCeremonyStateConsumed(ByteArray, FIDO2CacheEntry)}
+     * once the ceremony response has been verified.
+     *
+     * @param requestId Request ID returned by the client.
+     * @return Ceremony state or null if there is no such ceremony in progress.
+     */
+    private static FIDO2CacheEntry consumeCeremonyState(ByteArray requestId) {
+
+        FIDO2SealedChallengeStore sealedChallengeStore = FIDO2SealedChallengeStore.getInstance();
+        if (sealedChallengeStore.isEnabled()) {
+            return sealedChallengeStore.open(requestId);
+        }
+        return FIDO2Cache.getInstance().consume(new FIDO2CacheKey(requestId.getBase64()));
+    }
+
+    /**
+     * Discard the state of a ceremony whose response has been verified. A state kept in the cache has already been
+     * discarded when it was retrieved.
+     *
+     * @param requestId  Request ID returned by the client.
+     * @param cacheEntry Ceremony state.
+     * @return True if the ceremony can be completed, false if it has been completed by another request.
+     */
+    private static boolean markCeremonyStateConsumed(ByteArray requestId, FIDO2CacheEntry cacheEntry) {
+
+        FIDO2SealedChallengeStore sealedChallengeStore = FIDO2SealedChallengeStore.getInstance();
+        return !sealedChallengeStore.isEnabled() || sealedChallengeStore.markConsumed(requestId, cacheEntry);
+    }
+
+    /**
+     * Build the cache entry keeping the state of a registration ceremony.
+     *
+     * @param options     Credential creation options sent to the client.
+     * @param optionsJson Serialized credential creation options, or null to serialize them if required.
+     * @param originUrl   Origin of the ceremony.
+     * @return Cache entry.
+     * @throws JsonProcessingException
+     */
+    private FIDO2CacheEntry buildCeremonyCacheEntry(PublicKeyCredentialCreationOptions options, String optionsJson,
+                                                    URL originUrl) throws JsonProcessingException {
+
+        if (FIDOUtil.isCompactCeremonyStateEnabled()) {
+            return new FIDO2CacheEntry(FIDO2CeremonyState.fromCreationOptions(options).encode(), originUrl);
+        }
+        return new FIDO2CacheEntry(optionsJson != null ? optionsJson : jsonMapper.writeValueAsString(options), null,
+                originUrl);
+    }
+
+    /**
+     * Build the cache entry keeping the state of an authentication ceremony.
+     *
+     * @param assertionRequest Assertion request sent to the client.
+     * @param optionsJson      Serialized request options of the assertion request.
+     * @param originUrl        Origin of the ceremony.
+     * @return Cache entry.
+     * @throws JsonProcessingException
+     */
+    private FIDO2CacheEntry buildCeremonyCacheEntry(AssertionRequest assertionRequest, String optionsJson,
+                                                    URL originUrl) throws JsonProcessingException {
+
+        if (FIDOUtil.isCompactCeremonyStateEnabled()) {
+            return new FIDO2CacheEntry(FIDO2CeremonyState.fromAssertionRequest(assertionRequest).encode(), originUrl);
+        }
+        // Compose the assertion request around the serialized options rather than serializing them again.
+        ObjectNode assertionRequestNode = JsonNodeFactory.instance.objectNode();
+        assertionRequestNode.putRawValue("publicKeyCredentialRequestOptions", new RawValue(optionsJson));
+        assertionRequest.getUsername().ifPresent(username -> assertionRequestNode.put("username", username));
+        assertionRequest.getUserHandle().ifPresent(userHandle -> assertionRequestNode.put("userHandle",
+                userHandle.getBase64Url()));
+        return new FIDO2CacheEntry(null, jsonMapper.writeValueAsString(assertionRequestNode), originUrl);
+    }
+
+    /**
+     * Read the credential creation options of a registration ceremony from its cache entry. Entries are read
+     * regardless of the current compact ceremony state configuration, so that ceremonies started before the
+     * configuration was changed can be finished.
+     *
+     * @param cacheEntry   Cache entry of the ceremony.
+     * @param relyingParty Relying party finishing the ceremony.
+     * @return Credential creation options.
+     * @throws IOException If the ceremony state cannot be decoded.
+     */
+    private PublicKeyCredentialCreationOptions readCreationOptions(FIDO2CacheEntry cacheEntry,
+                                                                   RelyingParty relyingParty) throws IOException {
+
+        if (cacheEntry.getCeremonyState() == null) {
+            return jsonMapper.readValue(cacheEntry.getPublicKeyCredentialCreationOptions(),
+                    PublicKeyCredentialCreationOptions.class);
+        }
+        FIDO2CeremonyState ceremonyState = FIDO2CeremonyState.decode(cacheEntry.getCeremonyState());
+        if (!ceremonyState.isRegistration()) {
+            throw new IOException("FIDO2 ceremony state does not belong to a registration.");
+        }
+        return ceremonyState.toCreationOptions(relyingParty.getIdentity(), relyingParty.getPreferredPubkeyParams());
+    }
+
+    /**
+     * Read the assertion request of an authentication ceremony from its cache entry.
+     *
+     * @param cacheEntry Cache entry of the ceremony.
+     * @return Assertion request.
+     * @throws IOException If the ceremony state cannot be decoded.
+     */
+    private AssertionRequest readAssertionRequest(FIDO2CacheEntry cacheEntry) throws IOException {
+
+        if (cacheEntry.getCeremonyState() == null) {
+            return jsonMapper.readValue(cacheEntry.getAssertionRequest(), AssertionRequest.class);
+        }
+        FIDO2CeremonyState ceremonyState = FIDO2CeremonyState.decode(cacheEntry.getCeremonyState());
+        if (ceremonyState.isRegistration()) {
+            throw new IOException("FIDO2 ceremony state does not belong to an authentication.");
+        }
+        return ceremonyState.toAssertionRequest();
+    }
+
+    /**
+     * Get the template of the usernameless authentication ceremonies of an origin, building it if there is none or
+     * the trusted origins have changed since it was built.
+     *
+     * @param originUrl Origin of the ceremony.
+     * @return Assertion template, or null if the origin is not trusted.
+     * @throws FIDO2AuthenticatorServerException If the relying party cannot be built.
+     * @throws JsonProcessingException           If the request options cannot be serialized.
+     */
+    private FIDO2AssertionTemplate getUsernamelessAssertionTemplate(URL originUrl)
+            throws FIDO2AuthenticatorServerException, JsonProcessingException {
+
+        readTrustedOrigins();
+        String origin = getOrigin(originUrl);
+        // Templates are kept for trusted origins only, so that arbitrary app IDs cannot grow the cache.
+        if (!originMatcher.matches(origin)) {
+            return null;
+        }
+        String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        FIDO2AssertionTemplateCache templateCache = FIDO2AssertionTemplateCache.getInstance();
+        FIDO2AssertionTemplate template = templateCache.get(tenantDomain, origin,
+                originMatcher.getRelyingPartyOrigins());
+        if (template == null) {
+            AssertionRequest assertionRequest = buildRelyingParty(originUrl)
+                    .startAssertion(StartAssertionOptions.builder().build());
+            template = FIDO2AssertionTemplate.create(assertionRequest.getPublicKeyCredentialRequestOptions(),
+                    jsonMapper, originMatcher.getRelyingPartyOrigins());
+            templateCache.put(tenantDomain, origin, template);
+        }
+        return template;
+    }
+
+    private static String getOrigin(URL originUrl) {
+
+        return originUrl.getProtocol() + "://" + originUrl.getAuthority();
     }
 
     private static ByteArray generateRandom() {
 
+        FIDO2RandomPool randomPool = FIDO2AuthenticatorServiceDataHolder.getInstance().getRandomPool();
+        if (randomPool != null) {
+            return new ByteArray(randomPool.next());
+        }
         byte[] bytes = new byte[WebAuthnService.USER_HANDLE_LENGTH];
         random.nextBytes(bytes);
         return new ByteArray(bytes);
@@ -1249,7 +1471,7 @@ public class WebAuthnService {
 
     private UserIdentity buildUserIdentity(User user) throws FIDO2AuthenticatorServerException {
 
-        ByteArray userHandle = FIDO2DeviceStoreDAO.getInstance().getUserHandleForUsername(user.toString())
+        ByteArray userHandle = getCredentialStore().getUserHandleForUsername(user.toString())
                 .orElseGet(WebAuthnService::generateRandom);
         return UserIdentity.builder().name(user.getUserName()).displayName(getUserDisplayName(user))
                 .id(userHandle).build();
@@ -1257,7 +1479,7 @@ public class WebAuthnService {
 
     private UserIdentity buildUserIdentity(User user, String displayName) {
 
-        ByteArray userHandle = userStorage.getUserHandleForUsername(user.toString())
+        ByteArray userHandle = getCredentialStore().getUserHandleForUsername(user.toString())
                 .orElseGet(WebAuthnService::generateRandom);
         return UserIdentity.builder()
                 .name(user.getUserName())
@@ -1272,56 +1494,30 @@ public class WebAuthnService {
         return user;
     }
 
+    /**
+     * Read the trusted origins of the tenant, compiling their matcher if the trusted origins have changed since it was
+     * last compiled.
+     *
+     * @throws FIDO2AuthenticatorServerException If the trusted origins cannot be read.
+     */
     private void readTrustedOrigins() throws FIDO2AuthenticatorServerException {
 
-        origins = new ArrayList<>();
-        String[] trustedOriginsFromDB = null;
+        List<String> trustedOriginsFromDB;
         try {
             trustedOriginsFromDB = getFIDO2TrustedOrigins();
         } catch (FIDO2AuthenticatorServerException e) {
             throw new FIDO2AuthenticatorServerException("Error when retrieving trusted origins from DB.", e);
         }
-        if (trustedOriginsFromDB != null) {
-            origins.addAll(Arrays.asList(trustedOriginsFromDB));
-        }
-        Object value = IdentityConfigParser.getInstance().getConfiguration().get(TRUSTED_ORIGINS);
-        if (value instanceof ArrayList) {
-            origins.addAll((ArrayList) value);
-        } else if (value instanceof String) {
-            origins.add((String) value);
-        }
-        origins.replaceAll(IdentityUtil::fillURLPlaceholders);
-
-        /*
-         * Process the list of origins to ensure all variations are covered:
-         * 1. For each origin, remove the default ports (443 for HTTPS and 80 for HTTP) if they are explicitly
-         *    specified.
-         * 2. Then, for each origin, add variations with the default ports explicitly appended.
-         * 3. This ensures that the list contains both versions of each origin (with and without default ports),
-         *    accommodating scenarios where the default port might be omitted or explicitly included in the origin
-         * string.
-         */
-        List<String> updatedOrigins = origins.stream()
-                .flatMap(url -> Stream.of(removeDefaultPort(url), appendDefaultPortIfAbsent(url))).distinct()
-                .collect(Collectors.toList());
-
-        origins.clear();
-        origins.addAll(updatedOrigins);
-    }
-
-    private String removeDefaultPort(String url) {
-
-        return url.replaceAll(":(443|80)(/|$)", "$2");
-    }
-
-    private String appendDefaultPortIfAbsent(String url) {
+        Object trustedOriginsFromFile = IdentityConfigParser.getInstance().getConfiguration().get(TRUSTED_ORIGINS);
 
-        if (url.matches("^https://[^/:]+($|/)")) {
-            return url + ":443";
-        } else if (url.matches("^http://[^/:]+($|/)")) {
-            return url + ":80";
+        String tenantDomain = String.valueOf(CarbonContext.getThreadLocalCarbonContext().getTenantDomain());
+        FIDO2OriginMatcher matcher = originMatchers.get(tenantDomain);
+        if (matcher == null || !matcher.isCompiledFrom(trustedOriginsFromDB, trustedOriginsFromFile)) {
+            matcher = FIDO2OriginMatcher.compile(trustedOriginsFromDB, trustedOriginsFromFile,
+                    IdentityUtil::fillURLPlaceholders);
+            originMatchers.put(tenantDomain, matcher);
         }
-        return url;
+        originMatcher = matcher;
     }
 
     private AssertionResult getAssertionResult(AssertionRequest request, AssertionResponse response,
@@ -1331,6 +1527,7 @@ public class WebAuthnService {
             PublicKeyCredential<AuthenticatorAssertionResponse, ClientAssertionExtensionOutputs> credential =
                     getPublicKeyCredential(response);
 
+            loadAssertionContext(request, response);
             return relyingParty.finishAssertion(FinishAssertionOptions.builder()
                     .request(request).response(credential).build());
         } catch (AssertionFailedException e) {
@@ -1341,9 +1538,56 @@ public class WebAuthnService {
                     "assertion result.", e);
         } catch (Exception e) {
             throw new AuthenticationFailedException("Assertion failed unexpectedly; this is likely a bug.", e);
+        } finally {
+            clearAssertionContext();
         }
     }
 
+    /**
+     * Load the stored credential used in the assertion response into a thread local property, so that the
+     * credential repository lookups made while finishing the assertion are served by a single query. Authenticators
+     * of non resident credentials usually omit the user handle, in which case the credential of the requested
+     * username is selected by the same query, as the same credential ID may be registered for more than one user
+     * handle.
+     *
+     * @param request  Assertion request.
+     * @param response Assertion response.
+     * @throws FIDO2AuthenticatorServerException If an error occurred while retrieving the stored credential.
+     */
+    private void loadAssertionContext(AssertionRequest request, AssertionResponse response)
+            throws FIDO2AuthenticatorServerException {
+
+        ByteArray userHandle = response.getCredential().getResponse().getUserHandle()
+                .filter(responseUserHandle -> !responseUserHandle.getBase64().isEmpty())
+                .orElse(null);
+        getCredentialStore().getAssertionContext(response.getCredential().getId(), userHandle,
+                request.getUsername().orElse(null))
+                .ifPresent(assertionContext ->
+                        IdentityUtil.threadLocalProperties.get().put(FIDO2_ASSERTION_CONTEXT, assertionContext));
+    }
+
+    private static FIDO2CredentialStore getCredentialStore() {
+
+        return FIDO2AuthenticatorServiceDataHolder.getInstance().getCredentialStore();
+    }
+
+    /*
+    Invalidate the entries cached for a user whose registrations are modified by the deprecated methods, which write
+    to the database store directly rather than through the configured credential store.
+    */
+    private static void invalidateCachedCredentials(User user) {
+
+        FIDO2CredentialStore credentialStore = getCredentialStore();
+        if (credentialStore instanceof FIDO2CachingCredentialStore) {
+            ((FIDO2CachingCredentialStore) credentialStore).invalidateUser(user);
+        }
+    }
+
+    private void clearAssertionContext() {
+
+        IdentityUtil.threadLocalProperties.get().remove(FIDO2_ASSERTION_CONTEXT);
+    }
+
     private PublicKeyCredential<AuthenticatorAssertionResponse, ClientAssertionExtensionOutputs> getPublicKeyCredential
             (AssertionResponse response) throws IOException, Base64UrlException {
 
@@ -1398,7 +1642,7 @@ public class WebAuthnService {
 
         AssertionRequest request;
         try {
-            request = jsonMapper.readValue(cacheEntry.getAssertionRequest(), AssertionRequest.class);
+            request = readAssertionRequest(cacheEntry);
         } catch (IOException e) {
             throw new AuthenticationFailedException("Assertion for finish authentication flow failed due to failure " +
                     "in decoding assertion request object.", e);
@@ -1411,7 +1655,7 @@ public class WebAuthnService {
             FIDO2AuthenticatorServerException {
 
         readTrustedOrigins();
-        if (!origins.contains(origin.trim())) {
+        if (!originMatcher.matches(origin)) {
             throw new FIDO2AuthenticatorClientException(INVALID_ORIGIN_MESSAGE,
                     ERROR_CODE_START_REGISTRATION_INVALID_ORIGIN.getErrorCode());
         }
@@ -1497,6 +1741,44 @@ public class WebAuthnService {
 
     private FIDO2Configuration getAuthenticatorConfigs() throws FIDO2AuthenticatorServerException {
 
+        if (FIDOUtil.isConfigurationCacheEnabled()) {
+            return getConfigurationSnapshot();
+        }
+        return loadAuthenticatorConfigs();
+    }
+
+    private List<String> getFIDO2TrustedOrigins() throws FIDO2AuthenticatorServerException {
+
+        if (FIDOUtil.isConfigurationCacheEnabled()) {
+            return getConfigurationSnapshot().getTrustedOrigins();
+        }
+        return loadFIDO2TrustedOrigins();
+    }
+
+    /**
+     * Get the configuration snapshot of the tenant, reading the configurations if the tenant has no valid snapshot.
+     *
+     * @return Configuration snapshot.
+     * @throws FIDO2AuthenticatorServerException If the configurations cannot be read.
+     */
+    private FIDO2Configuration getConfigurationSnapshot() throws FIDO2AuthenticatorServerException {
+
+        String tenantDomain = String.valueOf(CarbonContext.getThreadLocalCarbonContext().getTenantDomain());
+        FIDO2ConfigurationCache configurationCache = FIDO2ConfigurationCache.getInstance();
+        FIDO2Configuration configuration = configurationCache.get(tenantDomain);
+        if (configuration == null) {
+            FIDO2Configuration validations = loadAuthenticatorConfigs();
+            configuration = new FIDO2Configuration(validations.isAttestationValidationEnabled(),
+                    validations.isMdsValidationEnabled(), loadFIDO2TrustedOrigins());
+            configurationCache.put(tenantDomain, configuration);
+            // Relying parties built from the previous snapshot are rebuilt with the reloaded configurations.
+            FIDO2RelyingPartyCache.getInstance().invalidate(tenantDomain);
+        }
+        return configuration;
+    }
+
+    private FIDO2Configuration loadAuthenticatorConfigs() throws FIDO2AuthenticatorServerException {
+
         boolean attestationValidationEnabled;
         boolean mdsValidationEnabled;
 
@@ -1565,15 +1847,15 @@ public class WebAuthnService {
         return new FIDO2Configuration(attestationValidationEnabled, mdsValidationEnabled);
     }
 
-    private String[] getFIDO2TrustedOrigins() throws FIDO2AuthenticatorServerException {
+    private List<String> loadFIDO2TrustedOrigins() throws FIDO2AuthenticatorServerException {
 
-        String[] fidoTrustedOrigins = null;
+        List<String> fidoTrustedOrigins = null;
         try {
             String trustedOriginsFromDB = FIDO2AuthenticatorServiceDataHolder.getInstance().getConfigurationManager()
                     .getAttribute(FIDO_CONFIG_RESOURCE_TYPE_NAME, FIDO2_CONNECTOR_CONFIG_RESOURCE_NAME,
                             FIDO2_CONFIG_TRUSTED_ORIGIN_ATTRIBUTE_NAME).getValue();
             if (StringUtils.isNotBlank(trustedOriginsFromDB)) {
-                fidoTrustedOrigins = trustedOriginsFromDB.split(",");
+                fidoTrustedOrigins = Arrays.asList(trustedOriginsFromDB.split(","));
             }
         } catch (ConfigurationManagementException e) {
             if (Objects.equals(e.getErrorCode(), ERROR_CODE_ATTRIBUTE_DOES_NOT_EXISTS.getCode())) {
@@ -1602,7 +1884,7 @@ public class WebAuthnService {
     public boolean isFidoKeyRegistered(String username) throws AuthenticationFailedException {
 
         try {
-            return !userStorage.getFIDO2RegistrationsByUsername(username).isEmpty();
+            return getCredentialStore().hasFIDO2Registrations(User.getUserFromUserName(username));
         } catch (FIDO2AuthenticatorServerException e) {
             throw new AuthenticationFailedException(e.getMessage());
         }
@@ -1611,7 +1893,7 @@ public class WebAuthnService {
     public boolean isFidoKeyRegistered(AuthenticatedUser authenticatedUser) throws AuthenticationFailedException {
 
         try {
-            return !userStorage.getFIDO2RegistrationsByUser(authenticatedUser).isEmpty();
+            return getCredentialStore().hasFIDO2Registrations(authenticatedUser);
         } catch (FIDO2AuthenticatorServerException e) {
             throw new AuthenticationFailedException(e.getMessage());
         }
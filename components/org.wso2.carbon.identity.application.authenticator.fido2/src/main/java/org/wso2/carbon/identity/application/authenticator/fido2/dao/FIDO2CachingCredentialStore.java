@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dao;
+
+import com.yubico.webauthn.AssertionResult;
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CredentialCache;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CredentialRegistration;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2StoredCredential;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.application.common.model.User;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FIDO2 credential store decorator caching the credential descriptors of users and the owners of user handles, which
+ * are read to start assertions, and the key material of credentials, which is read to finish assertions. This is the
+ * only caching layer in front of the credential stores.
+ *
+ * The signature count of a cached credential is read from the delegate on each assertion through the primary key,
+ * and a credential found removed there is dropped from the cache. Registrations are always read from the delegate.
+ * Writes made through the decorator invalidate the affected users. Empty results are not cached, hence registrations
+ * added on other nodes are visible immediately.
+ *
+ * User handles and credentials are looked up before their owner is known, hence they are cached, read and invalidated
+ * under the tenant of the request, which may differ from the tenant of the owner. They are also indexed by the owner,
+ * so that invalidating the owner drops them in every tenant.
+ */
+public class FIDO2CachingCredentialStore implements FIDO2CredentialStore {
+
+    private final FIDO2CredentialStore delegate;
+    private final FIDO2CredentialCache credentialCache;
+
+    /**
+     * @param delegate Store serving the cache misses and the writes.
+     * @param capacity Maximum number of users, user handles and credentials, each, kept in the cache.
+     * @param timeout  Time in seconds after which cache entries expire.
+     */
+    public FIDO2CachingCredentialStore(FIDO2CredentialStore delegate, int capacity, int timeout) {
+
+        this.delegate = delegate;
+        this.credentialCache = new FIDO2CredentialCache(capacity, TimeUnit.SECONDS.toMillis(Math.max(1, timeout)));
+    }
+
+    public FIDO2CredentialStore getDelegate() {
+
+        return delegate;
+    }
+
+    public FIDO2CredentialCache getCredentialCache() {
+
+        return credentialCache;
+    }
+
+    @Override
+    public Set<PublicKeyCredentialDescriptor> getCredentialIdsForUsername(String username) {
+
+        User user = getThreadLocalUser(username);
+        int tenantId = IdentityTenantUtil.getTenantId(user.getTenantDomain());
+        Set<PublicKeyCredentialDescriptor> credentialIds = credentialCache.getCredentialDescriptors(tenantId,
+                user.getUserStoreDomain(), user.getUserName());
+        if (credentialIds == null) {
+            credentialIds = delegate.getCredentialIdsForUsername(username);
+            if (!credentialIds.isEmpty()) {
+                credentialCache.addCredentialDescriptors(tenantId, user.getUserStoreDomain(), user.getUserName(),
+                        credentialIds);
+            }
+        }
+        return credentialIds;
+    }
+
+    @Override
+    public Optional<ByteArray> getUserHandleForUsername(String username) {
+
+        return delegate.getUserHandleForUsername(username);
+    }
+
+    @Override
+    public Optional<String> getUsernameForUserHandle(ByteArray userHandle) {
+
+        int tenantId = getRequestTenantId();
+        String cachedUsername = credentialCache.getUsername(tenantId, userHandle);
+        if (cachedUsername != null) {
+            return Optional.of(cachedUsername);
+        }
+        Optional<String> username = delegate.getUsernameForUserHandle(userHandle);
+        if (username.isPresent()) {
+            User user = User.getUserFromUserName(username.get());
+            credentialCache.addUsername(tenantId, userHandle, IdentityTenantUtil.getTenantId(user.getTenantDomain()),
+                    user.getUserStoreDomain(), user.getUserName(), username.get());
+        }
+        return username;
+    }
+
+    @Override
+    public Optional<RegisteredCredential> lookup(ByteArray credentialId, ByteArray userHandle) {
+
+        return delegate.lookup(credentialId, userHandle);
+    }
+
+    @Override
+    public Set<RegisteredCredential> lookupAll(ByteArray credentialId) {
+
+        return delegate.lookupAll(credentialId);
+    }
+
+    @Override
+    public Optional<FIDO2StoredCredential> getAssertionContext(ByteArray credentialId, ByteArray userHandle,
+                                                               String username)
+            throws FIDO2AuthenticatorServerException {
+
+        int tenantId = getRequestTenantId();
+        FIDO2StoredCredential cachedCredential = credentialCache.getCredential(tenantId, credentialId);
+        // The cache holds a single owner per credential ID, hence it is not used to resolve an unknown user handle.
+        if (cachedCredential != null && userHandle != null &&
+                cachedCredential.getCredential().getUserHandle().equals(userHandle)) {
+            RegisteredCredential credential = cachedCredential.getCredential();
+            Optional<Long> signatureCount = delegate.getSignatureCount(credentialId, credential.getUserHandle());
+            if (signatureCount.isPresent()) {
+                return Optional.of(new FIDO2StoredCredential(cachedCredential.getTenantId(),
+                        cachedCredential.getUserStoreDomain(), cachedCredential.getUsername(),
+                        RegisteredCredential.builder()
+                                .credentialId(credential.getCredentialId())
+                                .userHandle(credential.getUserHandle())
+                                .publicKeyCose(credential.getPublicKeyCose())
+                                .signatureCount(signatureCount.get())
+                                .build()));
+            }
+            // The credential was removed without going through this node.
+            credentialCache.invalidateUser(cachedCredential.getTenantId(), cachedCredential.getUserStoreDomain(),
+                    cachedCredential.getUsername());
+        }
+        Optional<FIDO2StoredCredential> storedCredential = delegate.getAssertionContext(credentialId, userHandle,
+                username);
+        storedCredential.ifPresent(credential -> credentialCache.addCredential(tenantId, credential));
+        return storedCredential;
+    }
+
+    @Override
+    public Optional<Long> getSignatureCount(ByteArray credentialId, ByteArray userHandle)
+            throws FIDO2AuthenticatorServerException {
+
+        return delegate.getSignatureCount(credentialId, userHandle);
+    }
+
+    @Override
+    public void addFIDO2RegistrationByUsername(String username, FIDO2CredentialRegistration reg)
+            throws FIDO2AuthenticatorServerException {
+
+        try {
+            delegate.addFIDO2RegistrationByUsername(username, reg);
+        } finally {
+            invalidateUser(getThreadLocalUser(username));
+            // A credential ID registered for another user handle is no longer unambiguous.
+            credentialCache.invalidateCredential(getRequestTenantId(), reg.getCredential().getCredentialId());
+        }
+    }
+
+    @Override
+    public Collection<FIDO2CredentialRegistration> getFIDO2RegistrationsByUsername(String username)
+            throws FIDO2AuthenticatorServerException {
+
+        return delegate.getFIDO2RegistrationsByUsername(username);
+    }
+
+    @Override
+    public Collection<FIDO2CredentialRegistration> getFIDO2RegistrationsByUser(User user)
+            throws FIDO2AuthenticatorServerException {
+
+        return delegate.getFIDO2RegistrationsByUser(user);
+    }
+
+    @Override
+    public boolean hasFIDO2Registrations(User user) throws FIDO2AuthenticatorServerException {
+
+        Set<PublicKeyCredentialDescriptor> credentialIds = credentialCache.getCredentialDescriptors(
+                IdentityTenantUtil.getTenantId(user.getTenantDomain()), user.getUserStoreDomain(),
+                user.getUserName());
+        if (credentialIds != null && !credentialIds.isEmpty()) {
+            return true;
+        }
+        return delegate.hasFIDO2Registrations(user);
+    }
+
+    @Override
+    public Optional<FIDO2CredentialRegistration> getFIDO2RegistrationByUsernameAndCredentialId(
+            String username, ByteArray credentialId) throws FIDO2AuthenticatorServerException {
+
+        return delegate.getFIDO2RegistrationByUsernameAndCredentialId(username, credentialId);
+    }
+
+    @Override
+    public void removeFIDO2RegistrationByUsername(String username, FIDO2CredentialRegistration registration)
+            throws FIDO2AuthenticatorServerException {
+
+        try {
+            delegate.removeFIDO2RegistrationByUsername(username, registration);
+        } finally {
+            invalidateUser(User.getUserFromUserName(username));
+        }
+    }
+
+    @Override
+    public void updateFIDO2DeviceDisplayName(User user, FIDO2CredentialRegistration registration,
+                                             String newDisplayName) throws FIDO2AuthenticatorServerException {
+
+        try {
+            delegate.updateFIDO2DeviceDisplayName(user, registration, newDisplayName);
+        } finally {
+            invalidateUser(user);
+        }
+    }
+
+    @Override
+    public void updateFIDO2SignatureCountByUsername(String username, FIDO2CredentialRegistration reg)
+            throws FIDO2AuthenticatorServerException {
+
+        delegate.updateFIDO2SignatureCountByUsername(username, reg);
+    }
+
+    @Override
+    public void updateFIDO2SignatureCount(AssertionResult result) throws FIDO2AuthenticatorServerException {
+
+        delegate.updateFIDO2SignatureCount(result);
+    }
+
+    @Override
+    public void updateDomainNameOfRegistration(int tenantId, String currentUserStoreName, String newUserStoreName)
+            throws FIDO2AuthenticatorServerException {
+
+        try {
+            delegate.updateDomainNameOfRegistration(tenantId, currentUserStoreName, newUserStoreName);
+        } finally {
+            credentialCache.invalidateUserStore(tenantId, currentUserStoreName);
+            credentialCache.invalidateUserStore(tenantId, newUserStoreName);
+        }
+    }
+
+    @Override
+    public void deleteRegistrationFromDomain(int tenantId, String userStoreName)
+            throws FIDO2AuthenticatorServerException {
+
+        try {
+            delegate.deleteRegistrationFromDomain(tenantId, userStoreName);
+        } finally {
+            credentialCache.invalidateUserStore(tenantId, userStoreName);
+        }
+    }
+
+    @Override
+    public void deleteRegistrationsForUser(String username, String userStoreName, int tenantId)
+            throws FIDO2AuthenticatorServerException {
+
+        try {
+            delegate.deleteRegistrationsForUser(username, userStoreName, tenantId);
+        } finally {
+            credentialCache.invalidateUser(tenantId, userStoreName, username);
+        }
+    }
+
+    /**
+     * Invalidate the cached entries of a user whose registrations are modified without going through the decorator.
+     *
+     * @param user User.
+     */
+    public void invalidateUser(User user) {
+
+        credentialCache.invalidateUser(IdentityTenantUtil.getTenantId(user.getTenantDomain()),
+                user.getUserStoreDomain(), user.getUserName());
+    }
+
+    public void clear() {
+
+        credentialCache.clear();
+    }
+
+    private static int getRequestTenantId() {
+
+        return CarbonContext.getThreadLocalCarbonContext().getTenantId();
+    }
+
+    /*
+    Get the user object from a thread local property since the available username is not fully qualified to
+    rebuild the user object properly.
+    */
+    private static User getThreadLocalUser(String username) {
+
+        User user = (User) IdentityUtil.threadLocalProperties.get().get(FIDO2AuthenticatorConstants.FIDO2_USER);
+        if (user == null) {
+            user = User.getUserFromUserName(username);
+        }
+        return user;
+    }
+}
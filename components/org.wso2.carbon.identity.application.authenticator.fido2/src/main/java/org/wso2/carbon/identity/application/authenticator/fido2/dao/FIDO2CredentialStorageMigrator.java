@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dao;
+
+import com.yubico.webauthn.data.ByteArray;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Populates the optional credential columns of the existing FIDO2 registrations: the binary credential columns and
+ * the credential ID hash.
+ *
+ * Registrations are read in batches ordered by the primary key, and each batch is written and committed before the
+ * next one is read. Only registrations without the migrated columns are selected, hence an interrupted migration
+ * resumes from where it stopped when it is run again.
+ */
+public class FIDO2CredentialStorageMigrator {
+
+    private static final Log log = LogFactory.getLog(FIDO2CredentialStorageMigrator.class);
+
+    private final int batchSize;
+    private final boolean migrateBinaryColumns;
+    private final boolean migrateCredentialIdHash;
+    private volatile boolean stopped;
+    private ExecutorService executor;
+
+    /**
+     * @param batchSize               Number of registrations migrated in a transaction.
+     * @param migrateBinaryColumns    Whether to populate the binary credential columns.
+     * @param migrateCredentialIdHash Whether to populate the credential ID hash column.
+     */
+    public FIDO2CredentialStorageMigrator(int batchSize, boolean migrateBinaryColumns,
+                                          boolean migrateCredentialIdHash) {
+
+        this.batchSize = Math.max(1, batchSize);
+        this.migrateBinaryColumns = migrateBinaryColumns;
+        this.migrateCredentialIdHash = migrateCredentialIdHash;
+    }
+
+    /**
+     * Run the migration in the background.
+     */
+    public synchronized void start() {
+
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor();
+        executor.execute(() -> {
+            try {
+                long migratedCount = migrate();
+                log.info("Credential columns are populated for " + migratedCount + " FIDO2 registrations.");
+            } catch (FIDO2AuthenticatorServerException e) {
+                log.error("Error while populating the credential columns of FIDO2 registrations. The migration " +
+                        "will be resumed on the next startup.", e);
+            }
+        });
+    }
+
+    /**
+     * Stop the migration after the batch being migrated.
+     */
+    public synchronized void shutdown() {
+
+        stopped = true;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Populate the credential columns of the registrations which are not migrated yet.
+     *
+     * @return Number of migrated registrations.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    public long migrate() throws FIDO2AuthenticatorServerException {
+
+        long migratedCount = 0;
+        if (migrateBinaryColumns) {
+            migratedCount += migrate(FIDO2AuthenticatorConstants.SQLQueries.GET_REGISTRATIONS_WITHOUT_BINARY_COLUMNS,
+                    FIDO2AuthenticatorConstants.SQLQueries.UPDATE_BINARY_COLUMNS_QUERY);
+        }
+        if (migrateCredentialIdHash) {
+            migratedCount += migrate(FIDO2AuthenticatorConstants.SQLQueries
+                    .GET_REGISTRATIONS_WITHOUT_CREDENTIAL_ID_HASH, FIDO2AuthenticatorConstants.SQLQueries
+                    .UPDATE_CREDENTIAL_ID_HASH_QUERY);
+        }
+        return migratedCount;
+    }
+
+    private long migrate(String selectQuery, String updateQuery) throws FIDO2AuthenticatorServerException {
+
+        long migratedCount = 0;
+        String lastCredentialId = "";
+        String lastUserHandle = "";
+        try {
+            while (!stopped) {
+                List<Registration> registrations = getRegistrations(selectQuery, lastCredentialId, lastUserHandle);
+                if (registrations.isEmpty()) {
+                    break;
+                }
+                migratedCount += updateRegistrations(updateQuery, registrations);
+                Registration lastRegistration = registrations.get(registrations.size() - 1);
+                lastCredentialId = lastRegistration.credentialId;
+                lastUserHandle = lastRegistration.userHandle;
+                if (log.isDebugEnabled()) {
+                    log.debug("Populated the credential columns of " + migratedCount + " FIDO2 registrations.");
+                }
+            }
+        } catch (SQLException e) {
+            throw new FIDO2AuthenticatorServerException("Server error occurred while populating the credential " +
+                    "columns of FIDO2 registrations.", e);
+        }
+        return migratedCount;
+    }
+
+    private List<Registration> getRegistrations(String selectQuery, String lastCredentialId, String lastUserHandle)
+            throws SQLException {
+
+        List<Registration> registrations = new ArrayList<>();
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(selectQuery)) {
+            preparedStatement.setMaxRows(batchSize);
+            preparedStatement.setString(1, lastCredentialId);
+            preparedStatement.setString(2, lastCredentialId);
+            preparedStatement.setString(3, lastUserHandle);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    registrations.add(new Registration(
+                            resultSet.getString(FIDO2AuthenticatorConstants.CREDENTIAL_ID),
+                            resultSet.getString(FIDO2AuthenticatorConstants.USER_HANDLE),
+                            resultSet.getString(FIDO2AuthenticatorConstants.PUBLIC_KEY_COSE)));
+                }
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+        return registrations;
+    }
+
+    private int updateRegistrations(String updateQuery, List<Registration> registrations) throws SQLException {
+
+        int updateCount = 0;
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(updateQuery)) {
+            for (Registration registration : registrations) {
+                int parameterIndex = 1;
+                try {
+                    ByteArray credentialId = ByteArray.fromBase64(registration.credentialId);
+                    if (FIDO2AuthenticatorConstants.SQLQueries.UPDATE_BINARY_COLUMNS_QUERY.equals(updateQuery)) {
+                        preparedStatement.setBytes(parameterIndex++, ByteArray.fromBase64(registration.userHandle)
+                                .getBytes());
+                        preparedStatement.setBytes(parameterIndex++, credentialId.getBytes());
+                        preparedStatement.setBytes(parameterIndex++, ByteArray.fromBase64(registration.publicKeyCose)
+                                .getBytes());
+                    } else {
+                        preparedStatement.setLong(parameterIndex++, FIDO2DeviceStoreDAO.getCredentialIdHash(
+                                credentialId));
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Skip the registration; it keeps being served from the base64 encoded columns.
+                    log.warn("Unable to decode the FIDO2 registration with credential ID: " +
+                            registration.credentialId + ". The registration is not migrated.");
+                    continue;
+                }
+                preparedStatement.setString(parameterIndex++, registration.credentialId);
+                preparedStatement.setString(parameterIndex, registration.userHandle);
+                preparedStatement.addBatch();
+                updateCount++;
+            }
+            if (updateCount > 0) {
+                preparedStatement.executeBatch();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+        return updateCount;
+    }
+
+    private static final class Registration {
+
+        private final String credentialId;
+        private final String userHandle;
+        private final String publicKeyCose;
+
+        private Registration(String credentialId, String userHandle, String publicKeyCose) {
+
+            this.credentialId = credentialId;
+            this.userHandle = userHandle;
+            this.publicKeyCose = publicKeyCose;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dao;
+
+import com.yubico.webauthn.AssertionResult;
+import com.yubico.webauthn.CredentialRepository;
+import com.yubico.webauthn.data.ByteArray;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CredentialRegistration;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2StoredCredential;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2DuplicateRegistrationException;
+import org.wso2.carbon.identity.application.common.model.User;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Store of FIDO2 credential registrations. Along with the lookups required by the relying party, the store covers
+ * the registration management operations of the FIDO2 authenticator.
+ *
+ * The store in use is selected through the identity configuration and registered as an OSGi service.
+ */
+public interface FIDO2CredentialStore extends CredentialRepository {
+
+    /**
+     * Retrieve the public key, signature count and the owner of a credential, to be used while finishing an
+     * assertion.
+     *
+     * @param credentialId Credential ID.
+     * @param userHandle   User handle of the assertion, or null if it is not known.
+     * @param username     Username of the assertion request, used to select the credential when no user handle is
+     *                     given, or null if it is not known.
+     * @return Stored credential matching the credential ID and the user handle, or the username when no user handle
+     * is given. Empty if neither is given and the credential ID is registered for more than one user handle.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    Optional<FIDO2StoredCredential> getAssertionContext(ByteArray credentialId, ByteArray userHandle, String username)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Retrieve the current signature count of a credential, without its key material.
+     *
+     * @param credentialId Credential ID.
+     * @param userHandle   User handle of the credential.
+     * @return Signature count, or empty if the credential is not registered.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    Optional<Long> getSignatureCount(ByteArray credentialId, ByteArray userHandle)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Persists FIDO2 device registration details against the username. The store is expected to reject a credential
+     * which is already registered, instead of the callers checking for it before the registration is added.
+     *
+     * @param username Username.
+     * @param reg      FIDO2 credentials.
+     * @throws FIDO2DuplicateRegistrationException If a registration already exists for the credential.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    void addFIDO2RegistrationByUsername(String username, FIDO2CredentialRegistration reg)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Retrieve FIDO2 registration details via the username.
+     *
+     * @param username Username.
+     * @return A collection of FIDO2 registrations available for a user.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    Collection<FIDO2CredentialRegistration> getFIDO2RegistrationsByUsername(String username)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Retrieve FIDO2 registration details.
+     *
+     * @param user User.
+     * @return A collection of FIDO2 registrations available for a user.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    Collection<FIDO2CredentialRegistration> getFIDO2RegistrationsByUser(User user)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Check whether the user has any FIDO2 registration, without retrieving the registrations.
+     *
+     * @param user User.
+     * @return True if at least one FIDO2 registration is available for the user.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    boolean hasFIDO2Registrations(User user) throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Retrieve FIDO2 device registration information matching a particular username and credential ID.
+     *
+     * @param username     Username.
+     * @param credentialId Credential ID.
+     * @return FIDO2 registrations for a given username and credential ID combination.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    Optional<FIDO2CredentialRegistration> getFIDO2RegistrationByUsernameAndCredentialId(String username,
+                                                                                       ByteArray credentialId)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Deregister FIDO2 device for a user.
+     *
+     * @param username     Username.
+     * @param registration FIDO2 credentials.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    void removeFIDO2RegistrationByUsername(String username, FIDO2CredentialRegistration registration)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Update display name of a registered device.
+     *
+     * @param user           User.
+     * @param registration   FIDO2 Credential Registration.
+     * @param newDisplayName New display name to be updated.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    void updateFIDO2DeviceDisplayName(User user, FIDO2CredentialRegistration registration, String newDisplayName)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Updates FIDO2 signature count against the username.
+     *
+     * @param username Username.
+     * @param reg      FIDO2 credentials.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    void updateFIDO2SignatureCountByUsername(String username, FIDO2CredentialRegistration reg)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Updates FIDO2 signature count.
+     *
+     * @param result Assertion result.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    void updateFIDO2SignatureCount(AssertionResult result) throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Move the registrations of a userstore domain to a renamed domain.
+     *
+     * @param tenantId             Tenant ID.
+     * @param currentUserStoreName Current userstore domain.
+     * @param newUserStoreName     New userstore domain.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    void updateDomainNameOfRegistration(int tenantId, String currentUserStoreName, String newUserStoreName)
+            throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Delete all device registrations of a userstore domain.
+     *
+     * @param tenantId      Tenant ID.
+     * @param userStoreName Userstore domain.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    void deleteRegistrationFromDomain(int tenantId, String userStoreName) throws FIDO2AuthenticatorServerException;
+
+    /**
+     * Delete all device registrations associated to a user.
+     *
+     * @param username      Username.
+     * @param userStoreName Userstore domain.
+     * @param tenantId      Tenant ID.
+     * @throws FIDO2AuthenticatorServerException Error in deleting devices associated to a user.
+     */
+    void deleteRegistrationsForUser(String username, String userStoreName, int tenantId)
+            throws FIDO2AuthenticatorServerException;
+}
@@ -21,51 +21,77 @@ package org.wso2.carbon.identity.application.authenticator.fido2.dao;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yubico.internal.util.JacksonCodecs;
 import com.yubico.webauthn.AssertionResult;
-import com.yubico.webauthn.CredentialRepository;
 import com.yubico.webauthn.RegisteredCredential;
 import com.yubico.webauthn.data.ByteArray;
 import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
 import com.yubico.webauthn.data.UserIdentity;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.CredentialRegistration;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CredentialRegistration;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2StoredCredential;
 import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2DuplicateRegistrationException;
+import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceDataHolder;
 import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.CredentialStorageMode;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDOUtil;
 import org.wso2.carbon.identity.application.common.model.User;
 import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * FIDO2 DAO.
  */
-public class FIDO2DeviceStoreDAO implements CredentialRepository {
+public class FIDO2DeviceStoreDAO implements FIDO2CredentialStore {
 
     private static final Log log = LogFactory.getLog(FIDO2DeviceStoreDAO.class);
 
     private static boolean isFIDO2DTOPersistenceStatusChecked = false;
     private  static boolean isFIDO2DTOPersistenceSupported = false;
+    private static final Set<String> AVAILABLE_COLUMNS = ConcurrentHashMap.newKeySet();
+    // Time of the last check of each optional column found missing, which is checked again after an interval.
+    private static final Map<String, Long> MISSING_COLUMNS = new ConcurrentHashMap<>();
+    private static final long MISSING_COLUMN_RECHECK_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    private static final FIDO2DeviceStoreDAO instance = new FIDO2DeviceStoreDAO();
+    private static final String DUPLICATE_KEY_SQL_STATE = "23505";
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION_SQL_STATE = "23000";
+    // MySQL/MariaDB: 1062 (ER_DUP_ENTRY), Oracle: 1 (ORA-00001), MSSQL: 2627 and 2601.
+    private static final Set<Integer> DUPLICATE_KEY_VENDOR_ERROR_CODES =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(1062, 1, 2627, 2601)));
     private final ObjectMapper jsonMapper = JacksonCodecs.json();
 
     public static FIDO2DeviceStoreDAO getInstance() {
-        return new FIDO2DeviceStoreDAO();
+        return instance;
     }
 
     @Override
@@ -84,6 +110,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
         if (log.isDebugEnabled()) {
             log.debug("getCredentialIdsForUsername inputs {username: " + user +  "}");
         }
+        int tenantId = IdentityTenantUtil.getTenantId(user.getTenantDomain());
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
@@ -91,7 +118,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
         try {
             preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries
                     .GET_CREDENTIAL_ID_BY_USERNAME);
-            preparedStatement.setInt(1, IdentityTenantUtil.getTenantId(user.getTenantDomain()));
+            preparedStatement.setInt(1, tenantId);
             preparedStatement.setString(2, user.getUserStoreDomain());
             preparedStatement.setString(3, user.getUserName());
             resultSet = preparedStatement.executeQuery();
@@ -101,7 +128,6 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
                         .CREDENTIAL_ID));
                 credentialIds.add(PublicKeyCredentialDescriptor.builder().id(credentiaId).build());
             }
-
         } catch (SQLException e) {
             log.error("Error when executing FIDO2 get credential by username SQL : " + FIDO2AuthenticatorConstants
                     .SQLQueries.GET_CREDENTIAL_ID_BY_USERNAME, e);
@@ -121,6 +147,10 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
         if (log.isDebugEnabled()) {
             log.debug("getUserHandleForUsername inputs {username: " + user +  "}");
         }
+        FIDO2StoredCredential assertionContext = getCurrentAssertionContext();
+        if (assertionContext != null && isOwnedBy(assertionContext, user)) {
+            return Optional.of(assertionContext.getCredential().getUserHandle());
+        }
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
@@ -151,6 +181,11 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
     @Override
     public Optional<String> getUsernameForUserHandle(ByteArray userHandle) {
 
+        FIDO2StoredCredential assertionContext = getCurrentAssertionContext();
+        if (assertionContext != null && assertionContext.getCredential().getUserHandle().equals(userHandle)) {
+            return Optional.of(buildUser(assertionContext.getTenantId(), assertionContext.getUserStoreDomain(),
+                    assertionContext.getUsername()).toString());
+        }
         Optional<String> userName = Optional.empty();
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement preparedStatement = null;
@@ -163,17 +198,11 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
             resultSet = preparedStatement.executeQuery();
 
             if (resultSet.next()) {
-                String tenantDomain = IdentityTenantUtil.getTenantDomain(resultSet.getInt(FIDO2AuthenticatorConstants
-                        .TENANT_ID));
+                int tenantId = resultSet.getInt(FIDO2AuthenticatorConstants.TENANT_ID);
                 String userStoreDomain = resultSet.getString(FIDO2AuthenticatorConstants.USER_STORE_DOMAIN);
                 String name = resultSet.getString(FIDO2AuthenticatorConstants.USERNAME);
 
-                User user = new User();
-                user.setTenantDomain(tenantDomain);
-                user.setUserStoreDomain(userStoreDomain);
-                user.setUserName(name);
-
-                userName = Optional.of(user.toString());
+                userName = Optional.of(buildUser(tenantId, userStoreDomain, name).toString());
             }
 
         } catch (SQLException e) {
@@ -189,6 +218,18 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
     @Override
     public Optional<RegisteredCredential> lookup(ByteArray credentialId, ByteArray userHandle) {
 
+        FIDO2StoredCredential knownCredential = getKnownCredential(credentialId);
+        if (knownCredential != null && knownCredential.getCredential().getUserHandle().equals(userHandle)) {
+            return Optional.of(knownCredential.getCredential());
+        }
+        if (getCredentialStorageMode() == CredentialStorageMode.BINARY || isCredentialIdHashLookupEnabled()) {
+            try {
+                return getCredentialOfUserHandle(getStoredCredentials(credentialId), userHandle);
+            } catch (SQLException e) {
+                log.error("Error when retrieving the FIDO2 credential from the database.", e);
+                return Optional.empty();
+            }
+        }
         Optional<RegisteredCredential> registeredCredential = Optional.empty();
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement preparedStatement = null;
@@ -203,7 +244,8 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
 
             if (resultSet.next()) {
                 String publicKeyCose = resultSet.getString(FIDO2AuthenticatorConstants.PUBLIC_KEY_COSE);
-                long signatureCount = resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT);
+                long signatureCount = getLatestSignatureCount(credentialId, userHandle,
+                        resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT));
                 registeredCredential = Optional.of(
                         RegisteredCredential.builder()
                                 .credentialId(credentialId)
@@ -227,37 +269,81 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
     public Set<RegisteredCredential> lookupAll(ByteArray credentialId) {
 
         Set<RegisteredCredential> registeredCredentials = new HashSet<>();
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-
         try {
-            preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries
-                    .GET_CREDENTIAL_BY_ID);
-            preparedStatement.setString(1, new ByteArray(credentialId.getBytes()).getBase64());
-            resultSet = preparedStatement.executeQuery();
-
-            if (resultSet.next()) {
-                String userHandle = resultSet.getString(FIDO2AuthenticatorConstants.USER_HANDLE);
-                String publicKeyCose = resultSet.getString(FIDO2AuthenticatorConstants.PUBLIC_KEY_COSE);
-                long signatureCount = resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT);
-                registeredCredentials.add(RegisteredCredential.builder()
-                        .credentialId(credentialId)
-                        .userHandle(ByteArray.fromBase64(userHandle))
-                        .publicKeyCose(ByteArray.fromBase64(publicKeyCose))
-                        .signatureCount(signatureCount)
-                        .build());
-            }
+            // Credential IDs are unique per user handle only, hence every registration with the ID is returned.
+            getStoredCredentials(credentialId).forEach(storedCredential ->
+                    registeredCredentials.add(storedCredential.getCredential()));
         } catch (SQLException e) {
             log.error("Error when executing FIDO registration SQL : " + FIDO2AuthenticatorConstants.SQLQueries
                     .GET_CREDENTIAL_BY_ID, e);
-        } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, preparedStatement);
         }
 
         return registeredCredentials;
     }
 
+    /**
+     * Retrieve the public key, signature count and the owner of a credential with a single query, to be used while
+     * finishing an assertion.
+     *
+     * @param credentialId Credential ID.
+     * @param userHandle   User handle of the assertion, or null if it is not known.
+     * @param username     Username of the assertion request, or null if it is not known.
+     * @return Stored credential matching the credential ID and the user handle, or the username when no user handle
+     * is given.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    @Override
+    public Optional<FIDO2StoredCredential> getAssertionContext(ByteArray credentialId, ByteArray userHandle,
+                                                               String username)
+            throws FIDO2AuthenticatorServerException {
+
+        FIDO2StoredCredential knownCredential = getKnownCredential(credentialId);
+        if (knownCredential != null) {
+            Optional<FIDO2StoredCredential> credential = getCredentialForAssertion(
+                    Collections.singletonList(knownCredential), userHandle, username);
+            if (credential.isPresent()) {
+                return credential;
+            }
+        }
+        try {
+            return getCredentialForAssertion(getStoredCredentials(credentialId), userHandle, username);
+        } catch (SQLException e) {
+            throw new FIDO2AuthenticatorServerException("Server error occurred while retrieving FIDO2 credential " +
+                    "for the assertion.", e);
+        }
+    }
+
+    /**
+     * Retrieve the signature count of a credential through the primary key, which is available in every credential
+     * storage mode.
+     *
+     * @param credentialId Credential ID.
+     * @param userHandle   User handle of the credential.
+     * @return Signature count, including a pending write-behind update, or empty if the credential is not registered.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    @Override
+    public Optional<Long> getSignatureCount(ByteArray credentialId, ByteArray userHandle)
+            throws FIDO2AuthenticatorServerException {
+
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(); PreparedStatement preparedStatement =
+                connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries
+                        .GET_SIGNATURE_COUNT_BY_ID_AND_USER_HANDLE)) {
+            preparedStatement.setString(1, credentialId.getBase64());
+            preparedStatement.setString(2, userHandle.getBase64());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return Optional.of(getLatestSignatureCount(credentialId, userHandle,
+                            resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new FIDO2AuthenticatorServerException("Server error occurred while retrieving the FIDO2 " +
+                    "signature count.", e);
+        }
+        return Optional.empty();
+    }
+
     @Deprecated
     /** @deprecated Please use {@link #addFIDO2RegistrationByUsername(String, FIDO2CredentialRegistration)} instead. */
     public void addRegistrationByUsername(String username, CredentialRegistration reg) throws IOException {
@@ -269,9 +355,11 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement preparedStatement = null;
 
+        boolean isCredentialIdHashEnabled = isCredentialIdHashEnabled();
         try {
-            preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries
-                    .ADD_DEVICE_REGISTRATION_QUERY);
+            preparedStatement = connection.prepareStatement(isCredentialIdHashEnabled ?
+                    FIDO2AuthenticatorConstants.SQLQueries.ADD_DEVICE_REGISTRATION_WITH_CREDENTIAL_ID_HASH_QUERY :
+                    FIDO2AuthenticatorConstants.SQLQueries.ADD_DEVICE_REGISTRATION_QUERY);
             preparedStatement.setInt(1, IdentityTenantUtil.getTenantId(user.getTenantDomain()));
             preparedStatement.setString(2, user.getUserStoreDomain());
             preparedStatement.setString(3, user.getUserName());
@@ -281,11 +369,16 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
             preparedStatement.setString(7, reg.getCredential().getPublicKeyCose().getBase64());
             preparedStatement.setLong(8, reg.getCredential().getSignatureCount());
             preparedStatement.setString(9, jsonMapper.writeValueAsString(reg.getUserIdentity()));
+            if (isCredentialIdHashEnabled) {
+                preparedStatement.setLong(10, getCredentialIdHash(reg.getCredential().getCredentialId()));
+            }
 
             preparedStatement.execute();
             if (!connection.getAutoCommit()) {
                 connection.commit();
             }
+            FIDO2RegisteredUserFilter.getInstance().addUser(IdentityTenantUtil.getTenantId(user.getTenantDomain()),
+                    user.getUserStoreDomain(), user.getUserName());
         } catch (SQLException e) {
             log.error("Error when executing FIDO2 get credential by username SQL : " + FIDO2AuthenticatorConstants
                     .SQLQueries.ADD_DEVICE_REGISTRATION_QUERY, e);
@@ -301,6 +394,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @param reg FIDO2 credentials.
      * @throws FIDO2AuthenticatorServerException
      */
+    @Override
     public void addFIDO2RegistrationByUsername(String username, FIDO2CredentialRegistration reg) throws
             FIDO2AuthenticatorServerException {
 
@@ -315,6 +409,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
         if (user == null) {
             user = User.getUserFromUserName(username);
         }
+        int tenantId = IdentityTenantUtil.getTenantId(user.getTenantDomain());
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement preparedStatement = null;
 
@@ -323,10 +418,12 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
             isUsernamelessSupported = "1";
         }
 
+        boolean isBinaryWriteEnabled = getCredentialStorageMode().isBinaryWriteEnabled();
+        boolean isCredentialIdHashEnabled = isCredentialIdHashEnabled();
         try {
-            preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries.
-                    ADD_FIDO2_DEVICE_REGISTRATION_QUERY);
-            preparedStatement.setInt(1, IdentityTenantUtil.getTenantId(user.getTenantDomain()));
+            preparedStatement = connection.prepareStatement(getAddRegistrationQuery(isBinaryWriteEnabled,
+                    isCredentialIdHashEnabled));
+            preparedStatement.setInt(1, tenantId);
             preparedStatement.setString(2, user.getUserStoreDomain());
             preparedStatement.setString(3, user.getUserName());
             preparedStatement.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
@@ -337,12 +434,29 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
             preparedStatement.setString(9, jsonMapper.writeValueAsString(reg.getUserIdentity()));
             preparedStatement.setString(10, reg.getDisplayName());
             preparedStatement.setString(11, isUsernamelessSupported);
+            int parameterIndex = 12;
+            if (isBinaryWriteEnabled) {
+                preparedStatement.setBytes(parameterIndex++, reg.getCredential().getUserHandle().getBytes());
+                preparedStatement.setBytes(parameterIndex++, reg.getCredential().getCredentialId().getBytes());
+                preparedStatement.setBytes(parameterIndex++, reg.getCredential().getPublicKeyCose().getBytes());
+            }
+            if (isCredentialIdHashEnabled) {
+                preparedStatement.setLong(parameterIndex, getCredentialIdHash(reg.getCredential().getCredentialId()));
+            }
 
             preparedStatement.execute();
             if (!connection.getAutoCommit()) {
                 connection.commit();
             }
-        } catch (SQLException | IOException e) {
+            FIDO2RegisteredUserFilter.getInstance().addUser(tenantId, user.getUserStoreDomain(), user.getUserName());
+        } catch (SQLException e) {
+            if (isDuplicateKeyError(e)) {
+                throw new FIDO2DuplicateRegistrationException("A FIDO2 device registration already exists for " +
+                        "the credential of username: " + username, e);
+            }
+            throw new FIDO2AuthenticatorServerException("Server error occurred while adding FIDO2 device " +
+                    "registration for username: " + username, e);
+        } catch (IOException e) {
             throw new FIDO2AuthenticatorServerException("Server error occurred while adding FIDO2 device " +
                     "registration for username: " + username, e);
         } finally {
@@ -418,6 +532,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @return A collection of FIDO2 registrations available for a user.
      * @throws FIDO2AuthenticatorServerException
      */
+    @Override
     public Collection<FIDO2CredentialRegistration> getFIDO2RegistrationsByUsername(String username) throws
             FIDO2AuthenticatorServerException {
 
@@ -425,6 +540,50 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
         return getFIDO2RegistrationsByUser(user);
     }
 
+    /**
+     * Check whether the user has any FIDO2 registration, without retrieving the registrations.
+     *
+     * @param user User.
+     * @return True if at least one FIDO2 registration is available for the user.
+     * @throws FIDO2AuthenticatorServerException
+     */
+    @Override
+    public boolean hasFIDO2Registrations(User user) throws FIDO2AuthenticatorServerException {
+
+        if (log.isDebugEnabled()) {
+            log.debug("hasFIDO2Registrations inputs {username: " + user + "}");
+        }
+        int tenantId = IdentityTenantUtil.getTenantId(user.getTenantDomain());
+        FIDO2RegisteredUserFilter registeredUserFilter = FIDO2RegisteredUserFilter.getInstance();
+        if (!registeredUserFilter.mightHaveRegistrations(tenantId, user.getUserStoreDomain(), user.getUserName())) {
+            return false;
+        }
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+
+        try {
+            preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries
+                    .HAS_DEVICE_REGISTRATION_BY_USERNAME);
+            // Only the presence of a row matters, hence avoid fetching the remaining rows.
+            preparedStatement.setMaxRows(1);
+            preparedStatement.setInt(1, tenantId);
+            preparedStatement.setString(2, user.getUserStoreDomain());
+            preparedStatement.setString(3, user.getUserName());
+            resultSet = preparedStatement.executeQuery();
+            if (!resultSet.next()) {
+                registeredUserFilter.recordFalsePositive(tenantId);
+                return false;
+            }
+            return true;
+        } catch (SQLException e) {
+            throw new FIDO2AuthenticatorServerException("Server error occurred while checking FIDO2 device " +
+                    "registrations for username: " + user.getLoggableMaskedUserId(), e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, preparedStatement);
+        }
+    }
+
     /**
      * Retrieve FIDO2 registration details.
      *
@@ -432,6 +591,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @return A collection of FIDO2 registrations available for a user.
      * @throws FIDO2AuthenticatorServerException
      */
+    @Override
     public Collection<FIDO2CredentialRegistration> getFIDO2RegistrationsByUser(User user) throws
             FIDO2AuthenticatorServerException {
 
@@ -453,40 +613,10 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
             resultSet = preparedStatement.executeQuery();
 
             while (resultSet.next()) {
-                ByteArray credentialId = ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
-                        .CREDENTIAL_ID));
-                ByteArray userHandle = ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
-                        .USER_HANDLE));
-                UserIdentity userIdentity = jsonMapper.readValue(resultSet.getString(FIDO2AuthenticatorConstants.
-                        USER_IDENTITY), UserIdentity.class);
-                ByteArray publicKeyCose = ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
-                        .PUBLIC_KEY_COSE));
-                Long signatureCount = resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT);
-                Timestamp timestamp = resultSet.getTimestamp(FIDO2AuthenticatorConstants.TIME_REGISTERED);
-                String deviceDisplayName = resultSet.getString(FIDO2AuthenticatorConstants.DISPLAY_NAME);
-                boolean isUsernamelessSupported = FIDO2AuthenticatorConstants.USERNAMELESS_SUPPORTED.equals
-                                (resultSet.getString(FIDO2AuthenticatorConstants.IS_USERNAMELESS_SUPPORTED));
-
-                RegisteredCredential credential = RegisteredCredential.builder()
-                        .credentialId(credentialId)
-                        .userHandle(userHandle)
-                        .publicKeyCose(publicKeyCose)
-                        .signatureCount(signatureCount)
-                        .build();
-
-                FIDO2CredentialRegistration registration = FIDO2CredentialRegistration.builder()
-                        .attestationMetadata(Optional.empty())
-                        .userIdentity(userIdentity)
-                        .credential(credential)
-                        .credentialNickname(Optional.empty())
-                        .registrationTime(timestamp.toInstant())
-                        .displayName(deviceDisplayName)
-                        .isUsernamelessSupported(isUsernamelessSupported)
-                        .build();
-
-                credentialRegistrations.add(registration);
+                credentialRegistrations.add(buildFIDO2CredentialRegistration(resultSet,
+                        resultSet.getString(FIDO2AuthenticatorConstants.CREDENTIAL_ID)));
             }
-        } catch (SQLException | IOException e) {
+        } catch (SQLException e) {
             throw new FIDO2AuthenticatorServerException("Server error occurred while retrieving FIDO2 device " +
                     "registration for username: " + user.getLoggableMaskedUserId(), e);
         } finally {
@@ -565,6 +695,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @return FIDO2 registrations for a given username and credential ID combination.
      * @throws FIDO2AuthenticatorServerException
      */
+    @Override
     public Optional<FIDO2CredentialRegistration> getFIDO2RegistrationByUsernameAndCredentialId
             (String username, ByteArray credentialId) throws FIDO2AuthenticatorServerException {
 
@@ -588,38 +719,11 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
             resultSet = preparedStatement.executeQuery();
 
             if (resultSet.next()) {
-                ByteArray userHandle = ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
-                        .USER_HANDLE));
-                UserIdentity userIdentity = jsonMapper.readValue(resultSet.getString(FIDO2AuthenticatorConstants
-                        .USER_IDENTITY), UserIdentity.class);
-                ByteArray publicKeyCose = ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
-                        .PUBLIC_KEY_COSE));
-                Long signatureCount = resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT);
-                Timestamp timestamp = resultSet.getTimestamp(FIDO2AuthenticatorConstants.TIME_REGISTERED);
-                boolean isUsernamelessSupported = FIDO2AuthenticatorConstants.USERNAMELESS_SUPPORTED.equals
-                        (resultSet.getString(FIDO2AuthenticatorConstants.IS_USERNAMELESS_SUPPORTED));
-                String deviceDisplayName = resultSet.getString(FIDO2AuthenticatorConstants.DISPLAY_NAME);
-
-                RegisteredCredential credential = RegisteredCredential.builder()
-                        .credentialId(credentialId)
-                        .userHandle(userHandle)
-                        .publicKeyCose(publicKeyCose)
-                        .signatureCount(signatureCount)
-                        .build();
-
-                FIDO2CredentialRegistration registration = FIDO2CredentialRegistration.builder()
-                        .attestationMetadata(Optional.empty())
-                        .userIdentity(userIdentity)
-                        .credential(credential)
-                        .credentialNickname(Optional.empty())
-                        .registrationTime(timestamp.toInstant())
-                        .isUsernamelessSupported(isUsernamelessSupported)
-                        .displayName(deviceDisplayName)
-                        .build();
-                credentialRegistration = Optional.of(registration);
+                credentialRegistration = Optional.of(buildFIDO2CredentialRegistration(resultSet,
+                        credentialId.getBase64()));
             }
 
-        } catch (SQLException | IOException e) {
+        } catch (SQLException e) {
             throw new FIDO2AuthenticatorServerException("Server error occurred while retrieving FIDO2 device " +
                     "registration for username: " + username, e);
         } finally {
@@ -672,6 +776,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @param registration FIDO2 credentials.
      * @throws FIDO2AuthenticatorServerException
      */
+    @Override
     public void removeFIDO2RegistrationByUsername(String username, FIDO2CredentialRegistration registration) throws
             FIDO2AuthenticatorServerException {
 
@@ -712,6 +817,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @param newDisplayName New display name to be updated.
      * @throws FIDO2AuthenticatorServerException
      */
+    @Override
     public void updateFIDO2DeviceDisplayName(User user, FIDO2CredentialRegistration registration,
                                              String newDisplayName) throws FIDO2AuthenticatorServerException {
 
@@ -743,6 +849,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @param reg FIDO2 credentials.
      * @throws FIDO2AuthenticatorServerException
      */
+    @Override
     public void updateFIDO2SignatureCountByUsername(String username, FIDO2CredentialRegistration reg) throws
             FIDO2AuthenticatorServerException {
 
@@ -806,17 +913,41 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @param result Assertion result.
      * @throws FIDO2AuthenticatorServerException
      */
+    @Override
     public void updateFIDO2SignatureCount(AssertionResult result) throws FIDO2AuthenticatorServerException {
 
-        FIDO2CredentialRegistration registration = getFIDO2RegistrationByUsernameAndCredentialId(result.getUsername(),
-                result.getCredentialId()).orElseThrow(() -> new NoSuchElementException(String.format(
-                        "Credential \"%s\" is not registered to user \"%s\"",
-                        result.getCredentialId(), result.getUsername()
-                )));
-        registration = registration.withSignatureCount(result.getSignatureCount());
-        updateFIDO2SignatureCountByUsername(result.getUsername(), registration);
+        if (log.isDebugEnabled()) {
+            log.debug("updateFIDO2SignatureCount inputs {credentialId: " + result.getCredentialId().getBase64() + "}");
+        }
+        FIDO2SignatureCountUpdater signatureCountUpdater = FIDO2AuthenticatorServiceDataHolder.getInstance()
+                .getSignatureCountUpdater();
+        if (signatureCountUpdater != null && signatureCountUpdater.enqueue(result.getCredentialId(),
+                result.getUserHandle(), result.getSignatureCount())) {
+            return;
+        }
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(); PreparedStatement preparedStatement =
+                connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries
+                        .UPDATE_SIGNATURE_COUNT_BY_CREDENTIAL_QUERY)) {
+            preparedStatement.setLong(1, result.getSignatureCount());
+            preparedStatement.setString(2, result.getCredentialId().getBase64());
+            preparedStatement.setString(3, result.getUserHandle().getBase64());
+            preparedStatement.setLong(4, result.getSignatureCount());
+
+            int updatedRows = preparedStatement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            if (updatedRows == 0 && log.isDebugEnabled()) {
+                log.debug("Signature count of credential: " + result.getCredentialId().getBase64() + " is not " +
+                        "updated since the stored signature count is not lower than the new signature count.");
+            }
+        } catch (SQLException e) {
+            throw new FIDO2AuthenticatorServerException("Server error occurred while updating FIDO2 " +
+                    "signature count for username: " + result.getUsername(), e);
+        }
     }
 
+    @Override
     public void updateDomainNameOfRegistration(int tenantId, String currentUserStoreName, String newUserStoreName)
             throws FIDO2AuthenticatorServerException {
 
@@ -833,6 +964,8 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
             if (!connection.getAutoCommit()) {
                 connection.commit();
             }
+            // Users of the renamed domain are not known to the registered user filter under the new domain name.
+            FIDO2RegisteredUserFilter.getInstance().invalidateTenant(tenantId);
 
         } catch (SQLException e) {
             throw new FIDO2AuthenticatorServerException(
@@ -842,6 +975,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
         }
     }
 
+    @Override
     public void deleteRegistrationFromDomain(int tenantId, String userStoreName)
             throws FIDO2AuthenticatorServerException {
 
@@ -875,6 +1009,7 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
      * @param tenantId      Tenant Id.
      * @throws FIDO2AuthenticatorServerException Error in deleting devices associated to a user.
      */
+    @Override
     public void deleteRegistrationsForUser(String username, String userStoreName, int tenantId)
             throws FIDO2AuthenticatorServerException {
 
@@ -896,6 +1031,445 @@ public class FIDO2DeviceStoreDAO implements CredentialRepository {
         }
     }
 
+    /**
+     * Build a FIDO2 registration from the current row. The user identity and the credential are decoded only when
+     * they are accessed, as most callers read only the display name, the registration time or the credential ID.
+     *
+     * @param resultSet    Result set positioned at the registration.
+     * @param credentialId Base64 encoded credential ID of the registration.
+     * @return FIDO2 registration.
+     * @throws SQLException If an error occurred while reading the row.
+     */
+    private FIDO2CredentialRegistration buildFIDO2CredentialRegistration(ResultSet resultSet, String credentialId)
+            throws SQLException {
+
+        String userHandle = resultSet.getString(FIDO2AuthenticatorConstants.USER_HANDLE);
+        String publicKeyCose = resultSet.getString(FIDO2AuthenticatorConstants.PUBLIC_KEY_COSE);
+        long signatureCount = resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT);
+        String userIdentity = resultSet.getString(FIDO2AuthenticatorConstants.USER_IDENTITY);
+        Timestamp timestamp = resultSet.getTimestamp(FIDO2AuthenticatorConstants.TIME_REGISTERED);
+        String deviceDisplayName = resultSet.getString(FIDO2AuthenticatorConstants.DISPLAY_NAME);
+        boolean isUsernamelessSupported = FIDO2AuthenticatorConstants.USERNAMELESS_SUPPORTED.equals
+                (resultSet.getString(FIDO2AuthenticatorConstants.IS_USERNAMELESS_SUPPORTED));
+
+        return FIDO2CredentialRegistration.builder()
+                .attestationMetadata(Optional.empty())
+                .userIdentitySupplier(new LazyValue<>(() -> {
+                    try {
+                        return jsonMapper.readValue(userIdentity, UserIdentity.class);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Error while decoding the user identity of the FIDO2 " +
+                                "registration with credential ID: " + credentialId, e);
+                    }
+                }))
+                .credentialSupplier(new LazyValue<>(() -> RegisteredCredential.builder()
+                        .credentialId(ByteArray.fromBase64(credentialId))
+                        .userHandle(ByteArray.fromBase64(userHandle))
+                        .publicKeyCose(ByteArray.fromBase64(publicKeyCose))
+                        .signatureCount(signatureCount)
+                        .build()))
+                .credentialNickname(Optional.empty())
+                .registrationTime(timestamp.toInstant())
+                .displayName(deviceDisplayName)
+                .isUsernamelessSupported(isUsernamelessSupported)
+                .build();
+    }
+
+    /**
+     * Retrieve all the credentials with a credential ID along with their owners from the database. A single query
+     * chosen by the configured storage mode is executed. In the binary mode, the query also reads the registrations
+     * whose binary columns are not populated yet from the base64 encoded columns, while the credential ID hash is only
+     * read once it is populated for all the registrations.
+     *
+     * @param credentialId Credential ID.
+     * @return Stored credentials matching the credential ID.
+     * @throws SQLException If an error occurred while querying the database.
+     */
+    private List<FIDO2StoredCredential> getStoredCredentials(ByteArray credentialId) throws SQLException {
+
+        if (getCredentialStorageMode() == CredentialStorageMode.BINARY) {
+            return getStoredCredentialsByBinaryId(credentialId);
+        }
+        if (isCredentialIdHashLookupEnabled()) {
+            return getStoredCredentialsByIdHash(credentialId);
+        }
+        List<FIDO2StoredCredential> storedCredentials = new ArrayList<>();
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+
+        try {
+            preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries
+                    .GET_CREDENTIAL_BY_ID);
+            preparedStatement.setString(1, credentialId.getBase64());
+            resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                ByteArray userHandle = ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
+                        .USER_HANDLE));
+                RegisteredCredential registeredCredential = RegisteredCredential.builder()
+                        .credentialId(credentialId)
+                        .userHandle(userHandle)
+                        .publicKeyCose(ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
+                                .PUBLIC_KEY_COSE)))
+                        .signatureCount(getLatestSignatureCount(credentialId, userHandle,
+                                resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT)))
+                        .build();
+                storedCredentials.add(new FIDO2StoredCredential(
+                        resultSet.getInt(FIDO2AuthenticatorConstants.TENANT_ID),
+                        resultSet.getString(FIDO2AuthenticatorConstants.USER_STORE_DOMAIN),
+                        resultSet.getString(FIDO2AuthenticatorConstants.USERNAME), registeredCredential));
+            }
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, preparedStatement);
+        }
+
+        return storedCredentials;
+    }
+
+    private List<FIDO2StoredCredential> getStoredCredentialsByBinaryId(ByteArray credentialId)
+            throws SQLException {
+
+        List<FIDO2StoredCredential> storedCredentials = new ArrayList<>();
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants
+                     .SQLQueries.GET_CREDENTIAL_BY_BINARY_ID)) {
+            preparedStatement.setBytes(1, credentialId.getBytes());
+            preparedStatement.setString(2, credentialId.getBase64());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    byte[] userHandleBytes = resultSet.getBytes(FIDO2AuthenticatorConstants.USER_HANDLE_BIN);
+                    byte[] publicKeyCoseBytes = resultSet.getBytes(FIDO2AuthenticatorConstants.PUBLIC_KEY_COSE_BIN);
+                    // Registrations which are not migrated yet are read from the base64 encoded columns.
+                    ByteArray userHandle = userHandleBytes != null ? new ByteArray(userHandleBytes) :
+                            ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants.USER_HANDLE));
+                    ByteArray publicKeyCose = publicKeyCoseBytes != null ? new ByteArray(publicKeyCoseBytes) :
+                            ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants.PUBLIC_KEY_COSE));
+                    RegisteredCredential registeredCredential = RegisteredCredential.builder()
+                            .credentialId(credentialId)
+                            .userHandle(userHandle)
+                            .publicKeyCose(publicKeyCose)
+                            .signatureCount(getLatestSignatureCount(credentialId, userHandle,
+                                    resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT)))
+                            .build();
+                    storedCredentials.add(new FIDO2StoredCredential(
+                            resultSet.getInt(FIDO2AuthenticatorConstants.TENANT_ID),
+                            resultSet.getString(FIDO2AuthenticatorConstants.USER_STORE_DOMAIN),
+                            resultSet.getString(FIDO2AuthenticatorConstants.USERNAME), registeredCredential));
+                }
+            }
+        }
+        return storedCredentials;
+    }
+
+    /**
+     * Retrieve a credential by the hash of its credential ID. Rows sharing the hash are filtered by the full
+     * credential ID.
+     */
+    private List<FIDO2StoredCredential> getStoredCredentialsByIdHash(ByteArray credentialId) throws SQLException {
+
+        List<FIDO2StoredCredential> storedCredentials = new ArrayList<>();
+        String encodedCredentialId = credentialId.getBase64();
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants
+                     .SQLQueries.GET_CREDENTIAL_BY_ID_HASH)) {
+            preparedStatement.setLong(1, getCredentialIdHash(credentialId));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (!encodedCredentialId.equals(resultSet.getString(FIDO2AuthenticatorConstants.CREDENTIAL_ID))) {
+                        continue;
+                    }
+                    ByteArray userHandle = ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
+                            .USER_HANDLE));
+                    RegisteredCredential registeredCredential = RegisteredCredential.builder()
+                            .credentialId(credentialId)
+                            .userHandle(userHandle)
+                            .publicKeyCose(ByteArray.fromBase64(resultSet.getString(FIDO2AuthenticatorConstants
+                                    .PUBLIC_KEY_COSE)))
+                            .signatureCount(getLatestSignatureCount(credentialId, userHandle,
+                                    resultSet.getLong(FIDO2AuthenticatorConstants.SIGNATURE_COUNT)))
+                            .build();
+                    storedCredentials.add(new FIDO2StoredCredential(
+                            resultSet.getInt(FIDO2AuthenticatorConstants.TENANT_ID),
+                            resultSet.getString(FIDO2AuthenticatorConstants.USER_STORE_DOMAIN),
+                            resultSet.getString(FIDO2AuthenticatorConstants.USERNAME), registeredCredential));
+                }
+            }
+        }
+        return storedCredentials;
+    }
+
+    /**
+     * Get the fixed length hash of a credential ID, stored in the indexed CREDENTIAL_ID_HASH column. The hash is the
+     * first eight bytes of the SHA-256 digest of the credential ID.
+     *
+     * @param credentialId Credential ID.
+     * @return Credential ID hash.
+     */
+    public static long getCredentialIdHash(ByteArray credentialId) {
+
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(credentialId.getBytes())).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory for every Java platform.
+            throw new IllegalStateException("SHA-256 algorithm is not available.", e);
+        }
+    }
+
+    /**
+     * Check whether registrations populate the credential ID hash column.
+     *
+     * @return True if the credential ID hash is enabled and the column is available.
+     */
+    public static boolean isCredentialIdHashEnabled() {
+
+        return FIDOUtil.isCredentialIdHashEnabled() && isColumnAvailable(FIDO2AuthenticatorConstants
+                .CREDENTIAL_ID_HASH);
+    }
+
+    /**
+     * Check whether credential lookups use the credential ID hash column instead of the credential ID.
+     *
+     * @return True if the credential ID hash is written and its lookup is enabled.
+     */
+    public static boolean isCredentialIdHashLookupEnabled() {
+
+        return FIDOUtil.isCredentialIdHashLookupEnabled() && isCredentialIdHashEnabled();
+    }
+
+    /**
+     * Get the credential storage mode to be used. The base64 layout is used when the binary columns are not
+     * available in FIDO2_DEVICE_STORE.
+     *
+     * @return Credential storage mode.
+     */
+    public static CredentialStorageMode getCredentialStorageMode() {
+
+        CredentialStorageMode credentialStorageMode = FIDOUtil.getCredentialStorageMode();
+        if (credentialStorageMode.isBinaryWriteEnabled() && !isColumnAvailable(FIDO2AuthenticatorConstants
+                .CREDENTIAL_ID_BIN)) {
+            return CredentialStorageMode.BASE64;
+        }
+        return credentialStorageMode;
+    }
+
+    /**
+     * Check whether an optional column is available in FIDO2_DEVICE_STORE. An available column is cached for the
+     * server, while a missing column is checked again every five minutes, so that a column added to the database
+     * later is picked up without a restart.
+     */
+    private static boolean isColumnAvailable(String columnName) {
+
+        if (AVAILABLE_COLUMNS.contains(columnName)) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Long lastCheckTime = MISSING_COLUMNS.get(columnName);
+        // Only one caller checks a missing column again once the interval has passed.
+        if (lastCheckTime != null && (now - lastCheckTime < MISSING_COLUMN_RECHECK_INTERVAL ||
+                !MISSING_COLUMNS.replace(columnName, lastCheckTime, now))) {
+            return false;
+        }
+        boolean available = false;
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // Identifiers may be stored in upper or lower case depending on the database.
+            available = hasColumn(metaData, FIDO2AuthenticatorConstants.FIDO2_DEVICE_STORE, columnName) ||
+                    hasColumn(metaData, FIDO2AuthenticatorConstants.FIDO2_DEVICE_STORE.toLowerCase(),
+                            columnName.toLowerCase());
+        } catch (SQLException e) {
+            log.error("Error in fetching metadata from FIDO2_DEVICE_STORE database", e);
+        }
+        if (available) {
+            AVAILABLE_COLUMNS.add(columnName);
+            if (MISSING_COLUMNS.remove(columnName) != null) {
+                log.info("Column: " + columnName + " is now available in FIDO2_DEVICE_STORE. The features " +
+                        "depending on the column are enabled.");
+            }
+        } else if (MISSING_COLUMNS.put(columnName, now) == null) {
+            log.warn("Column: " + columnName + " is not available in FIDO2_DEVICE_STORE. The features depending " +
+                    "on the column are disabled until the column is added.");
+        }
+        return available;
+    }
+
+    private static String getAddRegistrationQuery(boolean isBinaryWriteEnabled, boolean isCredentialIdHashEnabled) {
+
+        if (isBinaryWriteEnabled) {
+            return isCredentialIdHashEnabled ? FIDO2AuthenticatorConstants.SQLQueries
+                    .ADD_FIDO2_DEVICE_REGISTRATION_WITH_BINARY_AND_CREDENTIAL_ID_HASH_QUERY :
+                    FIDO2AuthenticatorConstants.SQLQueries.ADD_FIDO2_DEVICE_REGISTRATION_WITH_BINARY_QUERY;
+        }
+        return isCredentialIdHashEnabled ? FIDO2AuthenticatorConstants.SQLQueries
+                .ADD_FIDO2_DEVICE_REGISTRATION_WITH_CREDENTIAL_ID_HASH_QUERY :
+                FIDO2AuthenticatorConstants.SQLQueries.ADD_FIDO2_DEVICE_REGISTRATION_QUERY;
+    }
+
+    /**
+     * Check whether the SQL exception reports a unique or primary key violation. Duplicate keys are reported with the
+     * SQL state 23505 by H2, PostgreSQL and DB2, while MySQL, Oracle and MSSQL use the generic integrity constraint
+     * state 23000 along with a vendor specific error code.
+     *
+     * @param e SQL exception.
+     * @return True if the exception or one of its chained exceptions is a duplicate key error.
+     */
+    private static boolean isDuplicateKeyError(SQLException e) {
+
+        for (Throwable throwable = e; throwable instanceof SQLException; throwable = throwable.getCause()) {
+            SQLException sqlException = (SQLException) throwable;
+            for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                if (DUPLICATE_KEY_SQL_STATE.equals(next.getSQLState())) {
+                    return true;
+                }
+                if ((INTEGRITY_CONSTRAINT_VIOLATION_SQL_STATE.equals(next.getSQLState()) ||
+                        next instanceof SQLIntegrityConstraintViolationException) &&
+                        DUPLICATE_KEY_VENDOR_ERROR_CODES.contains(next.getErrorCode())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasColumn(DatabaseMetaData metaData, String tableName, String columnName)
+            throws SQLException {
+
+        try (ResultSet resultSet = metaData.getColumns(null, null, tableName, columnName)) {
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * Get the latest signature count of a credential, considering the updates pending in the write-behind
+     * signature count updater.
+     */
+    private static long getLatestSignatureCount(ByteArray credentialId, ByteArray userHandle,
+                                                long storedSignatureCount) {
+
+        FIDO2SignatureCountUpdater signatureCountUpdater = FIDO2AuthenticatorServiceDataHolder.getInstance()
+                .getSignatureCountUpdater();
+        if (signatureCountUpdater != null) {
+            Long pendingSignatureCount = signatureCountUpdater.getPendingSignatureCount(credentialId, userHandle);
+            if (pendingSignatureCount != null) {
+                return Math.max(storedSignatureCount, pendingSignatureCount);
+            }
+        }
+        return storedSignatureCount;
+    }
+
+    /**
+     * Select the stored credential to verify an assertion with. Credential IDs are chosen by authenticators, hence
+     * the same credential ID may be registered for more than one user handle. Authenticators of non resident
+     * credentials usually omit the user handle, in which case the credential of the requested username is selected
+     * among the stored credentials, as the owner is read along with them. Without either, the credential is not
+     * guessed, and the lookups are left to the relying party.
+     *
+     * @param storedCredentials Stored credentials matching the credential ID of the assertion.
+     * @param userHandle        User handle of the assertion, or null if it is not known.
+     * @param username          Username of the assertion request, or null if it is not known.
+     * @return Stored credential of the user handle or the username, or the only stored credential if neither is
+     * given.
+     */
+    static Optional<FIDO2StoredCredential> getCredentialForAssertion(List<FIDO2StoredCredential> storedCredentials,
+                                                                     ByteArray userHandle, String username) {
+
+        if (userHandle != null) {
+            return storedCredentials.stream()
+                    .filter(storedCredential -> storedCredential.getCredential().getUserHandle().equals(userHandle))
+                    .findFirst();
+        }
+        if (username != null) {
+            User user = User.getUserFromUserName(username);
+            return storedCredentials.stream()
+                    .filter(storedCredential -> isOwnedBy(storedCredential, user))
+                    .findFirst();
+        }
+        if (storedCredentials.size() > 1) {
+            if (log.isDebugEnabled()) {
+                log.debug("FIDO2 credential ID is registered for more than one user handle and no user handle is " +
+                        "given for the assertion.");
+            }
+            return Optional.empty();
+        }
+        return storedCredentials.stream().findFirst();
+    }
+
+    private static boolean isOwnedBy(FIDO2StoredCredential storedCredential, User user) {
+
+        return StringUtils.equals(storedCredential.getUsername(), user.getUserName()) &&
+                StringUtils.equalsIgnoreCase(storedCredential.getUserStoreDomain(), user.getUserStoreDomain()) &&
+                storedCredential.getTenantId() == IdentityTenantUtil.getTenantId(user.getTenantDomain());
+    }
+
+    private static Optional<RegisteredCredential> getCredentialOfUserHandle(
+            List<FIDO2StoredCredential> storedCredentials, ByteArray userHandle) {
+
+        return storedCredentials.stream()
+                .map(FIDO2StoredCredential::getCredential)
+                .filter(registeredCredential -> registeredCredential.getUserHandle().equals(userHandle))
+                .findFirst();
+    }
+
+    /*
+    Get the credential loaded for the assertion being verified in the current request, along with its current
+    signature count.
+    */
+    private static FIDO2StoredCredential getKnownCredential(ByteArray credentialId) {
+
+        FIDO2StoredCredential assertionContext = getCurrentAssertionContext();
+        if (assertionContext != null && assertionContext.getCredential().getCredentialId().equals(credentialId)) {
+            return assertionContext;
+        }
+        return null;
+    }
+
+    private static FIDO2StoredCredential getCurrentAssertionContext() {
+
+        Object assertionContext = IdentityUtil.threadLocalProperties.get()
+                .get(FIDO2AuthenticatorConstants.FIDO2_ASSERTION_CONTEXT);
+        if (assertionContext instanceof FIDO2StoredCredential) {
+            return (FIDO2StoredCredential) assertionContext;
+        }
+        return null;
+    }
+
+    /**
+     * Thread safe supplier computing its value once, on the first access.
+     */
+    private static final class LazyValue<T> implements Supplier<T> {
+
+        private Supplier<T> delegate;
+        private volatile T value;
+
+        private LazyValue(Supplier<T> delegate) {
+
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T get() {
+
+            if (value == null) {
+                synchronized (this) {
+                    if (value == null) {
+                        value = delegate.get();
+                        delegate = null;
+                    }
+                }
+            }
+            return value;
+        }
+    }
+
+    private static User buildUser(int tenantId, String userStoreDomain, String username) {
+
+        User user = new User();
+        user.setTenantDomain(IdentityTenantUtil.getTenantDomain(tenantId));
+        user.setUserStoreDomain(userStoreDomain);
+        user.setUserName(username);
+        return user;
+    }
+
     public static boolean isFido2DTOPersistenceSupported() {
 
         if (!isFIDO2DTOPersistenceStatusChecked) {
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dao;
+
+import com.yubico.webauthn.AssertionResult;
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CredentialRegistration;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2StoredCredential;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2DuplicateRegistrationException;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.application.common.model.User;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Concurrent in-memory FIDO2 credential store, intended for tests and benchmarks. Registrations are lost when the
+ * server is restarted and are not shared between the nodes of a cluster.
+ *
+ * Reads are served without locking; writes are serialized so that the per-user and per-credential indexes are kept
+ * consistent with the registrations.
+ */
+public class FIDO2InMemoryCredentialStore implements FIDO2CredentialStore {
+
+    private final Map<CredentialKey, StoredRegistration> registrations = new ConcurrentHashMap<>();
+    private final Map<UserKey, Set<CredentialKey>> userIndex = new ConcurrentHashMap<>();
+    private final Map<ByteArray, Set<CredentialKey>> credentialIdIndex = new ConcurrentHashMap<>();
+    private final Map<ByteArray, Set<CredentialKey>> userHandleIndex = new ConcurrentHashMap<>();
+
+    @Override
+    public Set<PublicKeyCredentialDescriptor> getCredentialIdsForUsername(String username) {
+
+        return getRegistrations(getUserKey(getThreadLocalUser(username))).stream()
+                .map(storedRegistration -> PublicKeyCredentialDescriptor.builder()
+                        .id(storedRegistration.getCredential().getCredentialId()).build())
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Optional<ByteArray> getUserHandleForUsername(String username) {
+
+        return getRegistrations(getUserKey(User.getUserFromUserName(username))).stream()
+                .map(storedRegistration -> storedRegistration.getCredential().getUserHandle())
+                .findFirst();
+    }
+
+    @Override
+    public Optional<String> getUsernameForUserHandle(ByteArray userHandle) {
+
+        return getRegistrations(userHandleIndex.get(userHandle)).stream()
+                .map(storedRegistration -> storedRegistration.userKey.toUser().toString())
+                .findFirst();
+    }
+
+    @Override
+    public Optional<RegisteredCredential> lookup(ByteArray credentialId, ByteArray userHandle) {
+
+        return Optional.ofNullable(registrations.get(new CredentialKey(credentialId, userHandle)))
+                .map(StoredRegistration::getCredential);
+    }
+
+    @Override
+    public Set<RegisteredCredential> lookupAll(ByteArray credentialId) {
+
+        return getRegistrations(credentialIdIndex.get(credentialId)).stream()
+                .map(StoredRegistration::getCredential)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Optional<FIDO2StoredCredential> getAssertionContext(ByteArray credentialId, ByteArray userHandle,
+                                                               String username)
+            throws FIDO2AuthenticatorServerException {
+
+        return FIDO2DeviceStoreDAO.getCredentialForAssertion(getRegistrations(credentialIdIndex.get(credentialId))
+                .stream()
+                .map(storedRegistration -> new FIDO2StoredCredential(storedRegistration.userKey.tenantId,
+                        storedRegistration.userKey.userStoreDomain, storedRegistration.userKey.username,
+                        storedRegistration.getCredential()))
+                .collect(Collectors.toList()), userHandle, username);
+    }
+
+    @Override
+    public Optional<Long> getSignatureCount(ByteArray credentialId, ByteArray userHandle) {
+
+        return lookup(credentialId, userHandle).map(RegisteredCredential::getSignatureCount);
+    }
+
+    @Override
+    public synchronized void addFIDO2RegistrationByUsername(String username, FIDO2CredentialRegistration reg)
+            throws FIDO2AuthenticatorServerException {
+
+        StoredRegistration storedRegistration = new StoredRegistration(getUserKey(getThreadLocalUser(username)),
+                reg.withRegistrationTime(Instant.now()));
+        if (registrations.containsKey(storedRegistration.getCredentialKey())) {
+            throw new FIDO2DuplicateRegistrationException("A FIDO2 device registration already exists for the " +
+                    "credential of username: " + username, null);
+        }
+        add(storedRegistration);
+    }
+
+    @Override
+    public Collection<FIDO2CredentialRegistration> getFIDO2RegistrationsByUsername(String username) {
+
+        return getFIDO2RegistrationsByUser(User.getUserFromUserName(username));
+    }
+
+    @Override
+    public Collection<FIDO2CredentialRegistration> getFIDO2RegistrationsByUser(User user) {
+
+        return getRegistrations(getUserKey(user)).stream()
+                .map(storedRegistration -> storedRegistration.registration)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean hasFIDO2Registrations(User user) {
+
+        Set<CredentialKey> credentialKeys = userIndex.get(getUserKey(user));
+        return credentialKeys != null && !credentialKeys.isEmpty();
+    }
+
+    @Override
+    public Optional<FIDO2CredentialRegistration> getFIDO2RegistrationByUsernameAndCredentialId(
+            String username, ByteArray credentialId) {
+
+        return getRegistration(getUserKey(User.getUserFromUserName(username)), credentialId)
+                .map(storedRegistration -> storedRegistration.registration);
+    }
+
+    @Override
+    public synchronized void removeFIDO2RegistrationByUsername(String username,
+                                                               FIDO2CredentialRegistration registration) {
+
+        getRegistration(getUserKey(User.getUserFromUserName(username)), registration.getCredential()
+                .getCredentialId()).ifPresent(this::remove);
+    }
+
+    @Override
+    public synchronized void updateFIDO2DeviceDisplayName(User user, FIDO2CredentialRegistration registration,
+                                                          String newDisplayName) {
+
+        getRegistration(getUserKey(user), registration.getCredential().getCredentialId()).ifPresent(
+                storedRegistration -> replace(storedRegistration, storedRegistration.registration
+                        .withDisplayName(newDisplayName)));
+    }
+
+    @Override
+    public synchronized void updateFIDO2SignatureCountByUsername(String username, FIDO2CredentialRegistration reg) {
+
+        getRegistration(getUserKey(getThreadLocalUser(username)), reg.getCredential().getCredentialId()).ifPresent(
+                storedRegistration -> replace(storedRegistration, withSignatureCount(storedRegistration.registration,
+                        reg.getSignatureCount())));
+    }
+
+    @Override
+    public synchronized void updateFIDO2SignatureCount(AssertionResult result) {
+
+        StoredRegistration storedRegistration = registrations.get(new CredentialKey(result.getCredentialId(),
+                result.getUserHandle()));
+        // Signature counts are never decreased, in line with the database store.
+        if (storedRegistration != null &&
+                storedRegistration.getCredential().getSignatureCount() < result.getSignatureCount()) {
+            replace(storedRegistration, withSignatureCount(storedRegistration.registration,
+                    result.getSignatureCount()));
+        }
+    }
+
+    @Override
+    public synchronized void updateDomainNameOfRegistration(int tenantId, String currentUserStoreName,
+                                                            String newUserStoreName) {
+
+        for (StoredRegistration storedRegistration : getRegistrationsOfDomain(tenantId, currentUserStoreName)) {
+            remove(storedRegistration);
+            add(new StoredRegistration(new UserKey(tenantId, newUserStoreName, storedRegistration.userKey.username),
+                    storedRegistration.registration));
+        }
+    }
+
+    @Override
+    public synchronized void deleteRegistrationFromDomain(int tenantId, String userStoreName) {
+
+        getRegistrationsOfDomain(tenantId, userStoreName).forEach(this::remove);
+    }
+
+    @Override
+    public synchronized void deleteRegistrationsForUser(String username, String userStoreName, int tenantId) {
+
+        getRegistrations(new UserKey(tenantId, userStoreName, username)).forEach(this::remove);
+    }
+
+    private List<StoredRegistration> getRegistrations(UserKey userKey) {
+
+        return getRegistrations(userIndex.get(userKey));
+    }
+
+    private List<StoredRegistration> getRegistrations(Set<CredentialKey> credentialKeys) {
+
+        if (credentialKeys == null) {
+            return Collections.emptyList();
+        }
+        List<StoredRegistration> storedRegistrations = new ArrayList<>(credentialKeys.size());
+        for (CredentialKey credentialKey : credentialKeys) {
+            StoredRegistration storedRegistration = registrations.get(credentialKey);
+            if (storedRegistration != null) {
+                storedRegistrations.add(storedRegistration);
+            }
+        }
+        return storedRegistrations;
+    }
+
+    private Optional<StoredRegistration> getRegistration(UserKey userKey, ByteArray credentialId) {
+
+        return getRegistrations(userKey).stream()
+                .filter(storedRegistration -> storedRegistration.getCredential().getCredentialId()
+                        .equals(credentialId))
+                .findFirst();
+    }
+
+    private List<StoredRegistration> getRegistrationsOfDomain(int tenantId, String userStoreName) {
+
+        return registrations.values().stream()
+                .filter(storedRegistration -> storedRegistration.userKey.tenantId == tenantId &&
+                        storedRegistration.userKey.userStoreDomain.equalsIgnoreCase(userStoreName))
+                .collect(Collectors.toList());
+    }
+
+    private void replace(StoredRegistration storedRegistration, FIDO2CredentialRegistration registration) {
+
+        registrations.replace(storedRegistration.getCredentialKey(), storedRegistration,
+                new StoredRegistration(storedRegistration.userKey, registration));
+    }
+
+    private void add(StoredRegistration storedRegistration) {
+
+        CredentialKey credentialKey = storedRegistration.getCredentialKey();
+        registrations.put(credentialKey, storedRegistration);
+        addToIndex(userIndex, storedRegistration.userKey, credentialKey);
+        addToIndex(credentialIdIndex, credentialKey.credentialId, credentialKey);
+        addToIndex(userHandleIndex, credentialKey.userHandle, credentialKey);
+    }
+
+    private void remove(StoredRegistration storedRegistration) {
+
+        CredentialKey credentialKey = storedRegistration.getCredentialKey();
+        registrations.remove(credentialKey);
+        removeFromIndex(userIndex, storedRegistration.userKey, credentialKey);
+        removeFromIndex(credentialIdIndex, credentialKey.credentialId, credentialKey);
+        removeFromIndex(userHandleIndex, credentialKey.userHandle, credentialKey);
+    }
+
+    private static <K> void addToIndex(Map<K, Set<CredentialKey>> index, K key, CredentialKey credentialKey) {
+
+        index.computeIfAbsent(key, indexKey -> ConcurrentHashMap.newKeySet()).add(credentialKey);
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<CredentialKey>> index, K key, CredentialKey credentialKey) {
+
+        index.computeIfPresent(key, (indexKey, credentialKeys) -> {
+            credentialKeys.remove(credentialKey);
+            return credentialKeys.isEmpty() ? null : credentialKeys;
+        });
+    }
+
+    private static FIDO2CredentialRegistration withSignatureCount(FIDO2CredentialRegistration registration,
+                                                                  long signatureCount) {
+
+        RegisteredCredential credential = registration.getCredential();
+        return registration.withSignatureCount(signatureCount).withCredential(RegisteredCredential.builder()
+                .credentialId(credential.getCredentialId())
+                .userHandle(credential.getUserHandle())
+                .publicKeyCose(credential.getPublicKeyCose())
+                .signatureCount(signatureCount)
+                .build());
+    }
+
+    /*
+    Get the user object from a thread local property since the available username is not fully qualified to
+    rebuild the user object properly.
+    */
+    private static User getThreadLocalUser(String username) {
+
+        User user = (User) IdentityUtil.threadLocalProperties.get().get(FIDO2AuthenticatorConstants.FIDO2_USER);
+        if (user == null) {
+            user = User.getUserFromUserName(username);
+        }
+        return user;
+    }
+
+    private static UserKey getUserKey(User user) {
+
+        return new UserKey(IdentityTenantUtil.getTenantId(user.getTenantDomain()), user.getUserStoreDomain(),
+                user.getUserName());
+    }
+
+    private static final class StoredRegistration {
+
+        private final UserKey userKey;
+        private final FIDO2CredentialRegistration registration;
+
+        private StoredRegistration(UserKey userKey, FIDO2CredentialRegistration registration) {
+
+            this.userKey = userKey;
+            this.registration = registration;
+        }
+
+        private RegisteredCredential getCredential() {
+
+            return registration.getCredential();
+        }
+
+        private CredentialKey getCredentialKey() {
+
+            return new CredentialKey(getCredential().getCredentialId(), getCredential().getUserHandle());
+        }
+    }
+
+    /**
+     * Identifier of a credential, matching the primary key of the database store.
+     */
+    private static final class CredentialKey {
+
+        private final ByteArray credentialId;
+        private final ByteArray userHandle;
+
+        private CredentialKey(ByteArray credentialId, ByteArray userHandle) {
+
+            this.credentialId = credentialId;
+            this.userHandle = userHandle;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CredentialKey)) {
+                return false;
+            }
+            CredentialKey that = (CredentialKey) o;
+            return credentialId.equals(that.credentialId) && userHandle.equals(that.userHandle);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(credentialId, userHandle);
+        }
+    }
+
+    /**
+     * Identifier of a user. Userstore domains are matched case insensitively.
+     */
+    private static final class UserKey {
+
+        private final int tenantId;
+        private final String userStoreDomain;
+        private final String username;
+
+        private UserKey(int tenantId, String userStoreDomain, String username) {
+
+            this.tenantId = tenantId;
+            this.userStoreDomain = StringUtils.defaultString(userStoreDomain).toUpperCase(Locale.ENGLISH);
+            this.username = username;
+        }
+
+        private User toUser() {
+
+            User user = new User();
+            user.setTenantDomain(IdentityTenantUtil.getTenantDomain(tenantId));
+            user.setUserStoreDomain(userStoreDomain);
+            user.setUserName(username);
+            return user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserKey)) {
+                return false;
+            }
+            UserKey that = (UserKey) o;
+            return tenantId == that.tenantId && userStoreDomain.equals(that.userStoreDomain) &&
+                    Objects.equals(username, that.username);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(tenantId, userStoreDomain, username);
+        }
+    }
+}
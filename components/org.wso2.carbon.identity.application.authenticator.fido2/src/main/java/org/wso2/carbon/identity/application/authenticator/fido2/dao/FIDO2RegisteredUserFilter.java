@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dao;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDOUtil;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-tenant Bloom filter of the users owning at least one FIDO2 credential, used to answer "the user has no
+ * passkey" without querying the database. All operations answer conservatively unless the filter is enabled through
+ * the identity configuration and has been built.
+ *
+ * The filters are built by streaming FIDO2_DEVICE_STORE when the bundle is activated and rebuilt periodically. Users
+ * are added when a credential is registered on this node. Bloom filters do not support removals, hence users whose
+ * credentials are deleted are dropped on the next rebuild, while a tenant whose userstore domain is renamed is served
+ * from the database until the next rebuild.
+ *
+ * The filter is node local, hence the users registered since the last rebuild or synchronization, which include the
+ * users registered on other nodes of a cluster, are added by a periodic synchronization. Lookups are always answered
+ * from memory, hence a user whose first credential was registered on another node may be reported as not owning a
+ * credential for up to the synchronization interval. The synchronization may only be disabled when every
+ * registration is made on this node.
+ */
+public class FIDO2RegisteredUserFilter {
+
+    private static final Log log = LogFactory.getLog(FIDO2RegisteredUserFilter.class);
+    private static final int NO_OF_THREADS = 1;
+    private static final int FETCH_SIZE = 1000;
+    // Registrations are timestamped by the clock of the registering node and become visible once committed.
+    private static final long RECENT_REGISTRATION_MARGIN = TimeUnit.MINUTES.toMillis(5);
+
+    private static volatile FIDO2RegisteredUserFilter instance;
+
+    private final boolean enabled;
+    private final int expectedUsers;
+    private final double falsePositiveProbability;
+    private final long rebuildInterval;
+    private final long syncInterval;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Long> invalidatedTenants = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Map<Integer, BloomFilter> filters;
+    private volatile Queue<RegisteredUser> pendingUsers;
+    private volatile long syncedSince;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong negativeLookupCount = new AtomicLong();
+    private final AtomicLong positiveLookupCount = new AtomicLong();
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+    private final AtomicLong rebuildCount = new AtomicLong();
+    private final AtomicLong syncCount = new AtomicLong();
+    private volatile long lastRebuildDuration = -1;
+
+    FIDO2RegisteredUserFilter(boolean enabled, int expectedUsers, double falsePositiveProbability,
+                              long rebuildInterval) {
+
+        this(enabled, expectedUsers, falsePositiveProbability, rebuildInterval, 0);
+    }
+
+    /**
+     * @param enabled                  Whether the filter is enabled.
+     * @param expectedUsers            Expected number of users owning a credential per tenant.
+     * @param falsePositiveProbability Target false positive probability.
+     * @param rebuildInterval          Interval between two rebuilds in minutes.
+     * @param syncInterval             Interval between two synchronizations of the recent registrations in seconds,
+     *                                 or 0 to disable the synchronization.
+     */
+    FIDO2RegisteredUserFilter(boolean enabled, int expectedUsers, double falsePositiveProbability,
+                              long rebuildInterval, long syncInterval) {
+
+        this.enabled = enabled;
+        this.expectedUsers = Math.max(1, expectedUsers);
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.rebuildInterval = Math.max(1, rebuildInterval);
+        this.syncInterval = Math.max(0, syncInterval);
+    }
+
+    public static FIDO2RegisteredUserFilter getInstance() {
+
+        if (instance == null) {
+            synchronized (FIDO2RegisteredUserFilter.class) {
+                if (instance == null) {
+                    instance = new FIDO2RegisteredUserFilter(FIDOUtil.isRegisteredUserFilterEnabled(),
+                            FIDOUtil.getRegisteredUserFilterExpectedUsers(),
+                            FIDOUtil.getRegisteredUserFilterFalsePositiveProbability(),
+                            FIDOUtil.getRegisteredUserFilterRebuildInterval(),
+                            FIDOUtil.getRegisteredUserFilterSyncInterval());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Build the filters and schedule the periodic rebuild.
+     */
+    public synchronized void start() {
+
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newScheduledThreadPool(NO_OF_THREADS);
+        scheduler.scheduleWithFixedDelay(new RebuildTask(this), 0, rebuildInterval, TimeUnit.MINUTES);
+        if (syncInterval > 0) {
+            scheduler.scheduleWithFixedDelay(new SyncTask(this), syncInterval, syncInterval, TimeUnit.SECONDS);
+        }
+        log.info("FIDO2 registered user filter is activated.");
+    }
+
+    public synchronized void shutdown() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Check whether the user may own a FIDO2 credential.
+     *
+     * @param tenantId        Tenant ID.
+     * @param userStoreDomain Userstore domain.
+     * @param username        Username.
+     * @return False only if the user definitely does not own a FIDO2 credential.
+     */
+    public boolean mightHaveRegistrations(int tenantId, String userStoreDomain, String username) {
+
+        Map<Integer, BloomFilter> currentFilters = filters;
+        if (!enabled || currentFilters == null || invalidatedTenants.containsKey(tenantId)) {
+            return true;
+        }
+        String userKey = getUserKey(userStoreDomain, username);
+        BloomFilter filter = currentFilters.get(tenantId);
+        if (filter != null && filter.mightContain(userKey)) {
+            positiveLookupCount.incrementAndGet();
+            return true;
+        }
+        negativeLookupCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Record that a user reported by the filter as a possible credential owner does not own a credential.
+     *
+     * @param tenantId Tenant ID.
+     */
+    public void recordFalsePositive(int tenantId) {
+
+        if (enabled && filters != null && !invalidatedTenants.containsKey(tenantId)) {
+            falsePositiveCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Add a user who registered a FIDO2 credential. Should be invoked once the registration is committed.
+     *
+     * @param tenantId        Tenant ID.
+     * @param userStoreDomain Userstore domain.
+     * @param username        Username.
+     */
+    public void addUser(int tenantId, String userStoreDomain, String username) {
+
+        if (!enabled) {
+            return;
+        }
+        addUserKey(tenantId, getUserKey(userStoreDomain, username));
+    }
+
+    private void addUserKey(int tenantId, String userKey) {
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, BloomFilter> currentFilters = filters;
+            if (currentFilters != null) {
+                currentFilters.computeIfAbsent(tenantId, id -> new BloomFilter(expectedUsers,
+                        falsePositiveProbability)).put(userKey);
+            }
+            // Users added while the filters are being rebuilt may be missing in the rebuilt filters.
+            Queue<RegisteredUser> currentPendingUsers = pendingUsers;
+            if (currentPendingUsers != null) {
+                currentPendingUsers.add(new RegisteredUser(tenantId, userKey));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stop answering from the filter of a tenant until the next rebuild. Should be invoked when users of the tenant
+     * change in a way that can not be reflected in the filter, such as renaming a userstore domain.
+     *
+     * @param tenantId Tenant ID.
+     */
+    public void invalidateTenant(int tenantId) {
+
+        if (enabled) {
+            invalidatedTenants.put(tenantId, sequence.incrementAndGet());
+        }
+    }
+
+    /**
+     * Rebuild the filters from the database.
+     */
+    public synchronized void rebuild() {
+
+        if (!enabled) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        long startSequence = sequence.get();
+        pendingUsers = new ConcurrentLinkedQueue<>();
+        long rebuiltSince = startTime;
+        try {
+            Map<Integer, BloomFilter> rebuiltFilters = loadFilters();
+            lock.writeLock().lock();
+            try {
+                for (RegisteredUser pendingUser : pendingUsers) {
+                    rebuiltFilters.computeIfAbsent(pendingUser.tenantId, id -> new BloomFilter(expectedUsers,
+                            falsePositiveProbability)).put(pendingUser.userKey);
+                }
+                filters = rebuiltFilters;
+                syncedSince = rebuiltSince;
+                invalidatedTenants.values().removeIf(invalidatedSequence -> invalidatedSequence <= startSequence);
+            } finally {
+                pendingUsers = null;
+                lock.writeLock().unlock();
+            }
+            lastRebuildDuration = System.currentTimeMillis() - startTime;
+            rebuildCount.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("FIDO2 registered user filter is rebuilt for " + rebuiltFilters.size() + " tenants in " +
+                        lastRebuildDuration + "ms.");
+            }
+        } catch (SQLException e) {
+            pendingUsers = null;
+            log.error("Error while building the FIDO2 registered user filter.", e);
+        }
+    }
+
+    /**
+     * Add the users registered since the last rebuild or synchronization, such as the users registered on other nodes.
+     */
+    synchronized void syncRecentRegistrations() {
+
+        if (!enabled || filters == null) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants
+                     .SQLQueries.GET_REGISTERED_USERS_SINCE)) {
+            preparedStatement.setTimestamp(1, new Timestamp(syncedSince - RECENT_REGISTRATION_MARGIN));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    addUserKey(resultSet.getInt(FIDO2AuthenticatorConstants.TENANT_ID), getUserKey(
+                            resultSet.getString(FIDO2AuthenticatorConstants.USER_STORE_DOMAIN),
+                            resultSet.getString(FIDO2AuthenticatorConstants.USERNAME)));
+                }
+            }
+            syncedSince = Math.max(syncedSince, startTime);
+            syncCount.incrementAndGet();
+        } catch (SQLException e) {
+            log.error("Error while retrieving the recent FIDO2 registrations for the registered user filter.", e);
+        }
+    }
+
+    public long getNegativeLookupCount() {
+
+        return negativeLookupCount.get();
+    }
+
+    public long getPositiveLookupCount() {
+
+        return positiveLookupCount.get();
+    }
+
+    public long getFalsePositiveCount() {
+
+        return falsePositiveCount.get();
+    }
+
+    /**
+     * Get the observed false positive rate, i.e. the fraction of the users without a FIDO2 credential that the
+     * filter reported as possible credential owners.
+     *
+     * @return Observed false positive rate.
+     */
+    public double getFalsePositiveRate() {
+
+        long falsePositives = falsePositiveCount.get();
+        long negatives = falsePositives + negativeLookupCount.get();
+        return negatives == 0 ? 0 : (double) falsePositives / negatives;
+    }
+
+    public long getRebuildCount() {
+
+        return rebuildCount.get();
+    }
+
+    /**
+     * Get the number of times the recent registrations were retrieved.
+     *
+     * @return Number of synchronizations.
+     */
+    public long getSyncCount() {
+
+        return syncCount.get();
+    }
+
+    /**
+     * Get the duration of the last successful rebuild.
+     *
+     * @return Duration in milliseconds or -1 if the filter has not been built.
+     */
+    public long getLastRebuildDuration() {
+
+        return lastRebuildDuration;
+    }
+
+    private Map<Integer, BloomFilter> loadFilters() throws SQLException {
+
+        Map<Integer, BloomFilter> loadedFilters = new ConcurrentHashMap<>();
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection()) {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants
+                    .SQLQueries.GET_REGISTRATION_COUNT_PER_TENANT);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    // The registration count is an upper bound of the number of users owning a credential.
+                    int registrationCount = resultSet.getInt(FIDO2AuthenticatorConstants.REGISTRATION_COUNT);
+                    loadedFilters.put(resultSet.getInt(FIDO2AuthenticatorConstants.TENANT_ID), new BloomFilter(
+                            Math.max(expectedUsers, registrationCount), falsePositiveProbability));
+                }
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants
+                    .SQLQueries.GET_REGISTERED_USERS)) {
+                preparedStatement.setFetchSize(FETCH_SIZE);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        loadedFilters.computeIfAbsent(resultSet.getInt(FIDO2AuthenticatorConstants.TENANT_ID),
+                                id -> new BloomFilter(expectedUsers, falsePositiveProbability)).put(getUserKey(
+                                resultSet.getString(FIDO2AuthenticatorConstants.USER_STORE_DOMAIN),
+                                resultSet.getString(FIDO2AuthenticatorConstants.USERNAME)));
+                    }
+                }
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+        return loadedFilters;
+    }
+
+    /**
+     * Usernames and domains are matched case insensitively as userstores may be case insensitive. This can only
+     * increase false positives.
+     */
+    private static String getUserKey(String userStoreDomain, String username) {
+
+        return StringUtils.defaultString(userStoreDomain).toUpperCase(Locale.ENGLISH) + "/" +
+                StringUtils.defaultString(username).toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final class RebuildTask implements Runnable {
+
+        private final FIDO2RegisteredUserFilter filter;
+
+        private RebuildTask(FIDO2RegisteredUserFilter filter) {
+
+            this.filter = filter;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                filter.rebuild();
+            } catch (RuntimeException e) {
+                // Keep the scheduled task alive for the next rebuild.
+                log.error("Unexpected error while building the FIDO2 registered user filter.", e);
+            }
+        }
+    }
+
+    private static final class SyncTask implements Runnable {
+
+        private final FIDO2RegisteredUserFilter filter;
+
+        private SyncTask(FIDO2RegisteredUserFilter filter) {
+
+            this.filter = filter;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                filter.syncRecentRegistrations();
+            } catch (RuntimeException e) {
+                // Keep the scheduled task alive for the next synchronization.
+                log.error("Unexpected error while synchronizing the FIDO2 registered user filter.", e);
+            }
+        }
+    }
+
+    private static final class RegisteredUser {
+
+        private final int tenantId;
+        private final String userKey;
+
+        private RegisteredUser(int tenantId, String userKey) {
+
+            this.tenantId = tenantId;
+            this.userKey = userKey;
+        }
+    }
+
+    /**
+     * Thread safe Bloom filter using double hashing over a 64-bit FNV-1a hash.
+     */
+    static final class BloomFilter {
+
+        private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+
+            double probability = falsePositiveProbability > 0 && falsePositiveProbability < 1 ?
+                    falsePositiveProbability : FIDO2AuthenticatorConstants
+                    .FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY_DEFAULT_VALUE;
+            long optimalBitCount = (long) Math.ceil(-expectedInsertions * Math.log(probability) /
+                    (Math.log(2) * Math.log(2)));
+            int words = (int) Math.max(1, (optimalBitCount + Long.SIZE - 1) / Long.SIZE);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words * Long.SIZE;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        void put(String key) {
+
+            long hash = hash(key);
+            for (int i = 0; i < hashCount; i++) {
+                long index = index(hash, i);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                do {
+                    current = bits.get(word);
+                    if ((current & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String key) {
+
+            long hash = hash(key);
+            for (int i = 0; i < hashCount; i++) {
+                long index = index(hash, i);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long index(long hash, int i) {
+
+            long combinedHash = (int) hash + (long) i * (int) (hash >>> 32);
+            return (combinedHash & Long.MAX_VALUE) % bitCount;
+        }
+
+        private static long hash(String key) {
+
+            long hash = FNV_OFFSET_BASIS;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= FNV_PRIME;
+            }
+            // Spread the bits so that both halves of the hash are usable.
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dao;
+
+import com.yubico.webauthn.data.ByteArray;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind updater for FIDO2 signature counts.
+ *
+ * Signature count updates are coalesced per credential keeping the highest counter, and flushed to the database in
+ * JDBC batches by a background task. The number of credentials with pending updates is bounded; once the bound is
+ * reached {@link #enqueue(ByteArray, ByteArray, long)} rejects new credentials so that the caller updates the counter
+ * synchronously.
+ */
+public class FIDO2SignatureCountUpdater {
+
+    private static final Log log = LogFactory.getLog(FIDO2SignatureCountUpdater.class);
+    private static final int NO_OF_THREADS = 1;
+    private static final long SHUTDOWN_TIMEOUT_IN_SECONDS = 10;
+
+    private final Map<CredentialKey, Long> pendingUpdates = new ConcurrentHashMap<>();
+    private final int maxPendingUpdates;
+    private final int batchSize;
+    private final long flushInterval;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong flushedUpdateCount = new AtomicLong();
+    private final AtomicLong coalescedUpdateCount = new AtomicLong();
+    private final AtomicLong rejectedUpdateCount = new AtomicLong();
+
+    /**
+     * @param maxPendingUpdates Maximum number of credentials with pending updates.
+     * @param batchSize         Maximum number of updates in a JDBC batch.
+     * @param flushInterval     Interval between two flushes in milliseconds.
+     */
+    public FIDO2SignatureCountUpdater(int maxPendingUpdates, int batchSize, long flushInterval) {
+
+        this.maxPendingUpdates = maxPendingUpdates;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.scheduler = Executors.newScheduledThreadPool(NO_OF_THREADS);
+    }
+
+    public void start() {
+
+        scheduler.scheduleWithFixedDelay(new FlushTask(this), flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        log.info("FIDO2 signature count write-behind updater is activated.");
+    }
+
+    /**
+     * Stop the background task and flush the pending updates.
+     */
+    public void shutdown() {
+
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pendingUpdates.isEmpty()) {
+            log.warn(pendingUpdates.size() + " FIDO2 signature count updates could not be flushed during shutdown.");
+        }
+    }
+
+    /**
+     * Queue a signature count update.
+     *
+     * @param credentialId   Credential ID.
+     * @param userHandle     User handle.
+     * @param signatureCount New signature count.
+     * @return False if the update is rejected as the queue is full, in which case the caller should update the
+     * signature count synchronously.
+     */
+    public boolean enqueue(ByteArray credentialId, ByteArray userHandle, long signatureCount) {
+
+        CredentialKey credentialKey = new CredentialKey(credentialId.getBase64(), userHandle.getBase64());
+        if (!pendingUpdates.containsKey(credentialKey) && pendingUpdates.size() >= maxPendingUpdates) {
+            rejectedUpdateCount.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("FIDO2 signature count update queue is full. Rejecting the update of credential: " +
+                        credentialKey.credentialId);
+            }
+            return false;
+        }
+        pendingUpdates.compute(credentialKey, (key, pendingSignatureCount) -> {
+            if (pendingSignatureCount == null) {
+                return signatureCount;
+            }
+            coalescedUpdateCount.incrementAndGet();
+            return Math.max(pendingSignatureCount, signatureCount);
+        });
+        return true;
+    }
+
+    /**
+     * Get the pending signature count of a credential.
+     *
+     * @param credentialId Credential ID.
+     * @param userHandle   User handle.
+     * @return Pending signature count or null if there is no pending update for the credential.
+     */
+    public Long getPendingSignatureCount(ByteArray credentialId, ByteArray userHandle) {
+
+        return pendingUpdates.get(new CredentialKey(credentialId.getBase64(), userHandle.getBase64()));
+    }
+
+    /**
+     * Write the pending updates to the database in batches.
+     */
+    public synchronized void flush() {
+
+        List<Map.Entry<CredentialKey, Long>> updates = new ArrayList<>(pendingUpdates.entrySet());
+        for (int i = 0; i < updates.size(); i += batchSize) {
+            List<Map.Entry<CredentialKey, Long>> batch = updates.subList(i, Math.min(i + batchSize, updates.size()));
+            try {
+                executeBatch(batch);
+                for (Map.Entry<CredentialKey, Long> update : batch) {
+                    // Keep the entry if a higher signature count was queued while flushing.
+                    pendingUpdates.remove(update.getKey(), update.getValue());
+                }
+                flushedUpdateCount.addAndGet(batch.size());
+            } catch (SQLException e) {
+                log.error("Error while flushing " + batch.size() + " FIDO2 signature count updates. The updates " +
+                        "will be retried.", e);
+            }
+        }
+    }
+
+    public int getPendingUpdateCount() {
+
+        return pendingUpdates.size();
+    }
+
+    public long getFlushedUpdateCount() {
+
+        return flushedUpdateCount.get();
+    }
+
+    public long getCoalescedUpdateCount() {
+
+        return coalescedUpdateCount.get();
+    }
+
+    public long getRejectedUpdateCount() {
+
+        return rejectedUpdateCount.get();
+    }
+
+    private void executeBatch(List<Map.Entry<CredentialKey, Long>> batch) throws SQLException {
+
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(); PreparedStatement preparedStatement =
+                connection.prepareStatement(FIDO2AuthenticatorConstants.SQLQueries
+                        .UPDATE_SIGNATURE_COUNT_BY_CREDENTIAL_QUERY)) {
+            for (Map.Entry<CredentialKey, Long> update : batch) {
+                preparedStatement.setLong(1, update.getValue());
+                preparedStatement.setString(2, update.getKey().credentialId);
+                preparedStatement.setString(3, update.getKey().userHandle);
+                preparedStatement.setLong(4, update.getValue());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    private static final class FlushTask implements Runnable {
+
+        private final FIDO2SignatureCountUpdater updater;
+
+        private FlushTask(FIDO2SignatureCountUpdater updater) {
+
+            this.updater = updater;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                updater.flush();
+            } catch (RuntimeException e) {
+                // Keep the scheduled task alive for the next flush.
+                log.error("Unexpected error while flushing FIDO2 signature count updates.", e);
+            }
+        }
+    }
+
+    /**
+     * Identifier of a credential.
+     */
+    private static final class CredentialKey {
+
+        private final String credentialId;
+        private final String userHandle;
+
+        private CredentialKey(String credentialId, String userHandle) {
+
+            this.credentialId = credentialId;
+            this.userHandle = userHandle;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CredentialKey)) {
+                return false;
+            }
+            CredentialKey that = (CredentialKey) o;
+            return credentialId.equals(that.credentialId) && userHandle.equals(that.userHandle);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(credentialId, userHandle);
+        }
+    }
+}
@@ -19,18 +19,24 @@
 package org.wso2.carbon.identity.application.authenticator.fido2.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.yubico.webauthn.AssertionRequest;
 import com.yubico.webauthn.data.ByteArray;
 import com.yubico.webauthn.data.PublicKeyCredentialRequestOptions;
 import lombok.NonNull;
 import lombok.Value;
 
+import java.io.IOException;
 import java.util.Optional;
 
 /**
  * Wrapper for FIDO2 finish registration request.
  */
 @Value
+@JsonSerialize(using = AssertionRequestWrapper.Serializer.class)
 public class AssertionRequestWrapper {
 
     @NonNull
@@ -46,17 +52,63 @@ public class AssertionRequestWrapper {
     @JsonIgnore
     private final transient com.yubico.webauthn.AssertionRequest request;
 
+    // Request options already serialized for the FIDO2 cache, written as is to the response.
+    @JsonIgnore
+    private final transient String publicKeyCredentialRequestOptionsJson;
+
     public AssertionRequestWrapper(
         @NonNull
                 ByteArray requestId,
         @NonNull
                 AssertionRequest request
+    ) {
+        this(requestId, request, null);
+    }
+
+    public AssertionRequestWrapper(
+        @NonNull
+                ByteArray requestId,
+        @NonNull
+                AssertionRequest request,
+                String publicKeyCredentialRequestOptionsJson
     ) {
         this.requestId = requestId;
         this.publicKeyCredentialRequestOptions = request.getPublicKeyCredentialRequestOptions();
         this.username = request.getUsername();
         this.request = request;
+        this.publicKeyCredentialRequestOptionsJson = publicKeyCredentialRequestOptionsJson;
 
     }
 
+    /**
+     * Serializer writing the already serialized request options as is.
+     */
+    public static class Serializer extends StdSerializer<AssertionRequestWrapper> {
+
+        private static final long serialVersionUID = -6329474125809542217L;
+
+        public Serializer() {
+
+            super(AssertionRequestWrapper.class);
+        }
+
+        @Override
+        public void serialize(AssertionRequestWrapper wrapper, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+
+            generator.writeStartObject();
+            provider.defaultSerializeField("requestId", wrapper.getRequestId(), generator);
+            generator.writeFieldName("publicKeyCredentialRequestOptions");
+            if (wrapper.getPublicKeyCredentialRequestOptionsJson() != null) {
+                generator.writeRawValue(wrapper.getPublicKeyCredentialRequestOptionsJson());
+            } else {
+                provider.defaultSerializeValue(wrapper.getPublicKeyCredentialRequestOptions(), generator);
+            }
+            // Absent usernames are omitted, as done by the JSON mapper of the Yubico library.
+            if (wrapper.getUsername().isPresent()) {
+                provider.defaultSerializeField("username", wrapper.getUsername().get(), generator);
+            }
+            generator.writeEndObject();
+        }
+    }
 }
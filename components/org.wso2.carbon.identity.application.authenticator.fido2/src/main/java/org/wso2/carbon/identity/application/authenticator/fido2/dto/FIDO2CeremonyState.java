@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dto;
+
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.data.AuthenticatorSelectionCriteria;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import com.yubico.webauthn.data.PublicKeyCredentialParameters;
+import com.yubico.webauthn.data.PublicKeyCredentialRequestOptions;
+import com.yubico.webauthn.data.RegistrationExtensionInputs;
+import com.yubico.webauthn.data.RelyingPartyIdentity;
+import com.yubico.webauthn.data.ResidentKeyRequirement;
+import com.yubico.webauthn.data.UserIdentity;
+import com.yubico.webauthn.data.UserVerificationRequirement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * State of a FIDO2 ceremony, limited to the values required to finish the ceremony. The state is kept in a compact
+ * binary form in place of the JSON serialized creation options or assertion request, and the Yubico request objects
+ * are rebuilt from it when the ceremony is finished.
+ */
+public class FIDO2CeremonyState {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte REGISTRATION = 1;
+    private static final byte ASSERTION = 2;
+
+    private final boolean registration;
+    private final ByteArray challenge;
+    private final String rpId;
+    private final ByteArray userHandle;
+    private final String username;
+    private final String userDisplayName;
+    private final List<ByteArray> allowedCredentialIds;
+    private final UserVerificationRequirement userVerification;
+    private final Long timeout;
+    private final boolean residentKeyRequired;
+
+    private FIDO2CeremonyState(boolean registration, ByteArray challenge, String rpId, ByteArray userHandle,
+                               String username, String userDisplayName, List<ByteArray> allowedCredentialIds,
+                               UserVerificationRequirement userVerification, Long timeout,
+                               boolean residentKeyRequired) {
+
+        this.registration = registration;
+        this.challenge = challenge;
+        this.rpId = rpId;
+        this.userHandle = userHandle;
+        this.username = username;
+        this.userDisplayName = userDisplayName;
+        this.allowedCredentialIds = allowedCredentialIds;
+        this.userVerification = userVerification;
+        this.timeout = timeout;
+        this.residentKeyRequired = residentKeyRequired;
+    }
+
+    /**
+     * Capture the state of a registration ceremony.
+     *
+     * @param options Credential creation options sent to the client.
+     * @return Ceremony state.
+     */
+    public static FIDO2CeremonyState fromCreationOptions(PublicKeyCredentialCreationOptions options) {
+
+        UserIdentity user = options.getUser();
+        UserVerificationRequirement userVerification = options.getAuthenticatorSelection()
+                .flatMap(AuthenticatorSelectionCriteria::getUserVerification).orElse(null);
+        boolean residentKeyRequired = options.getAuthenticatorSelection()
+                .flatMap(AuthenticatorSelectionCriteria::getResidentKey)
+                .map(ResidentKeyRequirement.REQUIRED::equals).orElse(false);
+        return new FIDO2CeremonyState(true, options.getChallenge(), options.getRp().getId(), user.getId(),
+                user.getName(), user.getDisplayName(), Collections.emptyList(), userVerification,
+                options.getTimeout().orElse(null), residentKeyRequired);
+    }
+
+    /**
+     * Capture the state of an authentication ceremony.
+     *
+     * @param request Assertion request sent to the client.
+     * @return Ceremony state.
+     */
+    public static FIDO2CeremonyState fromAssertionRequest(AssertionRequest request) {
+
+        PublicKeyCredentialRequestOptions options = request.getPublicKeyCredentialRequestOptions();
+        List<ByteArray> allowedCredentialIds = options.getAllowCredentials()
+                .map(descriptors -> descriptors.stream().map(PublicKeyCredentialDescriptor::getId)
+                        .collect(Collectors.toList()))
+                .orElse(null);
+        return new FIDO2CeremonyState(false, options.getChallenge(), options.getRpId().orElse(null),
+                request.getUserHandle().orElse(null), request.getUsername().orElse(null), null,
+                allowedCredentialIds, options.getUserVerification().orElse(null), options.getTimeout().orElse(null),
+                false);
+    }
+
+    public boolean isRegistration() {
+
+        return registration;
+    }
+
+    /**
+     * Rebuild the credential creation options of a registration ceremony. The relying party name and the public key
+     * parameters are not kept in the state, and are taken from the relying party which finishes the ceremony.
+     *
+     * @param relyingPartyIdentity Identity of the relying party.
+     * @param pubKeyCredParams     Public key parameters preferred by the relying party.
+     * @return Credential creation options.
+     */
+    public PublicKeyCredentialCreationOptions toCreationOptions(RelyingPartyIdentity relyingPartyIdentity,
+                                                                List<PublicKeyCredentialParameters> pubKeyCredParams) {
+
+        AuthenticatorSelectionCriteria.AuthenticatorSelectionCriteriaBuilder authenticatorSelection =
+                AuthenticatorSelectionCriteria.builder().residentKey(residentKeyRequired ?
+                        ResidentKeyRequirement.REQUIRED : ResidentKeyRequirement.DISCOURAGED);
+        if (userVerification != null) {
+            authenticatorSelection.userVerification(userVerification);
+        }
+        PublicKeyCredentialCreationOptions.PublicKeyCredentialCreationOptionsBuilder builder =
+                PublicKeyCredentialCreationOptions.builder()
+                        .rp(RelyingPartyIdentity.builder().id(rpId).name(relyingPartyIdentity.getName()).build())
+                        .user(UserIdentity.builder().name(username).displayName(userDisplayName).id(userHandle)
+                                .build())
+                        .challenge(challenge)
+                        .pubKeyCredParams(pubKeyCredParams)
+                        .authenticatorSelection(authenticatorSelection.build())
+                        // The relying party always requests the credential properties extension.
+                        .extensions(RegistrationExtensionInputs.builder().credProps().build());
+        if (timeout != null) {
+            builder.timeout(timeout);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Rebuild the assertion request of an authentication ceremony.
+     *
+     * @return Assertion request.
+     */
+    public AssertionRequest toAssertionRequest() {
+
+        PublicKeyCredentialRequestOptions.PublicKeyCredentialRequestOptionsBuilder options =
+                PublicKeyCredentialRequestOptions.builder().challenge(challenge);
+        if (rpId != null) {
+            options.rpId(rpId);
+        }
+        if (allowedCredentialIds != null) {
+            options.allowCredentials(allowedCredentialIds.stream()
+                    .map(credentialId -> PublicKeyCredentialDescriptor.builder().id(credentialId).build())
+                    .collect(Collectors.toList()));
+        }
+        if (userVerification != null) {
+            options.userVerification(userVerification);
+        }
+        if (timeout != null) {
+            options.timeout(timeout);
+        }
+        AssertionRequest.AssertionRequestBuilder builder = AssertionRequest.builder()
+                .publicKeyCredentialRequestOptions(options.build());
+        if (username != null) {
+            builder.username(username);
+        }
+        if (userHandle != null) {
+            builder.userHandle(userHandle);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Encode the state into its binary form.
+     *
+     * @return Encoded state.
+     */
+    public byte[] encode() {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeByte(registration ? REGISTRATION : ASSERTION);
+            writeBytes(output, challenge);
+            writeString(output, rpId);
+            writeBytes(output, userHandle);
+            writeString(output, username);
+            writeString(output, userDisplayName);
+            if (allowedCredentialIds == null) {
+                output.writeInt(-1);
+            } else {
+                output.writeInt(allowedCredentialIds.size());
+                for (ByteArray credentialId : allowedCredentialIds) {
+                    writeBytes(output, credentialId);
+                }
+            }
+            writeString(output, userVerification != null ? userVerification.name() : null);
+            output.writeLong(timeout != null ? timeout : -1);
+            output.writeBoolean(residentKeyRequired);
+        } catch (IOException e) {
+            // Not expected while writing to memory.
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a state from its binary form.
+     *
+     * @param encoded Encoded state.
+     * @return Ceremony state.
+     * @throws IOException If the encoded state is malformed.
+     */
+    public static FIDO2CeremonyState decode(byte[] encoded) throws IOException {
+
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            if (input.readByte() != FORMAT_VERSION) {
+                throw new IOException("Unsupported FIDO2 ceremony state format.");
+            }
+            byte type = input.readByte();
+            if (type != REGISTRATION && type != ASSERTION) {
+                throw new IOException("Unknown FIDO2 ceremony type: " + type);
+            }
+            ByteArray challenge = readBytes(input);
+            String rpId = readString(input);
+            ByteArray userHandle = readBytes(input);
+            String username = readString(input);
+            String userDisplayName = readString(input);
+            List<ByteArray> allowedCredentialIds = null;
+            int allowedCredentialCount = input.readInt();
+            if (allowedCredentialCount >= 0) {
+                allowedCredentialIds = new ArrayList<>(allowedCredentialCount);
+                for (int i = 0; i < allowedCredentialCount; i++) {
+                    allowedCredentialIds.add(readBytes(input));
+                }
+            }
+            String userVerification = readString(input);
+            long timeout = input.readLong();
+            boolean residentKeyRequired = input.readBoolean();
+            if (challenge == null) {
+                throw new IOException("FIDO2 ceremony state does not contain a challenge.");
+            }
+            try {
+                return new FIDO2CeremonyState(type == REGISTRATION, challenge, rpId, userHandle, username,
+                        userDisplayName, allowedCredentialIds, userVerification != null ?
+                        UserVerificationRequirement.valueOf(userVerification) : null, timeout >= 0 ? timeout : null,
+                        residentKeyRequired);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown user verification requirement: " + userVerification, e);
+            }
+        }
+    }
+
+    private static void writeBytes(DataOutputStream output, ByteArray value) throws IOException {
+
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        output.writeInt(value.size());
+        output.write(value.getBytes());
+    }
+
+    private static ByteArray readBytes(DataInputStream input) throws IOException {
+
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > input.available()) {
+            throw new IOException("Truncated FIDO2 ceremony state.");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new ByteArray(bytes);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+
+        writeBytes(output, value != null ? new ByteArray(value.getBytes(StandardCharsets.UTF_8)) : null);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+
+        ByteArray value = readBytes(input);
+        return value != null ? new String(value.getBytes(), StandardCharsets.UTF_8) : null;
+    }
+}
@@ -20,18 +20,33 @@ package org.wso2.carbon.identity.application.authenticator.fido2.dto;
 
 import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Class to store FIDO2 related tenant specific configurations.
+ *
+ * An instance is an immutable snapshot of the configurations of a tenant.
  */
 public class FIDO2Configuration {
 
     private final boolean attestationValidationEnabled;
     private final boolean mdsValidationEnabled;
+    private final List<String> trustedOrigins;
 
     public FIDO2Configuration(boolean attestationValidationEnabled, boolean mdsValidationEnabled) {
 
+        this(attestationValidationEnabled, mdsValidationEnabled, null);
+    }
+
+    public FIDO2Configuration(boolean attestationValidationEnabled, boolean mdsValidationEnabled,
+                              List<String> trustedOrigins) {
+
         this.attestationValidationEnabled = attestationValidationEnabled;
         this.mdsValidationEnabled = mdsValidationEnabled;
+        this.trustedOrigins = trustedOrigins != null ?
+                Collections.unmodifiableList(new ArrayList<>(trustedOrigins)) : null;
     }
 
     public FIDO2Configuration() {
@@ -39,6 +54,7 @@ public class FIDO2Configuration {
         this.attestationValidationEnabled = FIDO2AuthenticatorConstants
                 .FIDO2_CONFIG_ATTESTATION_VALIDATION_DEFAULT_VALUE;
         this.mdsValidationEnabled = FIDO2AuthenticatorConstants.FIDO2_CONFIG_MDS_VALIDATION_DEFAULT_VALUE;
+        this.trustedOrigins = null;
     }
 
     /**
@@ -62,4 +78,15 @@ public class FIDO2Configuration {
 
         return mdsValidationEnabled;
     }
+
+    /**
+     * Get the trusted origins stored for the tenant in the fido-connector resource.
+     *
+     * @return Unmodifiable list of the trusted origins, or null if none are stored and the trusted origins of the
+     * files apply.
+     */
+    public List<String> getTrustedOrigins() {
+
+        return trustedOrigins;
+    }
 }
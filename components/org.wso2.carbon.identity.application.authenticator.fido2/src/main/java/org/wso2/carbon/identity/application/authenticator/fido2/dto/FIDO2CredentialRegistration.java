@@ -24,11 +24,14 @@ import com.yubico.webauthn.RegisteredCredential;
 import com.yubico.fido.metadata.MetadataBLOBPayloadEntry;
 import com.yubico.webauthn.data.UserIdentity;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.Value;
 import lombok.experimental.Wither;
 
 import java.time.Instant;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Wrapper for FIDO2 credentials.
@@ -52,6 +55,35 @@ public class FIDO2CredentialRegistration {
     private String displayName;
     private boolean isUsernamelessSupported;
 
+    /*
+    Suppliers used to decode the user identity and the credential only when they are accessed, for the registrations
+    read from the database without the decoded values.
+    */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Supplier<UserIdentity> userIdentitySupplier;
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Supplier<RegisteredCredential> credentialSupplier;
+
+    public UserIdentity getUserIdentity() {
+
+        if (userIdentity == null && userIdentitySupplier != null) {
+            return userIdentitySupplier.get();
+        }
+        return userIdentity;
+    }
+
+    public RegisteredCredential getCredential() {
+
+        if (credential == null && credentialSupplier != null) {
+            return credentialSupplier.get();
+        }
+        return credential;
+    }
+
     @JsonProperty("registrationTime")
     public String getRegistrationTimestamp() {
         return registrationTime.toString();
@@ -18,17 +18,25 @@
 
 package org.wso2.carbon.identity.application.authenticator.fido2.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.yubico.webauthn.data.ByteArray;
 import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 
+import java.io.IOException;
+
 /**
  * Wrapper for FIDO2 registration request.
  */
 @Value
 @EqualsAndHashCode(callSuper = false)
+@JsonSerialize(using = FIDO2RegistrationRequest.Serializer.class)
 public class FIDO2RegistrationRequest {
 
     @JsonProperty("requestId")
@@ -37,4 +45,56 @@ public class FIDO2RegistrationRequest {
     @JsonProperty("publicKeyCredentialCreationOptions")
     private PublicKeyCredentialCreationOptions publicKeyCredentialCreationOptions;
 
+    // Creation options already serialized for the FIDO2 cache, written as is to the response.
+    @JsonIgnore
+    private transient String publicKeyCredentialCreationOptionsJson;
+
+    public FIDO2RegistrationRequest(ByteArray requestId,
+                                    PublicKeyCredentialCreationOptions publicKeyCredentialCreationOptions) {
+
+        this(requestId, publicKeyCredentialCreationOptions, null);
+    }
+
+    /**
+     * @param requestId                              Request ID of the ceremony.
+     * @param publicKeyCredentialCreationOptions     Credential creation options.
+     * @param publicKeyCredentialCreationOptionsJson Credential creation options serialized with the JSON mapper of
+     *                                               the Yubico library, or null to serialize them on demand.
+     */
+    public FIDO2RegistrationRequest(ByteArray requestId,
+                                    PublicKeyCredentialCreationOptions publicKeyCredentialCreationOptions,
+                                    String publicKeyCredentialCreationOptionsJson) {
+
+        this.requestId = requestId;
+        this.publicKeyCredentialCreationOptions = publicKeyCredentialCreationOptions;
+        this.publicKeyCredentialCreationOptionsJson = publicKeyCredentialCreationOptionsJson;
+    }
+
+    /**
+     * Serializer writing the already serialized creation options as is.
+     */
+    public static class Serializer extends StdSerializer<FIDO2RegistrationRequest> {
+
+        private static final long serialVersionUID = 4205783916204825153L;
+
+        public Serializer() {
+
+            super(FIDO2RegistrationRequest.class);
+        }
+
+        @Override
+        public void serialize(FIDO2RegistrationRequest request, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+
+            generator.writeStartObject();
+            provider.defaultSerializeField("requestId", request.getRequestId(), generator);
+            generator.writeFieldName("publicKeyCredentialCreationOptions");
+            if (request.getPublicKeyCredentialCreationOptionsJson() != null) {
+                generator.writeRawValue(request.getPublicKeyCredentialCreationOptionsJson());
+            } else {
+                provider.defaultSerializeValue(request.getPublicKeyCredentialCreationOptions(), generator);
+            }
+            generator.writeEndObject();
+        }
+    }
 }
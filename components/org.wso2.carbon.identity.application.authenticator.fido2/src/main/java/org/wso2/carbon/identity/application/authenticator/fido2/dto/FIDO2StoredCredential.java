@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dto;
+
+import com.yubico.webauthn.RegisteredCredential;
+
+/**
+ * Key material of a stored FIDO2 credential together with the user owning it.
+ */
+public class FIDO2StoredCredential {
+
+    private final int tenantId;
+    private final String userStoreDomain;
+    private final String username;
+    private final RegisteredCredential credential;
+
+    public FIDO2StoredCredential(int tenantId, String userStoreDomain, String username,
+                                 RegisteredCredential credential) {
+
+        this.tenantId = tenantId;
+        this.userStoreDomain = userStoreDomain;
+        this.username = username;
+        this.credential = credential;
+    }
+
+    public int getTenantId() {
+
+        return tenantId;
+    }
+
+    public String getUserStoreDomain() {
+
+        return userStoreDomain;
+    }
+
+    public String getUsername() {
+
+        return username;
+    }
+
+    public RegisteredCredential getCredential() {
+
+        return credential;
+    }
+}
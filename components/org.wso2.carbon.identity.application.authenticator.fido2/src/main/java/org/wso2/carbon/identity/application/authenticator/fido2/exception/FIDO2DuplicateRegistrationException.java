@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.exception;
+
+/**
+ * Exception to be thrown when a FIDO2 registration is persisted for a credential which is already registered.
+ */
+public class FIDO2DuplicateRegistrationException extends FIDO2AuthenticatorServerException {
+
+    private static final long serialVersionUID = 2364104729520591816L;
+
+    public FIDO2DuplicateRegistrationException(String message, Throwable cause) {
+
+        super(message, cause);
+    }
+
+}
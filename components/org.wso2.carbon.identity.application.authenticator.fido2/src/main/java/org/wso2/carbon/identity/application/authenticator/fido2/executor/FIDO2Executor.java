@@ -21,6 +21,7 @@ package org.wso2.carbon.identity.application.authenticator.fido2.executor;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.yubico.internal.util.JacksonCodecs;
@@ -142,8 +143,11 @@ public class FIDO2Executor extends AuthenticationExecutor {
                 Map<String, String> additionalInfo = new HashMap<>();
                 Map<String, Object> webAuthnData = new HashMap<>();
                 webAuthnData.put(FIDO2ExecutorConstants.ACTION, FIDO2ExecutorConstants.ActionTypes.WEBAUTHN_CREATE);
+                // Reuse the options serialized for the FIDO2 cache, if available.
                 webAuthnData.put(FIDO2ExecutorConstants.PUBLIC_KEY_CREDENTIAL_CREATION_OPTIONS,
-                        fidoRequest.getPublicKeyCredentialCreationOptions());
+                        fidoRequest.getPublicKeyCredentialCreationOptionsJson() != null ?
+                                new RawValue(fidoRequest.getPublicKeyCredentialCreationOptionsJson()) :
+                                fidoRequest.getPublicKeyCredentialCreationOptions());
                 additionalInfo.put(Constants.WEBAUTHN_DATA, FIDOUtil.writeJson(webAuthnData));
                 response.setAdditionalInfo(additionalInfo);
                 response.getContextProperties().put(FIDO2ExecutorConstants.REQUEST_ID_CONTEXT_KEY,
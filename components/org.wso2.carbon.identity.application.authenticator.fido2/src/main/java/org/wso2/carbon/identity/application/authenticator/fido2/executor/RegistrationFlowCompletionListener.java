@@ -25,9 +25,9 @@ import com.yubico.webauthn.RegisteredCredential;
 import com.yubico.webauthn.data.UserIdentity;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2DeviceStoreDAO;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CredentialRegistration;
 import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceDataHolder;
 import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2ExecutorConstants;
 import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDOUtil;
 import org.wso2.carbon.identity.central.log.mgt.utils.LoggerUtils;
@@ -82,8 +82,8 @@ public class RegistrationFlowCompletionListener extends AbstractFlowExecutionLis
             try {
                 String username = context.getFlowUser().getUsername();
                 username = UserCoreUtil.addTenantDomainToEntry(username, context.getTenantDomain());
-                FIDO2DeviceStoreDAO.getInstance().addFIDO2RegistrationByUsername(username,
-                        buildFromMap(credentialRegistration));
+                FIDO2AuthenticatorServiceDataHolder.getInstance().getCredentialStore()
+                        .addFIDO2RegistrationByUsername(username, buildFromMap(credentialRegistration));
             } catch (FIDO2AuthenticatorServerException e) {
                 LOG.error("Error while storing FIDO2 registration for user: " +
                         LoggerUtils.getMaskedContent(context.getFlowUser().getUsername()) + " in flow: " +
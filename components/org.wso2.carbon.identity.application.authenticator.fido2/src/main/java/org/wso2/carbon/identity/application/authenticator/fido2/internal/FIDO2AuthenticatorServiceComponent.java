@@ -28,9 +28,21 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CacheAsyncWriter;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CachePurger;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2ConfigurationCache;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2RelyingPartyCache;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2CachingCredentialStore;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2CredentialStorageMigrator;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2CredentialStore;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2DeviceStoreDAO;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2InMemoryCredentialStore;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2RegisteredUserFilter;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2SignatureCountUpdater;
 import org.wso2.carbon.identity.application.authenticator.fido2.executor.FIDO2Executor;
 import org.wso2.carbon.identity.application.authenticator.fido2.executor.RegistrationFlowCompletionListener;
 import org.wso2.carbon.identity.application.authenticator.fido2.listener.FIDO2DeviceAssociatedUserOperationsListener;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2RandomPool;
 import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDOUtil;
 import org.wso2.carbon.identity.configuration.mgt.core.ConfigurationManager;
 import org.wso2.carbon.identity.core.util.IdentityCoreInitializedEvent;
@@ -40,7 +52,12 @@ import org.wso2.carbon.identity.user.store.configuration.listener.UserStoreConfi
 import org.wso2.carbon.user.core.listener.UserOperationEventListener;
 import org.wso2.carbon.user.core.service.RealmService;
 
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_TYPE_IN_MEMORY;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_TYPE_JDBC;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_MDS_SCHEDULER_INITIAL_DELAY;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RANDOM_POOL_VALUE_LENGTH;
 
 /**
  * OSGI declarative service component which handles registration and unregistration of FIDO2AuthenticatorComponent.
@@ -59,7 +76,10 @@ public class FIDO2AuthenticatorServiceComponent {
         FIDO2AuthenticatorServiceDataHolder dataHolder = FIDO2AuthenticatorServiceDataHolder.getInstance();
         BundleContext bundleContext = context.getBundleContext();
 
+        FIDO2CredentialStore credentialStore = buildCredentialStore();
+        dataHolder.setCredentialStore(credentialStore);
         try {
+            bundleContext.registerService(FIDO2CredentialStore.class.getName(), credentialStore, null);
             bundleContext.registerService(
                     UserStoreConfigListener.class.getName(), new UserStoreConfigListenerImpl(), null);
             bundleContext.registerService(UserOperationEventListener.class.getName(),
@@ -78,6 +98,61 @@ public class FIDO2AuthenticatorServiceComponent {
             metadataSchedulerService.activateMetadataInitialization();
         }
 
+        // Activate write-behind signature count updates if enabled.
+        if (FIDOUtil.isSignatureCountWriteBehindEnabled()) {
+            FIDO2SignatureCountUpdater signatureCountUpdater = new FIDO2SignatureCountUpdater(
+                    FIDOUtil.getSignatureCountWriteBehindMaxPendingUpdates(),
+                    FIDOUtil.getSignatureCountWriteBehindBatchSize(),
+                    FIDOUtil.getSignatureCountWriteBehindFlushInterval());
+            signatureCountUpdater.start();
+            dataHolder.setSignatureCountUpdater(signatureCountUpdater);
+        }
+
+        // Activate asynchronous persistence of the FIDO2 cache entries if enabled.
+        if (FIDOUtil.isCacheAsyncPersistenceEnabled()) {
+            FIDO2CacheAsyncWriter cacheAsyncWriter = new FIDO2CacheAsyncWriter(
+                    FIDOUtil.getCacheAsyncPersistenceMaxPendingWrites(),
+                    FIDOUtil.getCacheAsyncPersistenceBatchSize(),
+                    FIDOUtil.getCacheAsyncPersistenceFlushInterval(),
+                    FIDOUtil.getCacheAsyncPersistenceMaxWaitTime());
+            cacheAsyncWriter.start();
+            dataHolder.setCacheAsyncWriter(cacheAsyncWriter);
+        }
+
+        // Activate purging of the expired FIDO2 cache entries if enabled.
+        if (FIDOUtil.isCachePurgeEnabled()) {
+            FIDO2CachePurger cachePurger = new FIDO2CachePurger(FIDOUtil.getCacheEntryTimeout(),
+                    TimeUnit.SECONDS.toMillis(FIDOUtil.getCachePurgeInterval()), FIDOUtil.getCachePurgeBatchSize());
+            cachePurger.start();
+            dataHolder.setCachePurger(cachePurger);
+        }
+
+        // Activate the pre-filled random pool if enabled.
+        if (FIDOUtil.isRandomPoolEnabled()) {
+            FIDO2RandomPool randomPool = new FIDO2RandomPool(FIDOUtil.getRandomPoolSize(),
+                    FIDO_RANDOM_POOL_VALUE_LENGTH, FIDOUtil.getRandomPoolRefillInterval(),
+                    FIDOUtil.getRandomPoolAlgorithm(), FIDOUtil.getRandomPoolProvider());
+            randomPool.start();
+            dataHolder.setRandomPool(randomPool);
+        }
+
+        // Build the registered user filter if enabled.
+        if (FIDOUtil.isRegisteredUserFilterEnabled()) {
+            FIDO2RegisteredUserFilter.getInstance().start();
+        }
+
+        // Populate the credential columns of the existing registrations if enabled.
+        if (FIDOUtil.isCredentialStorageMigrationOnStartupEnabled() &&
+                (FIDO2DeviceStoreDAO.getCredentialStorageMode().isBinaryWriteEnabled() ||
+                        FIDO2DeviceStoreDAO.isCredentialIdHashEnabled())) {
+            FIDO2CredentialStorageMigrator credentialStorageMigrator = new FIDO2CredentialStorageMigrator(
+                    FIDOUtil.getCredentialStorageMigrationBatchSize(),
+                    FIDO2DeviceStoreDAO.getCredentialStorageMode().isBinaryWriteEnabled(),
+                    FIDO2DeviceStoreDAO.isCredentialIdHashEnabled());
+            credentialStorageMigrator.start();
+            dataHolder.setCredentialStorageMigrator(credentialStorageMigrator);
+        }
+
         dataHolder.setBundleContext(bundleContext);
     }
 
@@ -88,10 +163,78 @@ public class FIDO2AuthenticatorServiceComponent {
             log.debug("Deactivating FIDO2Authenticator bundle...");
         }
 
+        FIDO2SignatureCountUpdater signatureCountUpdater = FIDO2AuthenticatorServiceDataHolder.getInstance()
+                .getSignatureCountUpdater();
+        if (signatureCountUpdater != null) {
+            // Stop accepting new updates before flushing the pending ones.
+            FIDO2AuthenticatorServiceDataHolder.getInstance().setSignatureCountUpdater(null);
+            signatureCountUpdater.shutdown();
+        }
+        FIDO2RegisteredUserFilter.getInstance().shutdown();
+        FIDO2CredentialStorageMigrator credentialStorageMigrator = FIDO2AuthenticatorServiceDataHolder.getInstance()
+                .getCredentialStorageMigrator();
+        if (credentialStorageMigrator != null) {
+            credentialStorageMigrator.shutdown();
+            FIDO2AuthenticatorServiceDataHolder.getInstance().setCredentialStorageMigrator(null);
+        }
+        FIDO2CacheAsyncWriter cacheAsyncWriter = FIDO2AuthenticatorServiceDataHolder.getInstance()
+                .getCacheAsyncWriter();
+        if (cacheAsyncWriter != null) {
+            // Write the queued entries synchronously from now on, before flushing the queue.
+            FIDO2AuthenticatorServiceDataHolder.getInstance().setCacheAsyncWriter(null);
+            cacheAsyncWriter.shutdown();
+        }
+        FIDO2CachePurger cachePurger = FIDO2AuthenticatorServiceDataHolder.getInstance().getCachePurger();
+        if (cachePurger != null) {
+            cachePurger.shutdown();
+            FIDO2AuthenticatorServiceDataHolder.getInstance().setCachePurger(null);
+        }
+        FIDO2RandomPool randomPool = FIDO2AuthenticatorServiceDataHolder.getInstance().getRandomPool();
+        if (randomPool != null) {
+            FIDO2AuthenticatorServiceDataHolder.getInstance().setRandomPool(null);
+            randomPool.shutdown();
+        }
+        FIDO2AuthenticatorServiceDataHolder.getInstance().setCredentialStore(null);
         FIDO2AuthenticatorServiceDataHolder.getInstance().setBundleContext(null);
         FIDO2AuthenticatorServiceDataHolder.getInstance().setMetadataService(null);
     }
 
+    /**
+     * Build the FIDO2 credential store configured in the identity configuration, falling back to the database store
+     * if the configured store can not be instantiated.
+     *
+     * @return FIDO2 credential store.
+     */
+    private FIDO2CredentialStore buildCredentialStore() {
+
+        String credentialStoreType = FIDOUtil.getCredentialStoreType();
+        FIDO2CredentialStore credentialStore;
+        if (FIDO_CREDENTIAL_STORE_TYPE_JDBC.equalsIgnoreCase(credentialStoreType)) {
+            credentialStore = FIDO2DeviceStoreDAO.getInstance();
+        } else if (FIDO_CREDENTIAL_STORE_TYPE_IN_MEMORY.equalsIgnoreCase(credentialStoreType)) {
+            log.warn("FIDO2 registrations are stored in memory. Registrations are not persisted and should not be " +
+                    "used in production.");
+            credentialStore = new FIDO2InMemoryCredentialStore();
+        } else {
+            try {
+                credentialStore = Class.forName(credentialStoreType).asSubclass(FIDO2CredentialStore.class)
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                log.error("Error while instantiating the FIDO2 credential store: " + credentialStoreType +
+                        ". Using the database store.", e);
+                credentialStore = FIDO2DeviceStoreDAO.getInstance();
+            }
+        }
+        if (FIDOUtil.isCredentialStoreCacheEnabled()) {
+            credentialStore = new FIDO2CachingCredentialStore(credentialStore,
+                    FIDOUtil.getCredentialStoreCacheCapacity(), FIDOUtil.getCredentialStoreCacheTimeout());
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("FIDO2 credential store: " + credentialStore.getClass().getName() + " is activated.");
+        }
+        return credentialStore;
+    }
+
     public static RealmService getRealmService() {
 
         return FIDO2AuthenticatorServiceDataHolder.getInstance().getRealmService();
@@ -167,6 +310,9 @@ public class FIDO2AuthenticatorServiceComponent {
             log.debug("Setting the configuration manager in FIDO2 authenticator bundle");
         }
         FIDO2AuthenticatorServiceDataHolder.getInstance().setConfigurationManager(configurationManager);
+        // Snapshots and relying parties built from the previous configuration manager are not kept.
+        FIDO2ConfigurationCache.getInstance().clear();
+        FIDO2RelyingPartyCache.getInstance().clear();
     }
 
     protected void unregisterConfigurationManager(ConfigurationManager configurationManager) {
@@ -175,5 +321,7 @@ public class FIDO2AuthenticatorServiceComponent {
             log.debug("Unsetting the configuration manager in FIDO2 authenticator bundle");
         }
         FIDO2AuthenticatorServiceDataHolder.getInstance().setConfigurationManager(null);
+        FIDO2ConfigurationCache.getInstance().clear();
+        FIDO2RelyingPartyCache.getInstance().clear();
     }
 }
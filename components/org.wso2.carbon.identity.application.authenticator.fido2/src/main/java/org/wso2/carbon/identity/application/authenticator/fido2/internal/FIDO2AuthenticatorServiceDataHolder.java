@@ -21,6 +21,13 @@ package org.wso2.carbon.identity.application.authenticator.fido2.internal;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.framework.BundleContext;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CacheAsyncWriter;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CachePurger;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2CredentialStorageMigrator;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2CredentialStore;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2DeviceStoreDAO;
+import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2SignatureCountUpdater;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2RandomPool;
 import org.wso2.carbon.identity.configuration.mgt.core.ConfigurationManager;
 import org.wso2.carbon.user.core.service.RealmService;
 
@@ -35,6 +42,12 @@ public class FIDO2AuthenticatorServiceDataHolder {
     private RealmService realmService = null;
     private MetadataService metadataService = null;
     private ConfigurationManager configurationManager = null;
+    private FIDO2SignatureCountUpdater signatureCountUpdater = null;
+    private FIDO2CredentialStorageMigrator credentialStorageMigrator = null;
+    private FIDO2CachePurger cachePurger = null;
+    private volatile FIDO2CacheAsyncWriter cacheAsyncWriter = null;
+    private volatile FIDO2RandomPool randomPool = null;
+    private volatile FIDO2CredentialStore credentialStore = null;
 
     private FIDO2AuthenticatorServiceDataHolder() {
     }
@@ -78,4 +91,70 @@ public class FIDO2AuthenticatorServiceDataHolder {
 
         return configurationManager;
     }
+
+    public void setSignatureCountUpdater(FIDO2SignatureCountUpdater signatureCountUpdater) {
+
+        this.signatureCountUpdater = signatureCountUpdater;
+    }
+
+    public FIDO2SignatureCountUpdater getSignatureCountUpdater() {
+
+        return signatureCountUpdater;
+    }
+
+    public void setCredentialStorageMigrator(FIDO2CredentialStorageMigrator credentialStorageMigrator) {
+
+        this.credentialStorageMigrator = credentialStorageMigrator;
+    }
+
+    public FIDO2CredentialStorageMigrator getCredentialStorageMigrator() {
+
+        return credentialStorageMigrator;
+    }
+
+    public void setCachePurger(FIDO2CachePurger cachePurger) {
+
+        this.cachePurger = cachePurger;
+    }
+
+    public FIDO2CachePurger getCachePurger() {
+
+        return cachePurger;
+    }
+
+    public void setCacheAsyncWriter(FIDO2CacheAsyncWriter cacheAsyncWriter) {
+
+        this.cacheAsyncWriter = cacheAsyncWriter;
+    }
+
+    public FIDO2CacheAsyncWriter getCacheAsyncWriter() {
+
+        return cacheAsyncWriter;
+    }
+
+    public void setRandomPool(FIDO2RandomPool randomPool) {
+
+        this.randomPool = randomPool;
+    }
+
+    public FIDO2RandomPool getRandomPool() {
+
+        return randomPool;
+    }
+
+    public void setCredentialStore(FIDO2CredentialStore credentialStore) {
+
+        this.credentialStore = credentialStore;
+    }
+
+    /**
+     * Get the FIDO2 credential store in use.
+     *
+     * @return Configured credential store or the database store if the bundle is not activated.
+     */
+    public FIDO2CredentialStore getCredentialStore() {
+
+        FIDO2CredentialStore store = credentialStore;
+        return store != null ? store : FIDO2DeviceStoreDAO.getInstance();
+    }
 }
@@ -34,8 +34,8 @@ public class UserStoreConfigListenerImpl extends AbstractUserStoreConfigListener
 
         if (FIDO2DeviceStoreDAO.isFido2DTOPersistenceSupported()) {
             try {
-                FIDO2DeviceStoreDAO.getInstance().updateDomainNameOfRegistration(tenantId, currentUserStoreName,
-                        newUserStoreName);
+                FIDO2AuthenticatorServiceDataHolder.getInstance().getCredentialStore()
+                        .updateDomainNameOfRegistration(tenantId, currentUserStoreName, newUserStoreName);
             } catch (FIDO2AuthenticatorServerException e) {
                 throw new UserStoreException(e.getMessage(), e);
             }
@@ -47,7 +47,8 @@ public class UserStoreConfigListenerImpl extends AbstractUserStoreConfigListener
 
         if (FIDO2DeviceStoreDAO.isFido2DTOPersistenceSupported()) {
             try {
-                FIDO2DeviceStoreDAO.getInstance().deleteRegistrationFromDomain(tenantId, userStoreName);
+                FIDO2AuthenticatorServiceDataHolder.getInstance().getCredentialStore()
+                        .deleteRegistrationFromDomain(tenantId, userStoreName);
             } catch (FIDO2AuthenticatorServerException e) {
                 throw new UserStoreException(e.getMessage(), e);
             }
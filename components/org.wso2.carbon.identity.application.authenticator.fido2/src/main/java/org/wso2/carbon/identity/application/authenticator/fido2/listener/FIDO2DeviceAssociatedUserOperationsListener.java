@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2DeviceStoreDAO;
 import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceDataHolder;
 import org.wso2.carbon.identity.core.AbstractIdentityUserOperationEventListener;
 import org.wso2.carbon.identity.core.util.IdentityCoreConstants;
 import org.wso2.carbon.user.core.UserStoreException;
@@ -53,7 +54,8 @@ public class FIDO2DeviceAssociatedUserOperationsListener extends AbstractIdentit
             try {
                 String userStoreDomain = UserCoreUtil.getDomainName(userStoreManager.getRealmConfiguration());
                 int tenantId = userStoreManager.getTenantId();
-                FIDO2DeviceStoreDAO.getInstance().deleteRegistrationsForUser(userName, userStoreDomain, tenantId);
+                FIDO2AuthenticatorServiceDataHolder.getInstance().getCredentialStore().deleteRegistrationsForUser(
+                        userName, userStoreDomain, tenantId);
             } catch (FIDO2AuthenticatorServerException e) {
                 throw new UserStoreException("Error in deleting device registration for user " + userName, e);
             }
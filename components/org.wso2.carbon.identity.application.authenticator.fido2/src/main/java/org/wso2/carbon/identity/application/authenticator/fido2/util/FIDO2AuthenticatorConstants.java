@@ -33,6 +33,11 @@ public class FIDO2AuthenticatorConstants {
     public static final String CREDENTIAL_ID = "CREDENTIAL_ID";
     public static final String PUBLIC_KEY_COSE = "PUBLIC_KEY_COSE";
     public static final String SIGNATURE_COUNT = "SIGNATURE_COUNT";
+    public static final String REGISTRATION_COUNT = "REGISTRATION_COUNT";
+    public static final String USER_HANDLE_BIN = "USER_HANDLE_BIN";
+    public static final String CREDENTIAL_ID_BIN = "CREDENTIAL_ID_BIN";
+    public static final String PUBLIC_KEY_COSE_BIN = "PUBLIC_KEY_COSE_BIN";
+    public static final String CREDENTIAL_ID_HASH = "CREDENTIAL_ID_HASH";
 
     public static final String TIME_REGISTERED = "TIME_REGISTERED";
     public static final String USER_IDENTITY = "USER_IDENTITY";
@@ -49,6 +54,7 @@ public class FIDO2AuthenticatorConstants {
     public static final String DECODING_FAILED_MESSAGE = "Registration failed! Failed to decode response object.";
 
     public static final String FIDO2_USER = "FIDO2User";
+    public static final String FIDO2_ASSERTION_CONTEXT = "FIDO2AssertionContext";
     public static final String DISPLAY_NAME_CLAIM_URL = "http://wso2.org/claims/displayName";
     public static final String FIRST_NAME_CLAIM_URL = "http://wso2.org/claims/givenname";
     public static final String LAST_NAME_CLAIM_URL = "http://wso2.org/claims/lastname";
@@ -62,6 +68,102 @@ public class FIDO2AuthenticatorConstants {
     public static final String FIDO_RELYING_PARTY_USE_FULL_EFFECTIVE_DOMAIN
             = "FIDO.WebAuthn.RelyingParty.UseFullEffectiveDomain";
 
+    public static final String FIDO_SIGNATURE_COUNT_WRITE_BEHIND_ENABLED = "FIDO.SignatureCount.WriteBehind.Enable";
+    public static final String FIDO_SIGNATURE_COUNT_WRITE_BEHIND_MAX_PENDING_UPDATES
+            = "FIDO.SignatureCount.WriteBehind.MaxPendingUpdates";
+    public static final int FIDO_SIGNATURE_COUNT_WRITE_BEHIND_MAX_PENDING_UPDATES_DEFAULT_VALUE = 10000;
+    public static final String FIDO_SIGNATURE_COUNT_WRITE_BEHIND_BATCH_SIZE
+            = "FIDO.SignatureCount.WriteBehind.BatchSize";
+    public static final int FIDO_SIGNATURE_COUNT_WRITE_BEHIND_BATCH_SIZE_DEFAULT_VALUE = 100;
+    public static final String FIDO_SIGNATURE_COUNT_WRITE_BEHIND_FLUSH_INTERVAL
+            = "FIDO.SignatureCount.WriteBehind.FlushInterval";
+    public static final int FIDO_SIGNATURE_COUNT_WRITE_BEHIND_FLUSH_INTERVAL_DEFAULT_VALUE = 1000;
+
+    public static final String FIDO_REGISTERED_USER_FILTER_ENABLED = "FIDO.RegisteredUserFilter.Enable";
+    public static final String FIDO_REGISTERED_USER_FILTER_EXPECTED_USERS
+            = "FIDO.RegisteredUserFilter.ExpectedUsers";
+    public static final int FIDO_REGISTERED_USER_FILTER_EXPECTED_USERS_DEFAULT_VALUE = 1000;
+    public static final String FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY
+            = "FIDO.RegisteredUserFilter.FalsePositiveProbability";
+    public static final double FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY_DEFAULT_VALUE = 0.01;
+    public static final String FIDO_REGISTERED_USER_FILTER_REBUILD_INTERVAL
+            = "FIDO.RegisteredUserFilter.RebuildInterval";
+    public static final int FIDO_REGISTERED_USER_FILTER_REBUILD_INTERVAL_DEFAULT_VALUE = 60;
+    public static final String FIDO_REGISTERED_USER_FILTER_SYNC_INTERVAL = "FIDO.RegisteredUserFilter.SyncInterval";
+    public static final int FIDO_REGISTERED_USER_FILTER_SYNC_INTERVAL_DEFAULT_VALUE = 30;
+
+    public static final String FIDO_CREDENTIAL_STORAGE_MODE = "FIDO.CredentialStorage.Mode";
+    public static final String FIDO_CREDENTIAL_STORAGE_MIGRATE_ON_STARTUP = "FIDO.CredentialStorage.MigrateOnStartup";
+    public static final String FIDO_CREDENTIAL_STORAGE_MIGRATION_BATCH_SIZE
+            = "FIDO.CredentialStorage.MigrationBatchSize";
+    public static final int FIDO_CREDENTIAL_STORAGE_MIGRATION_BATCH_SIZE_DEFAULT_VALUE = 500;
+    public static final String FIDO_CREDENTIAL_ID_HASH_ENABLED = "FIDO.CredentialStorage.CredentialIdHash.Enable";
+    public static final String FIDO_CREDENTIAL_ID_HASH_LOOKUP_ENABLED
+            = "FIDO.CredentialStorage.CredentialIdHash.Lookup.Enable";
+
+    public static final String FIDO_CREDENTIAL_STORE_TYPE = "FIDO.CredentialStore.Type";
+    public static final String FIDO_CREDENTIAL_STORE_TYPE_JDBC = "JDBC";
+    public static final String FIDO_CREDENTIAL_STORE_TYPE_IN_MEMORY = "InMemory";
+    public static final String FIDO_CREDENTIAL_STORE_CACHE_ENABLED = "FIDO.CredentialStore.Cache.Enable";
+    public static final String FIDO_CREDENTIAL_STORE_CACHE_CAPACITY = "FIDO.CredentialStore.Cache.Capacity";
+    public static final int FIDO_CREDENTIAL_STORE_CACHE_CAPACITY_DEFAULT_VALUE = 10000;
+    public static final String FIDO_CREDENTIAL_STORE_CACHE_TIMEOUT = "FIDO.CredentialStore.Cache.Timeout";
+    public static final int FIDO_CREDENTIAL_STORE_CACHE_TIMEOUT_DEFAULT_VALUE = 300;
+
+    public static final String FIDO_COMPACT_CEREMONY_STATE_ENABLED = "FIDO.CompactCeremonyState.Enable";
+    public static final String FIDO_STATELESS_CHALLENGE_ENABLED = "FIDO.StatelessChallenge.Enable";
+    public static final String FIDO_STATELESS_CHALLENGE_KEY = "FIDO.StatelessChallenge.Key";
+    public static final String FIDO_STATELESS_CHALLENGE_VALIDITY = "FIDO.StatelessChallenge.Validity";
+    public static final int FIDO_STATELESS_CHALLENGE_VALIDITY_DEFAULT_VALUE = 300;
+    public static final String FIDO_STATELESS_CHALLENGE_REPLAY_CACHE_CAPACITY
+            = "FIDO.StatelessChallenge.ReplayCacheCapacity";
+    public static final int FIDO_STATELESS_CHALLENGE_REPLAY_CACHE_CAPACITY_DEFAULT_VALUE = 100000;
+
+    public static final String SESSION_DATA_PERSIST_ENABLED = "JDBCPersistenceManager.SessionDataPersist.Enable";
+    public static final String SESSION_DATA_PERSIST_POOL_SIZE = "JDBCPersistenceManager.SessionDataPersist.PoolSize";
+    public static final String SESSION_DATA_TEMP_DATA_CLEANUP_ENABLED
+            = "JDBCPersistenceManager.SessionDataPersist.TempDataCleanup.Enable";
+
+    public static final String FIDO_USER_RESPONSE_TIMEOUT = "FIDO.UserResponseTimeout";
+    public static final int FIDO_USER_RESPONSE_TIMEOUT_DEFAULT_VALUE = 300000;
+    public static final String FIDO_CACHE_EXPIRY_GRACE_PERIOD = "FIDO.Cache.ExpiryGracePeriod";
+    public static final int FIDO_CACHE_EXPIRY_GRACE_PERIOD_DEFAULT_VALUE = 60;
+    public static final String FIDO_CACHE_MAX_WEIGHT = "FIDO.Cache.MaxWeight";
+    public static final int FIDO_CACHE_MAX_WEIGHT_DEFAULT_VALUE = 0;
+    public static final String FIDO_CACHE_PURGE_ENABLED = "FIDO.Cache.Purge.Enable";
+    public static final String FIDO_CACHE_PURGE_INTERVAL = "FIDO.Cache.Purge.Interval";
+    public static final int FIDO_CACHE_PURGE_INTERVAL_DEFAULT_VALUE = 300;
+    public static final String FIDO_CACHE_PURGE_BATCH_SIZE = "FIDO.Cache.Purge.BatchSize";
+    public static final int FIDO_CACHE_PURGE_BATCH_SIZE_DEFAULT_VALUE = 500;
+    public static final String FIDO_CACHE_ASYNC_PERSISTENCE_ENABLED = "FIDO.Cache.AsyncPersistence.Enable";
+    public static final String FIDO_CACHE_ASYNC_PERSISTENCE_MAX_PENDING_WRITES
+            = "FIDO.Cache.AsyncPersistence.MaxPendingWrites";
+    public static final int FIDO_CACHE_ASYNC_PERSISTENCE_MAX_PENDING_WRITES_DEFAULT_VALUE = 10000;
+    public static final String FIDO_CACHE_ASYNC_PERSISTENCE_BATCH_SIZE = "FIDO.Cache.AsyncPersistence.BatchSize";
+    public static final int FIDO_CACHE_ASYNC_PERSISTENCE_BATCH_SIZE_DEFAULT_VALUE = 100;
+    public static final String FIDO_CACHE_ASYNC_PERSISTENCE_FLUSH_INTERVAL
+            = "FIDO.Cache.AsyncPersistence.FlushInterval";
+    public static final int FIDO_CACHE_ASYNC_PERSISTENCE_FLUSH_INTERVAL_DEFAULT_VALUE = 500;
+    public static final String FIDO_CACHE_ASYNC_PERSISTENCE_MAX_WAIT_TIME = "FIDO.Cache.AsyncPersistence.MaxWaitTime";
+    public static final int FIDO_CACHE_ASYNC_PERSISTENCE_MAX_WAIT_TIME_DEFAULT_VALUE = 1000;
+    public static final String FIDO_RANDOM_POOL_ENABLED = "FIDO.RandomPool.Enable";
+    public static final String FIDO_RANDOM_POOL_SIZE = "FIDO.RandomPool.Size";
+    public static final int FIDO_RANDOM_POOL_SIZE_DEFAULT_VALUE = 1024;
+    public static final String FIDO_RANDOM_POOL_REFILL_INTERVAL = "FIDO.RandomPool.RefillInterval";
+    public static final int FIDO_RANDOM_POOL_REFILL_INTERVAL_DEFAULT_VALUE = 100;
+    public static final String FIDO_RANDOM_POOL_ALGORITHM = "FIDO.RandomPool.Algorithm";
+    public static final String FIDO_RANDOM_POOL_PROVIDER = "FIDO.RandomPool.Provider";
+    public static final int FIDO_RANDOM_POOL_VALUE_LENGTH = 32;
+    public static final String FIDO_USERNAMELESS_ASSERTION_TEMPLATE_ENABLED
+            = "FIDO.UsernamelessAssertionTemplate.Enable";
+    public static final String FIDO_RELYING_PARTY_CACHE_ENABLED = "FIDO.WebAuthn.RelyingParty.Cache.Enable";
+    public static final String FIDO_RELYING_PARTY_ID_CACHE_ENABLED = "FIDO.WebAuthn.RelyingParty.IdCache.Enable";
+    public static final String FIDO_RELYING_PARTY_ID_CACHE_CAPACITY = "FIDO.WebAuthn.RelyingParty.IdCache.Capacity";
+    public static final int FIDO_RELYING_PARTY_ID_CACHE_CAPACITY_DEFAULT_VALUE = 1000;
+    public static final String FIDO_CONFIGURATION_CACHE_ENABLED = "FIDO.Configuration.Cache.Enable";
+    public static final String FIDO_CONFIGURATION_CACHE_TIMEOUT = "FIDO.Configuration.Cache.Timeout";
+    public static final int FIDO_CONFIGURATION_CACHE_TIMEOUT_DEFAULT_VALUE = 30;
+
     public static final String FIDO_CONFIG_RESOURCE_TYPE_NAME = "fido-config";
     public static final String FIDO2_CONFIG_RESOURCE_NAME = "fido2-validations";
     public static final String FIDO2_CONNECTOR_CONFIG_RESOURCE_NAME = "fido-connector";
@@ -88,31 +190,100 @@ public class FIDO2AuthenticatorConstants {
         public static final String GET_USERNAME_BY_USER_HANDLE = "SELECT TENANT_ID, DOMAIN_NAME , " +
                 "USER_NAME FROM FIDO2_DEVICE_STORE WHERE USER_HANDLE = ?";
 
-        public static final String GET_CREDENTIAL_BY_ID_AND_USER_HANDLE = "SELECT PUBLIC_KEY_COSE, SIGNATURE_COUNT " +
-                "FROM FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID = ? AND USER_HANDLE = ?";
+        public static final String GET_CREDENTIAL_BY_ID_AND_USER_HANDLE = "SELECT PUBLIC_KEY_COSE, SIGNATURE_COUNT, " +
+                "TENANT_ID, DOMAIN_NAME, USER_NAME FROM FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID = ? AND USER_HANDLE = ?";
+
+        public static final String GET_SIGNATURE_COUNT_BY_ID_AND_USER_HANDLE = "SELECT SIGNATURE_COUNT FROM " +
+                "FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID = ? AND USER_HANDLE = ?";
+
+        public static final String GET_CREDENTIAL_BY_ID = "SELECT PUBLIC_KEY_COSE, SIGNATURE_COUNT, USER_HANDLE, " +
+                "TENANT_ID, DOMAIN_NAME, USER_NAME FROM FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID = ?";
+
+        public static final String GET_DEVICE_REGISTRATION_BY_USERNAME = "SELECT CREDENTIAL_ID, USER_HANDLE, " +
+                "PUBLIC_KEY_COSE, SIGNATURE_COUNT, USER_IDENTITY, TIME_REGISTERED, DISPLAY_NAME, " +
+                "IS_USERNAMELESS_SUPPORTED FROM FIDO2_DEVICE_STORE WHERE TENANT_ID = ? AND DOMAIN_NAME = ? AND " +
+                "USER_NAME = ?";
+
+        public static final String GET_REGISTRATION_COUNT_PER_TENANT = "SELECT TENANT_ID, COUNT(*) AS " +
+                "REGISTRATION_COUNT FROM FIDO2_DEVICE_STORE GROUP BY TENANT_ID";
+
+        public static final String GET_REGISTERED_USERS = "SELECT TENANT_ID, DOMAIN_NAME, USER_NAME " +
+                "FROM FIDO2_DEVICE_STORE";
 
-        public static final String GET_CREDENTIAL_BY_ID = "SELECT PUBLIC_KEY_COSE, SIGNATURE_COUNT, USER_HANDLE " +
-                "FROM FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID = ?";
+        public static final String GET_REGISTERED_USERS_SINCE = "SELECT TENANT_ID, DOMAIN_NAME, USER_NAME " +
+                "FROM FIDO2_DEVICE_STORE WHERE TIME_REGISTERED >= ?";
 
-        public static final String GET_DEVICE_REGISTRATION_BY_USERNAME = "SELECT * FROM FIDO2_DEVICE_STORE " +
+        public static final String HAS_DEVICE_REGISTRATION_BY_USERNAME = "SELECT 1 FROM FIDO2_DEVICE_STORE " +
                 "WHERE TENANT_ID = ? AND DOMAIN_NAME = ? AND USER_NAME = ?";
 
-        public static final String GET_DEVICE_REGISTRATION_BY_USERNAME_AND_ID = "SELECT * FROM FIDO2_DEVICE_STORE " +
-                "WHERE TENANT_ID = ? AND DOMAIN_NAME = ? AND USER_NAME = ? AND CREDENTIAL_ID = ?";
+        public static final String GET_DEVICE_REGISTRATION_BY_USERNAME_AND_ID = "SELECT USER_HANDLE, " +
+                "PUBLIC_KEY_COSE, SIGNATURE_COUNT, USER_IDENTITY, TIME_REGISTERED, DISPLAY_NAME, " +
+                "IS_USERNAMELESS_SUPPORTED FROM FIDO2_DEVICE_STORE WHERE TENANT_ID = ? AND DOMAIN_NAME = ? AND " +
+                "USER_NAME = ? AND CREDENTIAL_ID = ?";
 
         public static final String ADD_DEVICE_REGISTRATION_QUERY = "INSERT INTO FIDO2_DEVICE_STORE " +
                 "(TENANT_ID, DOMAIN_NAME, USER_NAME, TIME_REGISTERED, USER_HANDLE, CREDENTIAL_ID, PUBLIC_KEY_COSE, " +
                 "SIGNATURE_COUNT, USER_IDENTITY ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
+        public static final String ADD_DEVICE_REGISTRATION_WITH_CREDENTIAL_ID_HASH_QUERY = "INSERT INTO " +
+                "FIDO2_DEVICE_STORE (TENANT_ID, DOMAIN_NAME, USER_NAME, TIME_REGISTERED, USER_HANDLE, CREDENTIAL_ID, " +
+                "PUBLIC_KEY_COSE, SIGNATURE_COUNT, USER_IDENTITY, CREDENTIAL_ID_HASH) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
         public static final String ADD_FIDO2_DEVICE_REGISTRATION_QUERY = "INSERT INTO FIDO2_DEVICE_STORE " +
                 "(TENANT_ID, DOMAIN_NAME, USER_NAME, TIME_REGISTERED, USER_HANDLE, CREDENTIAL_ID, PUBLIC_KEY_COSE, " +
                 "SIGNATURE_COUNT, USER_IDENTITY, DISPLAY_NAME, IS_USERNAMELESS_SUPPORTED) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
+        public static final String ADD_FIDO2_DEVICE_REGISTRATION_WITH_BINARY_QUERY = "INSERT INTO " +
+                "FIDO2_DEVICE_STORE (TENANT_ID, DOMAIN_NAME, USER_NAME, TIME_REGISTERED, USER_HANDLE, CREDENTIAL_ID, " +
+                "PUBLIC_KEY_COSE, SIGNATURE_COUNT, USER_IDENTITY, DISPLAY_NAME, IS_USERNAMELESS_SUPPORTED, " +
+                "USER_HANDLE_BIN, CREDENTIAL_ID_BIN, PUBLIC_KEY_COSE_BIN) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        public static final String ADD_FIDO2_DEVICE_REGISTRATION_WITH_CREDENTIAL_ID_HASH_QUERY = "INSERT INTO " +
+                "FIDO2_DEVICE_STORE (TENANT_ID, DOMAIN_NAME, USER_NAME, TIME_REGISTERED, USER_HANDLE, CREDENTIAL_ID, " +
+                "PUBLIC_KEY_COSE, SIGNATURE_COUNT, USER_IDENTITY, DISPLAY_NAME, IS_USERNAMELESS_SUPPORTED, " +
+                "CREDENTIAL_ID_HASH) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        public static final String ADD_FIDO2_DEVICE_REGISTRATION_WITH_BINARY_AND_CREDENTIAL_ID_HASH_QUERY = "INSERT " +
+                "INTO FIDO2_DEVICE_STORE (TENANT_ID, DOMAIN_NAME, USER_NAME, TIME_REGISTERED, USER_HANDLE, " +
+                "CREDENTIAL_ID, PUBLIC_KEY_COSE, SIGNATURE_COUNT, USER_IDENTITY, DISPLAY_NAME, " +
+                "IS_USERNAMELESS_SUPPORTED, USER_HANDLE_BIN, CREDENTIAL_ID_BIN, PUBLIC_KEY_COSE_BIN, " +
+                "CREDENTIAL_ID_HASH) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        public static final String GET_CREDENTIAL_BY_BINARY_ID = "SELECT PUBLIC_KEY_COSE_BIN, USER_HANDLE_BIN, " +
+                "PUBLIC_KEY_COSE, USER_HANDLE, SIGNATURE_COUNT, TENANT_ID, DOMAIN_NAME, USER_NAME " +
+                "FROM FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID_BIN = ? UNION ALL SELECT PUBLIC_KEY_COSE_BIN, " +
+                "USER_HANDLE_BIN, PUBLIC_KEY_COSE, USER_HANDLE, SIGNATURE_COUNT, TENANT_ID, DOMAIN_NAME, USER_NAME " +
+                "FROM FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID = ? AND CREDENTIAL_ID_BIN IS NULL";
+
+        public static final String GET_REGISTRATIONS_WITHOUT_BINARY_COLUMNS = "SELECT CREDENTIAL_ID, USER_HANDLE, " +
+                "PUBLIC_KEY_COSE FROM FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID_BIN IS NULL AND " +
+                "(CREDENTIAL_ID > ? OR (CREDENTIAL_ID = ? AND USER_HANDLE > ?)) ORDER BY CREDENTIAL_ID, USER_HANDLE";
+
+        public static final String UPDATE_BINARY_COLUMNS_QUERY = "UPDATE FIDO2_DEVICE_STORE SET USER_HANDLE_BIN = ?, " +
+                "CREDENTIAL_ID_BIN = ?, PUBLIC_KEY_COSE_BIN = ? WHERE CREDENTIAL_ID = ? AND USER_HANDLE = ?";
+
+        public static final String GET_CREDENTIAL_BY_ID_HASH = "SELECT CREDENTIAL_ID, PUBLIC_KEY_COSE, " +
+                "SIGNATURE_COUNT, USER_HANDLE, TENANT_ID, DOMAIN_NAME, USER_NAME FROM FIDO2_DEVICE_STORE " +
+                "WHERE CREDENTIAL_ID_HASH = ?";
+
+        public static final String GET_REGISTRATIONS_WITHOUT_CREDENTIAL_ID_HASH = "SELECT CREDENTIAL_ID, " +
+                "USER_HANDLE, PUBLIC_KEY_COSE FROM FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID_HASH IS NULL AND " +
+                "(CREDENTIAL_ID > ? OR (CREDENTIAL_ID = ? AND USER_HANDLE > ?)) ORDER BY CREDENTIAL_ID, USER_HANDLE";
+
+        public static final String UPDATE_CREDENTIAL_ID_HASH_QUERY = "UPDATE FIDO2_DEVICE_STORE " +
+                "SET CREDENTIAL_ID_HASH = ? WHERE CREDENTIAL_ID = ? AND USER_HANDLE = ?";
+
         public static final String UPDATE_FIDO2_DEVICE_SIGNATURE_COUNT_QUERY = "UPDATE FIDO2_DEVICE_STORE " +
                 "SET SIGNATURE_COUNT = ? " +
                 "WHERE TENANT_ID = ? AND DOMAIN_NAME = ? AND USER_NAME = ? AND CREDENTIAL_ID = ?";
 
+        public static final String UPDATE_SIGNATURE_COUNT_BY_CREDENTIAL_QUERY = "UPDATE FIDO2_DEVICE_STORE " +
+                "SET SIGNATURE_COUNT = ? " +
+                "WHERE CREDENTIAL_ID = ? AND USER_HANDLE = ? AND SIGNATURE_COUNT < ?";
+
         public static final String DELETE_DEVICE_REGISTRATION_BY_USERNAME_AND_ID = "DELETE FROM FIDO2_DEVICE_STORE " +
                 "WHERE TENANT_ID = ? AND DOMAIN_NAME = ? AND USER_NAME = ? AND CREDENTIAL_ID = ?";
 
@@ -127,6 +298,63 @@ public class FIDO2AuthenticatorConstants {
 
         public static final String DELETE_REGISTRATIONS_BY_USERNAME_AND_DOMAIN = "DELETE FROM FIDO2_DEVICE_STORE " +
                 "WHERE USER_NAME = ? AND DOMAIN_NAME = ? AND TENANT_ID = ?";
+
+        public static final String GET_LATEST_SESSION_DATA = "SELECT OPERATION, SESSION_OBJECT " +
+                "FROM IDN_AUTH_SESSION_STORE WHERE SESSION_ID = ? AND SESSION_TYPE = ? ORDER BY TIME_CREATED DESC";
+
+        public static final String GET_LATEST_TEMP_SESSION_DATA = "SELECT OPERATION, SESSION_OBJECT " +
+                "FROM IDN_AUTH_TEMP_SESSION_STORE WHERE SESSION_ID = ? AND SESSION_TYPE = ? " +
+                "ORDER BY TIME_CREATED DESC";
+
+        public static final String DELETE_STORED_SESSION_DATA = "DELETE FROM IDN_AUTH_SESSION_STORE " +
+                "WHERE SESSION_ID = ? AND SESSION_TYPE = ? AND OPERATION = 'STORE'";
+
+        public static final String DELETE_STORED_TEMP_SESSION_DATA = "DELETE FROM IDN_AUTH_TEMP_SESSION_STORE " +
+                "WHERE SESSION_ID = ? AND SESSION_TYPE = ? AND OPERATION = 'STORE'";
+
+        public static final String GET_EXPIRED_SESSION_IDS = "SELECT DISTINCT SESSION_ID FROM IDN_AUTH_SESSION_STORE " +
+                "WHERE SESSION_TYPE = ? AND TIME_CREATED < ?";
+
+        public static final String GET_EXPIRED_TEMP_SESSION_IDS = "SELECT DISTINCT SESSION_ID " +
+                "FROM IDN_AUTH_TEMP_SESSION_STORE WHERE SESSION_TYPE = ? AND TIME_CREATED < ?";
+
+        public static final String DELETE_EXPIRED_SESSION_DATA = "DELETE FROM IDN_AUTH_SESSION_STORE " +
+                "WHERE SESSION_ID = ? AND SESSION_TYPE = ? AND TIME_CREATED < ?";
+
+        public static final String DELETE_EXPIRED_TEMP_SESSION_DATA = "DELETE FROM IDN_AUTH_TEMP_SESSION_STORE " +
+                "WHERE SESSION_ID = ? AND SESSION_TYPE = ? AND TIME_CREATED < ?";
+    }
+
+    /**
+     * This enum contains the layouts used to store credential IDs, user handles and public keys.
+     * BASE64 - Only the base64 encoded columns are used.
+     * DUAL_WRITE - Both the base64 encoded and the binary columns are written, while reads use the base64 columns.
+     * BINARY - Both layouts are written, while reads use the binary columns and fall back to the base64 columns for
+     * registrations which are not migrated yet, such as the registrations written by a node in the BASE64 mode.
+     * As both layouts are kept, the binary columns add to the size of the table rather than reducing it.
+     */
+    public enum CredentialStorageMode {
+
+        BASE64("Base64"),
+        DUAL_WRITE("DualWrite"),
+        BINARY("Binary");
+
+        private final String value;
+
+        CredentialStorageMode(String value) {
+
+            this.value = value;
+        }
+
+        public String getValue() {
+
+            return value;
+        }
+
+        public boolean isBinaryWriteEnabled() {
+
+            return this != BASE64;
+        }
     }
 
     /**
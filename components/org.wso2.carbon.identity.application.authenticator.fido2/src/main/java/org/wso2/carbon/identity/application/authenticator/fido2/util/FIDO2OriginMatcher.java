@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.util;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.net.IDN;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Matcher of the trusted origins of a tenant, compiled once from the configured origins. The matcher remembers the
+ * configuration it was compiled from, so that it can be recompiled once the configuration changes.
+ *
+ * Origins are canonicalized before being matched: the scheme and host are lower cased, internationalized host names
+ * are converted to their ASCII form and default ports are omitted. Canonical origins are matched with a hash lookup.
+ * Origins which are not URLs, such as Android APK key hash origins, are matched as they are.
+ *
+ * Origins such as https://*.example.com match any subdomain of example.com, but not example.com itself. These
+ * patterns are kept in a trie of the host labels in reverse order, so that an origin is matched by walking its labels
+ * once, regardless of the number of patterns.
+ */
+public class FIDO2OriginMatcher {
+
+    private static final String SCHEME_SEPARATOR = "://";
+    private static final String WILDCARD_PREFIX = "*.";
+    private static final String HTTPS = "https";
+    private static final String HTTP = "http";
+    private static final int HTTPS_DEFAULT_PORT = 443;
+    private static final int HTTP_DEFAULT_PORT = 80;
+
+    private final Set<String> origins;
+    private final Node wildcardOrigins;
+    private final Set<String> relyingPartyOrigins;
+    private final List<String> trustedOriginsFromDB;
+    private final Object trustedOriginsFromFile;
+
+    private FIDO2OriginMatcher(Set<String> origins, Node wildcardOrigins, Set<String> relyingPartyOrigins,
+                               List<String> trustedOriginsFromDB, Object trustedOriginsFromFile) {
+
+        this.origins = origins;
+        this.wildcardOrigins = wildcardOrigins;
+        this.relyingPartyOrigins = relyingPartyOrigins;
+        this.trustedOriginsFromDB = trustedOriginsFromDB;
+        this.trustedOriginsFromFile = trustedOriginsFromFile;
+    }
+
+    /**
+     * Compile the matcher of the trusted origins of a tenant.
+     *
+     * @param trustedOriginsFromDB   Trusted origins of the fido-connector resource of the tenant.
+     * @param trustedOriginsFromFile Trusted origins of identity.xml, either a single origin or a list of origins.
+     * @param placeholderResolver    Resolver of the URL placeholders of the trusted origins.
+     * @return Origin matcher.
+     */
+    public static FIDO2OriginMatcher compile(List<String> trustedOriginsFromDB, Object trustedOriginsFromFile,
+                                             UnaryOperator<String> placeholderResolver) {
+
+        List<String> trustedOrigins = new ArrayList<>();
+        if (trustedOriginsFromDB != null) {
+            trustedOrigins.addAll(trustedOriginsFromDB);
+        }
+        if (trustedOriginsFromFile instanceof List) {
+            for (Object trustedOrigin : (List<?>) trustedOriginsFromFile) {
+                trustedOrigins.add(String.valueOf(trustedOrigin));
+            }
+        } else if (trustedOriginsFromFile instanceof String) {
+            trustedOrigins.add((String) trustedOriginsFromFile);
+        }
+        trustedOrigins.replaceAll(placeholderResolver);
+
+        Set<String> origins = new HashSet<>();
+        Node wildcardOrigins = new Node();
+        Set<String> relyingPartyOrigins = new LinkedHashSet<>();
+        for (String trustedOrigin : trustedOrigins) {
+            if (StringUtils.isBlank(trustedOrigin)) {
+                continue;
+            }
+            String origin = trustedOrigin.trim();
+            CanonicalOrigin canonicalOrigin = CanonicalOrigin.parse(origin);
+            if (canonicalOrigin == null) {
+                origins.add(origin);
+                relyingPartyOrigins.add(origin);
+            } else if (canonicalOrigin.isWildcard()) {
+                wildcardOrigins.add(canonicalOrigin);
+            } else {
+                origins.add(canonicalOrigin.toString());
+                /*
+                 * The relying party matches the client origins as they are, and clients send canonical origins.
+                 * Hence keep the canonical origin, along with the version including the default port for clients
+                 * which include it.
+                 */
+                relyingPartyOrigins.add(canonicalOrigin.toString());
+                if (canonicalOrigin.hasDefaultPort()) {
+                    relyingPartyOrigins.add(canonicalOrigin.toStringWithPort());
+                }
+            }
+        }
+        return new FIDO2OriginMatcher(origins, wildcardOrigins, Collections.unmodifiableSet(relyingPartyOrigins),
+                trustedOriginsFromDB != null ? new ArrayList<>(trustedOriginsFromDB) : null,
+                trustedOriginsFromFile instanceof List ? new ArrayList<>((List<?>) trustedOriginsFromFile)
+                        : trustedOriginsFromFile);
+    }
+
+    /**
+     * Check whether the matcher was compiled from the given trusted origins.
+     *
+     * @param trustedOriginsFromDB   Current trusted origins of the fido-connector resource of the tenant.
+     * @param trustedOriginsFromFile Current trusted origins of identity.xml.
+     * @return True if the trusted origins have not changed since the matcher was compiled.
+     */
+    public boolean isCompiledFrom(List<String> trustedOriginsFromDB, Object trustedOriginsFromFile) {
+
+        return Objects.equals(this.trustedOriginsFromDB, trustedOriginsFromDB) &&
+                Objects.equals(this.trustedOriginsFromFile, trustedOriginsFromFile);
+    }
+
+    /**
+     * Check whether an origin is trusted.
+     *
+     * @param origin Origin of the client.
+     * @return True if the origin matches a trusted origin.
+     */
+    public boolean matches(String origin) {
+
+        if (StringUtils.isBlank(origin)) {
+            return false;
+        }
+        String trimmedOrigin = origin.trim();
+        CanonicalOrigin canonicalOrigin = CanonicalOrigin.parse(trimmedOrigin);
+        if (canonicalOrigin == null) {
+            return origins.contains(trimmedOrigin);
+        }
+        return !canonicalOrigin.isWildcard() && (origins.contains(canonicalOrigin.toString()) ||
+                wildcardOrigins.matches(canonicalOrigin));
+    }
+
+    /**
+     * Check whether an origin is trusted through a wildcard trusted origin only. Such origins are not part of the
+     * {@link #getRelyingPartyOrigins() relying party origins}.
+     *
+     * @param origin Origin of the client.
+     * @return True if the origin matches a wildcard trusted origin, but no other trusted origin.
+     */
+    public boolean matchesWildcardOnly(String origin) {
+
+        if (StringUtils.isBlank(origin)) {
+            return false;
+        }
+        CanonicalOrigin canonicalOrigin = CanonicalOrigin.parse(origin.trim());
+        return canonicalOrigin != null && !canonicalOrigin.isWildcard() &&
+                !origins.contains(canonicalOrigin.toString()) && wildcardOrigins.matches(canonicalOrigin);
+    }
+
+    /**
+     * Get the trusted origins in the form expected by the relying party, which matches client origins exactly.
+     *
+     * @return Canonical trusted origins, with and without their default ports, excluding wildcard origins.
+     */
+    public Set<String> getRelyingPartyOrigins() {
+
+        return relyingPartyOrigins;
+    }
+
+    /**
+     * Node of the trie of the wildcard origins, keyed by host label.
+     */
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        // Scheme and port of the wildcard origins ending at this node.
+        private final Set<String> wildcardEndpoints = new HashSet<>();
+
+        private void add(CanonicalOrigin wildcardOrigin) {
+
+            String[] labels = StringUtils.split(wildcardOrigin.host.substring(WILDCARD_PREFIX.length()), '.');
+            Node node = this;
+            for (int i = labels.length - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(labels[i], label -> new Node());
+            }
+            node.wildcardEndpoints.add(wildcardOrigin.getEndpoint());
+        }
+
+        private boolean matches(CanonicalOrigin origin) {
+
+            String[] labels = StringUtils.split(origin.host, '.');
+            String endpoint = origin.getEndpoint();
+            Node node = this;
+            // At least one label has to remain for the subdomain.
+            for (int i = labels.length - 1; i > 0; i--) {
+                node = node.children.get(labels[i]);
+                if (node == null) {
+                    return false;
+                }
+                if (node.wildcardEndpoints.contains(endpoint)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Origin with its scheme, host and port canonicalized.
+     */
+    private static class CanonicalOrigin {
+
+        private final String scheme;
+        private final String host;
+        private final int port;
+        private final String path;
+
+        private CanonicalOrigin(String scheme, String host, int port, String path) {
+
+            this.scheme = scheme;
+            this.host = host;
+            this.port = port;
+            this.path = path;
+        }
+
+        /**
+         * Parse an origin of the form scheme://host[:port][/path].
+         *
+         * @param origin Origin.
+         * @return Canonical origin, or null if the origin is not of the expected form.
+         */
+        private static CanonicalOrigin parse(String origin) {
+
+            int schemeEnd = origin.indexOf(SCHEME_SEPARATOR);
+            if (schemeEnd <= 0) {
+                return null;
+            }
+            String scheme = origin.substring(0, schemeEnd).toLowerCase(Locale.ENGLISH);
+            int authorityStart = schemeEnd + SCHEME_SEPARATOR.length();
+            int authorityEnd = StringUtils.indexOfAny(origin.substring(authorityStart), "/?#");
+            authorityEnd = authorityEnd < 0 ? origin.length() : authorityStart + authorityEnd;
+            String authority = origin.substring(authorityStart, authorityEnd);
+            if (authority.isEmpty() || authority.contains("@") || authority.startsWith("[")) {
+                return null;
+            }
+
+            String host = authority;
+            int port = defaultPort(scheme);
+            int portStart = authority.lastIndexOf(':');
+            if (portStart >= 0) {
+                host = authority.substring(0, portStart);
+                try {
+                    port = Integer.parseInt(authority.substring(portStart + 1));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            boolean wildcard = host.startsWith(WILDCARD_PREFIX);
+            try {
+                host = IDN.toASCII(wildcard ? host.substring(WILDCARD_PREFIX.length()) : host, IDN.ALLOW_UNASSIGNED)
+                        .toLowerCase(Locale.ENGLISH);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (host.isEmpty() || host.contains("*")) {
+                return null;
+            }
+
+            String path = origin.substring(authorityEnd);
+            if ("/".equals(path)) {
+                path = StringUtils.EMPTY;
+            }
+            if (wildcard && !path.isEmpty()) {
+                // Wildcards are supported for origins only.
+                return null;
+            }
+            return new CanonicalOrigin(scheme, wildcard ? WILDCARD_PREFIX + host : host, port, path);
+        }
+
+        private static int defaultPort(String scheme) {
+
+            if (HTTPS.equals(scheme)) {
+                return HTTPS_DEFAULT_PORT;
+            } else if (HTTP.equals(scheme)) {
+                return HTTP_DEFAULT_PORT;
+            }
+            return -1;
+        }
+
+        private boolean isWildcard() {
+
+            return host.startsWith(WILDCARD_PREFIX);
+        }
+
+        private String getEndpoint() {
+
+            return scheme + ":" + port;
+        }
+
+        private boolean hasDefaultPort() {
+
+            return port > 0 && port == defaultPort(scheme);
+        }
+
+        private String toStringWithPort() {
+
+            return scheme + SCHEME_SEPARATOR + host + ":" + port + path;
+        }
+
+        @Override
+        public String toString() {
+
+            String portSuffix = port == defaultPort(scheme) ? StringUtils.EMPTY : ":" + port;
+            return scheme + SCHEME_SEPARATOR + host + portSuffix + path;
+        }
+    }
+}
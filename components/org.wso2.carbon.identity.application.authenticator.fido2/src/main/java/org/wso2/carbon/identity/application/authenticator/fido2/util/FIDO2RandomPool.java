@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool of random values pre-filled by a background task.
+ *
+ * Request threads take values from a ring of slots without locking, hence they do not contend on a shared
+ * {@link SecureRandom}. A value is handed out only once, as taking it empties its slot. When the pool is exhausted,
+ * the value is generated by a {@link SecureRandom} instance of the calling thread.
+ */
+public class FIDO2RandomPool {
+
+    private static final Log log = LogFactory.getLog(FIDO2RandomPool.class);
+    private static final int NO_OF_THREADS = 1;
+    private static final long SHUTDOWN_TIMEOUT_IN_SECONDS = 10;
+
+    private final int valueLength;
+    private final long refillInterval;
+    private final String algorithm;
+    private final String provider;
+    private final AtomicReferenceArray<byte[]> slots;
+    private final AtomicLong nextSlot = new AtomicLong();
+    private final SecureRandom refillRandom;
+    private final ThreadLocal<SecureRandom> fallbackRandom;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong servedValueCount = new AtomicLong();
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    /**
+     * @param size           Number of random values kept in the pool.
+     * @param valueLength    Length of a random value in bytes.
+     * @param refillInterval Interval between two refills in milliseconds.
+     * @param algorithm      SecureRandom algorithm, or null to use the default algorithm.
+     * @param provider       SecureRandom provider, or null to use the default provider.
+     */
+    public FIDO2RandomPool(int size, int valueLength, long refillInterval, String algorithm, String provider) {
+
+        this.valueLength = valueLength;
+        this.refillInterval = refillInterval;
+        this.algorithm = algorithm;
+        this.provider = provider;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+        this.refillRandom = createSecureRandom();
+        this.fallbackRandom = ThreadLocal.withInitial(this::createSecureRandom);
+        this.scheduler = Executors.newScheduledThreadPool(NO_OF_THREADS);
+    }
+
+    public void start() {
+
+        refill();
+        scheduler.scheduleWithFixedDelay(new RefillTask(this), refillInterval, refillInterval,
+                TimeUnit.MILLISECONDS);
+        log.info("FIDO2 random pool is activated.");
+    }
+
+    public void shutdown() {
+
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Take a random value from the pool.
+     *
+     * @return Random value which is not handed out to any other caller.
+     */
+    public byte[] next() {
+
+        servedValueCount.incrementAndGet();
+        int slot = (int) Math.floorMod(nextSlot.getAndIncrement(), (long) slots.length());
+        byte[] value = slots.getAndSet(slot, null);
+        if (value != null) {
+            return value;
+        }
+        exhaustedCount.incrementAndGet();
+        value = new byte[valueLength];
+        fallbackRandom.get().nextBytes(value);
+        return value;
+    }
+
+    /**
+     * Fill the empty slots of the pool.
+     */
+    public synchronized void refill() {
+
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null) {
+                byte[] value = new byte[valueLength];
+                refillRandom.nextBytes(value);
+                slots.compareAndSet(i, null, value);
+            }
+        }
+    }
+
+    public long getServedValueCount() {
+
+        return servedValueCount.get();
+    }
+
+    /**
+     * Get the number of values which were generated by the calling thread as the pool was exhausted.
+     *
+     * @return Number of times the pool was exhausted.
+     */
+    public long getExhaustedCount() {
+
+        return exhaustedCount.get();
+    }
+
+    private SecureRandom createSecureRandom() {
+
+        if (StringUtils.isBlank(algorithm)) {
+            return new SecureRandom();
+        }
+        try {
+            return StringUtils.isBlank(provider) ? SecureRandom.getInstance(algorithm) :
+                    SecureRandom.getInstance(algorithm, provider);
+        } catch (GeneralSecurityException e) {
+            log.warn("Unable to create a SecureRandom of algorithm: " + algorithm + " and provider: " + provider +
+                    ". Using the default SecureRandom.", e);
+            return new SecureRandom();
+        }
+    }
+
+    private static final class RefillTask implements Runnable {
+
+        private final FIDO2RandomPool randomPool;
+
+        private RefillTask(FIDO2RandomPool randomPool) {
+
+            this.randomPool = randomPool;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                randomPool.refill();
+            } catch (RuntimeException e) {
+                // Keep the scheduled task alive for the next refill.
+                log.error("Unexpected error while refilling the FIDO2 random pool.", e);
+            }
+        }
+    }
+}
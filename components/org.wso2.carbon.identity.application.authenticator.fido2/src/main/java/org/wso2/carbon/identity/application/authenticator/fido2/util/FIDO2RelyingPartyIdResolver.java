@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.util;
+
+import com.google.common.net.InternetDomainName;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Resolver of the relying party ID of an origin host.
+ *
+ * The relying party ID is the registrable domain of the host, or the host itself if the full effective domain is to
+ * be used, which requires a lookup in the public suffix list. When enabled through the identity configuration, the
+ * relying party IDs are memoized per host in a bounded concurrent map, such that the public suffix lookup runs once
+ * per distinct host. Memoized relying party IDs are read without locking; only adding a host and evicting the least
+ * recently used hosts once the capacity is reached are serialized. The full effective domain setting is read from the
+ * identity configuration on every resolution, and the memoized relying party IDs are cleared once it changes.
+ */
+public class FIDO2RelyingPartyIdResolver {
+
+    private static final Log log = LogFactory.getLog(FIDO2RelyingPartyIdResolver.class);
+    private static final int EVICTION_RATIO = 10;
+
+    private static volatile FIDO2RelyingPartyIdResolver instance;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final Map<String, MemoizedRpId> rpIds = new ConcurrentHashMap<>();
+    // Guards adding hosts to the memo, evicting hosts and clearing the memo.
+    private final Object memoLock = new Object();
+    private final AtomicLong accessClock = new AtomicLong();
+    private volatile boolean useFullEffectiveDomain;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    FIDO2RelyingPartyIdResolver(boolean enabled, boolean useFullEffectiveDomain, int capacity) {
+
+        this.enabled = enabled;
+        this.useFullEffectiveDomain = useFullEffectiveDomain;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public static FIDO2RelyingPartyIdResolver getInstance() {
+
+        if (instance == null) {
+            synchronized (FIDO2RelyingPartyIdResolver.class) {
+                if (instance == null) {
+                    instance = new FIDO2RelyingPartyIdResolver(FIDOUtil.isRelyingPartyIdCacheEnabled(),
+                            FIDOUtil.isRelyingPartyFullEffectiveDomainUsed(),
+                            FIDOUtil.getRelyingPartyIdCacheCapacity());
+                    if (log.isDebugEnabled()) {
+                        log.debug("FIDO2 relying party ID resolver initialized. Cache enabled: " + instance.enabled);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Resolve the relying party ID of an origin host.
+     *
+     * @param host Host of the origin.
+     * @return Relying party ID.
+     */
+    public String resolve(String host) {
+
+        boolean fullEffectiveDomain = isRelyingPartyFullEffectiveDomainUsed();
+        if (!enabled) {
+            return deriveRelyingPartyId(host, fullEffectiveDomain);
+        }
+        if (fullEffectiveDomain != useFullEffectiveDomain) {
+            applyFullEffectiveDomainSetting(fullEffectiveDomain);
+        }
+        MemoizedRpId memoizedRpId = rpIds.get(host);
+        if (memoizedRpId != null) {
+            hitCount.incrementAndGet();
+            memoizedRpId.lastAccess = accessClock.incrementAndGet();
+            return memoizedRpId.rpId;
+        }
+        missCount.incrementAndGet();
+        String rpId = deriveRelyingPartyId(host, fullEffectiveDomain);
+        synchronized (memoLock) {
+            // Skip relying party IDs derived with a setting which has changed in the meantime.
+            if (fullEffectiveDomain == useFullEffectiveDomain && !rpIds.containsKey(host)) {
+                if (rpIds.size() >= capacity) {
+                    evictLeastRecentlyUsed();
+                }
+                rpIds.put(host, new MemoizedRpId(rpId, accessClock.incrementAndGet()));
+            }
+        }
+        return rpId;
+    }
+
+    /**
+     * Get the number of relying party IDs served from the memo.
+     *
+     * @return Number of hits.
+     */
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of relying party IDs derived through the public suffix list.
+     *
+     * @return Number of misses.
+     */
+    public long getMissCount() {
+
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of hosts evicted from the memo to keep it within its capacity.
+     *
+     * @return Number of evicted hosts.
+     */
+    public long getEvictionCount() {
+
+        return evictionCount.get();
+    }
+
+    public int size() {
+
+        return rpIds.size();
+    }
+
+    boolean isRelyingPartyFullEffectiveDomainUsed() {
+
+        return FIDOUtil.isRelyingPartyFullEffectiveDomainUsed();
+    }
+
+    private void applyFullEffectiveDomainSetting(boolean useFullEffectiveDomain) {
+
+        synchronized (memoLock) {
+            if (useFullEffectiveDomain == this.useFullEffectiveDomain) {
+                return;
+            }
+            this.useFullEffectiveDomain = useFullEffectiveDomain;
+            rpIds.clear();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Cleared the memoized relying party IDs as the full effective domain setting changed.");
+        }
+    }
+
+    /*
+    Evict the least recently used hosts until a tenth of the capacity is free, such that the scan of the memo is
+    amortized over the following misses. Called while holding the memo lock.
+    */
+    private void evictLeastRecentlyUsed() {
+
+        int excessCount = rpIds.size() - (capacity - Math.max(1, capacity / EVICTION_RATIO));
+        rpIds.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                .limit(Math.max(0, excessCount))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList())
+                .forEach(evictedHost -> {
+                    if (rpIds.remove(evictedHost) != null) {
+                        evictionCount.incrementAndGet();
+                    }
+                });
+    }
+
+    private static String deriveRelyingPartyId(String host, boolean useFullEffectiveDomain) {
+
+        try {
+            InternetDomainName internetDomainName = InternetDomainName.from(host);
+            if (useFullEffectiveDomain && internetDomainName.isUnderPublicSuffix()) {
+                return internetDomainName.toString();
+            }
+            return internetDomainName.hasPublicSuffix() ? internetDomainName.topPrivateDomain().toString() : host;
+        } catch (IllegalArgumentException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Invalid domain name: '" + host
+                        + "' received for internet domain name creation. Defaulting to origin host.");
+            }
+            return host;
+        }
+    }
+
+    /**
+     * Memoized relying party ID along with the logical time of its last access.
+     */
+    private static class MemoizedRpId {
+
+        private final String rpId;
+        private volatile long lastAccess;
+
+        private MemoizedRpId(String rpId, long lastAccess) {
+
+            this.rpId = rpId;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
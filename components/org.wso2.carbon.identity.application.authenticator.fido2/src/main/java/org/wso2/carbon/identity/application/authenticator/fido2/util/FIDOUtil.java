@@ -22,20 +22,97 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yubico.internal.util.JacksonCodecs;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.flow.execution.engine.model.FlowExecutionContext;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.servlet.http.HttpServletRequest;
 
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_BATCH_SIZE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_BATCH_SIZE_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_FLUSH_INTERVAL;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_FLUSH_INTERVAL_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_MAX_PENDING_WRITES;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_MAX_PENDING_WRITES_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_MAX_WAIT_TIME;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_ASYNC_PERSISTENCE_MAX_WAIT_TIME_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_EXPIRY_GRACE_PERIOD;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_EXPIRY_GRACE_PERIOD_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_MAX_WEIGHT;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_MAX_WEIGHT_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_PURGE_BATCH_SIZE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_PURGE_BATCH_SIZE_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_PURGE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_PURGE_INTERVAL;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CACHE_PURGE_INTERVAL_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_COMPACT_CEREMONY_STATE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CONFIGURATION_CACHE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CONFIGURATION_CACHE_TIMEOUT;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CONFIGURATION_CACHE_TIMEOUT_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_ID_HASH_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_ID_HASH_LOOKUP_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORAGE_MIGRATE_ON_STARTUP;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORAGE_MIGRATION_BATCH_SIZE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORAGE_MIGRATION_BATCH_SIZE_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORAGE_MODE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_CACHE_CAPACITY;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_CACHE_CAPACITY_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_CACHE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_CACHE_TIMEOUT;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_CACHE_TIMEOUT_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_TYPE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORE_TYPE_JDBC;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_MDS_ENABLED;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_MDS_SCHEDULER_INITIAL_DELAY;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_MDS_SCHEDULER_INITIAL_DELAY_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RANDOM_POOL_ALGORITHM;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RANDOM_POOL_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RANDOM_POOL_PROVIDER;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RANDOM_POOL_REFILL_INTERVAL;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RANDOM_POOL_REFILL_INTERVAL_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RANDOM_POOL_SIZE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RANDOM_POOL_SIZE_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_EXPECTED_USERS;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_EXPECTED_USERS_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_REBUILD_INTERVAL;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_REBUILD_INTERVAL_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_SYNC_INTERVAL;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_REGISTERED_USER_FILTER_SYNC_INTERVAL_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RELYING_PARTY_CACHE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RELYING_PARTY_ID_CACHE_CAPACITY;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RELYING_PARTY_ID_CACHE_CAPACITY_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RELYING_PARTY_ID_CACHE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_RELYING_PARTY_USE_FULL_EFFECTIVE_DOMAIN;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_SIGNATURE_COUNT_WRITE_BEHIND_BATCH_SIZE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_SIGNATURE_COUNT_WRITE_BEHIND_BATCH_SIZE_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_SIGNATURE_COUNT_WRITE_BEHIND_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_SIGNATURE_COUNT_WRITE_BEHIND_FLUSH_INTERVAL;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_SIGNATURE_COUNT_WRITE_BEHIND_FLUSH_INTERVAL_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_SIGNATURE_COUNT_WRITE_BEHIND_MAX_PENDING_UPDATES;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_SIGNATURE_COUNT_WRITE_BEHIND_MAX_PENDING_UPDATES_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_STATELESS_CHALLENGE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_STATELESS_CHALLENGE_KEY;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_STATELESS_CHALLENGE_REPLAY_CACHE_CAPACITY;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_STATELESS_CHALLENGE_REPLAY_CACHE_CAPACITY_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_STATELESS_CHALLENGE_VALIDITY;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_STATELESS_CHALLENGE_VALIDITY_DEFAULT_VALUE;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_USERNAMELESS_ASSERTION_TEMPLATE_ENABLED;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_USER_RESPONSE_TIMEOUT;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO_USER_RESPONSE_TIMEOUT_DEFAULT_VALUE;
 
 /**
  * FIDOUtil class for FIDO authentication component.
  */
 public class FIDOUtil {
 
+    private static final Log log = LogFactory.getLog(FIDOUtil.class);
     private static final ObjectMapper jsonMapper = JacksonCodecs.json();
     private static Boolean metadataValidationsEnabled;
     private static Integer mdsSchedulerInitialDelay;
@@ -89,9 +166,400 @@ public class FIDOUtil {
         return mdsSchedulerInitialDelay;
     }
 
+    /**
+     * Check whether signature counts are updated through the write-behind updater.
+     *
+     * @return boolean indicating server write-behind signature count preference.
+     */
+    public static boolean isSignatureCountWriteBehindEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_SIGNATURE_COUNT_WRITE_BEHIND_ENABLED));
+    }
+
+    public static int getSignatureCountWriteBehindMaxPendingUpdates() {
+
+        return getIntProperty(FIDO_SIGNATURE_COUNT_WRITE_BEHIND_MAX_PENDING_UPDATES,
+                FIDO_SIGNATURE_COUNT_WRITE_BEHIND_MAX_PENDING_UPDATES_DEFAULT_VALUE);
+    }
+
+    public static int getSignatureCountWriteBehindBatchSize() {
+
+        return getIntProperty(FIDO_SIGNATURE_COUNT_WRITE_BEHIND_BATCH_SIZE,
+                FIDO_SIGNATURE_COUNT_WRITE_BEHIND_BATCH_SIZE_DEFAULT_VALUE);
+    }
+
+    public static long getSignatureCountWriteBehindFlushInterval() {
+
+        return getIntProperty(FIDO_SIGNATURE_COUNT_WRITE_BEHIND_FLUSH_INTERVAL,
+                FIDO_SIGNATURE_COUNT_WRITE_BEHIND_FLUSH_INTERVAL_DEFAULT_VALUE);
+    }
+
+    /**
+     * Check whether the registered user filter is enabled for the server.
+     *
+     * @return boolean indicating server registered user filter preference.
+     */
+    public static boolean isRegisteredUserFilterEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_REGISTERED_USER_FILTER_ENABLED));
+    }
+
+    public static int getRegisteredUserFilterExpectedUsers() {
+
+        return getIntProperty(FIDO_REGISTERED_USER_FILTER_EXPECTED_USERS,
+                FIDO_REGISTERED_USER_FILTER_EXPECTED_USERS_DEFAULT_VALUE);
+    }
+
+    public static double getRegisteredUserFilterFalsePositiveProbability() {
+
+        String value = IdentityUtil.getProperty(FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + value + " configured for: " +
+                        FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY + ". Using the default value: " +
+                        FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY_DEFAULT_VALUE);
+            }
+        }
+        return FIDO_REGISTERED_USER_FILTER_FALSE_POSITIVE_PROBABILITY_DEFAULT_VALUE;
+    }
+
+    public static int getRegisteredUserFilterRebuildInterval() {
+
+        return getIntProperty(FIDO_REGISTERED_USER_FILTER_REBUILD_INTERVAL,
+                FIDO_REGISTERED_USER_FILTER_REBUILD_INTERVAL_DEFAULT_VALUE);
+    }
+
+    /**
+     * Get the interval between two synchronizations of the registrations made since the last rebuild of the registered
+     * user filter, which bounds how long a user registered on another node may be reported as not owning a credential.
+     * The synchronization may only be disabled, with 0, on a single node deployment.
+     *
+     * @return Synchronization interval in seconds.
+     */
+    public static int getRegisteredUserFilterSyncInterval() {
+
+        return getIntProperty(FIDO_REGISTERED_USER_FILTER_SYNC_INTERVAL,
+                FIDO_REGISTERED_USER_FILTER_SYNC_INTERVAL_DEFAULT_VALUE);
+    }
+
+    /**
+     * Get the layout used to store credential IDs, user handles and public keys.
+     *
+     * @return Configured credential storage mode.
+     */
+    public static FIDO2AuthenticatorConstants.CredentialStorageMode getCredentialStorageMode() {
+
+        String value = IdentityUtil.getProperty(FIDO_CREDENTIAL_STORAGE_MODE);
+        if (StringUtils.isNotBlank(value)) {
+            for (FIDO2AuthenticatorConstants.CredentialStorageMode mode :
+                    FIDO2AuthenticatorConstants.CredentialStorageMode.values()) {
+                if (mode.getValue().equalsIgnoreCase(value.trim())) {
+                    return mode;
+                }
+            }
+            log.warn("Invalid value: " + value + " configured for: " + FIDO_CREDENTIAL_STORAGE_MODE + ". Using the " +
+                    "default value: " + FIDO2AuthenticatorConstants.CredentialStorageMode.BASE64.getValue());
+        }
+        return FIDO2AuthenticatorConstants.CredentialStorageMode.BASE64;
+    }
+
+    /**
+     * Check whether the credential ID hash column is populated for registrations.
+     *
+     * @return boolean indicating server credential ID hash preference.
+     */
+    public static boolean isCredentialIdHashEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_CREDENTIAL_ID_HASH_ENABLED));
+    }
+
+    /**
+     * Check whether the credential ID hash column is used for credential lookups. Enable once the hash is populated
+     * for the existing registrations.
+     *
+     * @return boolean indicating server credential ID hash lookup preference.
+     */
+    public static boolean isCredentialIdHashLookupEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_CREDENTIAL_ID_HASH_LOOKUP_ENABLED));
+    }
+
+    public static boolean isCredentialStorageMigrationOnStartupEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_CREDENTIAL_STORAGE_MIGRATE_ON_STARTUP));
+    }
+
+    public static int getCredentialStorageMigrationBatchSize() {
+
+        return getIntProperty(FIDO_CREDENTIAL_STORAGE_MIGRATION_BATCH_SIZE,
+                FIDO_CREDENTIAL_STORAGE_MIGRATION_BATCH_SIZE_DEFAULT_VALUE);
+    }
+
+    /**
+     * Get the FIDO2 credential store type. The value is either one of the built-in store types or the fully
+     * qualified class name of a FIDO2 credential store implementation.
+     *
+     * @return Configured credential store type.
+     */
+    public static String getCredentialStoreType() {
+
+        String value = IdentityUtil.getProperty(FIDO_CREDENTIAL_STORE_TYPE);
+        return StringUtils.isNotBlank(value) ? value.trim() : FIDO_CREDENTIAL_STORE_TYPE_JDBC;
+    }
+
+    /**
+     * Check whether the FIDO2 credential store is wrapped by the caching store.
+     *
+     * @return boolean indicating server credential store cache preference.
+     */
+    public static boolean isCredentialStoreCacheEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_CREDENTIAL_STORE_CACHE_ENABLED));
+    }
+
+    public static int getCredentialStoreCacheCapacity() {
+
+        return getIntProperty(FIDO_CREDENTIAL_STORE_CACHE_CAPACITY, FIDO_CREDENTIAL_STORE_CACHE_CAPACITY_DEFAULT_VALUE);
+    }
+
+    public static int getCredentialStoreCacheTimeout() {
+
+        return getIntProperty(FIDO_CREDENTIAL_STORE_CACHE_TIMEOUT, FIDO_CREDENTIAL_STORE_CACHE_TIMEOUT_DEFAULT_VALUE);
+    }
+
+    /**
+     * Check whether the FIDO2 ceremony state is kept in the compact binary form instead of JSON.
+     *
+     * @return boolean indicating server compact ceremony state preference.
+     */
+    public static boolean isCompactCeremonyStateEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_COMPACT_CEREMONY_STATE_ENABLED));
+    }
+
+    /**
+     * Check whether the FIDO2 ceremony state is sealed into the request ID instead of being stored in the cache.
+     * Sealed states are protected against replay on a single node only, hence clustered deployments enabling this
+     * mode need sticky sessions.
+     *
+     * @return boolean indicating server stateless challenge preference.
+     */
+    public static boolean isStatelessChallengeEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_STATELESS_CHALLENGE_ENABLED));
+    }
+
+    /**
+     * Get the base64 encoded AES key used to seal the FIDO2 ceremony state.
+     *
+     * @return Configured key or null if a key is not configured.
+     */
+    public static String getStatelessChallengeKey() {
+
+        return IdentityUtil.getProperty(FIDO_STATELESS_CHALLENGE_KEY);
+    }
+
+    public static int getStatelessChallengeValidity() {
+
+        return getIntProperty(FIDO_STATELESS_CHALLENGE_VALIDITY, FIDO_STATELESS_CHALLENGE_VALIDITY_DEFAULT_VALUE);
+    }
+
+    public static int getStatelessChallengeReplayCacheCapacity() {
+
+        return getIntProperty(FIDO_STATELESS_CHALLENGE_REPLAY_CACHE_CAPACITY,
+                FIDO_STATELESS_CHALLENGE_REPLAY_CACHE_CAPACITY_DEFAULT_VALUE);
+    }
+
+    /**
+     * Get the time after which an unfinished FIDO2 ceremony is discarded from the FIDO2 cache. The user response
+     * timeout is in milliseconds, as it is sent to the client as the WebAuthn timeout, and the grace period in seconds.
+     *
+     * @return Cache entry timeout in milliseconds.
+     */
+    public static long getCacheEntryTimeout() {
+
+        return getIntProperty(FIDO_USER_RESPONSE_TIMEOUT, FIDO_USER_RESPONSE_TIMEOUT_DEFAULT_VALUE) +
+                TimeUnit.SECONDS.toMillis(getIntProperty(FIDO_CACHE_EXPIRY_GRACE_PERIOD,
+                        FIDO_CACHE_EXPIRY_GRACE_PERIOD_DEFAULT_VALUE));
+    }
+
+    /**
+     * Get the memory budget of the local FIDO2 cache, configured in kilobytes.
+     *
+     * @return Maximum total weight of the local FIDO2 cache entries in bytes, or 0 if the weight is not bounded.
+     */
+    public static long getCacheMaxWeight() {
+
+        return 1024L * getIntProperty(FIDO_CACHE_MAX_WEIGHT, FIDO_CACHE_MAX_WEIGHT_DEFAULT_VALUE);
+    }
+
+    /**
+     * Check whether the expired FIDO2 cache entries are purged from the session data store in the background.
+     *
+     * @return boolean indicating server FIDO2 cache purge preference.
+     */
+    public static boolean isCachePurgeEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_CACHE_PURGE_ENABLED));
+    }
+
+    public static int getCachePurgeInterval() {
+
+        return getIntProperty(FIDO_CACHE_PURGE_INTERVAL, FIDO_CACHE_PURGE_INTERVAL_DEFAULT_VALUE);
+    }
+
+    public static int getCachePurgeBatchSize() {
+
+        return getIntProperty(FIDO_CACHE_PURGE_BATCH_SIZE, FIDO_CACHE_PURGE_BATCH_SIZE_DEFAULT_VALUE);
+    }
+
+    /**
+     * Check whether the FIDO2 cache entries are written to the session data store asynchronously.
+     *
+     * @return boolean indicating server FIDO2 cache asynchronous persistence preference.
+     */
+    public static boolean isCacheAsyncPersistenceEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_CACHE_ASYNC_PERSISTENCE_ENABLED));
+    }
+
+    public static int getCacheAsyncPersistenceMaxPendingWrites() {
+
+        return getIntProperty(FIDO_CACHE_ASYNC_PERSISTENCE_MAX_PENDING_WRITES,
+                FIDO_CACHE_ASYNC_PERSISTENCE_MAX_PENDING_WRITES_DEFAULT_VALUE);
+    }
+
+    public static int getCacheAsyncPersistenceBatchSize() {
+
+        return getIntProperty(FIDO_CACHE_ASYNC_PERSISTENCE_BATCH_SIZE,
+                FIDO_CACHE_ASYNC_PERSISTENCE_BATCH_SIZE_DEFAULT_VALUE);
+    }
+
+    public static long getCacheAsyncPersistenceFlushInterval() {
+
+        return getIntProperty(FIDO_CACHE_ASYNC_PERSISTENCE_FLUSH_INTERVAL,
+                FIDO_CACHE_ASYNC_PERSISTENCE_FLUSH_INTERVAL_DEFAULT_VALUE);
+    }
+
+    public static long getCacheAsyncPersistenceMaxWaitTime() {
+
+        return getIntProperty(FIDO_CACHE_ASYNC_PERSISTENCE_MAX_WAIT_TIME,
+                FIDO_CACHE_ASYNC_PERSISTENCE_MAX_WAIT_TIME_DEFAULT_VALUE);
+    }
+
+    /**
+     * Check whether the random values of the FIDO2 ceremonies are taken from a pre-filled pool.
+     *
+     * @return boolean indicating server random pool preference.
+     */
+    public static boolean isRandomPoolEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_RANDOM_POOL_ENABLED));
+    }
+
+    public static int getRandomPoolSize() {
+
+        return getIntProperty(FIDO_RANDOM_POOL_SIZE, FIDO_RANDOM_POOL_SIZE_DEFAULT_VALUE);
+    }
+
+    public static long getRandomPoolRefillInterval() {
+
+        return getIntProperty(FIDO_RANDOM_POOL_REFILL_INTERVAL, FIDO_RANDOM_POOL_REFILL_INTERVAL_DEFAULT_VALUE);
+    }
+
+    public static String getRandomPoolAlgorithm() {
+
+        return IdentityUtil.getProperty(FIDO_RANDOM_POOL_ALGORITHM);
+    }
+
+    public static String getRandomPoolProvider() {
+
+        return IdentityUtil.getProperty(FIDO_RANDOM_POOL_PROVIDER);
+    }
+
+    /**
+     * Check whether the request options of usernameless authentication ceremonies are built from cached templates.
+     *
+     * @return boolean indicating server usernameless assertion template preference.
+     */
+    public static boolean isUsernamelessAssertionTemplateEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_USERNAMELESS_ASSERTION_TEMPLATE_ENABLED));
+    }
+
+    /**
+     * Check whether the relying parties are cached per tenant and relying party ID instead of being built per
+     * ceremony.
+     *
+     * @return boolean indicating server relying party cache preference.
+     */
+    public static boolean isRelyingPartyCacheEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_RELYING_PARTY_CACHE_ENABLED));
+    }
+
+    /**
+     * Check whether the full effective domain of the origin host is used as the relying party ID, instead of its
+     * registrable domain.
+     *
+     * @return boolean indicating server relying party ID preference.
+     */
+    public static boolean isRelyingPartyFullEffectiveDomainUsed() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_RELYING_PARTY_USE_FULL_EFFECTIVE_DOMAIN));
+    }
+
+    /**
+     * Check whether the relying party IDs are memoized per origin host.
+     *
+     * @return boolean indicating server relying party ID cache preference.
+     */
+    public static boolean isRelyingPartyIdCacheEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_RELYING_PARTY_ID_CACHE_ENABLED));
+    }
+
+    public static int getRelyingPartyIdCacheCapacity() {
+
+        return getIntProperty(FIDO_RELYING_PARTY_ID_CACHE_CAPACITY, FIDO_RELYING_PARTY_ID_CACHE_CAPACITY_DEFAULT_VALUE);
+    }
+
+    /**
+     * Check whether the FIDO2 configurations of the tenants are kept as cached snapshots instead of being read from
+     * the configuration management service per ceremony. Configuration changes then take effect once the snapshot
+     * expires, after at most the configured timeout.
+     *
+     * @return boolean indicating server configuration cache preference.
+     */
+    public static boolean isConfigurationCacheEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(FIDO_CONFIGURATION_CACHE_ENABLED));
+    }
+
+    public static int getConfigurationCacheTimeout() {
+
+        return getIntProperty(FIDO_CONFIGURATION_CACHE_TIMEOUT, FIDO_CONFIGURATION_CACHE_TIMEOUT_DEFAULT_VALUE);
+    }
+
     public static boolean isRegistrationFlow(FlowExecutionContext context) {
 
         return org.wso2.carbon.identity.flow.mgt.Constants.FlowTypes.REGISTRATION.getType()
                 .equals(context.getFlowType());
     }
+
+    private static int getIntProperty(String propertyName, int defaultValue) {
+
+        String value = IdentityUtil.getProperty(propertyName);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + value + " configured for: " + propertyName + ". Using the default " +
+                        "value: " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
 }
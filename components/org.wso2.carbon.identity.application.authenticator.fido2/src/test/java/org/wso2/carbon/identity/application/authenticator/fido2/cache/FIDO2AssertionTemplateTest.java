@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yubico.internal.util.JacksonCodecs;
+import com.yubico.webauthn.data.AssertionExtensionInputs;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialRequestOptions;
+import com.yubico.webauthn.data.UserVerificationRequirement;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Test class for FIDO2AssertionTemplate and FIDO2AssertionTemplateCache.
+ */
+public class FIDO2AssertionTemplateTest {
+
+    private static final ObjectMapper JSON_MAPPER = JacksonCodecs.json();
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String ORIGIN = "https://localhost:9443";
+    private static final List<String> TRUSTED_ORIGINS = Arrays.asList(ORIGIN, "https://localhost");
+    private static final PublicKeyCredentialRequestOptions OPTIONS = PublicKeyCredentialRequestOptions.builder()
+            .challenge(new ByteArray(new byte[]{1, 2, 3, 4}))
+            .rpId("localhost")
+            .timeout(300000L)
+            .userVerification(UserVerificationRequirement.PREFERRED)
+            .extensions(AssertionExtensionInputs.builder().build())
+            .build();
+
+    @Test
+    public void testTemplateMatchesSerializedOptions() throws Exception {
+
+        FIDO2AssertionTemplate template = FIDO2AssertionTemplate.create(OPTIONS, JSON_MAPPER, TRUSTED_ORIGINS);
+        for (byte i = 0; i < 3; i++) {
+            ByteArray challenge = new ByteArray(new byte[]{i, 5, 6, 7, 8, 9, 10, 11});
+            PublicKeyCredentialRequestOptions expected = OPTIONS.toBuilder().challenge(challenge).build();
+
+            assertEquals(template.getOptions(challenge), expected);
+            assertEquals(JSON_MAPPER.readTree(template.getOptionsJson(challenge)),
+                    JSON_MAPPER.readTree(JSON_MAPPER.writeValueAsString(expected)));
+        }
+    }
+
+    @Test
+    public void testTemplateIsRebuiltWhenTrustedOriginsChange() throws Exception {
+
+        FIDO2AssertionTemplateCache templateCache = new FIDO2AssertionTemplateCache();
+        assertNull(templateCache.get(TENANT_DOMAIN, ORIGIN, TRUSTED_ORIGINS));
+        templateCache.put(TENANT_DOMAIN, ORIGIN, FIDO2AssertionTemplate.create(OPTIONS, JSON_MAPPER,
+                TRUSTED_ORIGINS));
+
+        assertNotNull(templateCache.get(TENANT_DOMAIN, ORIGIN, Arrays.asList("https://localhost", ORIGIN)));
+        assertNull(templateCache.get("wso2.com", ORIGIN, TRUSTED_ORIGINS));
+        assertNull(templateCache.get(TENANT_DOMAIN, ORIGIN, Collections.singletonList(ORIGIN)));
+        assertEquals(templateCache.getHitCount(), 1);
+        assertEquals(templateCache.getBuildCount(), 1);
+
+        templateCache.invalidate(TENANT_DOMAIN);
+        assertNull(templateCache.get(TENANT_DOMAIN, ORIGIN, TRUSTED_ORIGINS));
+    }
+}
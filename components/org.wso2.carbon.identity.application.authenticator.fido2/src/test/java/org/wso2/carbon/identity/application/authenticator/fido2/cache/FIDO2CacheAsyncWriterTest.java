@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for FIDO2CacheAsyncWriter.
+ */
+public class FIDO2CacheAsyncWriterTest {
+
+    private static final long FLUSH_INTERVAL = 60000;
+    private static final long MAX_WAIT_TIME = 5000;
+
+    @Test
+    public void testQueuedWritesAreFlushedOrCancelled() {
+
+        Map<String, FIDO2CacheEntry> sessionStore = new ConcurrentHashMap<>();
+        FIDO2CacheAsyncWriter asyncWriter = new FIDO2CacheAsyncWriter(sessionStore::put, 2, 1, FLUSH_INTERVAL,
+                MAX_WAIT_TIME);
+        FIDO2CacheEntry consumedEntry = new FIDO2CacheEntry(null, "consumed", null);
+        FIDO2CacheEntry abandonedEntry = new FIDO2CacheEntry(null, "abandoned", null);
+
+        assertTrue(asyncWriter.enqueue("consumed", consumedEntry));
+        assertTrue(asyncWriter.enqueue("abandoned", abandonedEntry));
+        // Writes beyond the capacity are left to the caller.
+        assertFalse(asyncWriter.enqueue("rejected", new FIDO2CacheEntry(null, "rejected", null)));
+        assertEquals(asyncWriter.getQueueDepth(), 2);
+        assertEquals(asyncWriter.getRejectedWriteCount(), 1);
+
+        // A cancelled write never reaches the session data store.
+        assertSame(asyncWriter.cancel("consumed"), consumedEntry);
+        assertNull(asyncWriter.cancel("consumed"));
+
+        asyncWriter.flush();
+        assertEquals(asyncWriter.getQueueDepth(), 0);
+        assertEquals(sessionStore.size(), 1);
+        assertSame(sessionStore.get("abandoned"), abandonedEntry);
+        assertEquals(asyncWriter.getFlushedWriteCount(), 1);
+        assertEquals(asyncWriter.getCancelledWriteCount(), 1);
+        assertNull(asyncWriter.cancel("abandoned"));
+    }
+
+    @Test
+    public void testReaderWaitsForWriteBeingFlushed() throws Exception {
+
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch releaseWrite = new CountDownLatch(1);
+        Map<String, FIDO2CacheEntry> sessionStore = new ConcurrentHashMap<>();
+        FIDO2CacheAsyncWriter asyncWriter = new FIDO2CacheAsyncWriter((id, entry) -> {
+            writeStarted.countDown();
+            try {
+                releaseWrite.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sessionStore.put(id, entry);
+        }, 10, 10, FLUSH_INTERVAL, MAX_WAIT_TIME);
+        asyncWriter.enqueue("requestId", new FIDO2CacheEntry(null, "assertionRequest", null));
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            executorService.submit(asyncWriter::flush);
+            assertTrue(writeStarted.await(MAX_WAIT_TIME, TimeUnit.MILLISECONDS));
+            // A write being flushed cannot be cancelled.
+            assertNull(asyncWriter.cancel("requestId"));
+
+            releaseWrite.countDown();
+            asyncWriter.awaitWrite("requestId");
+            assertTrue(sessionStore.containsKey("requestId"));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
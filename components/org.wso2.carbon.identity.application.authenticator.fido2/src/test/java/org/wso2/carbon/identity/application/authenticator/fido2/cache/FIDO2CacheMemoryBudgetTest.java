@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for FIDO2CacheMemoryBudget.
+ */
+public class FIDO2CacheMemoryBudgetTest {
+
+    private static final FIDO2CacheKey FIRST_KEY = new FIDO2CacheKey("first");
+    private static final FIDO2CacheKey SECOND_KEY = new FIDO2CacheKey("second");
+    private static final FIDO2CacheKey THIRD_KEY = new FIDO2CacheKey("third");
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() {
+
+        FIDO2CacheMemoryBudget memoryBudget = new FIDO2CacheMemoryBudget(1000);
+        assertTrue(memoryBudget.add(FIRST_KEY, 400).isEmpty());
+        assertTrue(memoryBudget.add(SECOND_KEY, 400).isEmpty());
+        memoryBudget.touch(FIRST_KEY);
+
+        // The second entry is the least recently used one.
+        assertEquals(memoryBudget.add(THIRD_KEY, 400), Collections.singletonList(SECOND_KEY));
+        assertEquals(memoryBudget.getResidentWeight(), 800);
+        assertEquals(memoryBudget.getResidentCount(), 2);
+        assertEquals(memoryBudget.getEvictionCount(), 1);
+
+        memoryBudget.remove(FIRST_KEY);
+        assertEquals(memoryBudget.getResidentWeight(), 400);
+        assertEquals(memoryBudget.getResidentCount(), 1);
+    }
+
+    @Test
+    public void testHeavyEntryEvictsSeveralEntries() {
+
+        FIDO2CacheMemoryBudget memoryBudget = new FIDO2CacheMemoryBudget(1000);
+        memoryBudget.add(FIRST_KEY, 300);
+        memoryBudget.add(SECOND_KEY, 300);
+
+        // An entry exceeding the budget by itself is kept.
+        assertEquals(memoryBudget.add(THIRD_KEY, 1200), Arrays.asList(FIRST_KEY, SECOND_KEY));
+        assertEquals(memoryBudget.getResidentWeight(), 1200);
+        assertEquals(memoryBudget.getEvictionCount(), 2);
+    }
+
+    @Test
+    public void testEntryWeightGrowsWithOptions() {
+
+        FIDO2CacheEntry smallEntry = new FIDO2CacheEntry(null, "{\"allowCredentials\":[]}", null);
+        StringBuilder allowCredentials = new StringBuilder("{\"allowCredentials\":[");
+        for (int i = 0; i < 50; i++) {
+            allowCredentials.append("{\"type\":\"public-key\",\"id\":\"credential").append(i).append("\"},");
+        }
+        FIDO2CacheEntry largeEntry = new FIDO2CacheEntry(null, allowCredentials.append("]}").toString(), null);
+
+        assertTrue(largeEntry.getWeight() > smallEntry.getWeight() + 2L * 50 * 30);
+    }
+}
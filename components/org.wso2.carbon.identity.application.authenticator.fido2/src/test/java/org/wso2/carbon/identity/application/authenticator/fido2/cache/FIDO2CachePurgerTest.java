@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for FIDO2CachePurger against an embedded H2 database.
+ */
+public class FIDO2CachePurgerTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:fido2_session_store;DB_CLOSE_DELAY=-1";
+    private static final String SESSION_STORE = "IDN_AUTH_SESSION_STORE";
+    private static final String TEMP_SESSION_STORE = "IDN_AUTH_TEMP_SESSION_STORE";
+    private static final String FIDO2_CACHE_NAME = "FIDO2Cache";
+    private static final long ENTRY_TIMEOUT = 60000;
+
+    @BeforeClass
+    public void initDatabase() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            for (String table : new String[]{SESSION_STORE, TEMP_SESSION_STORE}) {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + table + " (SESSION_ID VARCHAR(100) NOT NULL, " +
+                        "SESSION_TYPE VARCHAR(100) NOT NULL, OPERATION VARCHAR(10) NOT NULL, SESSION_OBJECT BLOB, " +
+                        "TIME_CREATED BIGINT, TENANT_ID INTEGER DEFAULT -1, EXPIRY_TIME BIGINT, " +
+                        "PRIMARY KEY (SESSION_ID, SESSION_TYPE, TIME_CREATED, OPERATION))");
+            }
+        }
+    }
+
+    @AfterClass
+    public void closeDatabase() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM " + SESSION_STORE);
+            statement.execute("DELETE FROM " + TEMP_SESSION_STORE);
+        }
+    }
+
+    @Test
+    public void testExpiredEntriesArePurged() throws SQLException {
+
+        long now = System.currentTimeMillis();
+        long expired = now - ENTRY_TIMEOUT - 1000;
+        for (int i = 0; i < 5; i++) {
+            addSessionData(SESSION_STORE, "expired" + i, FIDO2_CACHE_NAME, "STORE", expired);
+        }
+        // The delete operation row written when the entry was cleared is purged with the entry.
+        addSessionData(SESSION_STORE, "expired0", FIDO2_CACHE_NAME, "DELETE", expired + 1);
+        addSessionData(SESSION_STORE, "live", FIDO2_CACHE_NAME, "STORE", now);
+        addSessionData(SESSION_STORE, "other", "AuthenticationContextCache", "STORE", expired);
+        addSessionData(TEMP_SESSION_STORE, "temp", FIDO2_CACHE_NAME, "STORE", expired);
+
+        FIDO2CachePurger cachePurger = mockPurger(false);
+        cachePurger.purge();
+
+        assertEquals(cachePurger.getPurgedEntryCount(), 5);
+        assertEquals(cachePurger.getPurgeRunCount(), 1);
+        assertTrue(cachePurger.getLastPurgeThroughput() > 0);
+        assertEquals(countSessionData(SESSION_STORE), 2);
+        // The temporary data table is left alone unless SessionDataStore writes to it.
+        assertEquals(countSessionData(TEMP_SESSION_STORE), 1);
+
+        cachePurger.purge();
+        assertEquals(cachePurger.getPurgedEntryCount(), 5);
+        assertEquals(cachePurger.getPurgeRunCount(), 2);
+    }
+
+    @Test
+    public void testExpiredTempEntriesArePurged() throws SQLException {
+
+        long now = System.currentTimeMillis();
+        long expired = now - ENTRY_TIMEOUT - 1000;
+        addSessionData(SESSION_STORE, "expired", FIDO2_CACHE_NAME, "STORE", expired);
+        addSessionData(TEMP_SESSION_STORE, "temp0", FIDO2_CACHE_NAME, "STORE", expired);
+        addSessionData(TEMP_SESSION_STORE, "temp1", FIDO2_CACHE_NAME, "STORE", expired);
+        addSessionData(TEMP_SESSION_STORE, "live", FIDO2_CACHE_NAME, "STORE", now);
+        // An entry stored again under an expired key is kept.
+        addSessionData(TEMP_SESSION_STORE, "temp0", FIDO2_CACHE_NAME, "STORE", now);
+
+        FIDO2CachePurger cachePurger = mockPurger(true);
+        cachePurger.purge();
+
+        assertEquals(cachePurger.getPurgedEntryCount(), 3);
+        assertEquals(countSessionData(SESSION_STORE), 0);
+        assertEquals(countSessionData(TEMP_SESSION_STORE), 2);
+    }
+
+    private FIDO2CachePurger mockPurger(boolean tempDataCleanupEnabled) {
+
+        FIDO2CachePurger cachePurger = spy(new FIDO2CachePurger(ENTRY_TIMEOUT, ENTRY_TIMEOUT, 2));
+        doReturn(tempDataCleanupEnabled).when(cachePurger).isTempDataCleanupEnabled();
+        doAnswer(invocation -> DriverManager.getConnection(DB_URL)).when(cachePurger).getSessionDBConnection();
+        return cachePurger;
+    }
+
+    private void addSessionData(String table, String sessionId, String sessionType, String operation,
+                                long timeCreated) throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO " + table +
+                     " (SESSION_ID, SESSION_TYPE, OPERATION, TIME_CREATED) VALUES (?, ?, ?, ?)")) {
+            preparedStatement.setString(1, sessionId);
+            preparedStatement.setString(2, sessionType);
+            preparedStatement.setString(3, operation);
+            preparedStatement.setLong(4, TimeUnit.MILLISECONDS.toNanos(timeCreated));
+            preparedStatement.execute();
+        }
+    }
+
+    private int countSessionData(String table) throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Test class for consuming FIDO2Cache entries.
+ */
+public class FIDO2CacheTest {
+
+    private static final int THREAD_COUNT = 16;
+    private static final String REQUEST_ID = "requestId";
+
+    @Test
+    public void testLocalEntryIsConsumedOnce() throws Exception {
+
+        FIDO2Cache fido2Cache = mock(FIDO2Cache.class, CALLS_REAL_METHODS);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, "assertionRequest", null);
+        AtomicReference<FIDO2CacheEntry> localCache = new AtomicReference<>(cacheEntry);
+        doAnswer(invocation -> {
+            FIDO2CacheEntry entry = localCache.get();
+            // Widen the window between reading and clearing the entry.
+            Thread.sleep(5);
+            return entry;
+        }).when(fido2Cache).getFromLocalCache(any(FIDO2CacheKey.class));
+        doAnswer(invocation -> {
+            localCache.set(null);
+            return null;
+        }).when(fido2Cache).clearFromLocalCache(any(FIDO2CacheKey.class));
+        doReturn(true).when(fido2Cache).isSessionDataPersistEnabled();
+        doReturn(true).when(fido2Cache).claimFromSessionStore(anyString());
+        doReturn(null).when(fido2Cache).getFromSessionStore(anyString());
+
+        assertEquals(consumeConcurrently(fido2Cache), 1);
+    }
+
+    @Test
+    public void testLocalEntryClaimedByAnotherNodeIsRejected() {
+
+        FIDO2Cache fido2Cache = mock(FIDO2Cache.class, CALLS_REAL_METHODS);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, "assertionRequest", null);
+        doReturn(cacheEntry).when(fido2Cache).getFromLocalCache(any(FIDO2CacheKey.class));
+        doNothing().when(fido2Cache).clearFromLocalCache(any(FIDO2CacheKey.class));
+        doReturn(true).when(fido2Cache).isSessionDataPersistEnabled();
+        doReturn(false).when(fido2Cache).isSessionDataPersistPooled();
+        // The entry held by the local cache of this node has been consumed on another node.
+        doReturn(false).when(fido2Cache).claimFromSessionStore(anyString());
+
+        assertNull(fido2Cache.consume(new FIDO2CacheKey(REQUEST_ID)));
+        verify(fido2Cache).clearFromLocalCache(any(FIDO2CacheKey.class));
+    }
+
+    @Test
+    public void testLocalEntryIsRejectedWithPooledSessionDataPersistence() {
+
+        FIDO2Cache fido2Cache = mock(FIDO2Cache.class, CALLS_REAL_METHODS);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, "assertionRequest", null);
+        doReturn(cacheEntry).when(fido2Cache).getFromLocalCache(any(FIDO2CacheKey.class));
+        doNothing().when(fido2Cache).clearFromLocalCache(any(FIDO2CacheKey.class));
+        doReturn(true).when(fido2Cache).isSessionDataPersistEnabled();
+        doReturn(true).when(fido2Cache).isSessionDataPersistPooled();
+        // The write queued by SessionDataStore has not been flushed when the ceremony is finished on this node.
+        doReturn(false).when(fido2Cache).claimFromSessionStore(anyString());
+        doNothing().when(fido2Cache).clearFromSessionStore(anyString());
+
+        assertNull(fido2Cache.consume(new FIDO2CacheKey(REQUEST_ID)));
+        verify(fido2Cache).claimFromSessionStore(REQUEST_ID);
+        // The queued write is cleared once it is flushed, so that the entry cannot be consumed on another node.
+        verify(fido2Cache).clearFromSessionStore(REQUEST_ID);
+    }
+
+    @Test
+    public void testLocalEntryIsNotClaimedWithoutSessionDataPersistence() {
+
+        FIDO2Cache fido2Cache = mock(FIDO2Cache.class, CALLS_REAL_METHODS);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, "assertionRequest", null);
+        doReturn(cacheEntry).when(fido2Cache).getFromLocalCache(any(FIDO2CacheKey.class));
+        doNothing().when(fido2Cache).clearFromLocalCache(any(FIDO2CacheKey.class));
+        doReturn(false).when(fido2Cache).isSessionDataPersistEnabled();
+
+        assertEquals(fido2Cache.consume(new FIDO2CacheKey(REQUEST_ID)), cacheEntry);
+        verify(fido2Cache, never()).claimFromSessionStore(anyString());
+    }
+
+    @Test
+    public void testPersistedEntryIsConsumedOnce() throws Exception {
+
+        FIDO2Cache fido2Cache = mock(FIDO2Cache.class, CALLS_REAL_METHODS);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, "assertionRequest", null);
+        AtomicBoolean deleted = new AtomicBoolean();
+        doReturn(null).when(fido2Cache).getFromLocalCache(any(FIDO2CacheKey.class));
+        doReturn(true).when(fido2Cache).isSessionDataPersistEnabled();
+        // Every caller claims the entry, as callers on other nodes would.
+        doAnswer(invocation -> deleted.compareAndSet(false, true) ? cacheEntry : null)
+                .when(fido2Cache).claimEntryFromSessionStore(anyString());
+
+        assertEquals(consumeConcurrently(fido2Cache), 1);
+        verify(fido2Cache, never()).getFromSessionStore(anyString());
+    }
+
+    @Test
+    public void testPersistedEntryIsNotReadWithoutSessionDataPersistence() {
+
+        FIDO2Cache fido2Cache = mock(FIDO2Cache.class, CALLS_REAL_METHODS);
+        doReturn(null).when(fido2Cache).getFromLocalCache(any(FIDO2CacheKey.class));
+        doReturn(false).when(fido2Cache).isSessionDataPersistEnabled();
+
+        assertNull(fido2Cache.consume(new FIDO2CacheKey(REQUEST_ID)));
+        verify(fido2Cache, never()).claimEntryFromSessionStore(anyString());
+    }
+
+    @Test
+    public void testExpiredEntryIsRejected() {
+
+        FIDO2Cache fido2Cache = mock(FIDO2Cache.class, CALLS_REAL_METHODS);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, "assertionRequest", null);
+        cacheEntry.setExpiryTime(System.currentTimeMillis() - 1);
+        doReturn(cacheEntry).when(fido2Cache).getFromLocalCache(any(FIDO2CacheKey.class));
+        doNothing().when(fido2Cache).clearFromLocalCache(any(FIDO2CacheKey.class));
+        doReturn(true).when(fido2Cache).isSessionDataPersistEnabled();
+        doReturn(true).when(fido2Cache).claimFromSessionStore(anyString());
+        long expiredOnReadCount = fido2Cache.getExpiredOnReadCount();
+
+        assertNull(fido2Cache.consume(new FIDO2CacheKey(REQUEST_ID)));
+        assertEquals(fido2Cache.getExpiredOnReadCount(), expiredOnReadCount + 1);
+        // The expired entry is removed from both tiers.
+        verify(fido2Cache).clearFromLocalCache(any(FIDO2CacheKey.class));
+        verify(fido2Cache).claimFromSessionStore(REQUEST_ID);
+    }
+
+    private int consumeConcurrently(FIDO2Cache fido2Cache) throws Exception {
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<FIDO2CacheEntry>> results = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                results.add(executorService.submit(() -> {
+                    startSignal.await();
+                    return fido2Cache.consume(new FIDO2CacheKey(REQUEST_ID));
+                }));
+            }
+            startSignal.countDown();
+            int consumedCount = 0;
+            for (Future<FIDO2CacheEntry> result : results) {
+                if (result.get(10, TimeUnit.SECONDS) != null) {
+                    consumedCount++;
+                }
+            }
+            return consumedCount;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
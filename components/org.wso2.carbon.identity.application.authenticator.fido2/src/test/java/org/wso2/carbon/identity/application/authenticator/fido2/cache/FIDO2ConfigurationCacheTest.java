@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2Configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Test class for FIDO2ConfigurationCache.
+ */
+public class FIDO2ConfigurationCacheTest {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final long TIMEOUT = 60000;
+
+    @Test
+    public void testSnapshotIsReadUntilExpired() {
+
+        FIDO2ConfigurationCache configurationCache = new FIDO2ConfigurationCache();
+        // A snapshot of a tenant without stored configurations holds the defaults.
+        FIDO2Configuration configuration = new FIDO2Configuration(true, false, null);
+        configurationCache.put(TENANT_DOMAIN, configuration, TIMEOUT);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(configurationCache.get(TENANT_DOMAIN), configuration);
+        }
+        assertNull(configurationCache.get("wso2.com"));
+        assertEquals(configurationCache.getLoadCount(), 1);
+
+        configurationCache.clear();
+        assertNull(configurationCache.get(TENANT_DOMAIN));
+    }
+
+    @Test
+    public void testExpiredSnapshotIsNotRead() {
+
+        FIDO2ConfigurationCache configurationCache = new FIDO2ConfigurationCache();
+        configurationCache.put(TENANT_DOMAIN, new FIDO2Configuration(true, true, null), 0);
+
+        assertNull(configurationCache.get(TENANT_DOMAIN));
+    }
+
+    @Test
+    public void testTrustedOriginsAreImmutable() {
+
+        List<String> trustedOrigins = new ArrayList<>(Collections.singletonList("https://localhost:9443"));
+        FIDO2Configuration configuration = new FIDO2Configuration(true, false, trustedOrigins);
+        trustedOrigins.set(0, "https://wso2.com");
+
+        assertEquals(configuration.getTrustedOrigins(), Collections.singletonList("https://localhost:9443"));
+        assertSame(configuration.getTrustedOrigins(), configuration.getTrustedOrigins());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testTrustedOriginsCannotBeModified() {
+
+        new FIDO2Configuration(true, false, Collections.singletonList("https://localhost:9443"))
+                .getTrustedOrigins().add("https://wso2.com");
+    }
+}
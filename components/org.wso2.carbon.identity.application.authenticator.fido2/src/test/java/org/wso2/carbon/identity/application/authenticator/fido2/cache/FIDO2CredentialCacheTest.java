@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2StoredCredential;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Test class for FIDO2CredentialCache.
+ */
+public class FIDO2CredentialCacheTest {
+
+    private static final int TENANT_ID = -1234;
+    private static final int OTHER_TENANT_ID = 1;
+    private static final String USER_STORE_DOMAIN = "PRIMARY";
+    private static final String USERNAME = "admin";
+    private static final String QUALIFIED_USERNAME = "PRIMARY/admin@carbon.super";
+    private static final ByteArray CREDENTIAL_ID = new ByteArray(new byte[]{1, 2, 3, 4});
+    private static final ByteArray USER_HANDLE = new ByteArray(new byte[]{5, 6, 7, 8});
+    private static final Set<PublicKeyCredentialDescriptor> DESCRIPTORS = Collections.singleton(
+            PublicKeyCredentialDescriptor.builder().id(CREDENTIAL_ID).build());
+    private static final FIDO2StoredCredential STORED_CREDENTIAL = new FIDO2StoredCredential(TENANT_ID,
+            USER_STORE_DOMAIN, USERNAME, RegisteredCredential.builder()
+            .credentialId(CREDENTIAL_ID)
+            .userHandle(USER_HANDLE)
+            .publicKeyCose(new ByteArray(new byte[]{9, 10, 11, 12}))
+            .signatureCount(1)
+            .build());
+    private static final long TIMEOUT = 60000;
+
+    @Test
+    public void testEntriesAreIsolatedByTenant() {
+
+        FIDO2CredentialCache credentialCache = new FIDO2CredentialCache(100, TIMEOUT);
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME, DESCRIPTORS);
+        credentialCache.addUsername(TENANT_ID, USER_HANDLE, TENANT_ID, USER_STORE_DOMAIN, USERNAME,
+                QUALIFIED_USERNAME);
+
+        assertEquals(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME), DESCRIPTORS);
+        assertEquals(credentialCache.getUsername(TENANT_ID, USER_HANDLE), QUALIFIED_USERNAME);
+        assertNull(credentialCache.getCredentialDescriptors(OTHER_TENANT_ID, USER_STORE_DOMAIN, USERNAME));
+        assertNull(credentialCache.getUsername(OTHER_TENANT_ID, USER_HANDLE));
+
+        // Invalidating the user in another tenant does not affect the entries of the tenant.
+        credentialCache.invalidateUser(OTHER_TENANT_ID, USER_STORE_DOMAIN, USERNAME);
+        assertEquals(credentialCache.getUsername(TENANT_ID, USER_HANDLE), QUALIFIED_USERNAME);
+        assertEquals(credentialCache.getHitCount(), 3);
+        assertEquals(credentialCache.getMissCount(), 2);
+    }
+
+    @Test
+    public void testInvalidateUser() {
+
+        FIDO2CredentialCache credentialCache = new FIDO2CredentialCache(100, TIMEOUT);
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME, DESCRIPTORS);
+        credentialCache.addUsername(TENANT_ID, USER_HANDLE, TENANT_ID, USER_STORE_DOMAIN, USERNAME,
+                QUALIFIED_USERNAME);
+        credentialCache.addCredential(TENANT_ID, STORED_CREDENTIAL);
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "alice", DESCRIPTORS);
+        assertEquals(credentialCache.getCredential(TENANT_ID, CREDENTIAL_ID), STORED_CREDENTIAL);
+
+        // Registrations are added, removed and renamed with any case of the username.
+        credentialCache.invalidateUser(TENANT_ID, "primary", "Admin");
+
+        assertNull(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME));
+        assertNull(credentialCache.getUsername(TENANT_ID, USER_HANDLE));
+        assertNull(credentialCache.getCredential(TENANT_ID, CREDENTIAL_ID));
+        assertEquals(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "alice"), DESCRIPTORS);
+    }
+
+    @Test
+    public void testEntriesCachedInAnotherTenantAreInvalidatedWithTheOwner() {
+
+        FIDO2CredentialCache credentialCache = new FIDO2CredentialCache(100, TIMEOUT);
+        credentialCache.addUsername(OTHER_TENANT_ID, USER_HANDLE, TENANT_ID, USER_STORE_DOMAIN, USERNAME,
+                QUALIFIED_USERNAME);
+        credentialCache.addCredential(OTHER_TENANT_ID, STORED_CREDENTIAL);
+        assertEquals(credentialCache.getUsername(OTHER_TENANT_ID, USER_HANDLE), QUALIFIED_USERNAME);
+        assertNull(credentialCache.getUsername(TENANT_ID, USER_HANDLE));
+
+        credentialCache.invalidateUser(TENANT_ID, USER_STORE_DOMAIN, USERNAME);
+
+        assertNull(credentialCache.getUsername(OTHER_TENANT_ID, USER_HANDLE));
+        assertNull(credentialCache.getCredential(OTHER_TENANT_ID, CREDENTIAL_ID));
+    }
+
+    @Test
+    public void testInvalidateUserStore() {
+
+        FIDO2CredentialCache credentialCache = new FIDO2CredentialCache(100, TIMEOUT);
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME, DESCRIPTORS);
+        credentialCache.addUsername(TENANT_ID, USER_HANDLE, TENANT_ID, USER_STORE_DOMAIN, USERNAME,
+                QUALIFIED_USERNAME);
+        credentialCache.addCredentialDescriptors(TENANT_ID, "SECONDARY", USERNAME, DESCRIPTORS);
+        credentialCache.addCredentialDescriptors(OTHER_TENANT_ID, USER_STORE_DOMAIN, USERNAME, DESCRIPTORS);
+
+        credentialCache.invalidateUserStore(TENANT_ID, USER_STORE_DOMAIN);
+
+        assertNull(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME));
+        assertNull(credentialCache.getUsername(TENANT_ID, USER_HANDLE));
+        assertEquals(credentialCache.getCredentialDescriptors(TENANT_ID, "SECONDARY", USERNAME), DESCRIPTORS);
+        assertEquals(credentialCache.getCredentialDescriptors(OTHER_TENANT_ID, USER_STORE_DOMAIN, USERNAME),
+                DESCRIPTORS);
+    }
+
+    @Test
+    public void testExpiredEntriesAreNotRead() {
+
+        FIDO2CredentialCache credentialCache = new FIDO2CredentialCache(100, 0);
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME, DESCRIPTORS);
+        credentialCache.addUsername(TENANT_ID, USER_HANDLE, TENANT_ID, USER_STORE_DOMAIN, USERNAME,
+                QUALIFIED_USERNAME);
+
+        assertNull(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME));
+        assertNull(credentialCache.getUsername(TENANT_ID, USER_HANDLE));
+        assertEquals(credentialCache.getEvictionCount(), 2);
+    }
+
+    @Test
+    public void testEntriesClosestToExpiryAreEvictedAtCapacity() throws Exception {
+
+        FIDO2CredentialCache credentialCache = new FIDO2CredentialCache(1, TIMEOUT);
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME, DESCRIPTORS);
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "alice", DESCRIPTORS);
+
+        assertNull(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, USERNAME));
+        assertEquals(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "alice"), DESCRIPTORS);
+        assertEquals(credentialCache.getEvictionCount(), 1);
+
+        // A tenth of the capacity is freed at once by evicting the entries closest to their expiry, hence the next
+        // put does not evict.
+        credentialCache = new FIDO2CredentialCache(20, TIMEOUT);
+        for (int i = 0; i < 20; i++) {
+            credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "user" + i, DESCRIPTORS);
+            if (i == 9) {
+                Thread.sleep(5);
+            }
+        }
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "alice", DESCRIPTORS);
+        credentialCache.addCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "bob", DESCRIPTORS);
+        assertEquals(credentialCache.getEvictionCount(), 2);
+        for (int i = 10; i < 20; i++) {
+            assertEquals(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "user" + i),
+                    DESCRIPTORS);
+        }
+        assertEquals(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "alice"), DESCRIPTORS);
+        assertEquals(credentialCache.getCredentialDescriptors(TENANT_ID, USER_STORE_DOMAIN, "bob"), DESCRIPTORS);
+    }
+
+}
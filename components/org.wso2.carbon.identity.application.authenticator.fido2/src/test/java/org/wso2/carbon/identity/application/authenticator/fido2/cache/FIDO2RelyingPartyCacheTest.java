@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import com.yubico.webauthn.CredentialRepository;
+import com.yubico.webauthn.RelyingParty;
+import com.yubico.webauthn.data.RelyingPartyIdentity;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2OriginMatcher;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.UnaryOperator;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Test class for FIDO2RelyingPartyCache.
+ */
+public class FIDO2RelyingPartyCacheTest {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String RP_ID = "localhost";
+
+    @Test
+    public void testRelyingPartyIsRebuiltOnlyOnConfigChange() {
+
+        FIDO2OriginMatcher originMatcher = FIDO2OriginMatcher.compile(
+                Collections.singletonList("https://localhost:9443"), null, UnaryOperator.identity());
+        FIDO2RelyingPartyCache relyingPartyCache = new FIDO2RelyingPartyCache();
+        RelyingParty relyingParty = RelyingParty.builder()
+                .identity(RelyingPartyIdentity.builder().id(RP_ID).name("WSO2").build())
+                .credentialRepository(mock(CredentialRepository.class))
+                .build();
+        relyingPartyCache.put(TENANT_DOMAIN, RP_ID, originMatcher, relyingParty);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(relyingPartyCache.get(TENANT_DOMAIN, RP_ID, originMatcher), relyingParty);
+        }
+        assertNull(relyingPartyCache.get("wso2.com", RP_ID, originMatcher));
+        // The matcher is recompiled once the trusted origins change.
+        assertNull(relyingPartyCache.get(TENANT_DOMAIN, RP_ID, FIDO2OriginMatcher.compile(
+                Arrays.asList("https://localhost:9443", "https://wso2.com"), null, UnaryOperator.identity())));
+        assertEquals(relyingPartyCache.getHitCount(), 10);
+        assertEquals(relyingPartyCache.getRebuildCount(), 1);
+
+        // Reloading the configurations of another tenant does not affect the relying parties of the tenant.
+        relyingPartyCache.invalidate("wso2.com");
+        assertSame(relyingPartyCache.get(TENANT_DOMAIN, RP_ID, originMatcher), relyingParty);
+        relyingPartyCache.invalidate(TENANT_DOMAIN);
+        assertNull(relyingPartyCache.get(TENANT_DOMAIN, RP_ID, originMatcher));
+    }
+}
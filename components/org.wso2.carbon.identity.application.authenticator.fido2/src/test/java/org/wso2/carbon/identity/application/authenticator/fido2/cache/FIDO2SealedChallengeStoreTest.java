@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import com.yubico.webauthn.data.ByteArray;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for FIDO2SealedChallengeStore.
+ */
+public class FIDO2SealedChallengeStoreTest {
+
+    private static final String ORIGIN = "https://localhost:9443";
+    private static final String ASSERTION_REQUEST = "{\"publicKeyCredentialRequestOptions\":{}}";
+    private static final long VALIDITY = 300000;
+    private static final int CAPACITY = 20;
+    private static final int THREAD_COUNT = 8;
+    private static final int STATES_PER_THREAD = 10;
+
+    private SecretKey key;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        key = keyGenerator.generateKey();
+    }
+
+    @Test
+    public void testSealedStateIsConsumedOnce() throws Exception {
+
+        FIDO2SealedChallengeStore store = new FIDO2SealedChallengeStore(true, key, VALIDITY, 10);
+        ByteArray requestId = store.seal(new FIDO2CacheEntry(null, ASSERTION_REQUEST, new URL(ORIGIN)));
+
+        FIDO2CacheEntry cacheEntry = consume(store, requestId);
+        assertNotNull(cacheEntry);
+        assertEquals(cacheEntry.getAssertionRequest(), ASSERTION_REQUEST);
+        assertNull(cacheEntry.getPublicKeyCredentialCreationOptions());
+        assertEquals(cacheEntry.getOrigin(), new URL(ORIGIN));
+        // A consumed state cannot be replayed.
+        assertNull(consume(store, requestId));
+    }
+
+    @Test
+    public void testStateIsConsumedOnlyOnceMarked() throws Exception {
+
+        FIDO2SealedChallengeStore store = new FIDO2SealedChallengeStore(true, key, VALIDITY, 10);
+        ByteArray requestId = store.seal(new FIDO2CacheEntry(null, ASSERTION_REQUEST, new URL(ORIGIN)));
+
+        // Responses failing the verification leave the state open.
+        assertNotNull(store.open(requestId));
+        FIDO2CacheEntry cacheEntry = store.open(requestId);
+        assertNotNull(cacheEntry);
+
+        assertTrue(store.markConsumed(requestId, cacheEntry));
+        // Only one of the concurrently verified responses completes the ceremony.
+        assertFalse(store.markConsumed(requestId, cacheEntry));
+        assertNull(store.open(requestId));
+    }
+
+    @Test
+    public void testUnverifiedStatesDoNotFillTheReplayCache() throws Exception {
+
+        FIDO2SealedChallengeStore store = new FIDO2SealedChallengeStore(true, key, VALIDITY, 1);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, ASSERTION_REQUEST, new URL(ORIGIN));
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(store.open(store.seal(cacheEntry)));
+        }
+
+        assertNotNull(consume(store, store.seal(cacheEntry)));
+    }
+
+    @Test
+    public void testInvalidStatesAreRejected() throws Exception {
+
+        FIDO2SealedChallengeStore store = new FIDO2SealedChallengeStore(true, key, VALIDITY, 10);
+        byte[] tampered = store.seal(new FIDO2CacheEntry(null, ASSERTION_REQUEST, new URL(ORIGIN))).getBytes();
+        tampered[tampered.length - 1] ^= 1;
+        assertNull(consume(store, new ByteArray(tampered)));
+        assertNull(consume(store, new ByteArray(new byte[]{1, 2, 3})));
+
+        FIDO2SealedChallengeStore expiredStore = new FIDO2SealedChallengeStore(true, key, -1, 10);
+        assertNull(consume(expiredStore, expiredStore.seal(new FIDO2CacheEntry(null, ASSERTION_REQUEST,
+                new URL(ORIGIN)))));
+
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        FIDO2SealedChallengeStore otherStore = new FIDO2SealedChallengeStore(true, keyGenerator.generateKey(),
+                VALIDITY, 10);
+        assertNull(consume(otherStore, store.seal(new FIDO2CacheEntry(null, ASSERTION_REQUEST, new URL(ORIGIN)))));
+    }
+
+    @Test
+    public void testFullReplayCacheRejectsStates() throws Exception {
+
+        FIDO2SealedChallengeStore store = new FIDO2SealedChallengeStore(true, key, VALIDITY, 1);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, ASSERTION_REQUEST, new URL(ORIGIN));
+        assertNotNull(consume(store, store.seal(cacheEntry)));
+        assertNull(consume(store, store.seal(cacheEntry)));
+    }
+
+    @Test
+    public void testExpiredStatesFreeTheReplayCache() throws Exception {
+
+        FIDO2SealedChallengeStore store = new FIDO2SealedChallengeStore(true, key, 50, 1);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, ASSERTION_REQUEST, new URL(ORIGIN));
+        assertNotNull(consume(store, store.seal(cacheEntry)));
+        Thread.sleep(100);
+        assertNotNull(consume(store, store.seal(cacheEntry)));
+    }
+
+    @Test
+    public void testConcurrentConsumesDoNotExceedTheCapacity() throws Exception {
+
+        FIDO2SealedChallengeStore store = new FIDO2SealedChallengeStore(true, key, VALIDITY, CAPACITY);
+        FIDO2CacheEntry cacheEntry = new FIDO2CacheEntry(null, ASSERTION_REQUEST, new URL(ORIGIN));
+        List<ByteArray> requestIds = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT * STATES_PER_THREAD; i++) {
+            requestIds.add(store.seal(cacheEntry));
+        }
+        ByteArray replayedRequestId = store.seal(cacheEntry);
+        AtomicInteger consumedCount = new AtomicInteger();
+        AtomicInteger replayedCount = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                List<ByteArray> threadRequestIds = requestIds.subList(i * STATES_PER_THREAD,
+                        (i + 1) * STATES_PER_THREAD);
+                results.add(executorService.submit(() -> {
+                    startSignal.await();
+                    if (consume(store, replayedRequestId) != null) {
+                        replayedCount.incrementAndGet();
+                    }
+                    for (ByteArray requestId : threadRequestIds) {
+                        if (consume(store, requestId) != null) {
+                            consumedCount.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            startSignal.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals(replayedCount.get(), 1);
+        assertEquals(consumedCount.get(), CAPACITY - 1);
+    }
+
+    private static FIDO2CacheEntry consume(FIDO2SealedChallengeStore store, ByteArray requestId) {
+
+        FIDO2CacheEntry cacheEntry = store.open(requestId);
+        return cacheEntry != null && store.markConsumed(requestId, cacheEntry) ? cacheEntry : null;
+    }
+}
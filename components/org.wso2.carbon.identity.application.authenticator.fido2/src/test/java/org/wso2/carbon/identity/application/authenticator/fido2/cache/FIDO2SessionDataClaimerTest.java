@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Test class for FIDO2SessionDataClaimer against an embedded H2 database.
+ */
+public class FIDO2SessionDataClaimerTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:fido2_session_data;DB_CLOSE_DELAY=-1";
+    private static final String SESSION_STORE = "IDN_AUTH_SESSION_STORE";
+    private static final String TEMP_SESSION_STORE = "IDN_AUTH_TEMP_SESSION_STORE";
+    private static final String SESSION_TYPE = "FIDO2Cache";
+    private static final String KEY = "requestId";
+    private static final String SESSION_OBJECT = "sessionObject";
+    private static final int THREAD_COUNT = 16;
+
+    @BeforeClass
+    public void initDatabase() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            for (String table : new String[]{SESSION_STORE, TEMP_SESSION_STORE}) {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + table + " (SESSION_ID VARCHAR(100) NOT NULL, " +
+                        "SESSION_TYPE VARCHAR(100) NOT NULL, OPERATION VARCHAR(10) NOT NULL, SESSION_OBJECT BLOB, " +
+                        "TIME_CREATED BIGINT, TENANT_ID INTEGER DEFAULT -1, EXPIRY_TIME BIGINT, " +
+                        "PRIMARY KEY (SESSION_ID, SESSION_TYPE, TIME_CREATED, OPERATION))");
+            }
+        }
+    }
+
+    @AfterClass
+    public void closeDatabase() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM " + SESSION_STORE);
+            statement.execute("DELETE FROM " + TEMP_SESSION_STORE);
+        }
+    }
+
+    @DataProvider(name = "tableModeDataProvider")
+    public static Object[][] tableModeDataProvider() {
+
+        // Whether the cleanup of temporary data is enabled, and the table SessionDataStore writes the data to.
+        return new Object[][]{
+                {false, SESSION_STORE},
+                {true, SESSION_STORE},
+                {true, TEMP_SESSION_STORE}
+        };
+    }
+
+    @Test(dataProvider = "tableModeDataProvider")
+    public void testStoredDataIsClaimedOnce(boolean tempDataCleanupEnabled, String table) throws Exception {
+
+        FIDO2SessionDataClaimer claimer = mockClaimer(tempDataCleanupEnabled);
+        addSessionData(table, "STORE");
+
+        // Each caller claims the data as a separate node would.
+        assertEquals(claimConcurrently(claimer), 1);
+        assertEquals(getSessionDataCount(table, "STORE"), 0);
+        assertFalse(claimer.claim(KEY, SESSION_TYPE));
+    }
+
+    @Test(dataProvider = "tableModeDataProvider")
+    public void testClearedDataIsNotClaimed(boolean tempDataCleanupEnabled, String table) throws Exception {
+
+        FIDO2SessionDataClaimer claimer = mockClaimer(tempDataCleanupEnabled);
+        // SessionDataStore records the removal of session data as a delete operation row.
+        addSessionData(table, "DELETE");
+
+        assertFalse(claimer.claim(KEY, SESSION_TYPE));
+        assertFalse(claimer.claim(KEY, "OtherType"));
+        assertEquals(getSessionDataCount(table, "DELETE"), 1);
+    }
+
+    @Test
+    public void testTemporaryDataIsNotClaimedWithoutTempDataCleanup() throws Exception {
+
+        FIDO2SessionDataClaimer claimer = mockClaimer(false);
+        addSessionData(TEMP_SESSION_STORE, "STORE");
+
+        assertFalse(claimer.claim(KEY, SESSION_TYPE));
+        assertEquals(getSessionDataCount(TEMP_SESSION_STORE, "STORE"), 1);
+    }
+
+    @Test(dataProvider = "tableModeDataProvider")
+    public void testStoredDataIsReadByTheClaimingCallerOnly(boolean tempDataCleanupEnabled, String table)
+            throws Exception {
+
+        FIDO2SessionDataClaimer claimer = mockClaimer(tempDataCleanupEnabled);
+        addSessionData(table, "STORE", SESSION_OBJECT);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                results.add(executorService.submit(() -> {
+                    startSignal.await();
+                    return claimer.claimData(KEY, SESSION_TYPE);
+                }));
+            }
+            startSignal.countDown();
+            List<Object> claimedData = new ArrayList<>();
+            for (Future<Object> result : results) {
+                Object data = result.get(10, TimeUnit.SECONDS);
+                if (data != null) {
+                    claimedData.add(data);
+                }
+            }
+            assertEquals(claimedData.size(), 1);
+            assertEquals(claimedData.get(0), SESSION_OBJECT);
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(getSessionDataCount(table, "STORE"), 0);
+        assertNull(claimer.claimData(KEY, SESSION_TYPE));
+    }
+
+    @Test
+    public void testClearedDataIsNotRead() throws Exception {
+
+        FIDO2SessionDataClaimer claimer = mockClaimer(false);
+        addSessionData(SESSION_STORE, "STORE", SESSION_OBJECT);
+        // SessionDataStore records the removal of the stored data with a later delete operation row.
+        addSessionData(SESSION_STORE, "DELETE", null);
+
+        assertNull(claimer.claimData(KEY, SESSION_TYPE));
+        assertEquals(getSessionDataCount(SESSION_STORE, "STORE"), 1);
+    }
+
+    private FIDO2SessionDataClaimer mockClaimer(boolean tempDataCleanupEnabled) {
+
+        // Stubbed instance methods apply to every thread, unlike static mocks.
+        FIDO2SessionDataClaimer claimer = mock(FIDO2SessionDataClaimer.class, CALLS_REAL_METHODS);
+        doAnswer(invocation -> DriverManager.getConnection(DB_URL)).when(claimer).getSessionDBConnection();
+        doReturn(tempDataCleanupEnabled).when(claimer).isTempDataCleanupEnabled();
+        return claimer;
+    }
+
+    private int claimConcurrently(FIDO2SessionDataClaimer claimer) throws Exception {
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                results.add(executorService.submit(() -> {
+                    startSignal.await();
+                    return claimer.claim(KEY, SESSION_TYPE);
+                }));
+            }
+            startSignal.countDown();
+            int claimedCount = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    claimedCount++;
+                }
+            }
+            return claimedCount;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void addSessionData(String table, String operation) throws SQLException, IOException {
+
+        addSessionData(table, operation, null);
+    }
+
+    private void addSessionData(String table, String operation, Serializable sessionObject)
+            throws SQLException, IOException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO " + table +
+                     " (SESSION_ID, SESSION_TYPE, OPERATION, SESSION_OBJECT, TIME_CREATED) VALUES (?, ?, ?, ?, ?)")) {
+            preparedStatement.setString(1, KEY);
+            preparedStatement.setString(2, SESSION_TYPE);
+            preparedStatement.setString(3, operation);
+            if (sessionObject != null) {
+                // Serialized as SessionDataStore does.
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+                    objectOutputStream.writeObject(sessionObject);
+                }
+                preparedStatement.setBytes(4, outputStream.toByteArray());
+            } else {
+                preparedStatement.setNull(4, Types.BLOB);
+            }
+            preparedStatement.setLong(5, System.nanoTime());
+            preparedStatement.execute();
+        }
+    }
+
+    private int getSessionDataCount(String table, String operation) throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT COUNT(*) FROM " + table +
+                     " WHERE SESSION_ID = ? AND OPERATION = ?")) {
+            preparedStatement.setString(1, KEY);
+            preparedStatement.setString(2, operation);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+}
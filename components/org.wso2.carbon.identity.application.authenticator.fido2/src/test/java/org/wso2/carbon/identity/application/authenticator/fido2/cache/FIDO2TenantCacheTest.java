@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.cache;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Test class for FIDO2TenantCache.
+ */
+public class FIDO2TenantCacheTest {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final long TIMEOUT = 60000;
+
+    @Test
+    public void testValueIsServedUntilCleared() {
+
+        FIDO2TenantCache<String> tenantCache = new FIDO2TenantCache<>();
+        tenantCache.put(TENANT_DOMAIN, "value", TIMEOUT);
+        tenantCache.put("wso2.com", "other", TIMEOUT);
+
+        assertEquals(tenantCache.get(TENANT_DOMAIN), "value");
+        assertEquals(tenantCache.get("wso2.com"), "other");
+        assertEquals(tenantCache.getLoadCount(), 2);
+
+        tenantCache.clear();
+        assertNull(tenantCache.get(TENANT_DOMAIN));
+        assertNull(tenantCache.get("wso2.com"));
+    }
+
+    @Test
+    public void testExpiredValueIsNotServed() {
+
+        FIDO2TenantCache<String> tenantCache = new FIDO2TenantCache<>();
+        tenantCache.put(TENANT_DOMAIN, "value", 0);
+
+        assertNull(tenantCache.get(TENANT_DOMAIN));
+    }
+}
@@ -37,8 +37,10 @@ import com.yubico.webauthn.RelyingParty;
 import com.yubico.webauthn.StartAssertionOptions;
 import com.yubico.webauthn.StartRegistrationOptions;
 import com.yubico.webauthn.data.AttestationConveyancePreference;
+import com.yubico.webauthn.data.AuthenticatorAssertionResponse;
 import com.yubico.webauthn.data.AuthenticatorSelectionCriteria;
 import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.ClientAssertionExtensionOutputs;
 import com.yubico.webauthn.data.PublicKeyCredential;
 import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
 import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
@@ -66,6 +68,7 @@ import org.wso2.carbon.identity.application.authentication.framework.model.Authe
 import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2Cache;
 import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CacheEntry;
 import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CacheKey;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2SealedChallengeStore;
 import org.wso2.carbon.identity.application.authenticator.fido2.dao.FIDO2DeviceStoreDAO;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.AssertionRequestWrapper;
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.AssertionResponse;
@@ -74,6 +77,7 @@ import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2Registr
 import org.wso2.carbon.identity.application.authenticator.fido2.dto.RegistrationResponse;
 import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorClientException;
 import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2DuplicateRegistrationException;
 import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceComponent;
 import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceDataHolder;
 import org.wso2.carbon.identity.application.authenticator.fido2.internal.MetadataService;
@@ -117,9 +121,13 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.wso2.carbon.utils.multitenancy.MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
+import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.ClientExceptionErrorCodes.ERROR_CODE_FINISH_REGISTRATION_USERNAME_AND_CREDENTIAL_ID_EXISTS;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO2_CONFIG_ATTESTATION_VALIDATION_ATTRIBUTE_NAME;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO2_CONFIG_MDS_VALIDATION_ATTRIBUTE_NAME;
 import static org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants.FIDO2_CONFIG_TRUSTED_ORIGIN_ATTRIBUTE_NAME;
@@ -302,6 +310,7 @@ public class WebAuthnServiceTest {
                 .thenReturn(fido2AuthenticatorServiceDataHolder);
         when(fido2AuthenticatorServiceDataHolder.getRealmService()).thenReturn(realmService);
         when(fido2AuthenticatorServiceDataHolder.getConfigurationManager()).thenReturn(configurationManager);
+        when(fido2AuthenticatorServiceDataHolder.getCredentialStore()).thenReturn(fido2DeviceStoreDAO);
 
         // FIDO2AuthenticatorServiceComponent static mocking
         fido2AuthenticatorServiceComponentMock = Mockito.mockStatic(FIDO2AuthenticatorServiceComponent.class);
@@ -329,12 +338,13 @@ public class WebAuthnServiceTest {
         // DAO behaviour
         List<FIDO2CredentialRegistration> credentialRegistrations = new ArrayList<>();
         credentialRegistrations.add(fido2CredentialRegistration);
-        when(userStorageMock.getFIDO2RegistrationsByUsername(anyString()))
+        when(fido2DeviceStoreDAO.getFIDO2RegistrationsByUsername(anyString()))
                 .thenReturn(credentialRegistrations);
-        when(userStorageMock.getFIDO2RegistrationsByUser(any(User.class)))
+        when(fido2DeviceStoreDAO.getFIDO2RegistrationsByUser(any(User.class)))
                 .thenReturn(credentialRegistrations);
+        when(fido2DeviceStoreDAO.hasFIDO2Registrations(any(User.class))).thenReturn(true);
         FIDO2CredentialRegistration localFido2CredentialRegistration = mock(FIDO2CredentialRegistration.class);
-        when(userStorageMock.getFIDO2RegistrationByUsernameAndCredentialId(anyString(), any(ByteArray.class)))
+        when(fido2DeviceStoreDAO.getFIDO2RegistrationByUsernameAndCredentialId(anyString(), any(ByteArray.class)))
                 .thenReturn(Optional.of(localFido2CredentialRegistration));
 
         // FIDOUtil static mocking
@@ -448,9 +458,7 @@ public class WebAuthnServiceTest {
 
         when(objectMapperMock.readValue(finishRegistrationResponseString, RegistrationResponse.class))
                 .thenReturn(finishRegistrationResponse);
-        when(fido2DeviceStoreDAO.getFIDO2RegistrationByUsernameAndCredentialId(anyString(), any(ByteArray.class)))
-                .thenReturn(Optional.empty());
-        when(fido2Cache.getValueFromCacheByRequestId(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
+        when(fido2Cache.consume(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
         when(fido2CacheEntry.getPublicKeyCredentialCreationOptions())
                 .thenReturn("publicKeyCredentialCreationOptions");
         when(objectMapperMock.readValue("publicKeyCredentialCreationOptions",
@@ -561,15 +569,76 @@ public class WebAuthnServiceTest {
 
     @Test(description = "Test case for finishFIDO2Registration() method when the key is already registered",
             expectedExceptions = {FIDO2AuthenticatorClientException.class}, priority = 4)
-    public void testFinishFIDO2RegistrationExistingKey() throws IOException, FIDO2AuthenticatorServerException,
-            FIDO2AuthenticatorClientException {
+    public void testFinishFIDO2RegistrationExistingKey() throws Exception {
 
         when(objectMapperMock.readValue(finishRegistrationResponseString, RegistrationResponse.class))
                 .thenReturn(finishRegistrationResponse);
-        when(fido2DeviceStoreDAO.getFIDO2RegistrationByUsernameAndCredentialId(anyString(), any(ByteArray.class)))
-                .thenReturn(Optional.ofNullable(fido2CredentialRegistration));
+        when(fido2Cache.consume(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
+        when(fido2CacheEntry.getPublicKeyCredentialCreationOptions())
+                .thenReturn("publicKeyCredentialCreationOptions");
+        when(objectMapperMock.readValue("publicKeyCredentialCreationOptions",
+                PublicKeyCredentialCreationOptions.class)).thenReturn(publicKeyCredentialCreationOptions);
+        when(fido2CacheEntry.getOrigin()).thenReturn(new URL(ORIGIN));
+        when(configurationManager.getAttribute(FIDO_CONFIG_RESOURCE_TYPE_NAME, FIDO2_CONFIG_RESOURCE_NAME,
+                FIDO2_CONFIG_ATTESTATION_VALIDATION_ATTRIBUTE_NAME)).thenReturn(
+                new Attribute(FIDO2_CONFIG_ATTESTATION_VALIDATION_ATTRIBUTE_NAME, "false"));
+        when(configurationManager.getAttribute(FIDO_CONFIG_RESOURCE_TYPE_NAME, FIDO2_CONFIG_RESOURCE_NAME,
+                FIDO2_CONFIG_MDS_VALIDATION_ATTRIBUTE_NAME)).thenReturn(
+                new Attribute(FIDO2_CONFIG_MDS_VALIDATION_ATTRIBUTE_NAME, "false"));
+
+        try (MockedStatic<FinishRegistrationOptions> finishRegistrationOptionsMock =
+                     Mockito.mockStatic(FinishRegistrationOptions.class);
+             MockedStatic<RegisteredCredential> registeredCredentialMock =
+                     Mockito.mockStatic(RegisteredCredential.class)) {
+            FinishRegistrationOptions.FinishRegistrationOptionsBuilder finishRegistrationOptionsBuilder =
+                    mock(FinishRegistrationOptions.FinishRegistrationOptionsBuilder.class);
+            FinishRegistrationOptions.FinishRegistrationOptionsBuilder.MandatoryStages mandatoryStages1 =
+                    mock(FinishRegistrationOptions.FinishRegistrationOptionsBuilder.MandatoryStages.class);
+            FinishRegistrationOptions.FinishRegistrationOptionsBuilder.MandatoryStages.Step2 step2Finish =
+                    mock(FinishRegistrationOptions.FinishRegistrationOptionsBuilder.MandatoryStages.Step2.class);
+            finishRegistrationOptionsMock.when(FinishRegistrationOptions::builder).thenReturn(mandatoryStages1);
+            when(mandatoryStages1.request(any(PublicKeyCredentialCreationOptions.class))).thenReturn(step2Finish);
+            when(step2Finish.response(any(PublicKeyCredential.class))).thenReturn(finishRegistrationOptionsBuilder);
+            when(finishRegistrationOptionsBuilder.build()).thenReturn(mock(FinishRegistrationOptions.class));
 
-        webAuthnService.finishFIDO2Registration(finishRegistrationResponseString);
+            when(relyingParty.finishRegistration(any(FinishRegistrationOptions.class))).thenReturn(registrationResult);
+            PublicKeyCredentialDescriptor descriptor = mock(PublicKeyCredentialDescriptor.class);
+            ByteArray byteArray = new ByteArray(new byte[]{});
+            UserIdentity userIdentity = mock(UserIdentity.class);
+            when(registrationResult.getKeyId()).thenReturn(descriptor);
+            when(descriptor.getId()).thenReturn(byteArray);
+            when(registrationResult.getPublicKeyCose()).thenReturn(byteArray);
+            when(publicKeyCredentialCreationOptions.getUser()).thenReturn(userIdentity);
+            when(userIdentity.getId()).thenReturn(byteArray);
+            when(publicKeyCredentialCreationOptions.getAuthenticatorSelection()).thenReturn(Optional.empty());
+
+            RegisteredCredential.RegisteredCredentialBuilder registeredCredentialBuilder =
+                    mock(RegisteredCredential.RegisteredCredentialBuilder.class);
+            RegisteredCredential.RegisteredCredentialBuilder.MandatoryStages mandatoryStages2 =
+                    mock(RegisteredCredential.RegisteredCredentialBuilder.MandatoryStages.class);
+            RegisteredCredential.RegisteredCredentialBuilder.MandatoryStages.Step2 step2RegisteredCredentials =
+                    mock(RegisteredCredential.RegisteredCredentialBuilder.MandatoryStages.Step2.class);
+            RegisteredCredential.RegisteredCredentialBuilder.MandatoryStages.Step3 step3RegisteredCredentials =
+                    mock(RegisteredCredential.RegisteredCredentialBuilder.MandatoryStages.Step3.class);
+            registeredCredentialMock.when(RegisteredCredential::builder).thenReturn(mandatoryStages2);
+            when(mandatoryStages2.credentialId(any(ByteArray.class))).thenReturn(step2RegisteredCredentials);
+            when(step2RegisteredCredentials.userHandle(any(ByteArray.class))).thenReturn(step3RegisteredCredentials);
+            when(step3RegisteredCredentials.publicKeyCose(any(ByteArray.class)))
+                    .thenReturn(registeredCredentialBuilder);
+            when(registeredCredentialBuilder.signatureCount(anyLong())).thenReturn(registeredCredentialBuilder);
+            when(registeredCredentialBuilder.build()).thenReturn(mock(RegisteredCredential.class));
+
+            // The duplicate is reported by the credential store while inserting the registration.
+            doThrow(new FIDO2DuplicateRegistrationException("Duplicate registration", null)).when(fido2DeviceStoreDAO)
+                    .addFIDO2RegistrationByUsername(anyString(), any(FIDO2CredentialRegistration.class));
+            try {
+                webAuthnService.finishFIDO2Registration(finishRegistrationResponseString);
+            } catch (FIDO2AuthenticatorClientException e) {
+                Assert.assertEquals(e.getErrorCode(),
+                        ERROR_CODE_FINISH_REGISTRATION_USERNAME_AND_CREDENTIAL_ID_EXISTS.getErrorCode());
+                throw e;
+            }
+        }
     }
 
     @Test(description = "Test case for startAuthentication() method", priority = 5)
@@ -620,7 +689,7 @@ public class WebAuthnServiceTest {
 
         when(objectMapperMock.readValue(finishAuthenticationResponseString, AssertionResponse.class))
                 .thenReturn(finishAuthenticationResponse);
-        when(fido2Cache.getValueFromCacheByRequestId(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
+        when(fido2Cache.consume(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
         when(fido2CacheEntry.getAssertionRequest()).thenReturn("assertionRequest");
         when(fido2CacheEntry.getOrigin()).thenReturn(new URL(ORIGIN));
         when(objectMapperMock.readValue("assertionRequest", AssertionRequest.class)).thenReturn(assertionRequest);
@@ -638,16 +707,81 @@ public class WebAuthnServiceTest {
 
         when(objectMapperMock.readValue(finishAuthenticationResponseString, AssertionResponse.class))
                 .thenReturn(finishAuthenticationResponse);
-        when(fido2Cache.getValueFromCacheByRequestId(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
+        when(fido2Cache.consume(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
+        when(fido2CacheEntry.getAssertionRequest()).thenReturn("assertionRequest");
+        when(fido2CacheEntry.getOrigin()).thenReturn(new URL(ORIGIN));
+        when(objectMapperMock.readValue("assertionRequest", AssertionRequest.class)).thenReturn(assertionRequest);
+        when(relyingParty.finishAssertion(any(FinishAssertionOptions.class))).thenReturn(assertionResult);
+        when(assertionResult.isSuccess()).thenReturn(true);
+        when(assertionResult.getUsername()).thenReturn(USERNAME);
+
+        webAuthnService.finishAuthentication(USERNAME, TENANT_DOMAIN, USER_STORE_DOMAIN,
+                finishAuthenticationResponseString);
+    }
+
+    @Test(description = "Test case for finishAuthentication() method when the response has no user handle and " +
+            "the credential ID is registered for more than one user handle", priority = 8)
+    public void testFinishAuthenticationWithoutUserHandle() throws Exception {
+
+        PublicKeyCredential<AuthenticatorAssertionResponse, ClientAssertionExtensionOutputs> credential =
+                finishAuthenticationResponse.getCredential();
+        AuthenticatorAssertionResponse responseWithoutUserHandle = credential.getResponse().toBuilder()
+                .authenticatorData(credential.getResponse().getAuthenticatorData())
+                .clientDataJSON(credential.getResponse().getClientDataJSON())
+                .signature(credential.getResponse().getSignature())
+                .userHandle(Optional.empty())
+                .build();
+        AssertionResponse assertionResponse = new AssertionResponse(finishAuthenticationResponse.getRequestId(),
+                credential.toBuilder()
+                        .id(credential.getId())
+                        .clientExtensionResults(credential.getClientExtensionResults())
+                        .response(responseWithoutUserHandle)
+                        .type(credential.getType())
+                        .build());
+
+        when(objectMapperMock.readValue(finishAuthenticationResponseString, AssertionResponse.class))
+                .thenReturn(assertionResponse);
+        when(fido2Cache.consume(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
         when(fido2CacheEntry.getAssertionRequest()).thenReturn("assertionRequest");
         when(fido2CacheEntry.getOrigin()).thenReturn(new URL(ORIGIN));
         when(objectMapperMock.readValue("assertionRequest", AssertionRequest.class)).thenReturn(assertionRequest);
+        when(assertionRequest.getUsername()).thenReturn(Optional.of(USERNAME));
         when(relyingParty.finishAssertion(any(FinishAssertionOptions.class))).thenReturn(assertionResult);
         when(assertionResult.isSuccess()).thenReturn(true);
         when(assertionResult.getUsername()).thenReturn(USERNAME);
 
         webAuthnService.finishAuthentication(USERNAME, TENANT_DOMAIN, USER_STORE_DOMAIN,
                 finishAuthenticationResponseString);
+        // The credential of the username is selected by the credential query rather than guessed by its ID.
+        verify(fido2DeviceStoreDAO).getAssertionContext(credential.getId(), null, USERNAME);
+        verify(fido2DeviceStoreDAO, never()).getUserHandleForUsername(anyString());
+    }
+
+    @Test(description = "Test case for finishAuthentication() method when the sealed state has been consumed by " +
+            "another request", priority = 8)
+    public void testFinishAuthenticationWithConsumedSealedState() throws Exception {
+
+        FIDO2SealedChallengeStore sealedChallengeStore = mock(FIDO2SealedChallengeStore.class);
+        when(sealedChallengeStore.isEnabled()).thenReturn(true);
+        when(sealedChallengeStore.open(any(ByteArray.class))).thenReturn(fido2CacheEntry);
+        when(sealedChallengeStore.markConsumed(any(ByteArray.class), any(FIDO2CacheEntry.class))).thenReturn(false);
+        when(objectMapperMock.readValue(finishAuthenticationResponseString, AssertionResponse.class))
+                .thenReturn(finishAuthenticationResponse);
+        when(fido2CacheEntry.getAssertionRequest()).thenReturn("assertionRequest");
+        when(fido2CacheEntry.getOrigin()).thenReturn(new URL(ORIGIN));
+        when(objectMapperMock.readValue("assertionRequest", AssertionRequest.class)).thenReturn(assertionRequest);
+        when(relyingParty.finishAssertion(any(FinishAssertionOptions.class))).thenReturn(assertionResult);
+        when(assertionResult.isSuccess()).thenReturn(true);
+
+        try (MockedStatic<FIDO2SealedChallengeStore> sealedChallengeStoreMock =
+                     Mockito.mockStatic(FIDO2SealedChallengeStore.class)) {
+            sealedChallengeStoreMock.when(FIDO2SealedChallengeStore::getInstance).thenReturn(sealedChallengeStore);
+            AuthenticationFailedException exception = Assert.expectThrows(AuthenticationFailedException.class,
+                    () -> webAuthnService.finishAuthentication(USERNAME, TENANT_DOMAIN, USER_STORE_DOMAIN,
+                            finishAuthenticationResponseString));
+            Assert.assertEquals(exception.getMessage(), "Assertion failed! No such assertion in progress.");
+        }
+        verify(fido2DeviceStoreDAO, never()).updateFIDO2SignatureCount(any(AssertionResult.class));
     }
 
     @Test(description = "Test case for finishUsernamelessAuthentication() method when assertion fails",
@@ -657,7 +791,7 @@ public class WebAuthnServiceTest {
 
         when(objectMapperMock.readValue(finishUsernamelessAuthenticationResponseString, AssertionResponse.class))
                 .thenReturn(finishUsernamelessAuthenticationResponse);
-        when(fido2Cache.getValueFromCacheByRequestId(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
+        when(fido2Cache.consume(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
         when(fido2CacheEntry.getAssertionRequest()).thenReturn("assertionRequest");
         when(fido2CacheEntry.getOrigin()).thenReturn(new URL(ORIGIN));
         when(objectMapperMock.readValue("assertionRequest", AssertionRequest.class)).thenReturn(assertionRequest);
@@ -675,7 +809,7 @@ public class WebAuthnServiceTest {
 
         when(objectMapperMock.readValue(finishUsernamelessAuthenticationResponseString, AssertionResponse.class))
                 .thenReturn(finishUsernamelessAuthenticationResponse);
-        when(fido2Cache.getValueFromCacheByRequestId(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
+        when(fido2Cache.consume(any(FIDO2CacheKey.class))).thenReturn(fido2CacheEntry);
         when(fido2CacheEntry.getAssertionRequest()).thenReturn("assertionRequest");
         when(fido2CacheEntry.getOrigin()).thenReturn(new URL(ORIGIN));
         when(objectMapperMock.readValue("assertionRequest", AssertionRequest.class)).thenReturn(assertionRequest);
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dao;
+
+import com.yubico.webauthn.AssertionResult;
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CredentialRegistration;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2StoredCredential;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2AuthenticatorServerException;
+import org.wso2.carbon.identity.application.common.model.User;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Test class for the in-memory and the caching FIDO2 credential stores.
+ */
+public class FIDO2CredentialStoreTest {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final int TENANT_ID = -1234;
+    private static final int OTHER_TENANT_ID = 1;
+    private static final String USER_STORE_DOMAIN = "PRIMARY";
+    private static final String USERNAME = "admin";
+    private static final ByteArray CREDENTIAL_ID = new ByteArray(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    private static final ByteArray USER_HANDLE = new ByteArray(new byte[]{9, 10, 11, 12, 13, 14, 15, 16});
+    private static final ByteArray PUBLIC_KEY_COSE = new ByteArray(new byte[]{17, 18, 19, 20});
+
+    private MockedStatic<IdentityTenantUtil> identityTenantUtil;
+    private MockedStatic<CarbonContext> carbonContext;
+    private MockedStatic<User> userMock;
+    private User user;
+
+    @BeforeMethod
+    public void setUp() {
+
+        identityTenantUtil = Mockito.mockStatic(IdentityTenantUtil.class);
+        identityTenantUtil.when(() -> IdentityTenantUtil.getTenantId(anyString())).thenReturn(TENANT_ID);
+        identityTenantUtil.when(() -> IdentityTenantUtil.getTenantDomain(anyInt())).thenReturn(TENANT_DOMAIN);
+        user = new User();
+        user.setUserName(USERNAME);
+        user.setTenantDomain(TENANT_DOMAIN);
+        user.setUserStoreDomain(USER_STORE_DOMAIN);
+        userMock = Mockito.mockStatic(User.class);
+        userMock.when(() -> User.getUserFromUserName(anyString())).thenReturn(user);
+        CarbonContext threadLocalCarbonContext = mock(CarbonContext.class);
+        when(threadLocalCarbonContext.getTenantId()).thenReturn(TENANT_ID);
+        carbonContext = Mockito.mockStatic(CarbonContext.class);
+        carbonContext.when(CarbonContext::getThreadLocalCarbonContext).thenReturn(threadLocalCarbonContext);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        identityTenantUtil.close();
+        userMock.close();
+        carbonContext.close();
+    }
+
+    @Test
+    public void testInMemoryCredentialStore() throws Exception {
+
+        FIDO2CredentialStore credentialStore = new FIDO2InMemoryCredentialStore();
+        credentialStore.addFIDO2RegistrationByUsername(USERNAME, buildRegistration());
+
+        assertTrue(credentialStore.hasFIDO2Registrations(user));
+        assertEquals(credentialStore.getCredentialIdsForUsername(USERNAME).iterator().next().getId(), CREDENTIAL_ID);
+        assertEquals(credentialStore.getUserHandleForUsername(USERNAME), Optional.of(USER_HANDLE));
+        assertTrue(credentialStore.getUsernameForUserHandle(USER_HANDLE).isPresent());
+        assertEquals(credentialStore.lookupAll(CREDENTIAL_ID).size(), 1);
+        assertFalse(credentialStore.lookup(CREDENTIAL_ID, new ByteArray(new byte[]{1})).isPresent());
+        assertEquals(credentialStore.getAssertionContext(CREDENTIAL_ID, null, null).get().getUsername(), USERNAME);
+        expectThrows(FIDO2AuthenticatorServerException.class, () ->
+                credentialStore.addFIDO2RegistrationByUsername(USERNAME, buildRegistration()));
+
+        // Signature counts are not decreased.
+        credentialStore.updateFIDO2SignatureCount(mockAssertionResult(5));
+        credentialStore.updateFIDO2SignatureCount(mockAssertionResult(3));
+        assertEquals(credentialStore.lookup(CREDENTIAL_ID, USER_HANDLE).get().getSignatureCount(), 5);
+
+        credentialStore.updateFIDO2DeviceDisplayName(user, buildRegistration(), "Updated display name");
+        assertEquals(credentialStore.getFIDO2RegistrationByUsernameAndCredentialId(USERNAME, CREDENTIAL_ID).get()
+                .getDisplayName(), "Updated display name");
+
+        credentialStore.updateDomainNameOfRegistration(TENANT_ID, USER_STORE_DOMAIN, "SECONDARY");
+        assertFalse(credentialStore.hasFIDO2Registrations(user));
+        assertTrue(credentialStore.lookup(CREDENTIAL_ID, USER_HANDLE).isPresent());
+
+        credentialStore.deleteRegistrationsForUser(USERNAME, "SECONDARY", TENANT_ID);
+        assertFalse(credentialStore.lookup(CREDENTIAL_ID, USER_HANDLE).isPresent());
+        assertTrue(credentialStore.lookupAll(CREDENTIAL_ID).isEmpty());
+        assertFalse(credentialStore.getUsernameForUserHandle(USER_HANDLE).isPresent());
+    }
+
+    @Test
+    public void testCachingCredentialStore() throws Exception {
+
+        FIDO2CredentialStore delegate = spy(new FIDO2InMemoryCredentialStore());
+        FIDO2CredentialStore credentialStore = new FIDO2CachingCredentialStore(delegate, 10, 300);
+
+        // Empty results are not cached.
+        assertFalse(credentialStore.hasFIDO2Registrations(user));
+        credentialStore.addFIDO2RegistrationByUsername(USERNAME, buildRegistration());
+        assertTrue(credentialStore.hasFIDO2Registrations(user));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(credentialStore.getCredentialIdsForUsername(USERNAME).size(), 1);
+            assertTrue(credentialStore.getUsernameForUserHandle(USER_HANDLE).isPresent());
+            assertTrue(credentialStore.lookup(CREDENTIAL_ID, USER_HANDLE).isPresent());
+        }
+        assertTrue(credentialStore.hasFIDO2Registrations(user));
+        verify(delegate, times(1)).getCredentialIdsForUsername(USERNAME);
+        verify(delegate, times(1)).getUsernameForUserHandle(USER_HANDLE);
+        verify(delegate, times(2)).hasFIDO2Registrations(any(User.class));
+        // Credentials carry the signature count, hence they are always read from the delegate.
+        verify(delegate, times(3)).lookup(CREDENTIAL_ID, USER_HANDLE);
+        credentialStore.updateFIDO2SignatureCount(mockAssertionResult(5));
+        assertEquals(credentialStore.lookup(CREDENTIAL_ID, USER_HANDLE).get().getSignatureCount(), 5);
+
+        // Renaming a registration invalidates the user.
+        credentialStore.updateFIDO2DeviceDisplayName(user, buildRegistration(), "Updated display name");
+        assertEquals(credentialStore.getCredentialIdsForUsername(USERNAME).size(), 1);
+        verify(delegate, times(2)).getCredentialIdsForUsername(USERNAME);
+
+        // Removed registrations are not served from the cache.
+        credentialStore.removeFIDO2RegistrationByUsername(USERNAME, buildRegistration());
+        assertTrue(credentialStore.getCredentialIdsForUsername(USERNAME).isEmpty());
+        assertFalse(credentialStore.getUsernameForUserHandle(USER_HANDLE).isPresent());
+        assertFalse(credentialStore.hasFIDO2Registrations(user));
+    }
+
+    @Test
+    public void testCachingCredentialStoreAssertionContext() throws Exception {
+
+        FIDO2CredentialStore delegate = spy(new FIDO2InMemoryCredentialStore());
+        FIDO2CredentialStore credentialStore = new FIDO2CachingCredentialStore(delegate, 10, 300);
+        credentialStore.addFIDO2RegistrationByUsername(USERNAME, buildRegistration());
+
+        for (int i = 0; i < 3; i++) {
+            FIDO2StoredCredential storedCredential = credentialStore.getAssertionContext(CREDENTIAL_ID, USER_HANDLE,
+                    null).get();
+            assertEquals(storedCredential.getUsername(), USERNAME);
+            assertEquals(storedCredential.getCredential().getPublicKeyCose(), PUBLIC_KEY_COSE);
+        }
+        verify(delegate, times(1)).getAssertionContext(CREDENTIAL_ID, USER_HANDLE, null);
+        // The signature count of a cached credential is read from the delegate on each use.
+        verify(delegate, times(2)).getSignatureCount(CREDENTIAL_ID, USER_HANDLE);
+        credentialStore.updateFIDO2SignatureCount(mockAssertionResult(5));
+        assertEquals(credentialStore.getAssertionContext(CREDENTIAL_ID, USER_HANDLE, null).get().getCredential()
+                .getSignatureCount(), 5);
+
+        // Credentials removed without going through the decorator are not served from the cache.
+        delegate.removeFIDO2RegistrationByUsername(USERNAME, buildRegistration());
+        assertFalse(credentialStore.getAssertionContext(CREDENTIAL_ID, USER_HANDLE, null).isPresent());
+        verify(delegate, times(2)).getAssertionContext(CREDENTIAL_ID, USER_HANDLE, null);
+    }
+
+    @Test
+    public void testCachingCredentialStoreInAnotherTenantThanTheOwner() throws Exception {
+
+        // Users of a tenant may authenticate to an application of another tenant.
+        when(CarbonContext.getThreadLocalCarbonContext().getTenantId()).thenReturn(OTHER_TENANT_ID);
+        FIDO2CredentialStore delegate = spy(new FIDO2InMemoryCredentialStore());
+        FIDO2CredentialStore credentialStore = new FIDO2CachingCredentialStore(delegate, 10, 300);
+        credentialStore.addFIDO2RegistrationByUsername(USERNAME, buildRegistration());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(credentialStore.getUsernameForUserHandle(USER_HANDLE).isPresent());
+            assertTrue(credentialStore.getAssertionContext(CREDENTIAL_ID, USER_HANDLE, null).isPresent());
+        }
+        verify(delegate, times(1)).getUsernameForUserHandle(USER_HANDLE);
+        verify(delegate, times(1)).getAssertionContext(CREDENTIAL_ID, USER_HANDLE, null);
+
+        // Removing the registration in the tenant of the owner drops the entries cached in the other tenant.
+        when(CarbonContext.getThreadLocalCarbonContext().getTenantId()).thenReturn(TENANT_ID);
+        credentialStore.removeFIDO2RegistrationByUsername(USERNAME, buildRegistration());
+        when(CarbonContext.getThreadLocalCarbonContext().getTenantId()).thenReturn(OTHER_TENANT_ID);
+        assertFalse(credentialStore.getUsernameForUserHandle(USER_HANDLE).isPresent());
+        assertFalse(credentialStore.getAssertionContext(CREDENTIAL_ID, USER_HANDLE, null).isPresent());
+    }
+
+    @Test
+    public void testCachingCredentialStoreUserStoreInvalidation() throws Exception {
+
+        FIDO2CredentialStore delegate = spy(new FIDO2InMemoryCredentialStore());
+        FIDO2CredentialStore credentialStore = new FIDO2CachingCredentialStore(delegate, 10, 300);
+        credentialStore.addFIDO2RegistrationByUsername(USERNAME, buildRegistration());
+        assertTrue(credentialStore.hasFIDO2Registrations(user));
+        assertEquals(credentialStore.getCredentialIdsForUsername(USERNAME).size(), 1);
+
+        credentialStore.updateDomainNameOfRegistration(TENANT_ID, USER_STORE_DOMAIN, "SECONDARY");
+        assertFalse(credentialStore.hasFIDO2Registrations(user));
+        assertTrue(credentialStore.getCredentialIdsForUsername(USERNAME).isEmpty());
+    }
+
+    private FIDO2CredentialRegistration buildRegistration() {
+
+        return FIDO2CredentialRegistration.builder()
+                .credential(RegisteredCredential.builder()
+                        .credentialId(CREDENTIAL_ID)
+                        .userHandle(USER_HANDLE)
+                        .publicKeyCose(PUBLIC_KEY_COSE)
+                        .signatureCount(1)
+                        .build())
+                .signatureCount(1)
+                .credentialNickname(Optional.empty())
+                .attestationMetadata(Optional.empty())
+                .registrationTime(Instant.now())
+                .displayName("Security Key")
+                .isUsernamelessSupported(true)
+                .build();
+    }
+
+    private AssertionResult mockAssertionResult(long signatureCount) {
+
+        AssertionResult assertionResult = mock(AssertionResult.class);
+        when(assertionResult.getCredentialId()).thenReturn(CREDENTIAL_ID);
+        when(assertionResult.getUserHandle()).thenReturn(USER_HANDLE);
+        when(assertionResult.getSignatureCount()).thenReturn(signatureCount);
+        when(assertionResult.getUsername()).thenReturn(USERNAME);
+        return assertionResult;
+    }
+}
@@ -0,0 +1,749 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yubico.internal.util.JacksonCodecs;
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.AssertionResult;
+import com.yubico.webauthn.FinishAssertionOptions;
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.RelyingParty;
+import com.yubico.webauthn.data.AttestationConveyancePreference;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialRequestOptions;
+import com.yubico.webauthn.data.UserIdentity;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2Cache;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CacheEntry;
+import org.wso2.carbon.identity.application.authenticator.fido2.cache.FIDO2CacheKey;
+import org.wso2.carbon.identity.application.authenticator.fido2.core.WebAuthnService;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2CredentialRegistration;
+import org.wso2.carbon.identity.application.authenticator.fido2.dto.FIDO2StoredCredential;
+import org.wso2.carbon.identity.application.authenticator.fido2.exception.FIDO2DuplicateRegistrationException;
+import org.wso2.carbon.identity.application.authenticator.fido2.internal.FIDO2AuthenticatorServiceDataHolder;
+import org.wso2.carbon.identity.application.authenticator.fido2.util.FIDO2AuthenticatorConstants;
+import org.wso2.carbon.identity.application.common.model.User;
+import org.wso2.carbon.identity.configuration.mgt.core.ConfigurationManager;
+import org.wso2.carbon.identity.configuration.mgt.core.model.Attribute;
+import org.wso2.carbon.identity.core.util.IdentityConfigParser;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Test class for FIDO2DeviceStoreDAO against an embedded H2 database.
+ */
+public class FIDO2DeviceStoreDAOTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:fido2_device_store;DB_CLOSE_DELAY=-1";
+    private static final String DB_SCRIPT = Paths.get(System.getProperty("user.dir"), "src", "test", "resources",
+            "dbscripts", "h2.sql").toString();
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final int TENANT_ID = -1234;
+    private static final String USER_STORE_DOMAIN = "PRIMARY";
+    private static final String USERNAME = "admin";
+    private static final ByteArray CREDENTIAL_ID = new ByteArray(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    private static final ByteArray USER_HANDLE = new ByteArray(new byte[]{9, 10, 11, 12, 13, 14, 15, 16});
+    private static final ByteArray PUBLIC_KEY_COSE = new ByteArray(new byte[]{17, 18, 19, 20});
+    private static final String ORIGIN = "https://localhost:9443";
+    private static final String AUTHENTICATION_RESPONSE = "/org/wso2/carbon/identity/application/authenticator/" +
+            "fido2/core/fido2-finish-authentication-response.json";
+
+    private final List<String> preparedStatements = new ArrayList<>();
+    private FIDO2DeviceStoreDAO fido2DeviceStoreDAO;
+    private MockedStatic<IdentityDatabaseUtil> identityDatabaseUtil;
+    private MockedStatic<IdentityTenantUtil> identityTenantUtil;
+    private MockedStatic<IdentityUtil> identityUtil;
+
+    @BeforeClass
+    public void initDatabase() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + DB_SCRIPT + "'");
+        }
+    }
+
+    @AfterClass
+    public void closeDatabase() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws SQLException {
+
+        identityDatabaseUtil = Mockito.mockStatic(IdentityDatabaseUtil.class);
+        identityDatabaseUtil.when(IdentityDatabaseUtil::getDBConnection).thenAnswer(invocation -> getConnection());
+        identityDatabaseUtil.when(() -> IdentityDatabaseUtil.closeAllConnections(any(Connection.class),
+                nullable(ResultSet.class), nullable(PreparedStatement.class))).thenAnswer(invocation -> {
+                    ((Connection) invocation.getArgument(0)).close();
+                    return null;
+                });
+        identityTenantUtil = Mockito.mockStatic(IdentityTenantUtil.class);
+        identityTenantUtil.when(() -> IdentityTenantUtil.getTenantId(anyString())).thenReturn(TENANT_ID);
+        identityTenantUtil.when(() -> IdentityTenantUtil.getTenantDomain(anyInt())).thenReturn(TENANT_DOMAIN);
+        identityUtil = Mockito.mockStatic(IdentityUtil.class);
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM FIDO2_DEVICE_STORE");
+        }
+        addRegistration(USERNAME, USER_HANDLE);
+        preparedStatements.clear();
+        fido2DeviceStoreDAO = FIDO2DeviceStoreDAO.getInstance();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        IdentityUtil.threadLocalProperties.get().remove(FIDO2AuthenticatorConstants.FIDO2_ASSERTION_CONTEXT);
+        identityDatabaseUtil.close();
+        identityTenantUtil.close();
+        identityUtil.close();
+    }
+
+    @Test
+    public void testFinishAssertionExecutesTwoStatements() throws Exception {
+
+        Optional<FIDO2StoredCredential> assertionContext = fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID,
+                USER_HANDLE, null);
+        assertTrue(assertionContext.isPresent());
+        assertEquals(assertionContext.get().getUsername(), USERNAME);
+        assertEquals(assertionContext.get().getCredential().getUserHandle(), USER_HANDLE);
+
+        // Lookups made by the relying party while finishing the assertion are served by the assertion context.
+        IdentityUtil.threadLocalProperties.get().put(FIDO2AuthenticatorConstants.FIDO2_ASSERTION_CONTEXT,
+                assertionContext.get());
+        assertTrue(fido2DeviceStoreDAO.getUsernameForUserHandle(USER_HANDLE).isPresent());
+        assertTrue(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, USER_HANDLE).isPresent());
+        IdentityUtil.threadLocalProperties.get().remove(FIDO2AuthenticatorConstants.FIDO2_ASSERTION_CONTEXT);
+
+        fido2DeviceStoreDAO.updateFIDO2SignatureCount(mockAssertionResult(5));
+
+        assertEquals(preparedStatements.size(), 2, "Unexpected statements: " + preparedStatements);
+        assertEquals(getStoredSignatureCount(), 5);
+    }
+
+    @Test
+    public void testLookupWithoutAssertionContext() {
+
+        assertTrue(fido2DeviceStoreDAO.getUsernameForUserHandle(USER_HANDLE).isPresent());
+        assertTrue(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, USER_HANDLE).isPresent());
+
+        assertEquals(preparedStatements.size(), 2, "Unexpected statements: " + preparedStatements);
+    }
+
+    @Test
+    public void testLookupAllReturnsEveryCredentialWithTheId() throws Exception {
+
+        // The credential ID is unique per user handle only.
+        ByteArray otherUserHandle = new ByteArray(new byte[]{21, 22, 23, 24});
+        addRegistration("alice", otherUserHandle);
+
+        Set<ByteArray> userHandles = fido2DeviceStoreDAO.lookupAll(CREDENTIAL_ID).stream()
+                .map(RegisteredCredential::getUserHandle)
+                .collect(Collectors.toSet());
+        assertEquals(userHandles, new HashSet<>(Arrays.asList(USER_HANDLE, otherUserHandle)));
+        assertEquals(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, otherUserHandle).get().getUserHandle(),
+                otherUserHandle);
+    }
+
+    @Test
+    public void testAssertionContextOfCredentialIdWithMoreThanOneUserHandle() throws Exception {
+
+        assertEquals(fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID, null, null).get().getUsername(), USERNAME);
+        ByteArray otherUserHandle = new ByteArray(new byte[]{21, 22, 23, 24});
+        addRegistration("alice", otherUserHandle);
+
+        assertEquals(fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID, otherUserHandle, null).get().getUsername(),
+                "alice");
+        assertEquals(fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID, USER_HANDLE, null).get().getUsername(),
+                USERNAME);
+        assertFalse(fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID,
+                new ByteArray(new byte[]{25, 26}), null).isPresent());
+        // The credential is not guessed without a user handle.
+        assertFalse(fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID, null, null).isPresent());
+        assertEquals(fido2DeviceStoreDAO.getSignatureCount(CREDENTIAL_ID, otherUserHandle), Optional.of(1L));
+    }
+
+    @Test
+    public void testDuplicateCredentialIdWithoutUserHandleIsLeftToTheRelyingParty() throws Exception {
+
+        ByteArray otherUserHandle = new ByteArray(new byte[]{21, 22, 23, 24});
+        addRegistration("alice", otherUserHandle);
+
+        assertFalse(fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID, null, null).isPresent());
+        // The relying party resolves the user handle of the username and looks the credential up with it.
+        try (MockedStatic<User> userMock = Mockito.mockStatic(User.class)) {
+            userMock.when(() -> User.getUserFromUserName(USERNAME)).thenReturn(buildUser(USERNAME));
+            ByteArray userHandle = fido2DeviceStoreDAO.getUserHandleForUsername(USERNAME).get();
+            assertEquals(userHandle, USER_HANDLE);
+            assertEquals(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, userHandle).get().getUserHandle(), USER_HANDLE);
+        }
+    }
+
+    @Test
+    public void testAssertionContextOfTheRequestedUsername() throws Exception {
+
+        ByteArray otherUserHandle = new ByteArray(new byte[]{21, 22, 23, 24});
+        addRegistration("alice", otherUserHandle);
+
+        try (MockedStatic<User> userMock = Mockito.mockStatic(User.class)) {
+            userMock.when(() -> User.getUserFromUserName(USERNAME)).thenReturn(buildUser(USERNAME));
+            userMock.when(() -> User.getUserFromUserName("unknown")).thenReturn(buildUser("unknown"));
+            Optional<FIDO2StoredCredential> assertionContext = fido2DeviceStoreDAO.getAssertionContext(
+                    CREDENTIAL_ID, null, USERNAME);
+            assertTrue(assertionContext.isPresent());
+            assertEquals(assertionContext.get().getCredential().getUserHandle(), USER_HANDLE);
+            assertFalse(fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID, null, "unknown").isPresent());
+        }
+    }
+
+    @Test
+    public void testFinishAuthenticationExecutesTwoStatements() throws Exception {
+
+        ObjectNode authenticationResponse = readAuthenticationResponse();
+        ByteArray credentialId = ByteArray.fromBase64Url(authenticationResponse.get("credential").get("id")
+                .asText());
+        ByteArray userHandle = ByteArray.fromBase64Url(authenticationResponse.get("credential").get("response")
+                .get("userHandle").asText());
+        addRegistration(USERNAME, credentialId, userHandle);
+
+        finishAuthentication(authenticationResponse, credentialId, userHandle);
+
+        assertEquals(preparedStatements, Arrays.asList(FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_ID,
+                FIDO2AuthenticatorConstants.SQLQueries.UPDATE_SIGNATURE_COUNT_BY_CREDENTIAL_QUERY));
+        assertEquals(getStoredSignatureCount(credentialId, userHandle), 5);
+    }
+
+    @Test
+    public void testFinishAuthenticationWithoutUserHandleExecutesTwoStatements() throws Exception {
+
+        ObjectNode authenticationResponse = readAuthenticationResponse();
+        ByteArray credentialId = ByteArray.fromBase64Url(authenticationResponse.get("credential").get("id")
+                .asText());
+        ByteArray userHandle = ByteArray.fromBase64Url(((ObjectNode) authenticationResponse.get("credential")
+                .get("response")).remove("userHandle").asText());
+        addRegistration(USERNAME, credentialId, userHandle);
+        // The same credential ID registered for another user handle does not stop the credential being selected.
+        ByteArray otherUserHandle = new ByteArray(new byte[]{21, 22, 23, 24});
+        addRegistration("alice", credentialId, otherUserHandle);
+
+        finishAuthentication(authenticationResponse, credentialId, userHandle);
+
+        // The user handle of the username is resolved by the credential query.
+        assertEquals(preparedStatements, Arrays.asList(FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_ID,
+                FIDO2AuthenticatorConstants.SQLQueries.UPDATE_SIGNATURE_COUNT_BY_CREDENTIAL_QUERY));
+        assertEquals(getStoredSignatureCount(credentialId, userHandle), 5);
+        assertEquals(getStoredSignatureCount(credentialId, otherUserHandle), 1);
+    }
+
+    @Test
+    public void testSignatureCountIsNotDecreased() throws Exception {
+
+        fido2DeviceStoreDAO.updateFIDO2SignatureCount(mockAssertionResult(7));
+        fido2DeviceStoreDAO.updateFIDO2SignatureCount(mockAssertionResult(3));
+
+        assertEquals(getStoredSignatureCount(), 7);
+    }
+
+    @Test
+    public void testWriteBehindSignatureCountUpdate() throws Exception {
+
+        FIDO2SignatureCountUpdater signatureCountUpdater = new FIDO2SignatureCountUpdater(10, 10, 60000);
+        FIDO2AuthenticatorServiceDataHolder.getInstance().setSignatureCountUpdater(signatureCountUpdater);
+        try {
+            fido2DeviceStoreDAO.updateFIDO2SignatureCount(mockAssertionResult(9));
+            fido2DeviceStoreDAO.updateFIDO2SignatureCount(mockAssertionResult(4));
+
+            // Updates are coalesced and only written on flush, while lookups see the pending counter.
+            assertEquals(getStoredSignatureCount(), 1);
+            assertEquals(signatureCountUpdater.getPendingUpdateCount(), 1);
+            assertEquals(signatureCountUpdater.getCoalescedUpdateCount(), 1);
+            assertEquals(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, USER_HANDLE).get().getSignatureCount(), 9);
+
+            signatureCountUpdater.flush();
+            assertEquals(getStoredSignatureCount(), 9);
+            assertEquals(signatureCountUpdater.getPendingUpdateCount(), 0);
+            assertEquals(signatureCountUpdater.getFlushedUpdateCount(), 1);
+        } finally {
+            FIDO2AuthenticatorServiceDataHolder.getInstance().setSignatureCountUpdater(null);
+        }
+    }
+
+    @Test
+    public void testWriteBehindFallsBackWhenQueueIsFull() throws Exception {
+
+        FIDO2SignatureCountUpdater signatureCountUpdater = new FIDO2SignatureCountUpdater(0, 10, 60000);
+        FIDO2AuthenticatorServiceDataHolder.getInstance().setSignatureCountUpdater(signatureCountUpdater);
+        try {
+            fido2DeviceStoreDAO.updateFIDO2SignatureCount(mockAssertionResult(6));
+
+            assertEquals(getStoredSignatureCount(), 6);
+            assertEquals(signatureCountUpdater.getRejectedUpdateCount(), 1);
+        } finally {
+            FIDO2AuthenticatorServiceDataHolder.getInstance().setSignatureCountUpdater(null);
+        }
+    }
+
+    @Test
+    public void testHasFIDO2Registrations() throws Exception {
+
+        assertTrue(fido2DeviceStoreDAO.hasFIDO2Registrations(buildUser(USERNAME)));
+        assertFalse(fido2DeviceStoreDAO.hasFIDO2Registrations(buildUser("unknown")));
+        assertEquals(preparedStatements, Arrays.asList(
+                FIDO2AuthenticatorConstants.SQLQueries.HAS_DEVICE_REGISTRATION_BY_USERNAME,
+                FIDO2AuthenticatorConstants.SQLQueries.HAS_DEVICE_REGISTRATION_BY_USERNAME));
+    }
+
+    @Test
+    public void testRegisteredUserFilter() {
+
+        FIDO2RegisteredUserFilter registeredUserFilter = new FIDO2RegisteredUserFilter(true, 100, 0.01, 60);
+        // The filter answers conservatively until it is built.
+        assertTrue(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, "unknown"));
+
+        registeredUserFilter.rebuild();
+        assertEquals(registeredUserFilter.getRebuildCount(), 1);
+        assertTrue(registeredUserFilter.getLastRebuildDuration() >= 0);
+        assertTrue(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, USERNAME));
+        assertTrue(registeredUserFilter.mightHaveRegistrations(TENANT_ID, "primary", USERNAME.toUpperCase()));
+        assertFalse(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, "unknown"));
+        assertFalse(registeredUserFilter.mightHaveRegistrations(1, USER_STORE_DOMAIN, USERNAME));
+
+        registeredUserFilter.addUser(1, USER_STORE_DOMAIN, "newUser");
+        assertTrue(registeredUserFilter.mightHaveRegistrations(1, USER_STORE_DOMAIN, "newUser"));
+
+        registeredUserFilter.invalidateTenant(TENANT_ID);
+        assertTrue(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, "unknown"));
+        registeredUserFilter.rebuild();
+        assertFalse(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, "unknown"));
+    }
+
+    @Test
+    public void testRegisteredUserFilterSyncsRecentRegistrations() throws Exception {
+
+        FIDO2RegisteredUserFilter registeredUserFilter = new FIDO2RegisteredUserFilter(true, 100, 0.01, 60, 30);
+        registeredUserFilter.rebuild();
+        assertFalse(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, "alice"));
+
+        // A credential registered on another node is not added to the filter of this node until the next sync.
+        addRegistration("alice", new ByteArray(new byte[]{21, 22, 23, 24}));
+        assertFalse(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, "alice"));
+        // Lookups are answered from memory.
+        assertEquals(registeredUserFilter.getSyncCount(), 0);
+
+        registeredUserFilter.syncRecentRegistrations();
+        assertEquals(registeredUserFilter.getSyncCount(), 1);
+        assertTrue(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, "alice"));
+        assertFalse(registeredUserFilter.mightHaveRegistrations(TENANT_ID, USER_STORE_DOMAIN, "unknown"));
+    }
+
+    @Test
+    public void testRegisteredUserFilterFalsePositiveRate() {
+
+        FIDO2RegisteredUserFilter.BloomFilter bloomFilter = new FIDO2RegisteredUserFilter.BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.put("PRIMARY/user" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(bloomFilter.mightContain("PRIMARY/user" + i));
+            if (bloomFilter.mightContain("PRIMARY/other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 50, "Unexpected false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testBinaryCredentialStorage() throws Exception {
+
+        identityUtil.when(() -> IdentityUtil.getProperty(FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORAGE_MODE))
+                .thenReturn(FIDO2AuthenticatorConstants.CredentialStorageMode.DUAL_WRITE.getValue());
+
+        // Reads use the base64 encoded columns until the registrations are migrated.
+        Optional<FIDO2StoredCredential> assertionContext = fido2DeviceStoreDAO.getAssertionContext(CREDENTIAL_ID,
+                USER_HANDLE, null);
+        assertTrue(assertionContext.isPresent());
+        assertEquals(preparedStatements, Collections.singletonList(
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_ID));
+
+        FIDO2CredentialStorageMigrator migrator = new FIDO2CredentialStorageMigrator(1, true, false);
+        assertEquals(migrator.migrate(), 1);
+        assertEquals(migrator.migrate(), 0);
+
+        identityUtil.when(() -> IdentityUtil.getProperty(FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORAGE_MODE))
+                .thenReturn(FIDO2AuthenticatorConstants.CredentialStorageMode.BINARY.getValue());
+        preparedStatements.clear();
+        assertEquals(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, USER_HANDLE).get().getPublicKeyCose(),
+                PUBLIC_KEY_COSE);
+        assertEquals(fido2DeviceStoreDAO.lookupAll(CREDENTIAL_ID).size(), 1);
+        assertEquals(preparedStatements, Arrays.asList(
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_BINARY_ID,
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_BINARY_ID));
+
+        // Registrations written without the binary columns, e.g. by a node in the base64 mode, are still read.
+        ByteArray otherUserHandle = new ByteArray(new byte[]{21, 22, 23, 24});
+        addRegistration("alice", otherUserHandle);
+        preparedStatements.clear();
+        assertEquals(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, otherUserHandle).get().getPublicKeyCose(),
+                PUBLIC_KEY_COSE);
+        assertEquals(fido2DeviceStoreDAO.lookupAll(CREDENTIAL_ID).size(), 2);
+        assertEquals(preparedStatements, Arrays.asList(
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_BINARY_ID,
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_BINARY_ID));
+    }
+
+    @Test
+    public void testCredentialIdHashLookup() throws Exception {
+
+        identityUtil.when(() -> IdentityUtil.getProperty(FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_ID_HASH_ENABLED))
+                .thenReturn("true");
+
+        // Lookups use the credential ID until the hash lookup is enabled.
+        assertTrue(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, USER_HANDLE).isPresent());
+        assertEquals(preparedStatements, Collections.singletonList(
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_ID_AND_USER_HANDLE));
+
+        assertEquals(new FIDO2CredentialStorageMigrator(1, false, true).migrate(), 1);
+
+        identityUtil.when(() -> IdentityUtil.getProperty(
+                FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_ID_HASH_LOOKUP_ENABLED)).thenReturn("true");
+        preparedStatements.clear();
+        assertTrue(fido2DeviceStoreDAO.lookup(CREDENTIAL_ID, USER_HANDLE).isPresent());
+        assertEquals(fido2DeviceStoreDAO.lookupAll(CREDENTIAL_ID).size(), 1);
+        assertFalse(fido2DeviceStoreDAO.lookup(new ByteArray(new byte[]{1}), USER_HANDLE).isPresent());
+        assertEquals(preparedStatements, Arrays.asList(
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_ID_HASH,
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_ID_HASH,
+                FIDO2AuthenticatorConstants.SQLQueries.GET_CREDENTIAL_BY_ID_HASH));
+    }
+
+    @Test
+    public void testRegistrationsAreDecodedLazily() throws Exception {
+
+        List<FIDO2CredentialRegistration> registrations = new ArrayList<>(
+                fido2DeviceStoreDAO.getFIDO2RegistrationsByUser(buildUser(USERNAME)));
+        assertEquals(registrations.size(), 1);
+        FIDO2CredentialRegistration registration = registrations.get(0);
+        assertEquals(registration.getDisplayName(), "Security Key");
+        assertTrue(registration.isUsernamelessSupported());
+        assertEquals(registration.getCredential().getCredentialId(), CREDENTIAL_ID);
+        assertEquals(registration.getCredential().getPublicKeyCose(), PUBLIC_KEY_COSE);
+        assertEquals(registration.getCredential().getSignatureCount(), 1);
+        // The stored user identity is not decodable; the failure is deferred until the user identity is accessed.
+        expectThrows(UncheckedIOException.class, registration::getUserIdentity);
+
+        Optional<FIDO2CredentialRegistration> registrationById = fido2DeviceStoreDAO
+                .getFIDO2RegistrationByUsernameAndCredentialId(USERNAME, CREDENTIAL_ID);
+        assertTrue(registrationById.isPresent());
+        assertEquals(registrationById.get().getCredential().getUserHandle(), USER_HANDLE);
+    }
+
+    @Test
+    public void testDuplicateRegistrationIsRejected() throws Exception {
+
+        FIDO2CredentialRegistration registration = FIDO2CredentialRegistration.builder()
+                .userIdentity(UserIdentity.builder().name(USERNAME).displayName(USERNAME).id(USER_HANDLE).build())
+                .credential(RegisteredCredential.builder()
+                        .credentialId(CREDENTIAL_ID)
+                        .userHandle(USER_HANDLE)
+                        .publicKeyCose(PUBLIC_KEY_COSE)
+                        .signatureCount(0)
+                        .build())
+                .displayName("Security Key")
+                .isUsernamelessSupported(true)
+                .build();
+        IdentityUtil.threadLocalProperties.get().put(FIDO2AuthenticatorConstants.FIDO2_USER, buildUser(USERNAME));
+        try {
+            expectThrows(FIDO2DuplicateRegistrationException.class, () ->
+                    fido2DeviceStoreDAO.addFIDO2RegistrationByUsername(USERNAME, registration));
+        } finally {
+            IdentityUtil.threadLocalProperties.get().remove(FIDO2AuthenticatorConstants.FIDO2_USER);
+        }
+        // The duplicate is detected by the insert itself, without a lookup upfront.
+        assertEquals(preparedStatements, Collections.singletonList(
+                FIDO2AuthenticatorConstants.SQLQueries.ADD_FIDO2_DEVICE_REGISTRATION_QUERY));
+    }
+
+    @Test
+    public void testRegistrationWritesAllColumnsInTheInsert() throws Exception {
+
+        identityUtil.when(() -> IdentityUtil.getProperty(FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORAGE_MODE))
+                .thenReturn(FIDO2AuthenticatorConstants.CredentialStorageMode.DUAL_WRITE.getValue());
+        identityUtil.when(() -> IdentityUtil.getProperty(FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_ID_HASH_ENABLED))
+                .thenReturn("true");
+        ByteArray credentialId = new ByteArray(new byte[]{21, 22, 23, 24});
+        FIDO2CredentialRegistration registration = FIDO2CredentialRegistration.builder()
+                .userIdentity(UserIdentity.builder().name(USERNAME).displayName(USERNAME).id(USER_HANDLE).build())
+                .credential(RegisteredCredential.builder()
+                        .credentialId(credentialId)
+                        .userHandle(USER_HANDLE)
+                        .publicKeyCose(PUBLIC_KEY_COSE)
+                        .signatureCount(0)
+                        .build())
+                .displayName("Security Key")
+                .isUsernamelessSupported(true)
+                .build();
+        IdentityUtil.threadLocalProperties.get().put(FIDO2AuthenticatorConstants.FIDO2_USER, buildUser(USERNAME));
+        try {
+            fido2DeviceStoreDAO.addFIDO2RegistrationByUsername(USERNAME, registration);
+        } finally {
+            IdentityUtil.threadLocalProperties.get().remove(FIDO2AuthenticatorConstants.FIDO2_USER);
+        }
+        assertEquals(preparedStatements, Collections.singletonList(FIDO2AuthenticatorConstants.SQLQueries
+                .ADD_FIDO2_DEVICE_REGISTRATION_WITH_BINARY_AND_CREDENTIAL_ID_HASH_QUERY));
+
+        // The registration is served by both the binary columns and the credential ID hash without a migration.
+        identityUtil.when(() -> IdentityUtil.getProperty(
+                FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_ID_HASH_LOOKUP_ENABLED)).thenReturn("true");
+        assertTrue(fido2DeviceStoreDAO.lookup(credentialId, USER_HANDLE).isPresent());
+        identityUtil.when(() -> IdentityUtil.getProperty(FIDO2AuthenticatorConstants.FIDO_CREDENTIAL_STORAGE_MODE))
+                .thenReturn(FIDO2AuthenticatorConstants.CredentialStorageMode.BINARY.getValue());
+        assertTrue(fido2DeviceStoreDAO.lookup(credentialId, USER_HANDLE).isPresent());
+    }
+
+    private void addRegistration(String username, ByteArray userHandle) throws SQLException {
+
+        addRegistration(username, CREDENTIAL_ID, userHandle);
+    }
+
+    private void addRegistration(String username, ByteArray credentialId, ByteArray userHandle)
+            throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             PreparedStatement preparedStatement = connection.prepareStatement(FIDO2AuthenticatorConstants
+                     .SQLQueries.ADD_FIDO2_DEVICE_REGISTRATION_QUERY)) {
+            preparedStatement.setInt(1, TENANT_ID);
+            preparedStatement.setString(2, USER_STORE_DOMAIN);
+            preparedStatement.setString(3, username);
+            preparedStatement.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            preparedStatement.setString(5, userHandle.getBase64());
+            preparedStatement.setString(6, credentialId.getBase64());
+            preparedStatement.setString(7, PUBLIC_KEY_COSE.getBase64());
+            preparedStatement.setLong(8, 1);
+            preparedStatement.setString(9, "{}");
+            preparedStatement.setString(10, "Security Key");
+            preparedStatement.setString(11, "1");
+            preparedStatement.execute();
+        }
+    }
+
+    private User buildUser(String username) {
+
+        User user = new User();
+        user.setUserName(username);
+        user.setTenantDomain(TENANT_DOMAIN);
+        user.setUserStoreDomain(USER_STORE_DOMAIN);
+        return user;
+    }
+
+    private AssertionResult mockAssertionResult(long signatureCount) {
+
+        return mockAssertionResult(CREDENTIAL_ID, USER_HANDLE, signatureCount);
+    }
+
+    private AssertionResult mockAssertionResult(ByteArray credentialId, ByteArray userHandle, long signatureCount) {
+
+        AssertionResult assertionResult = mock(AssertionResult.class);
+        when(assertionResult.isSuccess()).thenReturn(true);
+        when(assertionResult.getCredentialId()).thenReturn(credentialId);
+        when(assertionResult.getUserHandle()).thenReturn(userHandle);
+        when(assertionResult.getSignatureCount()).thenReturn(signatureCount);
+        when(assertionResult.getUsername()).thenReturn(USERNAME);
+        return assertionResult;
+    }
+
+    private long getStoredSignatureCount() throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT SIGNATURE_COUNT FROM FIDO2_DEVICE_STORE")) {
+            assertTrue(resultSet.next());
+            return resultSet.getLong(1);
+        }
+    }
+
+    private long getStoredSignatureCount(ByteArray credentialId, ByteArray userHandle) throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection(DB_URL);
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT SIGNATURE_COUNT FROM " +
+                     "FIDO2_DEVICE_STORE WHERE CREDENTIAL_ID = ? AND USER_HANDLE = ?")) {
+            preparedStatement.setString(1, credentialId.getBase64());
+            preparedStatement.setString(2, userHandle.getBase64());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                assertTrue(resultSet.next());
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private ObjectNode readAuthenticationResponse() throws Exception {
+
+        try (InputStream inputStream = getClass().getResourceAsStream(AUTHENTICATION_RESPONSE)) {
+            return (ObjectNode) JacksonCodecs.json().readTree(inputStream);
+        }
+    }
+
+    /**
+     * Finish an authentication of the user through the web authn service, with a relying party that makes the
+     * credential repository lookups of an assertion and succeeds.
+     */
+    private void finishAuthentication(ObjectNode authenticationResponse, ByteArray credentialId,
+                                      ByteArray userHandle) throws Exception {
+
+        ObjectMapper jsonMapper = JacksonCodecs.json();
+        AssertionRequest assertionRequest = AssertionRequest.builder()
+                .publicKeyCredentialRequestOptions(PublicKeyCredentialRequestOptions.builder()
+                        .challenge(new ByteArray(new byte[]{1, 2, 3, 4}))
+                        .rpId("localhost")
+                        .build())
+                .username(USERNAME)
+                .build();
+        FIDO2Cache fido2Cache = mock(FIDO2Cache.class);
+        when(fido2Cache.consume(any(FIDO2CacheKey.class))).thenReturn(new FIDO2CacheEntry(null,
+                jsonMapper.writeValueAsString(assertionRequest), new URL(ORIGIN)));
+
+        AssertionResult assertionResult = mockAssertionResult(credentialId, userHandle, 5);
+        RelyingParty relyingParty = mock(RelyingParty.class);
+        when(relyingParty.finishAssertion(any(FinishAssertionOptions.class))).thenAnswer(invocation -> {
+            FinishAssertionOptions options = invocation.getArgument(0);
+            ByteArray responseUserHandle = options.getResponse().getResponse().getUserHandle().orElseGet(() ->
+                    fido2DeviceStoreDAO.getUserHandleForUsername(options.getRequest().getUsername().get()).get());
+            assertEquals(responseUserHandle, userHandle);
+            assertTrue(fido2DeviceStoreDAO.getUsernameForUserHandle(responseUserHandle).isPresent());
+            assertTrue(fido2DeviceStoreDAO.lookup(options.getResponse().getId(), responseUserHandle).isPresent());
+            return assertionResult;
+        });
+        RelyingParty.RelyingPartyBuilder.MandatoryStages mandatoryStages =
+                mock(RelyingParty.RelyingPartyBuilder.MandatoryStages.class);
+        RelyingParty.RelyingPartyBuilder.MandatoryStages.Step2 step2 =
+                mock(RelyingParty.RelyingPartyBuilder.MandatoryStages.Step2.class);
+        RelyingParty.RelyingPartyBuilder relyingPartyBuilder = mock(RelyingParty.RelyingPartyBuilder.class);
+        when(mandatoryStages.identity(any())).thenReturn(step2);
+        when(step2.credentialRepository(any())).thenReturn(relyingPartyBuilder);
+        when(relyingPartyBuilder.origins(anySet())).thenReturn(relyingPartyBuilder);
+        when(relyingPartyBuilder.attestationConveyancePreference(any(AttestationConveyancePreference.class)))
+                .thenReturn(relyingPartyBuilder);
+        when(relyingPartyBuilder.preferredPubkeyParams(anyList())).thenReturn(relyingPartyBuilder);
+        when(relyingPartyBuilder.build()).thenReturn(relyingParty);
+
+        CarbonContext carbonContext = mock(CarbonContext.class);
+        when(carbonContext.getTenantDomain()).thenReturn(TENANT_DOMAIN);
+        IdentityConfigParser identityConfigParser = mock(IdentityConfigParser.class);
+        Map<String, Object> identityConfig = new HashMap<>();
+        identityConfig.put(FIDO2AuthenticatorConstants.TRUSTED_ORIGINS, Collections.singletonList(ORIGIN));
+        when(identityConfigParser.getConfiguration()).thenReturn(identityConfig);
+        ConfigurationManager configurationManager = mock(ConfigurationManager.class);
+        when(configurationManager.getAttribute(anyString(), anyString(), anyString())).thenReturn(
+                new Attribute(FIDO2AuthenticatorConstants.FIDO2_CONFIG_TRUSTED_ORIGIN_ATTRIBUTE_NAME, ""));
+        identityUtil.when(() -> IdentityUtil.fillURLPlaceholders(anyString()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        FIDO2AuthenticatorServiceDataHolder.getInstance().setConfigurationManager(configurationManager);
+        try (MockedStatic<FIDO2Cache> fido2CacheMock = Mockito.mockStatic(FIDO2Cache.class);
+             MockedStatic<RelyingParty> relyingPartyMock = Mockito.mockStatic(RelyingParty.class);
+             MockedStatic<CarbonContext> carbonContextMock = Mockito.mockStatic(CarbonContext.class);
+             MockedStatic<IdentityConfigParser> identityConfigParserMock =
+                     Mockito.mockStatic(IdentityConfigParser.class);
+             MockedStatic<User> userMock = Mockito.mockStatic(User.class)) {
+            fido2CacheMock.when(FIDO2Cache::getInstance).thenReturn(fido2Cache);
+            relyingPartyMock.when(RelyingParty::builder).thenReturn(mandatoryStages);
+            carbonContextMock.when(CarbonContext::getThreadLocalCarbonContext).thenReturn(carbonContext);
+            identityConfigParserMock.when(IdentityConfigParser::getInstance).thenReturn(identityConfigParser);
+            userMock.when(() -> User.getUserFromUserName(USERNAME)).thenReturn(buildUser(USERNAME));
+
+            new WebAuthnService().finishAuthentication(USERNAME, TENANT_DOMAIN, USER_STORE_DOMAIN,
+                    jsonMapper.writeValueAsString(authenticationResponse));
+        } finally {
+            FIDO2AuthenticatorServiceDataHolder.getInstance().setConfigurationManager(null);
+        }
+    }
+
+    /**
+     * Get a connection to the embedded database which records the statements prepared through it.
+     */
+    private Connection getConnection() throws SQLException {
+
+        Connection connection = DriverManager.getConnection(DB_URL);
+        connection.setAutoCommit(false);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("prepareStatement".equals(method.getName())) {
+                        preparedStatements.add((String) args[0]);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dto;
+
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.data.AuthenticatorSelectionCriteria;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import com.yubico.webauthn.data.PublicKeyCredentialParameters;
+import com.yubico.webauthn.data.PublicKeyCredentialRequestOptions;
+import com.yubico.webauthn.data.RelyingPartyIdentity;
+import com.yubico.webauthn.data.ResidentKeyRequirement;
+import com.yubico.webauthn.data.UserIdentity;
+import com.yubico.webauthn.data.UserVerificationRequirement;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Test class for FIDO2CeremonyState.
+ */
+public class FIDO2CeremonyStateTest {
+
+    private static final String RP_ID = "localhost";
+    private static final String RP_NAME = "WSO2";
+    private static final String USERNAME = "admin@carbon.super";
+    private static final ByteArray CHALLENGE = new ByteArray(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    private static final ByteArray USER_HANDLE = new ByteArray(new byte[]{9, 10, 11, 12});
+    private static final ByteArray CREDENTIAL_ID = new ByteArray(new byte[]{13, 14, 15, 16});
+
+    @Test
+    public void testRegistrationStateRoundTrip() throws Exception {
+
+        List<PublicKeyCredentialParameters> pubKeyCredParams = Arrays.asList(PublicKeyCredentialParameters.ES256,
+                PublicKeyCredentialParameters.RS256);
+        RelyingPartyIdentity relyingPartyIdentity = RelyingPartyIdentity.builder().id(RP_ID).name(RP_NAME).build();
+        PublicKeyCredentialCreationOptions options = PublicKeyCredentialCreationOptions.builder()
+                .rp(relyingPartyIdentity)
+                .user(UserIdentity.builder().name(USERNAME).displayName("Administrator").id(USER_HANDLE).build())
+                .challenge(CHALLENGE)
+                .pubKeyCredParams(pubKeyCredParams)
+                .authenticatorSelection(AuthenticatorSelectionCriteria.builder()
+                        .residentKey(ResidentKeyRequirement.REQUIRED)
+                        .userVerification(UserVerificationRequirement.REQUIRED)
+                        .build())
+                .timeout(60000L)
+                .build();
+
+        FIDO2CeremonyState ceremonyState = FIDO2CeremonyState.decode(
+                FIDO2CeremonyState.fromCreationOptions(options).encode());
+        assertTrue(ceremonyState.isRegistration());
+
+        PublicKeyCredentialCreationOptions rebuiltOptions = ceremonyState.toCreationOptions(relyingPartyIdentity,
+                pubKeyCredParams);
+        assertEquals(rebuiltOptions.getRp(), relyingPartyIdentity);
+        assertEquals(rebuiltOptions.getUser(), options.getUser());
+        assertEquals(rebuiltOptions.getChallenge(), CHALLENGE);
+        assertEquals(rebuiltOptions.getPubKeyCredParams(), pubKeyCredParams);
+        assertEquals(rebuiltOptions.getTimeout(), options.getTimeout());
+        assertEquals(rebuiltOptions.getAuthenticatorSelection().get().getResidentKey().get(),
+                ResidentKeyRequirement.REQUIRED);
+        assertEquals(rebuiltOptions.getAuthenticatorSelection().get().getUserVerification().get(),
+                UserVerificationRequirement.REQUIRED);
+    }
+
+    @Test
+    public void testAssertionStateRoundTrip() throws Exception {
+
+        AssertionRequest request = AssertionRequest.builder()
+                .publicKeyCredentialRequestOptions(PublicKeyCredentialRequestOptions.builder()
+                        .challenge(CHALLENGE)
+                        .rpId(RP_ID)
+                        .allowCredentials(Collections.singletonList(PublicKeyCredentialDescriptor.builder()
+                                .id(CREDENTIAL_ID).build()))
+                        .userVerification(UserVerificationRequirement.PREFERRED)
+                        .build())
+                .username(USERNAME)
+                .build();
+
+        byte[] encoded = FIDO2CeremonyState.fromAssertionRequest(request).encode();
+        FIDO2CeremonyState ceremonyState = FIDO2CeremonyState.decode(encoded);
+        assertFalse(ceremonyState.isRegistration());
+
+        AssertionRequest rebuiltRequest = ceremonyState.toAssertionRequest();
+        assertEquals(rebuiltRequest.getUsername(), request.getUsername());
+        assertFalse(rebuiltRequest.getUserHandle().isPresent());
+        PublicKeyCredentialRequestOptions rebuiltOptions = rebuiltRequest.getPublicKeyCredentialRequestOptions();
+        assertEquals(rebuiltOptions.getChallenge(), CHALLENGE);
+        assertEquals(rebuiltOptions.getRpId().get(), RP_ID);
+        assertEquals(rebuiltOptions.getAllowCredentials().get().get(0).getId(), CREDENTIAL_ID);
+        assertEquals(rebuiltOptions.getUserVerification().get(), UserVerificationRequirement.PREFERRED);
+        assertFalse(rebuiltOptions.getTimeout().isPresent());
+
+        // The compact state is considerably smaller than the JSON serialized request.
+        assertTrue(encoded.length < 100);
+        expectThrows(IOException.class, () -> FIDO2CeremonyState.decode(Arrays.copyOf(encoded, encoded.length - 12)));
+        expectThrows(IOException.class, () -> FIDO2CeremonyState.decode(new byte[]{2, 1}));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yubico.internal.util.JacksonCodecs;
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import com.yubico.webauthn.data.PublicKeyCredentialParameters;
+import com.yubico.webauthn.data.PublicKeyCredentialRequestOptions;
+import com.yubico.webauthn.data.RelyingPartyIdentity;
+import com.yubico.webauthn.data.UserIdentity;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+/**
+ * Test class for the serialization of FIDO2RegistrationRequest and AssertionRequestWrapper.
+ */
+public class FIDO2RegistrationRequestTest {
+
+    private static final ObjectMapper JSON_MAPPER = JacksonCodecs.json();
+    private static final ByteArray REQUEST_ID = new ByteArray(new byte[]{1, 2, 3, 4});
+    private static final ByteArray CHALLENGE = new ByteArray(new byte[]{5, 6, 7, 8, 9, 10, 11, 12});
+
+    @Test
+    public void testPreSerializedCreationOptionsAreWrittenAsIs() throws Exception {
+
+        PublicKeyCredentialCreationOptions options = PublicKeyCredentialCreationOptions.builder()
+                .rp(RelyingPartyIdentity.builder().id("localhost").name("WSO2").build())
+                .user(UserIdentity.builder().name("admin").displayName("Administrator")
+                        .id(new ByteArray(new byte[]{13, 14, 15, 16})).build())
+                .challenge(CHALLENGE)
+                .pubKeyCredParams(Collections.singletonList(PublicKeyCredentialParameters.ES256))
+                .build();
+        String optionsJson = JSON_MAPPER.writeValueAsString(options);
+
+        String expected = JSON_MAPPER.writeValueAsString(new FIDO2RegistrationRequest(REQUEST_ID, options));
+        String actual = JSON_MAPPER.writeValueAsString(new FIDO2RegistrationRequest(REQUEST_ID, options,
+                optionsJson));
+        assertEquals(JSON_MAPPER.readTree(actual), JSON_MAPPER.readTree(expected));
+        assertEquals(JSON_MAPPER.readTree(actual).get("publicKeyCredentialCreationOptions"),
+                JSON_MAPPER.readTree(optionsJson));
+    }
+
+    @Test
+    public void testPreSerializedRequestOptionsAreWrittenAsIs() throws Exception {
+
+        AssertionRequest request = AssertionRequest.builder()
+                .publicKeyCredentialRequestOptions(PublicKeyCredentialRequestOptions.builder()
+                        .challenge(CHALLENGE)
+                        .rpId("localhost")
+                        .build())
+                .username("admin")
+                .build();
+        String optionsJson = JSON_MAPPER.writeValueAsString(request.getPublicKeyCredentialRequestOptions());
+
+        String expected = JSON_MAPPER.writeValueAsString(new AssertionRequestWrapper(REQUEST_ID, request));
+        String actual = JSON_MAPPER.writeValueAsString(new AssertionRequestWrapper(REQUEST_ID, request,
+                optionsJson));
+        assertEquals(JSON_MAPPER.readTree(actual), JSON_MAPPER.readTree(expected));
+        assertEquals(JSON_MAPPER.readTree(actual).get("username").asText(), "admin");
+    }
+
+    @Test
+    public void testAbsentUsernameIsOmitted() throws Exception {
+
+        AssertionRequest request = AssertionRequest.builder()
+                .publicKeyCredentialRequestOptions(PublicKeyCredentialRequestOptions.builder()
+                        .challenge(CHALLENGE)
+                        .build())
+                .build();
+        String optionsJson = JSON_MAPPER.writeValueAsString(request.getPublicKeyCredentialRequestOptions());
+
+        assertFalse(JSON_MAPPER.readTree(JSON_MAPPER.writeValueAsString(new AssertionRequestWrapper(REQUEST_ID,
+                request, optionsJson))).has("username"));
+    }
+}
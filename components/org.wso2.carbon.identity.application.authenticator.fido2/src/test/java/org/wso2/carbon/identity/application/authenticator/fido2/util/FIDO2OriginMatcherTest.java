@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.util;
+
+import com.yubico.webauthn.CredentialRepository;
+import com.yubico.webauthn.RelyingParty;
+import com.yubico.webauthn.data.RelyingPartyIdentity;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for FIDO2OriginMatcher.
+ */
+public class FIDO2OriginMatcherTest {
+
+    private static final List<String> TRUSTED_ORIGINS = Collections.unmodifiableList(Arrays.asList(
+            "https://localhost:9443", "https://wso2.com:443", "http://example.com/", "https://*.apps.wso2.com",
+            "https://b\u00fccher.example", "android:apk-key-hash:abc"));
+
+    @DataProvider(name = "originDataProvider")
+    public static Object[][] originDataProvider() {
+
+        return new Object[][]{
+                {"https://localhost:9443", true},
+                {" HTTPS://LocalHost:9443 ", true},
+                {"https://localhost", false},
+                {"https://wso2.com", true},
+                {"https://wso2.com:443", true},
+                {"https://wso2.com:8443", false},
+                {"http://wso2.com", false},
+                {"http://example.com:80", true},
+                {"https://console.apps.wso2.com", true},
+                {"https://a.b.apps.wso2.com", true},
+                {"https://apps.wso2.com", false},
+                {"https://evilapps.wso2.com", false},
+                {"http://console.apps.wso2.com", false},
+                {"https://console.apps.wso2.com:9443", false},
+                {"https://xn--bcher-kva.example", true},
+                {"https://b\u00fccher.example", true},
+                {"android:apk-key-hash:abc", true},
+                {"android:apk-key-hash:xyz", false},
+                {"https://user@localhost:9443", false},
+                {"", false}
+        };
+    }
+
+    @Test(dataProvider = "originDataProvider")
+    public void testMatches(String origin, boolean trusted) {
+
+        FIDO2OriginMatcher originMatcher = FIDO2OriginMatcher.compile(TRUSTED_ORIGINS, null,
+                UnaryOperator.identity());
+        assertEquals(originMatcher.matches(origin), trusted);
+    }
+
+    @Test
+    public void testRelyingPartyOrigins() {
+
+        FIDO2OriginMatcher originMatcher = FIDO2OriginMatcher.compile(
+                Collections.singletonList("https://localhost:9443"),
+                new ArrayList<>(Arrays.asList("https://{host}", "https://wso2.com:443")),
+                origin -> origin.replace("{host}", "localhost"));
+
+        assertEquals(originMatcher.getRelyingPartyOrigins().size(), 5);
+        assertTrue(originMatcher.getRelyingPartyOrigins().containsAll(Arrays.asList("https://localhost:9443",
+                "https://localhost", "https://localhost:443", "https://wso2.com", "https://wso2.com:443")));
+        assertFalse(originMatcher.matchesWildcardOnly("https://localhost"));
+    }
+
+    @DataProvider(name = "clientOriginDataProvider")
+    public static Object[][] clientOriginDataProvider() {
+
+        return new Object[][]{
+                {"https://localhost:9443"},
+                {"https://localhost"},
+                {"https://wso2.com"},
+                {"https://wso2.com:443"},
+                {"https://wso2.com:8443"},
+                {"http://example.com"},
+                {"http://example.com:80"},
+                {"https://xn--bcher-kva.example"},
+                {"android:apk-key-hash:abc"},
+                {"android:apk-key-hash:xyz"}
+        };
+    }
+
+    @Test(dataProvider = "clientOriginDataProvider")
+    public void testRelyingPartyAcceptsMatchedOrigins(String clientOrigin) {
+
+        // Trusted origins as an admin may configure them, with the origins of clients in their canonical form.
+        FIDO2OriginMatcher originMatcher = FIDO2OriginMatcher.compile(Arrays.asList("HTTPS://LocalHost:9443",
+                "https://WSO2.com:443", "http://example.com/", "https://b\u00fccher.example",
+                "android:apk-key-hash:abc"), null, UnaryOperator.identity());
+        RelyingParty relyingParty = RelyingParty.builder()
+                .identity(RelyingPartyIdentity.builder().id("localhost").name("WSO2").build())
+                .credentialRepository(mock(CredentialRepository.class))
+                .origins(new HashSet<>(originMatcher.getRelyingPartyOrigins()))
+                .build();
+
+        // Without port and subdomain relaxations, the relying party accepts the origins it is built with only.
+        assertFalse(relyingParty.isAllowOriginPort());
+        assertFalse(relyingParty.isAllowOriginSubdomain());
+        assertEquals(relyingParty.getOrigins().contains(clientOrigin), originMatcher.matches(clientOrigin));
+    }
+
+    @Test
+    public void testWildcardOriginsAreNotRelyingPartyOrigins() {
+
+        FIDO2OriginMatcher originMatcher = FIDO2OriginMatcher.compile(null, "https://*.wso2.com",
+                UnaryOperator.identity());
+
+        assertTrue(originMatcher.matchesWildcardOnly("https://console.wso2.com"));
+        assertFalse(originMatcher.matchesWildcardOnly("https://wso2.com"));
+        assertFalse(originMatcher.getRelyingPartyOrigins().contains("https://console.wso2.com"));
+    }
+
+    @Test
+    public void testRecompiledOnConfigChange() {
+
+        List<String> trustedOriginsFromFile = new ArrayList<>(Collections.singletonList("https://wso2.com"));
+        FIDO2OriginMatcher originMatcher = FIDO2OriginMatcher.compile(TRUSTED_ORIGINS, trustedOriginsFromFile,
+                UnaryOperator.identity());
+
+        assertTrue(originMatcher.isCompiledFrom(new ArrayList<>(TRUSTED_ORIGINS), trustedOriginsFromFile));
+        assertFalse(originMatcher.isCompiledFrom(Collections.singletonList("https://localhost:9443"),
+                trustedOriginsFromFile));
+        // The list of identity.xml is updated in place.
+        trustedOriginsFromFile.add("https://localhost");
+        assertFalse(originMatcher.isCompiledFrom(TRUSTED_ORIGINS, trustedOriginsFromFile));
+    }
+
+    @DataProvider(name = "originCountDataProvider")
+    public static Object[][] originCountDataProvider() {
+
+        return new Object[][]{{10}, {100}, {1000}};
+    }
+
+    @Test(dataProvider = "originCountDataProvider")
+    public void testManyOrigins(int originCount) {
+
+        List<String> trustedOrigins = new ArrayList<>(originCount);
+        for (int i = 0; i < originCount; i++) {
+            trustedOrigins.add(i % 2 == 0 ? "https://app" + i + ".wso2.com" : "https://*.tenant" + i + ".wso2.com");
+        }
+        FIDO2OriginMatcher originMatcher = FIDO2OriginMatcher.compile(trustedOrigins, null,
+                UnaryOperator.identity());
+
+        for (int i = 0; i < originCount; i++) {
+            assertTrue(originMatcher.matches(i % 2 == 0 ? "https://app" + i + ".wso2.com:443" :
+                    "https://login.tenant" + i + ".wso2.com"));
+            assertFalse(originMatcher.matches("https://app" + i + ".wso2.org"));
+        }
+    }
+}
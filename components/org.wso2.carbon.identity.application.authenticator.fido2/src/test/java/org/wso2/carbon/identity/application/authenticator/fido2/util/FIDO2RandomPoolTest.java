@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.util;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Test class for FIDO2RandomPool.
+ */
+public class FIDO2RandomPoolTest {
+
+    private static final int POOL_SIZE = 64;
+    private static final int VALUE_LENGTH = 32;
+    private static final int THREAD_COUNT = 8;
+    private static final int VALUES_PER_THREAD = 100;
+
+    @Test
+    public void testPooledValuesAreHandedOutOnce() throws Exception {
+
+        FIDO2RandomPool randomPool = new FIDO2RandomPool(POOL_SIZE, VALUE_LENGTH, 60000, null, null);
+        randomPool.refill();
+        Set<ByteBuffer> values = ConcurrentHashMap.newKeySet();
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                results.add(executorService.submit(() -> {
+                    startSignal.await();
+                    for (int j = 0; j < VALUES_PER_THREAD; j++) {
+                        byte[] value = randomPool.next();
+                        assertEquals(value.length, VALUE_LENGTH);
+                        values.add(ByteBuffer.wrap(value));
+                    }
+                    return null;
+                }));
+            }
+            startSignal.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // Values are never handed out twice, whether taken from the pool or generated on exhaustion.
+        assertEquals(values.size(), THREAD_COUNT * VALUES_PER_THREAD);
+        assertEquals(randomPool.getServedValueCount(), THREAD_COUNT * VALUES_PER_THREAD);
+        assertEquals(randomPool.getExhaustedCount(), THREAD_COUNT * VALUES_PER_THREAD - POOL_SIZE);
+    }
+
+    @Test
+    public void testUnknownAlgorithmFallsBackToDefault() {
+
+        FIDO2RandomPool randomPool = new FIDO2RandomPool(1, VALUE_LENGTH, 60000, "UnknownAlgorithm", null);
+        randomPool.refill();
+
+        assertEquals(randomPool.next().length, VALUE_LENGTH);
+        assertEquals(randomPool.next().length, VALUE_LENGTH);
+        assertEquals(randomPool.getExhaustedCount(), 1);
+        assertEquals(randomPool.getServedValueCount(), 2);
+    }
+}
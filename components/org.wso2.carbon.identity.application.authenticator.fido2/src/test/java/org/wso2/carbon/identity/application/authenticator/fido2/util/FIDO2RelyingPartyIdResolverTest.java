@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.fido2.util;
+
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Test class for FIDO2RelyingPartyIdResolver.
+ */
+public class FIDO2RelyingPartyIdResolverTest {
+
+    @Test
+    public void testRelyingPartyIdIsDerivedOncePerHost() {
+
+        FIDO2RelyingPartyIdResolver resolver = createResolver(false, 10);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(resolver.resolve("is.wso2.com"), "wso2.com");
+            assertEquals(resolver.resolve("localhost"), "localhost");
+        }
+        assertEquals(resolver.resolve("127.0.0.1"), "127.0.0.1");
+
+        assertEquals(resolver.getMissCount(), 3);
+        assertEquals(resolver.getHitCount(), 8);
+        assertEquals(resolver.size(), 3);
+    }
+
+    @Test
+    public void testFullEffectiveDomain() {
+
+        FIDO2RelyingPartyIdResolver resolver = createResolver(true, 10);
+
+        assertEquals(resolver.resolve("is.wso2.com"), "is.wso2.com");
+        assertEquals(resolver.resolve("localhost"), "localhost");
+    }
+
+    @Test
+    public void testMemoIsClearedOnSettingChange() {
+
+        FIDO2RelyingPartyIdResolver resolver = createResolver(false, 10);
+        assertEquals(resolver.resolve("is.wso2.com"), "wso2.com");
+        assertEquals(resolver.resolve("is.wso2.com"), "wso2.com");
+
+        // The identity configuration is reloaded with the full effective domain setting changed.
+        doReturn(true).when(resolver).isRelyingPartyFullEffectiveDomainUsed();
+        assertEquals(resolver.resolve("is.wso2.com"), "is.wso2.com");
+        assertEquals(resolver.resolve("is.wso2.com"), "is.wso2.com");
+        assertEquals(resolver.getMissCount(), 2);
+        assertEquals(resolver.getHitCount(), 2);
+        assertEquals(resolver.size(), 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedHostsAreEvicted() {
+
+        FIDO2RelyingPartyIdResolver resolver = createResolver(false, 2);
+        resolver.resolve("a.wso2.com");
+        resolver.resolve("b.wso2.com");
+        resolver.resolve("a.wso2.com");
+        resolver.resolve("c.wso2.com");
+
+        assertEquals(resolver.size(), 2);
+        assertEquals(resolver.getEvictionCount(), 1);
+        // b.wso2.com was the least recently used host.
+        resolver.resolve("a.wso2.com");
+        assertEquals(resolver.getHitCount(), 2);
+        resolver.resolve("b.wso2.com");
+        assertEquals(resolver.getMissCount(), 4);
+    }
+
+    private static FIDO2RelyingPartyIdResolver createResolver(boolean useFullEffectiveDomain, int capacity) {
+
+        FIDO2RelyingPartyIdResolver resolver = spy(new FIDO2RelyingPartyIdResolver(true, useFullEffectiveDomain,
+                capacity));
+        doReturn(useFullEffectiveDomain).when(resolver).isRelyingPartyFullEffectiveDomainUsed();
+        return resolver;
+    }
+}
@@ -0,0 +1,27 @@
+CREATE TABLE IF NOT EXISTS FIDO2_DEVICE_STORE (
+    TENANT_ID INTEGER,
+    DOMAIN_NAME VARCHAR(255) NOT NULL,
+    USER_NAME VARCHAR(255) NOT NULL,
+    TIME_REGISTERED TIMESTAMP,
+    USER_HANDLE VARCHAR(200) NOT NULL,
+    CREDENTIAL_ID VARCHAR(200) NOT NULL,
+    PUBLIC_KEY_COSE VARCHAR(2048) NOT NULL,
+    SIGNATURE_COUNT BIGINT,
+    USER_IDENTITY VARCHAR(200) NOT NULL,
+    DISPLAY_NAME VARCHAR(255),
+    IS_USERNAMELESS_SUPPORTED CHAR(1) DEFAULT '0',
+    USER_HANDLE_BIN VARBINARY(64),
+    CREDENTIAL_ID_BIN VARBINARY(1024),
+    PUBLIC_KEY_COSE_BIN VARBINARY(1536),
+    CREDENTIAL_ID_HASH BIGINT,
+    PRIMARY KEY (CREDENTIAL_ID, USER_HANDLE)
+);
+
+CREATE INDEX IF NOT EXISTS IDX_FIDO2_STR ON FIDO2_DEVICE_STORE(USER_NAME, TENANT_ID, DOMAIN_NAME, CREDENTIAL_ID,
+    USER_HANDLE);
+
+CREATE INDEX IF NOT EXISTS IDX_FIDO2_CREDENTIAL_ID_BIN ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_BIN);
+
+CREATE INDEX IF NOT EXISTS IDX_FIDO2_CREDENTIAL_ID_HASH ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_HASH);
+
+CREATE INDEX IF NOT EXISTS IDX_FIDO2_TIME_REGISTERED ON FIDO2_DEVICE_STORE(TIME_REGISTERED);
@@ -0,0 +1,17 @@
+ALTER TABLE FIDO2_DEVICE_STORE
+    ADD COLUMN USER_HANDLE_BIN VARCHAR(64) FOR BIT DATA
+    ADD COLUMN CREDENTIAL_ID_BIN VARCHAR(1024) FOR BIT DATA
+    ADD COLUMN PUBLIC_KEY_COSE_BIN VARCHAR(1536) FOR BIT DATA
+/
+
+CREATE INDEX IDX_FIDO2_CREDENTIAL_ID_BIN ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_BIN)
+/
+
+ALTER TABLE FIDO2_DEVICE_STORE ADD COLUMN CREDENTIAL_ID_HASH BIGINT
+/
+
+CREATE INDEX IDX_FIDO2_CREDENTIAL_ID_HASH ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_HASH)
+/
+
+CREATE INDEX IDX_FIDO2_TIME_REGISTERED ON FIDO2_DEVICE_STORE(TIME_REGISTERED)
+/
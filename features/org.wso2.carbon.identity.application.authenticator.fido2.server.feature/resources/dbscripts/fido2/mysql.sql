@@ -0,0 +1,12 @@
+ALTER TABLE FIDO2_DEVICE_STORE
+    ADD COLUMN USER_HANDLE_BIN VARBINARY(64),
+    ADD COLUMN CREDENTIAL_ID_BIN VARBINARY(1024),
+    ADD COLUMN PUBLIC_KEY_COSE_BIN VARBINARY(1536);
+
+CREATE INDEX IDX_FIDO2_CREDENTIAL_ID_BIN ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_BIN);
+
+ALTER TABLE FIDO2_DEVICE_STORE ADD COLUMN CREDENTIAL_ID_HASH BIGINT;
+
+CREATE INDEX IDX_FIDO2_CREDENTIAL_ID_HASH ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_HASH);
+
+CREATE INDEX IDX_FIDO2_TIME_REGISTERED ON FIDO2_DEVICE_STORE(TIME_REGISTERED);
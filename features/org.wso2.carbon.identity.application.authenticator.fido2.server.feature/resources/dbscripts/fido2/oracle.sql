@@ -0,0 +1,17 @@
+ALTER TABLE FIDO2_DEVICE_STORE ADD (
+    USER_HANDLE_BIN RAW(64),
+    CREDENTIAL_ID_BIN RAW(1024),
+    PUBLIC_KEY_COSE_BIN RAW(1536))
+/
+
+CREATE INDEX IDX_FIDO2_CREDENTIAL_ID_BIN ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_BIN)
+/
+
+ALTER TABLE FIDO2_DEVICE_STORE ADD (CREDENTIAL_ID_HASH NUMBER(19))
+/
+
+CREATE INDEX IDX_FIDO2_CREDENTIAL_ID_HASH ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_HASH)
+/
+
+CREATE INDEX IDX_FIDO2_TIME_REGISTERED ON FIDO2_DEVICE_STORE(TIME_REGISTERED)
+/
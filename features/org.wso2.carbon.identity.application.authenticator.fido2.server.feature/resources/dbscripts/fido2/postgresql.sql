@@ -0,0 +1,12 @@
+ALTER TABLE FIDO2_DEVICE_STORE
+    ADD COLUMN IF NOT EXISTS USER_HANDLE_BIN BYTEA,
+    ADD COLUMN IF NOT EXISTS CREDENTIAL_ID_BIN BYTEA,
+    ADD COLUMN IF NOT EXISTS PUBLIC_KEY_COSE_BIN BYTEA;
+
+CREATE INDEX IF NOT EXISTS IDX_FIDO2_CREDENTIAL_ID_BIN ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_BIN);
+
+ALTER TABLE FIDO2_DEVICE_STORE ADD COLUMN IF NOT EXISTS CREDENTIAL_ID_HASH BIGINT;
+
+CREATE INDEX IF NOT EXISTS IDX_FIDO2_CREDENTIAL_ID_HASH ON FIDO2_DEVICE_STORE(CREDENTIAL_ID_HASH);
+
+CREATE INDEX IF NOT EXISTS IDX_FIDO2_TIME_REGISTERED ON FIDO2_DEVICE_STORE(TIME_REGISTERED);